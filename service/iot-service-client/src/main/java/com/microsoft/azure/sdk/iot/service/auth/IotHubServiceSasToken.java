@@ -21,14 +21,19 @@ public final class IotHubServiceSasToken
     private static final long DEFAULT_TOKEN_LIFESPAN_SECONDS = 60*60; // 1 hour
 
     /**
-     * The SAS token format. The parameters to be interpolated are, in order:
-     * the signature
+     * The parts of the SAS token format. The values that follow each part are, in order:
      * the resource URI
+     * the signature
      * the expiry time
      * the key name
      * Example: {@code SharedAccessSignature sr=IOTHUBURI&sig=SIGNATURE&se=EXPIRY&skn=SHAREDACCESSKEYNAME}
      */
-    private static final String TOKEN_FORMAT = "SharedAccessSignature sr=%s&sig=%s&se=%s&skn=%s";
+    private static final String TOKEN_PREFIX = "SharedAccessSignature sr=";
+    private static final String SIGNATURE_KEY = "&sig=";
+    private static final String EXPIRY_KEY = "&se=";
+    private static final String KEY_NAME_KEY = "&skn=";
+
+    static final String HMAC_SHA256 = "HmacSHA256";
 
     /* The URI for a connection to an IoT Hub */
     private final String resourceUri;
@@ -81,6 +86,25 @@ public final class IotHubServiceSasToken
         this.token =  buildToken();
     }
 
+    /**
+     * Constructor for tokens that are signed with an already initialized {@link Mac} instance, so that the shared
+     * access key does not need to be decoded and a new Mac instance does not need to be created for each token.
+     *
+     * @param resourceUri The host name of the IoT hub that this token grants access to.
+     * @param keyName The value of SharedAccessKeyName.
+     * @param tokenLifespanSeconds The number of seconds that the created SAS token will be valid for.
+     * @param mac The HmacSHA256 instance, initialized with the decoded shared access key, to sign this token with.
+     */
+    IotHubServiceSasToken(String resourceUri, String keyName, long tokenLifespanSeconds, Mac mac)
+    {
+        this.tokenLifespanSeconds = tokenLifespanSeconds;
+        this.resourceUri = resourceUri;
+        this.keyValue = null;
+        this.keyName = keyName;
+        this.expiryTimeSeconds = buildExpiresOn();
+        this.token = buildToken(mac);
+    }
+
     /**
      * @return the number of milliseconds since the UNIX Epoch when this token will expire
      */
@@ -97,26 +121,41 @@ public final class IotHubServiceSasToken
      */
     private String buildToken()
     {
-        String targetUri;
         try
         {
-            targetUri = URLEncoder.encode(this.resourceUri.toLowerCase(), StandardCharsets.UTF_8.name());
-            String toSign = targetUri + "\n" + this.expiryTimeSeconds;
-
             byte[] keyBytes = decodeBase64(this.keyValue.getBytes(StandardCharsets.UTF_8));
-            SecretKeySpec signingKey = new SecretKeySpec(keyBytes, "HmacSHA256");
+            SecretKeySpec signingKey = new SecretKeySpec(keyBytes, HMAC_SHA256);
 
             // Get an hmac_sha1 Mac instance and initialize with the signing key
-            Mac mac = Mac.getInstance("HmacSHA256");
+            Mac mac = Mac.getInstance(HMAC_SHA256);
             mac.init(signingKey);
 
+            return buildToken(mac);
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String buildToken(Mac mac)
+    {
+        try
+        {
+            String targetUri = URLEncoder.encode(this.resourceUri.toLowerCase(), StandardCharsets.UTF_8.name());
+            String toSign = targetUri + "\n" + this.expiryTimeSeconds;
+
             // Compute the hmac on input data bytes
             byte[] rawHmac = mac.doFinal(toSign.getBytes(StandardCharsets.UTF_8));
 
             // Convert raw bytes to Hex
             String signature = URLEncoder.encode(encodeBase64String(rawHmac), StandardCharsets.UTF_8.name());
 
-            return String.format(TOKEN_FORMAT, targetUri, signature, this.expiryTimeSeconds, this.keyName);
+            // Concatenated rather than built with String.format so that no format string is parsed per token
+            return TOKEN_PREFIX + targetUri
+                + SIGNATURE_KEY + signature
+                + EXPIRY_KEY + this.expiryTimeSeconds
+                + KEY_NAME_KEY + this.keyName;
         }
         catch (Exception e)
         {
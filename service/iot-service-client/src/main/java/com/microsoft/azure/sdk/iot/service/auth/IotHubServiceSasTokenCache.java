@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.commons.codec.binary.Base64.decodeBase64;
+import static org.apache.commons.codec.binary.Base64.encodeBase64String;
+
+/**
+ * Caches the SAS token generated from a connection string's shared access policy so that it can be shared by every
+ * client that uses that same policy. Getting a token is a volatile read in the common case. Once 85% of a token's
+ * lifespan has passed, a replacement is generated on a background thread while callers keep using the still valid
+ * token. A token is only generated on the calling thread if it is about to expire before the background renewal
+ * completed.
+ *
+ * <p>A cache is only held weakly here, so it lives as long as the clients that use it. Once none of them are
+ * referenced anymore, the cache and its signing key can be garbage collected.
+ */
+@Slf4j
+public final class IotHubServiceSasTokenCache
+{
+    private static final long TOKEN_LIFESPAN_SECONDS = 60 * 60; // 1 hour
+    private static final double RENEWAL_THRESHOLD = 0.85;
+    private static final long EXPIRY_BUFFER_MILLISECONDS = 60 * 1000; // 1 minute
+    private static final String THREAD_NAME = "azure-iot-sdk-SasTokenRenewal";
+
+    // One cache per shared access policy, keyed by a hash of the policy so that the shared access key itself isn't kept
+    // here. The hash includes the key value so that a rotated key gets its own cache.
+    private static final Map<String, CacheReference> CACHES = new HashMap<>();
+    private static final ReferenceQueue<IotHubServiceSasTokenCache> RELEASED_CACHES = new ReferenceQueue<>();
+
+    private static final ExecutorService RENEWAL_EXECUTOR = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String hostName;
+    private final String sharedAccessKeyName;
+    private final SecretKeySpec signingKey;
+
+    // Mac instances are not thread safe, so each thread that generates tokens reuses its own
+    private final ThreadLocal<Mac> macs;
+
+    private final AtomicBoolean renewalInProgress = new AtomicBoolean(false);
+    private volatile IotHubServiceSasToken currentToken;
+    private volatile long renewAtMillis;
+
+    private IotHubServiceSasTokenCache(IotHubConnectionString iotHubConnectionString)
+    {
+        this.hostName = iotHubConnectionString.getHostName();
+        this.sharedAccessKeyName = iotHubConnectionString.getSharedAccessKeyName();
+
+        byte[] keyBytes = decodeBase64(iotHubConnectionString.getSharedAccessKey().getBytes(StandardCharsets.UTF_8));
+        this.signingKey = new SecretKeySpec(keyBytes, IotHubServiceSasToken.HMAC_SHA256);
+        this.macs = ThreadLocal.withInitial(this::createMac);
+
+        renew();
+    }
+
+    /**
+     * Get the token cache for the shared access policy of the provided connection string. All callers that provide a
+     * connection string with the same host name, shared access key name and shared access key get the same instance
+     * for as long as any of them still reference it.
+     *
+     * @param iotHubConnectionString the connection string to get the token cache for.
+     * @return the token cache for the provided connection string's shared access policy.
+     */
+    public static IotHubServiceSasTokenCache getInstance(IotHubConnectionString iotHubConnectionString)
+    {
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+
+        String cacheKey = getCacheKey(iotHubConnectionString);
+
+        synchronized (CACHES)
+        {
+            removeReleasedCaches();
+
+            CacheReference cacheReference = CACHES.get(cacheKey);
+            IotHubServiceSasTokenCache cache = cacheReference != null ? cacheReference.get() : null;
+            if (cache == null)
+            {
+                cache = new IotHubServiceSasTokenCache(iotHubConnectionString);
+                CACHES.put(cacheKey, new CacheReference(cacheKey, cache));
+            }
+
+            return cache;
+        }
+    }
+
+    private static String getCacheKey(IotHubConnectionString iotHubConnectionString)
+    {
+        String policy = iotHubConnectionString.getHostName()
+            + ";" + iotHubConnectionString.getSharedAccessKeyName()
+            + ";" + iotHubConnectionString.getSharedAccessKey();
+
+        try
+        {
+            return encodeBase64String(MessageDigest.getInstance("SHA-256").digest(policy.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("Failed to hash the shared access policy", e);
+        }
+    }
+
+    // Must be called while holding the lock on CACHES
+    private static void removeReleasedCaches()
+    {
+        CacheReference released;
+        while ((released = (CacheReference) RELEASED_CACHES.poll()) != null)
+        {
+            // A newer cache may have replaced the released one already
+            CACHES.remove(released.cacheKey, released);
+        }
+    }
+
+    /**
+     * Get a SAS token that is valid for at least one more minute.
+     *
+     * @return the string representation of the SAS token.
+     */
+    public String getTokenString()
+    {
+        IotHubServiceSasToken token = this.currentToken;
+        long now = System.currentTimeMillis();
+        if (now >= this.renewAtMillis)
+        {
+            if (now >= token.getExpiryTimeMillis() - EXPIRY_BUFFER_MILLISECONDS)
+            {
+                // Too close to expiry to wait for the background renewal
+                token = renewNow(token);
+            }
+            else
+            {
+                renewInBackground();
+            }
+        }
+
+        return token.toString();
+    }
+
+    private void renewInBackground()
+    {
+        if (this.renewalInProgress.compareAndSet(false, true))
+        {
+            try
+            {
+                RENEWAL_EXECUTOR.execute(() ->
+                {
+                    try
+                    {
+                        renew();
+                    }
+                    catch (RuntimeException e)
+                    {
+                        log.warn("Failed to renew the SAS token for {} in the background", this.hostName, e);
+                    }
+                    finally
+                    {
+                        this.renewalInProgress.set(false);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e)
+            {
+                this.renewalInProgress.set(false);
+            }
+        }
+    }
+
+    private synchronized IotHubServiceSasToken renewNow(IotHubServiceSasToken expiringToken)
+    {
+        // Another thread may have renewed the token while this thread waited for the lock
+        if (this.currentToken != expiringToken)
+        {
+            return this.currentToken;
+        }
+
+        return renew();
+    }
+
+    private synchronized IotHubServiceSasToken renew()
+    {
+        IotHubServiceSasToken token = new IotHubServiceSasToken(this.hostName, this.sharedAccessKeyName, TOKEN_LIFESPAN_SECONDS, this.macs.get());
+        long issuedAtMillis = token.getExpiryTimeMillis() - TOKEN_LIFESPAN_SECONDS * 1000;
+        this.currentToken = token;
+        this.renewAtMillis = issuedAtMillis + (long) (TOKEN_LIFESPAN_SECONDS * 1000 * RENEWAL_THRESHOLD);
+        log.trace("Generated a new SAS token for {}", this.hostName);
+        return token;
+    }
+
+    private Mac createMac()
+    {
+        try
+        {
+            Mac mac = Mac.getInstance(IotHubServiceSasToken.HMAC_SHA256);
+            mac.init(this.signingKey);
+            return mac;
+        }
+        catch (NoSuchAlgorithmException | InvalidKeyException e)
+        {
+            throw new IllegalStateException("Failed to create the Mac instance to sign SAS tokens with", e);
+        }
+    }
+
+    private static final class CacheReference extends WeakReference<IotHubServiceSasTokenCache>
+    {
+        private final String cacheKey;
+
+        CacheReference(String cacheKey, IotHubServiceSasTokenCache cache)
+        {
+            super(cache, RELEASED_CACHES);
+            this.cacheKey = cacheKey;
+        }
+    }
+}
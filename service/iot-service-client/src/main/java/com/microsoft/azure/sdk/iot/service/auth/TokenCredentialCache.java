@@ -7,25 +7,86 @@ import com.azure.core.credential.AccessToken;
 import com.azure.core.credential.TokenCredential;
 import com.azure.core.credential.TokenRequestContext;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import lombok.extern.slf4j.Slf4j;
 
+import java.lang.ref.WeakReference;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class generates AAD authentication tokens from a TokenCredential but caches previous tokens when they aren't near
  * expiry.
+ *
+ * <p>Only one token request is made at a time, no matter how many threads need a token. Tokens that are near expiry
+ * are renewed on a background thread while callers keep using the cached token, so a caller only waits for a token
+ * request if there is no cached token yet or if the cached token has already expired.</p>
+ *
+ * <p>If a background renewal fails, it is retried with a capped exponential backoff, and the cached token keeps being
+ * returned until the retry is due.</p>
  */
+@Slf4j
 public class TokenCredentialCache
 {
     private final static int MINUTES_BEFORE_PROACTIVE_RENEWAL = 9;
+    private final static long INITIAL_RETRY_DELAY_MILLISECONDS = 1000;
+    private final static long MAX_RETRY_DELAY_MILLISECONDS = 60 * 1000;
+    private final static String THREAD_NAME = "azure-iot-sdk-TokenCredentialRefresh";
+    private final static String FETCH_THREAD_NAME = "azure-iot-sdk-TokenCredentialFetch";
+    private static final AtomicInteger FETCH_THREAD_COUNT = new AtomicInteger(0);
+
     private final TokenCredential tokenCredential;
-    private AccessToken accessToken;
+    private volatile AccessToken accessToken;
+
+    // The token request that is currently in flight, if any. Every caller that needs a token joins this request.
+    private final AtomicReference<CompletableFuture<AccessToken>> pendingRefresh = new AtomicReference<>();
+
+    // Backoff after failed token requests. Callers don't start background renewals until the retry is due.
+    private final AtomicInteger consecutiveRefreshFailures = new AtomicInteger(0);
+    private volatile boolean refreshRetryPending;
+    private volatile long refreshRetryDueNanos;
+
+    private final AtomicLong refreshCount = new AtomicLong(0);
+    private final AtomicLong refreshFailureCount = new AtomicLong(0);
+    private final AtomicLong totalRefreshLatencyMillis = new AtomicLong(0);
+    private final AtomicLong maxRefreshLatencyMillis = new AtomicLong(0);
 
     @SuppressFBWarnings("MS_MUTABLE_ARRAY") // Can't change this to an immutable list without a breaking change
     public static final String[] IOTHUB_PUBLIC_SCOPE = new String[]{"https://iothubs.azure.net/.default"};
     private static final String BEARER_TOKEN_PREFIX = "Bearer ";
 
+    // Caches are only weakly referenced so that they, and their credential, can be collected once no client uses them
+    private static final Map<TokenCredential, WeakReference<TokenCredentialCache>> SHARED_CACHES = new WeakHashMap<>();
+
+    // Only times the token requests that are made ahead of expiry. The requests themselves block on the network, so
+    // they run on TOKEN_FETCH_EXECUTOR rather than holding up the renewals of every other cache.
+    private static final ScheduledExecutorService REFRESH_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Token requests made ahead of expiry run here so that callers never wait for them, as do the token requests of
+    // AMQP connections. Shared by all caches and connections. Idle threads are released after 60 seconds.
+    private static final ExecutorService TOKEN_FETCH_EXECUTOR = Executors.newCachedThreadPool(runnable ->
+    {
+        Thread thread = new Thread(runnable, FETCH_THREAD_NAME + "-" + FETCH_THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Construct a new TokenCredentialCache instance.
      * @param tokenCredential The tokenCredential instance that this cache will use to generate new tokens.
@@ -37,20 +98,79 @@ public class TokenCredentialCache
         this.tokenCredential = tokenCredential;
     }
 
+    /**
+     * Get the cache for the provided TokenCredential. All callers that provide the same TokenCredential instance get the
+     * same cache for as long as one of them still references it, so that they share tokens and token requests.
+     * @param tokenCredential The tokenCredential instance that the cache will use to generate new tokens.
+     * @return the cache for the provided TokenCredential.
+     */
+    public static TokenCredentialCache getInstance(TokenCredential tokenCredential)
+    {
+        Objects.requireNonNull(tokenCredential, "tokenCredential cannot be null");
+
+        synchronized (SHARED_CACHES)
+        {
+            WeakReference<TokenCredentialCache> cacheReference = SHARED_CACHES.get(tokenCredential);
+            TokenCredentialCache cache = cacheReference != null ? cacheReference.get() : null;
+            if (cache == null)
+            {
+                cache = new TokenCredentialCache(tokenCredential);
+                SHARED_CACHES.put(tokenCredential, new WeakReference<>(cache));
+            }
+
+            return cache;
+        }
+    }
+
     /**
      * Get a valid AAD authentication token. This may be the same as a previously returned token if it is not near
-     * expiration time yet. If a token is less than or equal to 9 minutes away from expiring or is expired already, the
-     * token will be renewed. Otherwise, a cached token will be returned.
+     * expiration time yet. If a token is less than or equal to 9 minutes away from expiring, it will be renewed in the
+     * background and the cached token will be returned until then. If that renewal fails, the cached token is returned
+     * until the scheduled retry is due. If there is no cached token or it is expired already, this call waits for a new
+     * token.
      * @return a valid AAD authentication token.
      */
     public AccessToken getAccessToken()
     {
-        if (this.accessToken == null || isAccessTokenCloseToExpiry(this.accessToken))
+        AccessToken currentAccessToken = this.accessToken;
+        if (currentAccessToken == null || isAccessTokenExpired(currentAccessToken))
         {
-            this.accessToken = tokenCredential.getToken(new TokenRequestContext().addScopes(IOTHUB_PUBLIC_SCOPE)).block();
+            try
+            {
+                return refresh(currentAccessToken, true).join();
+            }
+            catch (CompletionException e)
+            {
+                // Surface the token credential's exception the same way as if it was called directly
+                if (e.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+
+                throw e;
+            }
+        }
+
+        if (isAccessTokenCloseToExpiry(currentAccessToken) && isRefreshDue())
+        {
+            refresh(currentAccessToken, false);
         }
 
-        return this.accessToken;
+        return currentAccessToken;
+    }
+
+    /**
+     * Request a new token from the provided TokenCredential without blocking the calling thread. The request runs on
+     * the same threads as the token requests that caches make ahead of expiry, and its token is not cached.
+     * @param tokenCredential The tokenCredential instance to request the token from.
+     * @return the future token. It completes with null if the TokenCredential supplied no token.
+     */
+    public static CompletableFuture<AccessToken> fetchAccessTokenAsync(TokenCredential tokenCredential)
+    {
+        Objects.requireNonNull(tokenCredential, "tokenCredential cannot be null");
+
+        TokenRequestContext context = new TokenRequestContext().addScopes(IOTHUB_PUBLIC_SCOPE);
+        return CompletableFuture.supplyAsync(() -> tokenCredential.getToken(context).block(), TOKEN_FETCH_EXECUTOR);
     }
 
     /**
@@ -70,9 +190,183 @@ public class TokenCredentialCache
         return this.tokenCredential;
     }
 
+    /**
+     * @return the number of token requests that completed successfully.
+     */
+    public long getRefreshCount()
+    {
+        return this.refreshCount.get();
+    }
+
+    /**
+     * @return the number of token requests that failed.
+     */
+    public long getRefreshFailureCount()
+    {
+        return this.refreshFailureCount.get();
+    }
+
+    /**
+     * @return the average time, in milliseconds, that successful token requests took.
+     */
+    public long getAverageRefreshLatencyMillis()
+    {
+        long count = this.refreshCount.get();
+        return count == 0 ? 0 : this.totalRefreshLatencyMillis.get() / count;
+    }
+
+    /**
+     * @return the longest time, in milliseconds, that a successful token request took.
+     */
+    public long getMaxRefreshLatencyMillis()
+    {
+        return this.maxRefreshLatencyMillis.get();
+    }
+
+    private CompletableFuture<AccessToken> refresh(AccessToken observedAccessToken, boolean onCallingThread)
+    {
+        CompletableFuture<AccessToken> newRefresh = new CompletableFuture<>();
+        while (!this.pendingRefresh.compareAndSet(null, newRefresh))
+        {
+            CompletableFuture<AccessToken> existingRefresh = this.pendingRefresh.get();
+            if (existingRefresh != null)
+            {
+                return existingRefresh;
+            }
+        }
+
+        AccessToken currentAccessToken = this.accessToken;
+        if (currentAccessToken != observedAccessToken)
+        {
+            // A token request completed after the caller read the cached token, so there is nothing left to do
+            this.pendingRefresh.set(null);
+            newRefresh.complete(currentAccessToken);
+            return newRefresh;
+        }
+
+        if (onCallingThread)
+        {
+            requestAccessToken(newRefresh);
+        }
+        else
+        {
+            TOKEN_FETCH_EXECUTOR.execute(() -> requestAccessToken(newRefresh));
+        }
+
+        return newRefresh;
+    }
+
+    private void requestAccessToken(CompletableFuture<AccessToken> refresh)
+    {
+        long startTimeMillis = System.currentTimeMillis();
+        AccessToken newAccessToken;
+        try
+        {
+            newAccessToken = this.tokenCredential.getToken(new TokenRequestContext().addScopes(IOTHUB_PUBLIC_SCOPE)).block();
+            if (newAccessToken == null)
+            {
+                throw new IllegalStateException("The token credential did not return an access token");
+            }
+        }
+        catch (Throwable e)
+        {
+            this.refreshFailureCount.incrementAndGet();
+            log.warn("Failed to get an access token from the token credential", e);
+
+            // Back off before letting callers start another request
+            scheduleRefreshRetry();
+            this.pendingRefresh.set(null);
+            refresh.completeExceptionally(e);
+            return;
+        }
+
+        long latencyMillis = System.currentTimeMillis() - startTimeMillis;
+        this.totalRefreshLatencyMillis.addAndGet(latencyMillis);
+        this.maxRefreshLatencyMillis.accumulateAndGet(latencyMillis, Math::max);
+        this.refreshCount.incrementAndGet();
+
+        this.accessToken = newAccessToken;
+        this.consecutiveRefreshFailures.set(0);
+        this.refreshRetryPending = false;
+        this.pendingRefresh.set(null);
+        refresh.complete(newAccessToken);
+        scheduleProactiveRefresh(newAccessToken);
+    }
+
+    private void scheduleProactiveRefresh(AccessToken newAccessToken)
+    {
+        Duration remainingTimeToLive = Duration.between(Instant.now(), newAccessToken.getExpiresAt().toInstant());
+        long secondsUntilRenewal = remainingTimeToLive.getSeconds() - TimeUnit.MINUTES.toSeconds(MINUTES_BEFORE_PROACTIVE_RENEWAL);
+        if (secondsUntilRenewal <= 0)
+        {
+            // Will be renewed by the next caller
+            return;
+        }
+
+        // The scheduled task must not keep an otherwise unused cache alive
+        WeakReference<TokenCredentialCache> cacheReference = new WeakReference<>(this);
+        REFRESH_SCHEDULER.schedule(() ->
+        {
+            TokenCredentialCache cache = cacheReference.get();
+            if (cache != null && cache.accessToken == newAccessToken)
+            {
+                cache.refresh(newAccessToken, false);
+            }
+        }, secondsUntilRenewal, TimeUnit.SECONDS);
+    }
+
+    private void scheduleRefreshRetry()
+    {
+        int failureCount = this.consecutiveRefreshFailures.incrementAndGet();
+        AccessToken cachedAccessToken = this.accessToken;
+        if (cachedAccessToken == null || isAccessTokenExpired(cachedAccessToken))
+        {
+            // Callers wait for a new token anyway, so there is no cached token to keep serving in the meantime
+            return;
+        }
+
+        long retryDelayMillis = getRetryDelayMilliseconds(failureCount);
+        log.debug("Retrying the failed token request in {} milliseconds", retryDelayMillis);
+        this.refreshRetryDueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMillis);
+        this.refreshRetryPending = true;
+
+        // The scheduled task must not keep an otherwise unused cache alive
+        WeakReference<TokenCredentialCache> cacheReference = new WeakReference<>(this);
+        REFRESH_SCHEDULER.schedule(() ->
+        {
+            TokenCredentialCache cache = cacheReference.get();
+            if (cache != null && cache.accessToken == cachedAccessToken)
+            {
+                cache.refresh(cachedAccessToken, false);
+            }
+        }, retryDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isRefreshDue()
+    {
+        return !this.refreshRetryPending || System.nanoTime() - this.refreshRetryDueNanos >= 0;
+    }
+
+    /**
+     * Get how long to wait before retrying a token request. The delay doubles with each consecutive failure, up to
+     * {@link #MAX_RETRY_DELAY_MILLISECONDS}.
+     * @param failureCount the number of consecutive failed token requests, starting at 1.
+     * @return the delay in milliseconds.
+     */
+    static long getRetryDelayMilliseconds(int failureCount)
+    {
+        int doublings = Math.min(Math.max(failureCount - 1, 0), 30);
+        return Math.min(INITIAL_RETRY_DELAY_MILLISECONDS << doublings, MAX_RETRY_DELAY_MILLISECONDS);
+    }
+
     private static boolean isAccessTokenCloseToExpiry(AccessToken accessToken)
     {
         Duration remainingTimeToLive = Duration.between(Instant.now(), accessToken.getExpiresAt().toInstant());
         return remainingTimeToLive.toMinutes() <= MINUTES_BEFORE_PROACTIVE_RENEWAL;
     }
+
+    private static boolean isAccessTokenExpired(AccessToken accessToken)
+    {
+        return !Instant.now().isBefore(accessToken.getExpiresAt().toInstant());
+    }
 }
@@ -8,11 +8,12 @@ import com.azure.core.credential.TokenCredential;
 import com.google.gson.Gson;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
 import com.microsoft.azure.sdk.iot.service.configurations.serializers.ConfigurationParser;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.AsyncHttpRequestExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -25,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The client for creating, updating, getting and deleting configurations.
@@ -38,8 +40,10 @@ public class ConfigurationsClient
     private TokenCredentialCache credentialCache;
     private AzureSasCredential azureSasCredential;
     private IotHubConnectionString iotHubConnectionString;
+    private IotHubServiceSasTokenCache sasTokenCache;
 
     private final ConfigurationsClientOptions options;
+    private final AsyncHttpRequestExecutor asyncExecutor;
 
     /**
      * Constructor to create instance from connection string
@@ -71,9 +75,11 @@ public class ConfigurationsClient
 
         this.iotHubConnectionString =
             IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
+        this.sasTokenCache = IotHubServiceSasTokenCache.getInstance(this.iotHubConnectionString);
 
         this.hostName = iotHubConnectionString.getHostName();
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         commonConstructorSetup();
     }
 
@@ -107,7 +113,8 @@ public class ConfigurationsClient
         }
 
         this.options = options;
-        this.credentialCache = new TokenCredentialCache(credential);
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
+        this.credentialCache = TokenCredentialCache.getInstance(credential);
         this.hostName = hostName;
         commonConstructorSetup();
     }
@@ -140,6 +147,7 @@ public class ConfigurationsClient
         }
 
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         this.azureSasCredential = azureSasCredential;
         this.hostName = hostName;
         commonConstructorSetup();
@@ -346,6 +354,59 @@ public class ConfigurationsClient
         request.send();
     }
 
+    /**
+     * Asynchronously create a configuration on the IoT hub. See {@link #create(Configuration)} for more details.
+     *
+     * @param configuration The configuration to create.
+     * @return A future that completes with the created configuration, or that completes exceptionally with the
+     * exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Configuration> createAsync(Configuration configuration)
+    {
+        return this.asyncExecutor.submit(() -> create(configuration));
+    }
+
+    /**
+     * Asynchronously get a configuration from the IoT hub. See {@link #get(String)} for more details.
+     *
+     * @param configurationId The id of the configuration to get.
+     * @return A future that completes with the retrieved configuration, or that completes exceptionally with the
+     * exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Configuration> getAsync(String configurationId)
+    {
+        return this.asyncExecutor.submit(() -> get(configurationId));
+    }
+
+    /**
+     * Asynchronously replace a configuration on the IoT hub. See {@link #replace(Configuration)} for more details.
+     *
+     * @param configuration The configuration to replace the current one with.
+     * @return A future that completes with the configuration after the replace operation, or that completes
+     * exceptionally with the exception the synchronous operation would have thrown. Cancelling the future aborts the
+     * request.
+     */
+    public CompletableFuture<Configuration> replaceAsync(Configuration configuration)
+    {
+        return this.asyncExecutor.submit(() -> replace(configuration));
+    }
+
+    /**
+     * Asynchronously delete a configuration from the IoT hub. See {@link #delete(String)} for more details.
+     *
+     * @param configurationId The id of the configuration to delete.
+     * @return A future that completes once the operation has finished, or that completes exceptionally with the
+     * exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Void> deleteAsync(String configurationId)
+    {
+        return this.asyncExecutor.submit(() ->
+        {
+            delete(configurationId);
+            return null;
+        });
+    }
+
     private HttpRequest createRequest(URL url, HttpMethod method, byte[] payload) throws IOException
     {
         Proxy proxy = null;
@@ -354,9 +415,10 @@ public class ConfigurationsClient
             proxy = this.options.getProxyOptions().getProxy();
         }
 
-        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy);
+        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy, this.options.getHttpConnectionFactory());
         request.setReadTimeoutSeconds(options.getHttpReadTimeoutSeconds());
         request.setConnectTimeoutSeconds(options.getHttpConnectTimeoutSeconds());
+        this.asyncExecutor.registerRequest(request);
         return request;
     }
 
@@ -374,6 +436,6 @@ public class ConfigurationsClient
             return this.azureSasCredential.getSignature();
         }
 
-        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+        return this.sasTokenCache.getTokenString();
     }
 }
@@ -128,7 +128,7 @@ public class DigitalTwinAsyncClient {
         Objects.requireNonNull(options);
         final SimpleModule stringModule = new SimpleModule("String Serializer");
         stringModule.addSerializer(new DigitalTwinStringSerializer(String.class, objectMapper));
-        TokenCredentialCache tokenCredentialCache = new TokenCredentialCache(credential);
+        TokenCredentialCache tokenCredentialCache = TokenCredentialCache.getInstance(credential);
         BearerTokenProvider bearerTokenProvider = () -> tokenCredentialCache.getTokenString();
 
         JacksonAdapter adapter = new JacksonAdapter();
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.exceptions;
+
+/**
+ * Thrown when a message could not be queued for sending because the client's outgoing message queue was full. Unlike
+ * {@link IotHubDeviceMaximumQueueDepthExceededException}, this is raised by the client before the message reaches the
+ * service.
+ */
+public class IotHubMessageQueueFullException extends IotHubException
+{
+    public IotHubMessageQueueFullException()
+    {
+        this(null);
+    }
+
+    public IotHubMessageQueueFullException(String message)
+    {
+        super(message);
+    }
+}
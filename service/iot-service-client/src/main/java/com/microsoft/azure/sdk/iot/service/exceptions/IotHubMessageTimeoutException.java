@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.exceptions;
+
+/**
+ * Thrown when a message was not acknowledged by the service before its send deadline passed, or when a message expired
+ * before it could be sent. Unlike {@link IotHubGatewayTimeoutException}, this is raised by the client rather than by
+ * the service.
+ */
+public class IotHubMessageTimeoutException extends IotHubException
+{
+    public IotHubMessageTimeoutException()
+    {
+        this(null);
+    }
+
+    public IotHubMessageTimeoutException(String message)
+    {
+        super(message);
+    }
+}
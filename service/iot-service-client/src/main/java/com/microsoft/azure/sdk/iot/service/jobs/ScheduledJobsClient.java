@@ -15,11 +15,12 @@ import com.microsoft.azure.sdk.iot.service.twin.TwinCollection;
 import com.microsoft.azure.sdk.iot.service.twin.TwinState;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
 import com.microsoft.azure.sdk.iot.service.twin.Twin;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.AsyncHttpRequestExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -32,6 +33,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Use the ScheduledJobsClient to schedule and cancel jobs for a group of devices using IoT hub.
@@ -45,7 +47,9 @@ public final class ScheduledJobsClient
     private TokenCredentialCache credentialCache;
     private AzureSasCredential azureSasCredential;
     private IotHubConnectionString iotHubConnectionString;
+    private IotHubServiceSasTokenCache sasTokenCache;
     private final ScheduledJobsClientOptions clientOptions;
+    private final AsyncHttpRequestExecutor asyncExecutor;
 
     // keep a queryClient within this client so that twins can be queried
     private final QueryClient queryClient;
@@ -75,8 +79,10 @@ public final class ScheduledJobsClient
         }
 
         this.iotHubConnectionString = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
+        this.sasTokenCache = IotHubServiceSasTokenCache.getInstance(this.iotHubConnectionString);
         this.hostName = this.iotHubConnectionString.getHostName();
         this.clientOptions = clientOptions;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(clientOptions.getAsyncExecutor(), clientOptions.getMaxConcurrentAsyncRequests());
         commonConstructorSetup();
 
         QueryClientOptions queryClientOptions =
@@ -84,6 +90,7 @@ public final class ScheduledJobsClient
                 .httpReadTimeoutSeconds(clientOptions.getHttpReadTimeoutSeconds())
                 .httpConnectTimeoutSeconds(clientOptions.getHttpConnectTimeoutSeconds())
                 .proxyOptions(clientOptions.getProxyOptions())
+                .httpConnectionFactory(clientOptions.getHttpConnectionFactory())
                 .build();
 
         this.queryClient = new QueryClient(connectionString, queryClientOptions);
@@ -120,8 +127,9 @@ public final class ScheduledJobsClient
         }
 
         this.hostName = hostName;
-        this.credentialCache = new TokenCredentialCache(credential);
+        this.credentialCache = TokenCredentialCache.getInstance(credential);
         this.clientOptions = clientOptions;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(clientOptions.getAsyncExecutor(), clientOptions.getMaxConcurrentAsyncRequests());
         commonConstructorSetup();
 
         QueryClientOptions queryClientOptions =
@@ -129,6 +137,7 @@ public final class ScheduledJobsClient
                 .httpReadTimeoutSeconds(clientOptions.getHttpReadTimeoutSeconds())
                 .httpConnectTimeoutSeconds(clientOptions.getHttpConnectTimeoutSeconds())
                 .proxyOptions(clientOptions.getProxyOptions())
+                .httpConnectionFactory(clientOptions.getHttpConnectionFactory())
                 .build();
 
         this.queryClient = new QueryClient(hostName, credential, queryClientOptions);
@@ -165,6 +174,7 @@ public final class ScheduledJobsClient
         this.hostName = hostName;
         this.azureSasCredential = azureSasCredential;
         this.clientOptions = clientOptions;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(clientOptions.getAsyncExecutor(), clientOptions.getMaxConcurrentAsyncRequests());
         commonConstructorSetup();
 
         QueryClientOptions queryClientOptions =
@@ -172,6 +182,7 @@ public final class ScheduledJobsClient
                 .httpReadTimeoutSeconds(clientOptions.getHttpReadTimeoutSeconds())
                 .httpConnectTimeoutSeconds(clientOptions.getHttpConnectTimeoutSeconds())
                 .proxyOptions(clientOptions.getProxyOptions())
+                .httpConnectionFactory(clientOptions.getHttpConnectionFactory())
                 .build();
 
         this.queryClient = new QueryClient(hostName, azureSasCredential, queryClientOptions);
@@ -457,6 +468,64 @@ public final class ScheduledJobsClient
         return this.queryClient.queryJobs(jobType, jobStatus, options);
     }
 
+    /**
+     * Asynchronously schedule a twin update job. See {@link #scheduleUpdateTwin(String, String, Twin, Date, long)} for
+     * more details.
+     *
+     * @param jobId The unique id of the job to create.
+     * @param queryCondition The query that selects the devices to update.
+     * @param updateTwin The twin update to apply.
+     * @param startTimeUtc The time that the job should start at.
+     * @param maxExecutionTimeInSeconds The maximum amount of time that the job may run for.
+     * @return A future that completes with the scheduled job, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<ScheduledJob> scheduleUpdateTwinAsync(String jobId, String queryCondition, Twin updateTwin, Date startTimeUtc, long maxExecutionTimeInSeconds)
+    {
+        return this.asyncExecutor.submit(() -> scheduleUpdateTwin(jobId, queryCondition, updateTwin, startTimeUtc, maxExecutionTimeInSeconds));
+    }
+
+    /**
+     * Asynchronously schedule a direct method job. See {@link #scheduleDirectMethod(String, String, String, Date,
+     * DirectMethodsJobOptions)} for more details.
+     *
+     * @param jobId The unique id of the job to create.
+     * @param queryCondition The query that selects the devices to invoke the method on.
+     * @param methodName The name of the method to invoke.
+     * @param startTimeUtc The time that the job should start at.
+     * @param options The optional parameters for the method invocations. May not be null.
+     * @return A future that completes with the scheduled job, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<ScheduledJob> scheduleDirectMethodAsync(String jobId, String queryCondition, String methodName, Date startTimeUtc, DirectMethodsJobOptions options)
+    {
+        return this.asyncExecutor.submit(() -> scheduleDirectMethod(jobId, queryCondition, methodName, startTimeUtc, options));
+    }
+
+    /**
+     * Asynchronously get a scheduled job. See {@link #get(String)} for more details.
+     *
+     * @param jobId The id of the job to get.
+     * @return A future that completes with the retrieved job, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<ScheduledJob> getAsync(String jobId)
+    {
+        return this.asyncExecutor.submit(() -> get(jobId));
+    }
+
+    /**
+     * Asynchronously cancel a scheduled job. See {@link #cancel(String)} for more details.
+     *
+     * @param jobId The id of the job to cancel.
+     * @return A future that completes with the cancelled job, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<ScheduledJob> cancelAsync(String jobId)
+    {
+        return this.asyncExecutor.submit(() -> cancel(jobId));
+    }
+
     private TwinState getParserFromDevice(Twin device)
     {
         TwinCollection tags = null;
@@ -511,7 +580,7 @@ public final class ScheduledJobsClient
             return this.azureSasCredential.getSignature();
         }
 
-        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+        return this.sasTokenCache.getTokenString();
     }
 
     private HttpRequest createRequest(URL url, HttpMethod method, byte[] payload) throws IOException
@@ -522,9 +591,10 @@ public final class ScheduledJobsClient
             proxy = this.clientOptions.getProxyOptions().getProxy();
         }
 
-        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy);
+        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy, this.clientOptions.getHttpConnectionFactory());
         request.setReadTimeoutSeconds(this.clientOptions.getHttpReadTimeoutSeconds());
         request.setConnectTimeoutSeconds(this.clientOptions.getHttpConnectTimeoutSeconds());
+        this.asyncExecutor.registerRequest(request);
         return request;
     }
 }
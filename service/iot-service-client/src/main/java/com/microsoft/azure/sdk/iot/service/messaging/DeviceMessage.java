@@ -0,0 +1,74 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * A cloud to device or cloud to module message along with the device (and optionally module) that it is addressed to.
+ * Used to send many messages at once with {@link MessagingClient#sendBatch(Collection)}.
+ */
+public final class DeviceMessage
+{
+    /**
+     * The Id of the device to send the message to.
+     */
+    @Getter
+    private final String deviceId;
+
+    /**
+     * The Id of the module to send the message to, or null if the message is for the device itself.
+     */
+    @Getter
+    private final String moduleId;
+
+    /**
+     * The message to send.
+     */
+    @Getter
+    private final Message message;
+
+    /**
+     * The user defined context that will be provided in this message's {@link SendResult}. May be null.
+     */
+    @Getter
+    private final Object context;
+
+    /**
+     * Create a cloud to device message.
+     *
+     * @param deviceId the Id of the device to send the message to.
+     * @param message the message to send.
+     */
+    public DeviceMessage(String deviceId, Message message)
+    {
+        this(deviceId, null, message, null);
+    }
+
+    /**
+     * Create a cloud to module message.
+     *
+     * @param deviceId the Id of the device that contains the module that the message is being sent to.
+     * @param moduleId the Id of the module to send the message to. May be null to send the message to the device itself.
+     * @param message the message to send.
+     * @param context user defined context that will be provided in this message's {@link SendResult}. May be null.
+     */
+    public DeviceMessage(String deviceId, String moduleId, Message message, Object context)
+    {
+        if (deviceId == null || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceId cannot be null or empty");
+        }
+
+        Objects.requireNonNull(message, "message cannot be null");
+
+        this.deviceId = deviceId;
+        this.moduleId = moduleId;
+        this.message = message;
+        this.context = context;
+    }
+}
@@ -5,17 +5,39 @@
 
 package com.microsoft.azure.sdk.iot.service.messaging;
 
-import com.google.gson.Gson;
-import com.microsoft.azure.sdk.iot.service.messaging.serializers.FeedbackRecordParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.microsoft.azure.sdk.iot.service.ParserUtility;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provide static function to parse Json string to FeedbackBatch object.
  */
 public class FeedbackBatchMessage
 {
+    private static final String DEVICE_ID_TAG = "deviceId";
+    private static final String ORIGINAL_MESSAGE_ID_TAG = "originalMessageId";
+    private static final String DESCRIPTION_TAG = "description";
+    private static final String STATUS_CODE_TAG = "statusCode";
+    private static final String DEVICE_GENERATION_ID_TAG = "deviceGenerationId";
+    private static final String ENQUEUED_TIME_UTC_TAG = "enqueuedTimeUtc";
+
+    // The status codes by the names that the service uses for them, which are the serialized names of the enum values
+    private static final Map<String, FeedbackStatusCode> STATUS_CODES_BY_NAME = createStatusCodesByName();
+
     /**
      * Parse received Json and create FeedbackBatch object
      *
@@ -24,8 +46,6 @@ public class FeedbackBatchMessage
      */
     public static FeedbackBatch parse(String jsonString)
     {
-        FeedbackBatch returnFeedbackBatch = new FeedbackBatch();
-
         if (!Tools.isNullOrEmpty(jsonString))
         {
             if (jsonString.startsWith("Data{"))
@@ -35,25 +55,124 @@ public class FeedbackBatchMessage
 
             if (!jsonString.equals(""))
             {
-                Gson gson = new Gson();
-                FeedbackRecordParser[] feedbackRecordParsers = gson.fromJson(jsonString, FeedbackRecordParser[].class);
-
-                if (feedbackRecordParsers.length > 0)
-                {
-                    List<FeedbackRecord> feedbackRecords = new ArrayList<>();
-                    for (int i = 0; i < feedbackRecordParsers.length; i++)
-                    {
-                        feedbackRecords.add(new FeedbackRecord(feedbackRecordParsers[i]));
-                    }
-
-                    returnFeedbackBatch.setRecords(feedbackRecords);
-                    returnFeedbackBatch.setEnqueuedTimeUtc(feedbackRecords.get(feedbackRecords.size() - 1).getEnqueuedTimeUtc());
-                    returnFeedbackBatch.setUserId("");
-                    returnFeedbackBatch.setLockToken("");
-                    returnFeedbackBatch.setRecords(feedbackRecords);
-                }
+                return parse(new StringReader(jsonString));
+            }
+        }
+
+        return new FeedbackBatch();
+    }
+
+    /**
+     * Parse the UTF-8 encoded Json body of a received feedback message and create FeedbackBatch object. The records are
+     * read straight from the bytes in a single pass, without building a string of the whole body first.
+     *
+     * @param bytes the array that contains the body
+     * @param offset the index in the array at which the body starts
+     * @param length the length of the body in bytes
+     * @return The created FeedbackBatch
+     */
+    public static FeedbackBatch parse(byte[] bytes, int offset, int length)
+    {
+        if (bytes == null || length == 0)
+        {
+            return new FeedbackBatch();
+        }
+
+        return parse(new InputStreamReader(new ByteArrayInputStream(bytes, offset, length), StandardCharsets.UTF_8));
+    }
+
+    private static FeedbackBatch parse(Reader reader)
+    {
+        List<FeedbackRecord> feedbackRecords = new ArrayList<>();
+        try (JsonReader jsonReader = new JsonReader(reader))
+        {
+            jsonReader.beginArray();
+            while (jsonReader.hasNext())
+            {
+                feedbackRecords.add(readFeedbackRecord(jsonReader));
             }
+
+            jsonReader.endArray();
+        }
+        catch (IOException e)
+        {
+            throw new JsonSyntaxException(e);
+        }
+
+        FeedbackBatch returnFeedbackBatch = new FeedbackBatch();
+        if (!feedbackRecords.isEmpty())
+        {
+            returnFeedbackBatch.setEnqueuedTimeUtc(feedbackRecords.get(feedbackRecords.size() - 1).getEnqueuedTimeUtc());
+            returnFeedbackBatch.setUserId("");
+            returnFeedbackBatch.setLockToken("");
+            returnFeedbackBatch.setRecords(feedbackRecords);
         }
+
         return returnFeedbackBatch;
     }
+
+    private static FeedbackRecord readFeedbackRecord(JsonReader jsonReader) throws IOException
+    {
+        FeedbackRecord feedbackRecord = new FeedbackRecord();
+
+        jsonReader.beginObject();
+        while (jsonReader.hasNext())
+        {
+            String name = jsonReader.nextName();
+            if (jsonReader.peek() == JsonToken.NULL)
+            {
+                jsonReader.nextNull();
+                continue;
+            }
+
+            switch (name)
+            {
+                case DEVICE_ID_TAG:
+                    feedbackRecord.setDeviceId(jsonReader.nextString());
+                    break;
+                case ORIGINAL_MESSAGE_ID_TAG:
+                    feedbackRecord.setOriginalMessageId(jsonReader.nextString());
+                    break;
+                case DESCRIPTION_TAG:
+                    feedbackRecord.setDescription(jsonReader.nextString());
+                    break;
+                case STATUS_CODE_TAG:
+                    FeedbackStatusCode statusCode = STATUS_CODES_BY_NAME.get(jsonReader.nextString());
+                    feedbackRecord.setStatusCode(statusCode != null ? statusCode : FeedbackStatusCode.unknown);
+                    break;
+                case DEVICE_GENERATION_ID_TAG:
+                    feedbackRecord.setDeviceGenerationId(jsonReader.nextString());
+                    break;
+                case ENQUEUED_TIME_UTC_TAG:
+                    feedbackRecord.setEnqueuedTimeUtc(ParserUtility.getDateTimeUtc(jsonReader.nextString()));
+                    break;
+                default:
+                    jsonReader.skipValue();
+                    break;
+            }
+        }
+
+        jsonReader.endObject();
+        return feedbackRecord;
+    }
+
+    private static Map<String, FeedbackStatusCode> createStatusCodesByName()
+    {
+        Map<String, FeedbackStatusCode> statusCodesByName = new HashMap<>();
+        for (FeedbackStatusCode statusCode : FeedbackStatusCode.values())
+        {
+            try
+            {
+                SerializedName serializedName = FeedbackStatusCode.class.getField(statusCode.name()).getAnnotation(SerializedName.class);
+                statusCodesByName.put(serializedName != null ? serializedName.value() : statusCode.name(), statusCode);
+            }
+            catch (NoSuchFieldException e)
+            {
+                // Every enum value is a field of the enum
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return Collections.unmodifiableMap(statusCodesByName);
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Maps the message Ids of sent messages to the futures that complete once the feedback for those messages arrives.
+ *
+ * <p>Message Ids are UUIDs, and are stored as their two halves in arrays of primitives rather than as strings in a hash
+ * map, so an entry costs no allocation and only a few dozen bytes no matter how many entries there are. The arrays are
+ * an open addressed hash table with linear probing, allocated once for the maximum number of entries, so the memory
+ * footprint is bounded up front. Entries are evicted once their eviction time passes, by sweeps that check a few slots
+ * at a time.</p>
+ *
+ * <p>This class is thread safe. Futures are returned to the caller rather than completed, so that their dependent stages
+ * don't execute while the index is locked.</p>
+ */
+final class FeedbackCorrelationIndex
+{
+    // Larger tables would need more than 2^31 slots once sized for the load factor
+    private static final int MAX_CAPACITY = 1 << 29;
+
+    // Marks an empty slot in the eviction times. Eviction times are wall clock times, which are always after this.
+    private static final long EMPTY = 0;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] mostSignificantBits;
+    private final long[] leastSignificantBits;
+    private final long[] evictionTimesMilliseconds;
+    private final CompletableFuture<FeedbackRecord>[] futures;
+    private int size;
+
+    // The slot that the next eviction sweep starts at
+    private int evictionCursor;
+
+    /**
+     * @param capacity the maximum number of entries.
+     */
+    @SuppressWarnings("unchecked")
+    FeedbackCorrelationIndex(int capacity)
+    {
+        if (capacity < 1 || capacity > MAX_CAPACITY)
+        {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+        }
+
+        // Keeping the table at most two thirds full keeps the probe sequences short
+        int minimumSlotCount = Math.max(2, capacity + capacity / 2);
+        int slotCount = Integer.highestOneBit(minimumSlotCount - 1) << 1;
+
+        this.capacity = capacity;
+        this.mask = slotCount - 1;
+        this.mostSignificantBits = new long[slotCount];
+        this.leastSignificantBits = new long[slotCount];
+        this.evictionTimesMilliseconds = new long[slotCount];
+        this.futures = (CompletableFuture<FeedbackRecord>[]) new CompletableFuture[slotCount];
+    }
+
+    /**
+     * Add an entry.
+     *
+     * @param messageId the Id of the message.
+     * @param evictionTimeMilliseconds the {@link System#currentTimeMillis()} after which the entry is evicted.
+     * @param future the future to complete once the feedback for the message arrives.
+     * @return false if the index is full, in which case the entry was not added.
+     * @throws IllegalArgumentException if the index already has an entry for the message Id.
+     */
+    synchronized boolean add(UUID messageId, long evictionTimeMilliseconds, CompletableFuture<FeedbackRecord> future)
+    {
+        long most = messageId.getMostSignificantBits();
+        long least = messageId.getLeastSignificantBits();
+        int slot = homeSlot(most, least);
+        while (this.evictionTimesMilliseconds[slot] != EMPTY)
+        {
+            if (this.mostSignificantBits[slot] == most && this.leastSignificantBits[slot] == least)
+            {
+                throw new IllegalArgumentException("Feedback is already awaited for a message with message Id " + messageId);
+            }
+
+            slot = (slot + 1) & this.mask;
+        }
+
+        if (this.size == this.capacity)
+        {
+            return false;
+        }
+
+        this.mostSignificantBits[slot] = most;
+        this.leastSignificantBits[slot] = least;
+        this.evictionTimesMilliseconds[slot] = Math.max(evictionTimeMilliseconds, EMPTY + 1);
+        this.futures[slot] = future;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Remove the entry for a message Id.
+     *
+     * @return the future of the removed entry, or null if the index has no entry for the message Id.
+     */
+    synchronized CompletableFuture<FeedbackRecord> remove(UUID messageId)
+    {
+        int slot = findSlot(messageId);
+        if (slot < 0)
+        {
+            return null;
+        }
+
+        CompletableFuture<FeedbackRecord> future = this.futures[slot];
+        removeAt(slot);
+        return future;
+    }
+
+    /**
+     * Remove the entry for a message Id if it still has the given future.
+     *
+     * @return true if the entry was removed.
+     */
+    synchronized boolean remove(UUID messageId, CompletableFuture<FeedbackRecord> future)
+    {
+        int slot = findSlot(messageId);
+        if (slot < 0 || this.futures[slot] != future)
+        {
+            return false;
+        }
+
+        removeAt(slot);
+        return true;
+    }
+
+    /**
+     * Remove the entries whose eviction time has passed, checking up to the given number of slots. Each sweep picks up
+     * where the previous one stopped, so repeated small sweeps cover the whole table.
+     *
+     * @param nowMilliseconds the current {@link System#currentTimeMillis()}.
+     * @param maxSlots the maximum number of slots to check. Checking more slots than the table has checks every slot once.
+     * @return the futures of the removed entries.
+     */
+    synchronized List<CompletableFuture<FeedbackRecord>> removeExpired(long nowMilliseconds, int maxSlots)
+    {
+        if (this.size == 0)
+        {
+            return Collections.emptyList();
+        }
+
+        List<CompletableFuture<FeedbackRecord>> expiredFutures = null;
+        int slotsToCheck = Math.min(maxSlots, this.mask + 1);
+        int slot = this.evictionCursor;
+        while (slotsToCheck > 0)
+        {
+            long evictionTime = this.evictionTimesMilliseconds[slot];
+            if (evictionTime != EMPTY && evictionTime <= nowMilliseconds)
+            {
+                if (expiredFutures == null)
+                {
+                    expiredFutures = new ArrayList<>();
+                }
+
+                expiredFutures.add(this.futures[slot]);
+
+                // Removing may shift a later entry into this slot, so the slot is checked again rather than skipped
+                removeAt(slot);
+            }
+            else
+            {
+                slot = (slot + 1) & this.mask;
+                slotsToCheck--;
+            }
+        }
+
+        this.evictionCursor = slot;
+        return expiredFutures == null ? Collections.emptyList() : expiredFutures;
+    }
+
+    /**
+     * Remove every entry.
+     *
+     * @return the futures of the removed entries.
+     */
+    synchronized List<CompletableFuture<FeedbackRecord>> removeAll()
+    {
+        List<CompletableFuture<FeedbackRecord>> removedFutures = new ArrayList<>(this.size);
+        for (int slot = 0; slot <= this.mask; slot++)
+        {
+            if (this.evictionTimesMilliseconds[slot] != EMPTY)
+            {
+                removedFutures.add(this.futures[slot]);
+                this.evictionTimesMilliseconds[slot] = EMPTY;
+                this.futures[slot] = null;
+            }
+        }
+
+        this.size = 0;
+        return removedFutures;
+    }
+
+    synchronized int size()
+    {
+        return this.size;
+    }
+
+    private int findSlot(UUID messageId)
+    {
+        long most = messageId.getMostSignificantBits();
+        long least = messageId.getLeastSignificantBits();
+        int slot = homeSlot(most, least);
+        while (this.evictionTimesMilliseconds[slot] != EMPTY)
+        {
+            if (this.mostSignificantBits[slot] == most && this.leastSignificantBits[slot] == least)
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & this.mask;
+        }
+
+        return -1;
+    }
+
+    private void removeAt(int slot)
+    {
+        // Rather than leaving a tombstone, shift later entries of the same probe sequence back into the hole, so that
+        // removed entries never make lookups slower
+        int hole = slot;
+        int next = (hole + 1) & this.mask;
+        while (this.evictionTimesMilliseconds[next] != EMPTY)
+        {
+            int home = homeSlot(this.mostSignificantBits[next], this.leastSignificantBits[next]);
+
+            // The entry can move into the hole only if the hole is between its home slot and its current slot
+            if (((next - home) & this.mask) >= ((next - hole) & this.mask))
+            {
+                this.mostSignificantBits[hole] = this.mostSignificantBits[next];
+                this.leastSignificantBits[hole] = this.leastSignificantBits[next];
+                this.evictionTimesMilliseconds[hole] = this.evictionTimesMilliseconds[next];
+                this.futures[hole] = this.futures[next];
+                hole = next;
+            }
+
+            next = (next + 1) & this.mask;
+        }
+
+        this.evictionTimesMilliseconds[hole] = EMPTY;
+        this.futures[hole] = null;
+        this.size--;
+    }
+
+    private int homeSlot(long mostSignificantBits, long leastSignificantBits)
+    {
+        // Random UUIDs are already well mixed apart from their version and variant bits, which this spreads out
+        long hash = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & this.mask;
+    }
+}
@@ -46,6 +46,12 @@ public class FeedbackRecord
     @Setter(AccessLevel.PACKAGE)
     private String deviceId;
 
+    FeedbackRecord()
+    {
+        this.correlationId = "";
+        this.statusCode = FeedbackStatusCode.unknown;
+    }
+
     protected FeedbackRecord(FeedbackRecordParser parser)
     {
         this.correlationId = "";
@@ -48,4 +48,40 @@ public class FileUploadNotificationProcessorClientOptions
     @Getter
     @Builder.Default
     private final int keepAliveInterval = DEFAULT_KEEP_ALIVE_INTERVAL_IN_SECONDS;
+
+    /**
+     * The number of file upload notifications that the service may send to this client ahead of the one that is being
+     * processed. They are still processed one at a time, but the next ones are already buffered by the time the
+     * processor returns, rather than being requested from the service only then, which saves a network round trip per
+     * file upload notification. File upload notifications that were sent ahead but not processed when this client stops
+     * or loses its connection are delivered again later. The default value is 1.
+     */
+    @Getter
+    @Builder.Default
+    private final int prefetchCount = 1;
+
+    /**
+     * The number of receiver links that this client opens to the service to receive file upload notifications over. The
+     * links compete for the file upload notifications of the hub, so each one is still received over only one of them,
+     * but the service may send up to {@link #getPrefetchCount()} of them ahead on each link. Along with a processor that
+     * acknowledges asynchronously on a pool of threads, more links let more of them be processed in parallel. Clients in
+     * other processes or on other machines compete for them in the same way. This is only used by clients that open a
+     * connection of their own, since a client that shares the connection of a {@link MessagingClient} always opens one
+     * link. The default value is 1.
+     */
+    @Getter
+    @Builder.Default
+    private final int receiverLinkCount = 1;
+
+    /**
+     * If true, this client attaches the receiver links that file upload notifications are received over right after
+     * sending its authentication token to the service, rather than waiting for the service to accept the token first.
+     * This saves a network round trip each time the connection is opened. The client's start() method still only
+     * returns once the service has accepted the token, and fails if it was rejected. This is only used by clients that
+     * open a connection of their own. By default this is false. See
+     * {@link FileUploadNotificationProcessorClient#getOpenTimings()} for how long each phase of opening the connection
+     * took.
+     */
+    @Getter
+    private final boolean pipelinedLinkAttachEnabled;
 }
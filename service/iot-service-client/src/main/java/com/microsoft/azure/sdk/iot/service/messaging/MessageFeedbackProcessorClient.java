@@ -8,13 +8,17 @@ import com.azure.core.credential.TokenCredential;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubUnauthorizedException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.ConnectionOpenTimings;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.EventReceivingConnectionHandler;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.ReactorRunner;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.ReceiverLinkMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -45,6 +49,19 @@ public class MessageFeedbackProcessorClient
     private ReactorRunner reactorRunner;
     private final String hostName;
 
+    // Null unless this client shares the connection of a MessagingClient rather than opening a connection of its own
+    private final MessagingClient messagingClient;
+
+    // The processor that receiver links opened on a shared connection call, and the executor it executes on. The
+    // processor is null and unused if this client opens its own connection.
+    private final Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> asyncFeedbackMessageProcessor;
+    private final Executor feedbackMessageProcessorExecutor;
+    private boolean startedOnSharedConnection;
+    private final int prefetchCount;
+
+    // Shared by all of this client's receiver links, and kept across restarts
+    private final ReceiverLinkMetrics receiverLinkMetrics = new ReceiverLinkMetrics();
+
     /**
      * Construct a MessageFeedbackProcessorClient using a {@link TokenCredential} instance for authentication.
      *
@@ -81,9 +98,14 @@ public class MessageFeedbackProcessorClient
         MessageFeedbackProcessorClientOptions options)
     {
         Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
         Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
 
         this.errorProcessor = options.getErrorProcessor();
+        this.prefetchCount = options.getPrefetchCount();
+        this.messagingClient = null;
+        this.asyncFeedbackMessageProcessor = null;
+        this.feedbackMessageProcessorExecutor = null;
         this.hostName = hostName;
         this.eventReceivingConnectionHandler =
             new EventReceivingConnectionHandler(
@@ -96,6 +118,7 @@ public class MessageFeedbackProcessorClient
                 options.getProxyOptions(),
                 options.getSslContext(),
                 options.getKeepAliveInterval());
+        configureConnectionHandler(options, null, null);
     }
 
     /**
@@ -132,9 +155,14 @@ public class MessageFeedbackProcessorClient
         MessageFeedbackProcessorClientOptions options)
     {
         Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
         Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
 
         this.errorProcessor = options.getErrorProcessor();
+        this.prefetchCount = options.getPrefetchCount();
+        this.messagingClient = null;
+        this.asyncFeedbackMessageProcessor = null;
+        this.feedbackMessageProcessorExecutor = null;
         this.hostName = hostName;
         this.eventReceivingConnectionHandler =
             new EventReceivingConnectionHandler(
@@ -147,6 +175,7 @@ public class MessageFeedbackProcessorClient
                 options.getProxyOptions(),
                 options.getSslContext(),
                 options.getKeepAliveInterval());
+        configureConnectionHandler(options, null, null);
     }
 
     /**
@@ -179,6 +208,7 @@ public class MessageFeedbackProcessorClient
         MessageFeedbackProcessorClientOptions options)
     {
         Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
         Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
 
         if (connectionString == null || connectionString.isEmpty())
@@ -187,6 +217,10 @@ public class MessageFeedbackProcessorClient
         }
 
         this.errorProcessor = options.getErrorProcessor();
+        this.prefetchCount = options.getPrefetchCount();
+        this.messagingClient = null;
+        this.asyncFeedbackMessageProcessor = null;
+        this.feedbackMessageProcessorExecutor = null;
         this.hostName = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString).getHostName();
         this.eventReceivingConnectionHandler =
             new EventReceivingConnectionHandler(
@@ -198,6 +232,246 @@ public class MessageFeedbackProcessorClient
                 options.getProxyOptions(),
                 options.getSslContext(),
                 options.getKeepAliveInterval());
+        configureConnectionHandler(options, null, null);
+    }
+
+    /**
+     * Construct a MessageFeedbackProcessorClient using a {@link TokenCredential} instance for authentication, with a processor that
+     * acknowledges feedback messages asynchronously.
+     *
+     * <p>
+     *     The processor is executed on the provided executor, so feedback messages can be processed in parallel and slow
+     *     processing doesn't hold up the network IO of the connection. Each one is acknowledged once the future that the
+     *     processor returned for it completes, and is abandoned if that future completes exceptionally. At most
+     *     {@link MessageFeedbackProcessorClientOptions#getPrefetchCount()} of them are processed at a time.
+     * </p>
+     *
+     * @param hostName The hostname of your IoT Hub instance (For instance, "your-iot-hub.azure-devices.net")
+     * @param credential The custom {@link TokenCredential} that will provide authentication tokens to
+     *                                    this library when they are needed. The provided tokens must be Json Web Tokens.
+     * @param protocol The protocol that the client will communicate to IoT Hub over.
+     * @param feedbackMessageProcessor The callback to be executed each time message feedback is received from the
+     * service. It returns a future that completes with the acknowledgement. May not be null.
+     * @param feedbackMessageProcessorExecutor The executor to execute the processor on. If null, the processor is
+     * executed on the thread that receives feedback messages from the service, so it should only start processing and
+     * then return. This client does not shut the executor down.
+     * @param options The connection options to use when connecting to the service. May not be null.
+     */
+    public MessageFeedbackProcessorClient(
+        String hostName,
+        TokenCredential credential,
+        IotHubServiceClientProtocol protocol,
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> feedbackMessageProcessor,
+        Executor feedbackMessageProcessorExecutor,
+        MessageFeedbackProcessorClientOptions options)
+    {
+        Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
+        Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
+
+        this.errorProcessor = options.getErrorProcessor();
+        this.prefetchCount = options.getPrefetchCount();
+        this.messagingClient = null;
+        this.asyncFeedbackMessageProcessor = null;
+        this.feedbackMessageProcessorExecutor = null;
+        this.hostName = hostName;
+        this.eventReceivingConnectionHandler =
+            new EventReceivingConnectionHandler(
+                hostName,
+                credential,
+                protocol,
+                null,
+                null,
+                this.errorProcessor,
+                options.getProxyOptions(),
+                options.getSslContext(),
+                options.getKeepAliveInterval());
+        configureConnectionHandler(options, feedbackMessageProcessor, feedbackMessageProcessorExecutor);
+    }
+
+    /**
+     * Construct a MessageFeedbackProcessorClient using a {@link AzureSasCredential} instance for authentication, with a processor that
+     * acknowledges feedback messages asynchronously. See
+     * {@link #MessageFeedbackProcessorClient(String, TokenCredential, IotHubServiceClientProtocol, Function, Executor, MessageFeedbackProcessorClientOptions)}
+     * for how the processor is executed.
+     *
+     * @param hostName The hostname of your IoT Hub instance (For instance, "your-iot-hub.azure-devices.net")
+     * @param azureSasCredential The SAS token provider that will be used for authentication.
+     * @param protocol The protocol that the client will communicate to IoT Hub over.
+     * @param feedbackMessageProcessor The callback to be executed each time message feedback is received from the
+     * service. It returns a future that completes with the acknowledgement. May not be null.
+     * @param feedbackMessageProcessorExecutor The executor to execute the processor on. If null, the processor is
+     * executed on the thread that receives feedback messages from the service, so it should only start processing and
+     * then return. This client does not shut the executor down.
+     * @param options The connection options to use when connecting to the service. May not be null.
+     */
+    public MessageFeedbackProcessorClient(
+        String hostName,
+        AzureSasCredential azureSasCredential,
+        IotHubServiceClientProtocol protocol,
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> feedbackMessageProcessor,
+        Executor feedbackMessageProcessorExecutor,
+        MessageFeedbackProcessorClientOptions options)
+    {
+        Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
+        Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
+
+        this.errorProcessor = options.getErrorProcessor();
+        this.prefetchCount = options.getPrefetchCount();
+        this.messagingClient = null;
+        this.asyncFeedbackMessageProcessor = null;
+        this.feedbackMessageProcessorExecutor = null;
+        this.hostName = hostName;
+        this.eventReceivingConnectionHandler =
+            new EventReceivingConnectionHandler(
+                hostName,
+                azureSasCredential,
+                protocol,
+                null,
+                null,
+                this.errorProcessor,
+                options.getProxyOptions(),
+                options.getSslContext(),
+                options.getKeepAliveInterval());
+        configureConnectionHandler(options, feedbackMessageProcessor, feedbackMessageProcessorExecutor);
+    }
+
+    /**
+     * Construct a MessageFeedbackProcessorClient from the provided connection string, with a processor that acknowledges
+     * feedback messages asynchronously. See
+     * {@link #MessageFeedbackProcessorClient(String, TokenCredential, IotHubServiceClientProtocol, Function, Executor, MessageFeedbackProcessorClientOptions)}
+     * for how the processor is executed.
+     *
+     * @param connectionString The connection string for the Iot Hub.
+     * @param protocol The protocol that the client will communicate to IoT Hub over.
+     * @param feedbackMessageProcessor The callback to be executed each time message feedback is received from the
+     * service. It returns a future that completes with the acknowledgement. May not be null.
+     * @param feedbackMessageProcessorExecutor The executor to execute the processor on. If null, the processor is
+     * executed on the thread that receives feedback messages from the service, so it should only start processing and
+     * then return. This client does not shut the executor down.
+     * @param options The connection options to use when connecting to the service. May not be null.
+     */
+    public MessageFeedbackProcessorClient(
+        String connectionString,
+        IotHubServiceClientProtocol protocol,
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> feedbackMessageProcessor,
+        Executor feedbackMessageProcessorExecutor,
+        MessageFeedbackProcessorClientOptions options)
+    {
+        Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
+        Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
+
+        if (connectionString == null || connectionString.isEmpty())
+        {
+            throw new IllegalArgumentException("Connection string cannot be null or empty");
+        }
+
+        this.errorProcessor = options.getErrorProcessor();
+        this.prefetchCount = options.getPrefetchCount();
+        this.messagingClient = null;
+        this.asyncFeedbackMessageProcessor = null;
+        this.feedbackMessageProcessorExecutor = null;
+        this.hostName = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString).getHostName();
+        this.eventReceivingConnectionHandler =
+            new EventReceivingConnectionHandler(
+                connectionString,
+                protocol,
+                null,
+                null,
+                this.errorProcessor,
+                options.getProxyOptions(),
+                options.getSslContext(),
+                options.getKeepAliveInterval());
+        configureConnectionHandler(options, feedbackMessageProcessor, feedbackMessageProcessorExecutor);
+    }
+
+    /**
+     * Construct a MessageFeedbackProcessorClient that shares the AMQP connection of a {@link MessagingClient} rather
+     * than opening a connection of its own. Its receiver link is opened on that client's connection, so starting it
+     * needs no TLS handshake, authentication or reactor thread of its own.
+     *
+     * <p>
+     *     The {@link MessagingClient} must be opened before this client is started, and closing it stops this client.
+     *     If its connection is lost and reopened automatically (see {@link
+     *     MessagingClientOptions#isAutomaticReconnectEnabled()}), this client's receiver link is reopened along with
+     *     it. Connection level errors are reported to the errorProcessor of the {@link MessagingClientOptions}. Only
+     *     one MessageFeedbackProcessorClient can be started on a {@link MessagingClient} at a time.
+     * </p>
+     *
+     * @param messagingClient The client whose connection to share. May not be null.
+     * @param feedbackMessageProcessor The callback to be executed each time message feedback is received from the service. May not be null.
+     */
+    public MessageFeedbackProcessorClient(
+        MessagingClient messagingClient,
+        Function<FeedbackBatch, AcknowledgementType> feedbackMessageProcessor)
+    {
+        this(messagingClient, feedbackMessageProcessor, MessageFeedbackProcessorClientOptions.builder().build());
+    }
+
+    /**
+     * Construct a MessageFeedbackProcessorClient that shares the AMQP connection of a {@link MessagingClient} rather
+     * than opening a connection of its own. See {@link #MessageFeedbackProcessorClient(MessagingClient, Function)} for
+     * details. Since the connection belongs to the {@link MessagingClient}, only {@link
+     * MessageFeedbackProcessorClientOptions#getPrefetchCount()} is used from the provided options.
+     *
+     * @param messagingClient The client whose connection to share. May not be null.
+     * @param feedbackMessageProcessor The callback to be executed each time message feedback is received from the service. May not be null.
+     * @param options The options for this client. May not be null.
+     */
+    public MessageFeedbackProcessorClient(
+        MessagingClient messagingClient,
+        Function<FeedbackBatch, AcknowledgementType> feedbackMessageProcessor,
+        MessageFeedbackProcessorClientOptions options)
+    {
+        Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
+        Objects.requireNonNull(messagingClient, "messagingClient cannot be null");
+        Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
+
+        this.messagingClient = messagingClient;
+        this.prefetchCount = options.getPrefetchCount();
+        this.asyncFeedbackMessageProcessor = feedbackBatch -> CompletableFuture.completedFuture(feedbackMessageProcessor.apply(feedbackBatch));
+        this.feedbackMessageProcessorExecutor = null;
+        this.errorProcessor = null;
+        this.hostName = null;
+        this.eventReceivingConnectionHandler = null;
+    }
+
+    /**
+     * Construct a MessageFeedbackProcessorClient that shares the AMQP connection of a {@link MessagingClient} rather than opening a
+     * connection of its own, with a processor that acknowledges feedback messages asynchronously. See
+     * {@link #MessageFeedbackProcessorClient(MessagingClient, Function)} for how the connection is shared, and
+     * {@link #MessageFeedbackProcessorClient(String, TokenCredential, IotHubServiceClientProtocol, Function, Executor, MessageFeedbackProcessorClientOptions)}
+     * for how the processor is executed. Only {@link MessageFeedbackProcessorClientOptions#getPrefetchCount()} is used from the provided options.
+     *
+     * @param messagingClient The client whose connection to share. May not be null.
+     * @param feedbackMessageProcessor The callback to be executed each time message feedback is received from the
+     * service. It returns a future that completes with the acknowledgement. May not be null.
+     * @param feedbackMessageProcessorExecutor The executor to execute the processor on. If null, the processor is
+     * executed on the thread that receives feedback messages from the service, so it should only start processing and
+     * then return. This client does not shut the executor down.
+     * @param options The options for this client. May not be null.
+     */
+    public MessageFeedbackProcessorClient(
+        MessagingClient messagingClient,
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> feedbackMessageProcessor,
+        Executor feedbackMessageProcessorExecutor,
+        MessageFeedbackProcessorClientOptions options)
+    {
+        Objects.requireNonNull(options, "Options cannot be null");
+        checkReceiverLinkOptions(options);
+        Objects.requireNonNull(messagingClient, "messagingClient cannot be null");
+        Objects.requireNonNull(feedbackMessageProcessor, "feedbackMessageProcessor cannot be null");
+
+        this.messagingClient = messagingClient;
+        this.prefetchCount = options.getPrefetchCount();
+        this.asyncFeedbackMessageProcessor = feedbackMessageProcessor;
+        this.feedbackMessageProcessorExecutor = feedbackMessageProcessorExecutor;
+        this.errorProcessor = null;
+        this.hostName = null;
+        this.eventReceivingConnectionHandler = null;
     }
 
     /**
@@ -240,6 +514,12 @@ public class MessageFeedbackProcessorClient
             throw new IllegalArgumentException("timeoutMilliseconds must be greater than or equal to 0");
         }
 
+        if (this.messagingClient != null)
+        {
+            startOnSharedConnection(timeoutMilliseconds);
+            return;
+        }
+
         AtomicReference<IotHubException> iotHubException = new AtomicReference<>(null);
         AtomicReference<IOException> ioException = new AtomicReference<>(null);
 
@@ -307,6 +587,67 @@ public class MessageFeedbackProcessorClient
         log.info("Started MessageFeedbackProcessorClient");
     }
 
+    // The asynchronous processor and its executor are null when the constructor was given a synchronous processor
+    private void configureConnectionHandler(
+        MessageFeedbackProcessorClientOptions options,
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> feedbackMessageProcessor,
+        Executor feedbackMessageProcessorExecutor)
+    {
+        this.eventReceivingConnectionHandler.setPrefetchCount(this.prefetchCount);
+        this.eventReceivingConnectionHandler.setReceiverLinkCount(options.getReceiverLinkCount());
+        this.eventReceivingConnectionHandler.setReceiverLinkMetrics(this.receiverLinkMetrics);
+        this.eventReceivingConnectionHandler.setPipelinedLinkAttachEnabled(options.isPipelinedLinkAttachEnabled());
+        this.eventReceivingConnectionHandler.setAsyncMessageFeedbackReceivedCallback(feedbackMessageProcessor);
+        this.eventReceivingConnectionHandler.setCallbackExecutor(feedbackMessageProcessorExecutor);
+    }
+
+    private static void checkReceiverLinkOptions(MessageFeedbackProcessorClientOptions options)
+    {
+        if (options.getPrefetchCount() < 1)
+        {
+            throw new IllegalArgumentException("prefetchCount must be greater than 0");
+        }
+
+        if (options.getReceiverLinkCount() < 1)
+        {
+            throw new IllegalArgumentException("receiverLinkCount must be greater than 0");
+        }
+    }
+
+    private void startOnSharedConnection(int timeoutMilliseconds) throws InterruptedException, TimeoutException
+    {
+        if (!this.messagingClient.isOpen())
+        {
+            throw new IllegalStateException("The MessagingClient that this client shares its connection with must be opened before this client is started");
+        }
+
+        log.debug("Opening MessageFeedbackProcessorClient on the connection of a MessagingClient");
+
+        final CountDownLatch openLatch = new CountDownLatch(1);
+        MessagingClientConnection connection = this.messagingClient.getSharedReceiverConnection();
+        connection.addMessageFeedbackReceiver(this, this.asyncFeedbackMessageProcessor, this.feedbackMessageProcessorExecutor, this.prefetchCount, this.receiverLinkMetrics, openLatch::countDown);
+        this.startedOnSharedConnection = true;
+
+        // The link may already be open if this client was started before, and the connection was reopened since
+        if (connection.isMessageFeedbackReceiverOpen())
+        {
+            openLatch.countDown();
+        }
+
+        boolean timedOut = timeoutMilliseconds == 0
+            ? !openLatch.await(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+            : !openLatch.await(timeoutMilliseconds, TimeUnit.MILLISECONDS);
+
+        if (timedOut)
+        {
+            connection.removeMessageFeedbackReceiver(this);
+            this.startedOnSharedConnection = false;
+            throw new TimeoutException("Timed out waiting for the receiver link to the service to open");
+        }
+
+        log.info("Started MessageFeedbackProcessorClient on the connection of a MessagingClient");
+    }
+
     /**
      * Stops this client from processing any more message feedback and releases all network resources tied to it. Once
      * stopped, this client can be restarted by calling {@link #start()}. If this client is already closed,
@@ -333,6 +674,19 @@ public class MessageFeedbackProcessorClient
      */
     public synchronized void stop(int timeoutMilliseconds) throws InterruptedException
     {
+        if (this.messagingClient != null)
+        {
+            // Only this client's receiver link is closed. The connection belongs to the MessagingClient.
+            if (this.startedOnSharedConnection)
+            {
+                this.messagingClient.getSharedReceiverConnection().removeMessageFeedbackReceiver(this);
+                this.startedOnSharedConnection = false;
+                log.info("Stopped MessageFeedbackProcessorClient on the connection of a MessagingClient");
+            }
+
+            return;
+        }
+
         if (this.reactorRunner == null)
         {
             return;
@@ -356,6 +710,69 @@ public class MessageFeedbackProcessorClient
      */
     public synchronized boolean isRunning()
     {
+        if (this.messagingClient != null)
+        {
+            return this.startedOnSharedConnection && this.messagingClient.getSharedReceiverConnection().isMessageFeedbackReceiverOpen();
+        }
+
         return this.reactorRunner != null && this.reactorRunner.isRunning();
     }
+
+    /**
+     * Get the number of this client's receiver links that are open. See {@link MessageFeedbackProcessorClientOptions#getReceiverLinkCount()}.
+     *
+     * @return the number of open receiver links.
+     */
+    public synchronized int getOpenReceiverLinkCount()
+    {
+        if (this.messagingClient != null)
+        {
+            return this.startedOnSharedConnection && this.messagingClient.getSharedReceiverConnection().isMessageFeedbackReceiverOpen() ? 1 : 0;
+        }
+
+        return this.reactorRunner != null && this.reactorRunner.isRunning() ? this.eventReceivingConnectionHandler.getOpenReceiverLinkCount() : 0;
+    }
+
+    /**
+     * Get how long each phase of the latest successful open of this client's connection took. If this client shares the
+     * connection of a {@link MessagingClient}, these are the timings of that connection.
+     *
+     * @return the timings, or null if the connection was never opened.
+     */
+    public ConnectionOpenTimings getOpenTimings()
+    {
+        if (this.messagingClient != null)
+        {
+            return this.messagingClient.getSharedReceiverConnection().getOpenTimings();
+        }
+
+        return this.eventReceivingConnectionHandler.getOpenTimings();
+    }
+
+    /**
+     * @return the number of feedback messages that this client has received over all of its receiver links and handed to the
+     * processor, since it was constructed.
+     */
+    public long getReceivedMessageCount()
+    {
+        return this.receiverLinkMetrics.getReceivedMessageCount();
+    }
+
+    /**
+     * @return the number of feedback messages that this client has acknowledged with any {@link AcknowledgementType} other
+     * than {@link AcknowledgementType#ABANDON}, since it was constructed.
+     */
+    public long getCompletedMessageCount()
+    {
+        return this.receiverLinkMetrics.getCompletedMessageCount();
+    }
+
+    /**
+     * @return the number of feedback messages that this client has abandoned, including those whose processing failed, since it
+     * was constructed.
+     */
+    public long getAbandonedMessageCount()
+    {
+        return this.receiverLinkMetrics.getAbandonedMessageCount();
+    }
 }
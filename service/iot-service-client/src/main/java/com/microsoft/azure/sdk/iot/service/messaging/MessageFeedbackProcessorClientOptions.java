@@ -48,4 +48,31 @@ public class MessageFeedbackProcessorClientOptions
     @Getter
     @Builder.Default
     private final int keepAliveInterval = DEFAULT_KEEP_ALIVE_INTERVAL_IN_SECONDS;
+
+    /**
+     * The number of feedback messages that the service may send to this client ahead of the one that is being
+     * processed. See {@link FileUploadNotificationProcessorClientOptions#getPrefetchCount()}, which works the same way
+     * for file upload notifications. The default value is 1.
+     */
+    @Getter
+    @Builder.Default
+    private final int prefetchCount = 1;
+
+    /**
+     * The number of receiver links that this client opens to the service to receive feedback messages over. See
+     * {@link FileUploadNotificationProcessorClientOptions#getReceiverLinkCount()}, which works the same way for file
+     * upload notifications. The default value is 1.
+     */
+    @Getter
+    @Builder.Default
+    private final int receiverLinkCount = 1;
+
+    /**
+     * If true, this client attaches its receiver links right after sending its authentication token to the service,
+     * rather than waiting for the service to accept the token first. See
+     * {@link FileUploadNotificationProcessorClientOptions#isPipelinedLinkAttachEnabled()}, which works the same way for
+     * file upload notifications. By default this is false.
+     */
+    @Getter
+    private final boolean pipelinedLinkAttachEnabled;
 }
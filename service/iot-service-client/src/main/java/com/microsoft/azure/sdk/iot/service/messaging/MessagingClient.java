@@ -9,19 +9,30 @@ import com.azure.core.credential.AzureSasCredential;
 import com.azure.core.credential.TokenCredential;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageTimeoutException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubUnauthorizedException;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceBroadcastMessage;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageBatch;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageConnectionHandler;
-import com.microsoft.azure.sdk.iot.service.transport.amqps.ReactorRunner;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageQueue;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A client for sending cloud to device and cloud to module messages. For more details on what cloud to device messages
@@ -41,12 +52,26 @@ public final class MessagingClient
     private static final int START_REACTOR_TIMEOUT_MILLISECONDS = 60 * 1000; // 60 seconds
     private static final int STOP_REACTOR_TIMEOUT_MILLISECONDS = 5 * 1000; // 5 seconds
     private static final int MESSAGE_SEND_TIMEOUT_MILLISECONDS = 60 * 1000; // 60 seconds
+    private static final long DEFAULT_MESSAGE_TIME_TO_LIVE_MILLISECONDS = 60 * 60 * 1000; // 1 hour
+
+    // Feedback batches are processed quickly, so the service may send a few ahead
+    private static final int FEEDBACK_PREFETCH_COUNT = 16;
+
+    // The number of slots of the feedback correlation index checked for expired entries per send and per feedback
+    // batch. Spreading the sweep over sends and feedback keeps either from paying for the whole table at once.
+    private static final int FEEDBACK_EVICTION_SLOTS_PER_SEND = 4;
+    private static final int FEEDBACK_EVICTION_SLOTS_PER_BATCH = 1024;
 
     private final Consumer<ErrorContext> errorProcessor; // may be null if user doesn't provide one
-    private final CloudToDeviceMessageConnectionHandler cloudToDeviceMessageConnectionHandler;
-    private ReactorRunner reactorRunner;
+    private final SendResultCallbackDispatcher callbackDispatcher;
+    private final List<MessagingClientConnection> connections;
     private final String hostName;
 
+    // Null unless sends that await feedback are enabled
+    private final FeedbackCorrelationIndex feedbackCorrelationIndex;
+    private final int feedbackTimeoutMilliseconds;
+    private final boolean awaitedFeedbackReceiverEnabled;
+
     /**
      * Construct a MessagingClient from the specified connection string
      * @param connectionString The connection string for the IotHub
@@ -80,15 +105,27 @@ public final class MessagingClient
 
         this.errorProcessor = options.getErrorProcessor();
         this.hostName = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString).getHostName();
-        this.cloudToDeviceMessageConnectionHandler =
-            new CloudToDeviceMessageConnectionHandler(
-                connectionString,
-                protocol,
-                this.errorProcessor,
-                options.getProxyOptions(),
-                options.getSslContext(),
-                options.getKeepAliveInterval());
+        this.callbackDispatcher = new SendResultCallbackDispatcher(
+            options.getCallbackExecutor(),
+            options.getCallbackOrdering(),
+            options.getSlowCallbackThresholdMilliseconds());
+        this.connections = createConnections(
+            this.hostName,
+            options,
+            this.callbackDispatcher,
+            outgoingMessageQueue ->
+                new CloudToDeviceMessageConnectionHandler(
+                    connectionString,
+                    protocol,
+                    this.errorProcessor,
+                    options.getProxyOptions(),
+                    options.getSslContext(),
+                    options.getKeepAliveInterval(),
+                    outgoingMessageQueue));
 
+        this.feedbackTimeoutMilliseconds = options.getFeedbackTimeoutMilliseconds();
+        this.feedbackCorrelationIndex = createFeedbackCorrelationIndex(options);
+        this.awaitedFeedbackReceiverEnabled = options.isAwaitedFeedbackReceiverEnabled();
         commonConstructorSetup();
     }
 
@@ -144,16 +181,28 @@ public final class MessagingClient
 
         this.errorProcessor = options.getErrorProcessor();
         this.hostName = hostName;
-        this.cloudToDeviceMessageConnectionHandler =
-            new CloudToDeviceMessageConnectionHandler(
-                hostName,
-                credential,
-                protocol,
-                this.errorProcessor,
-                options.getProxyOptions(),
-                options.getSslContext(),
-                options.getKeepAliveInterval());
+        this.callbackDispatcher = new SendResultCallbackDispatcher(
+            options.getCallbackExecutor(),
+            options.getCallbackOrdering(),
+            options.getSlowCallbackThresholdMilliseconds());
+        this.connections = createConnections(
+            this.hostName,
+            options,
+            this.callbackDispatcher,
+            outgoingMessageQueue ->
+                new CloudToDeviceMessageConnectionHandler(
+                    hostName,
+                    credential,
+                    protocol,
+                    this.errorProcessor,
+                    options.getProxyOptions(),
+                    options.getSslContext(),
+                    options.getKeepAliveInterval(),
+                    outgoingMessageQueue));
 
+        this.feedbackTimeoutMilliseconds = options.getFeedbackTimeoutMilliseconds();
+        this.feedbackCorrelationIndex = createFeedbackCorrelationIndex(options);
+        this.awaitedFeedbackReceiverEnabled = options.isAwaitedFeedbackReceiverEnabled();
         commonConstructorSetup();
     }
 
@@ -196,24 +245,120 @@ public final class MessagingClient
 
         this.errorProcessor = options.getErrorProcessor();
         this.hostName = hostName;
-        this.cloudToDeviceMessageConnectionHandler =
-            new CloudToDeviceMessageConnectionHandler(
-                hostName,
-                azureSasCredential,
-                protocol,
-                this.errorProcessor,
-                options.getProxyOptions(),
-                options.getSslContext(),
-                options.getKeepAliveInterval());
+        this.callbackDispatcher = new SendResultCallbackDispatcher(
+            options.getCallbackExecutor(),
+            options.getCallbackOrdering(),
+            options.getSlowCallbackThresholdMilliseconds());
+        this.connections = createConnections(
+            this.hostName,
+            options,
+            this.callbackDispatcher,
+            outgoingMessageQueue ->
+                new CloudToDeviceMessageConnectionHandler(
+                    hostName,
+                    azureSasCredential,
+                    protocol,
+                    this.errorProcessor,
+                    options.getProxyOptions(),
+                    options.getSslContext(),
+                    options.getKeepAliveInterval(),
+                    outgoingMessageQueue));
 
+        this.feedbackTimeoutMilliseconds = options.getFeedbackTimeoutMilliseconds();
+        this.feedbackCorrelationIndex = createFeedbackCorrelationIndex(options);
+        this.awaitedFeedbackReceiverEnabled = options.isAwaitedFeedbackReceiverEnabled();
         commonConstructorSetup();
     }
 
-    private static void commonConstructorSetup()
+    private void commonConstructorSetup()
     {
+        if (this.feedbackCorrelationIndex != null && this.awaitedFeedbackReceiverEnabled)
+        {
+            // Feedback is received for the whole hub, so one link on one connection receives all of it. The link is
+            // opened whenever that connection is.
+            getSharedReceiverConnection().addMessageFeedbackReceiver(
+                this,
+                feedbackBatch -> CompletableFuture.completedFuture(onFeedbackReceived(feedbackBatch)),
+                null,
+                FEEDBACK_PREFETCH_COUNT,
+                null,
+                null);
+        }
+
         log.debug("Initialized a MessagingClient instance using SDK version {}", TransportUtils.serviceVersion);
     }
 
+    private static FeedbackCorrelationIndex createFeedbackCorrelationIndex(MessagingClientOptions options)
+    {
+        if (options.getMaxAwaitedFeedbackMessages() < 0 || options.getFeedbackTimeoutMilliseconds() < 0)
+        {
+            throw new IllegalArgumentException("maxAwaitedFeedbackMessages and feedbackTimeoutMilliseconds must be greater than or equal to 0");
+        }
+
+        return options.getMaxAwaitedFeedbackMessages() > 0
+            ? new FeedbackCorrelationIndex(options.getMaxAwaitedFeedbackMessages())
+            : null;
+    }
+
+    private static List<MessagingClientConnection> createConnections(
+        String hostName,
+        MessagingClientOptions options,
+        SendResultCallbackDispatcher callbackDispatcher,
+        Function<CloudToDeviceMessageQueue, CloudToDeviceMessageConnectionHandler> connectionHandlerFactory)
+    {
+        int connectionCount = options.getConnectionCount();
+        if (connectionCount < 1)
+        {
+            throw new IllegalArgumentException("connectionCount must be greater than 0");
+        }
+
+        if (options.getInitialReconnectDelayMilliseconds() < 0
+            || options.getMaxReconnectDelayMilliseconds() < 0
+            || options.getMaxReconnectAttempts() < 0)
+        {
+            throw new IllegalArgumentException("Reconnect delays and attempts must be greater than or equal to 0");
+        }
+
+        if (options.getLingerMilliseconds() < 0 || options.getLingerMaxBatchBytes() < 0)
+        {
+            throw new IllegalArgumentException("lingerMilliseconds and lingerMaxBatchBytes must be greater than or equal to 0");
+        }
+
+        List<MessagingClientConnection> connections = new ArrayList<>(connectionCount);
+        for (int i = 0; i < connectionCount; i++)
+        {
+            // Each connection gets its own queue so that a slow connection doesn't hold up the others
+            CloudToDeviceMessageQueue outgoingMessageQueue = createOutgoingMessageQueue(options);
+
+            // Fire and forget messages get a queue of their own so that they don't wait behind acknowledged messages
+            CloudToDeviceMessageQueue presettledMessageQueue = options.isFireAndForgetSendsEnabled()
+                ? createOutgoingMessageQueue(options)
+                : null;
+
+            connections.add(
+                new MessagingClientConnection(
+                    i,
+                    connectionCount,
+                    hostName,
+                    outgoingMessageQueue,
+                    presettledMessageQueue,
+                    options,
+                    callbackDispatcher,
+                    connectionHandlerFactory));
+        }
+
+        return Collections.unmodifiableList(connections);
+    }
+
+    private static CloudToDeviceMessageQueue createOutgoingMessageQueue(MessagingClientOptions options)
+    {
+        return new CloudToDeviceMessageQueue(
+            options.getMaxQueuedMessages(),
+            options.getMaxQueuedBytes(),
+            options.getQueueOverflowPolicy(),
+            options.getQueueOverflowTimeoutMilliseconds());
+    }
+
     /**
      * Open this client so that it can begin sending cloud to device and/or cloud to module messages. Once opened, you should
      * call {@link #close()} once no more messages will be sent in order to free up network resources. If this
@@ -234,6 +379,9 @@ public final class MessagingClient
      * client should call {@link #close()} once no more messages will be sent in order to free up network resources. If this
      * client is already open, then this function will do nothing.
      *
+     * <p>If only some of this client's connections are open (see {@link MessagingClientOptions#getConnectionCount()}), then
+     * only the connections that are not open are reopened, in parallel.</p>
+     *
      * @param timeoutMilliseconds the maximum number of milliseconds to wait for the underlying amqp connection to open.
      * If this value is 0, it will have an infinite timeout.
      * @throws IotHubException If any IoT Hub level exceptions occur such as an {@link IotHubUnauthorizedException}.
@@ -254,60 +402,25 @@ public final class MessagingClient
             throw new IllegalArgumentException("timeoutMilliseconds must be greater than or equal to 0");
         }
 
-        AtomicReference<IotHubException> iotHubException = new AtomicReference<>(null);
-        AtomicReference<IOException> ioException = new AtomicReference<>(null);
-
         log.debug("Opening MessagingClient");
 
-        this.reactorRunner = new ReactorRunner(
-            this.hostName,
-            "MessagingClient",
-            this.cloudToDeviceMessageConnectionHandler);
-
-        final CountDownLatch openLatch = new CountDownLatch(1);
-        this.cloudToDeviceMessageConnectionHandler.setOnConnectionOpenedCallback(openLatch::countDown);
-
-        new Thread(() ->
+        // Start opening every connection that isn't open yet before waiting on any of them so that they open in parallel.
+        // Connections that are still open are left alone, so this also reconnects just the connections that were lost.
+        List<MessagingClientConnection.OpenOperation> openOperations = new ArrayList<>();
+        for (MessagingClientConnection connection : this.connections)
         {
-            try
-            {
-                reactorRunner.run();
-
-                log.trace("MessagingClient Amqp reactor stopped, checking that the connection was opened");
-                this.cloudToDeviceMessageConnectionHandler.verifyConnectionWasOpened();
-
-                log.trace("MessagingClient reactor did successfully open the connection, returning without exception");
-            }
-            catch (IOException e)
+            MessagingClientConnection.OpenOperation openOperation = connection.beginOpen();
+            if (openOperation != null)
             {
-                ioException.set(e);
+                openOperations.add(openOperation);
             }
-            catch (IotHubException e)
-            {
-                iotHubException.set(e);
-            }
-            finally
-            {
-                openLatch.countDown();
-            }
-        }).start();
-
-        boolean timedOut = !openLatch.await(timeoutMilliseconds, TimeUnit.MILLISECONDS);
-
-        if (timedOut)
-        {
-            throw new TimeoutException("Timed out waiting for the connection to the service to open");
         }
 
-        // if an IOException or IotHubException was encountered in the reactor thread, throw it here
-        if (ioException.get() != null)
+        long deadline = System.currentTimeMillis() + timeoutMilliseconds;
+        for (MessagingClientConnection.OpenOperation openOperation : openOperations)
         {
-            throw ioException.get();
-        }
-
-        if (iotHubException.get() != null)
-        {
-            throw iotHubException.get();
+            long remainingMilliseconds = timeoutMilliseconds == 0 ? 0 : Math.max(1, deadline - System.currentTimeMillis());
+            openOperation.await(remainingMilliseconds);
         }
 
         log.info("Opened MessagingClient");
@@ -337,18 +450,24 @@ public final class MessagingClient
      */
     public synchronized void close(int timeoutMilliseconds) throws InterruptedException
     {
-        if (this.reactorRunner == null)
+        if (timeoutMilliseconds < 0)
         {
-            return;
+            throw new IllegalArgumentException("timeoutMilliseconds must be greater than or equal to 0");
         }
 
-        if (timeoutMilliseconds < 0)
+        for (MessagingClientConnection connection : this.connections)
         {
-            throw new IllegalArgumentException("timeoutMilliseconds must be greater than or equal to 0");
+            connection.close(timeoutMilliseconds);
+        }
+
+        if (this.feedbackCorrelationIndex != null)
+        {
+            // The feedback link is closed along with the connections, so no more feedback arrives
+            completeAwaitedFeedbackExceptionally(
+                this.feedbackCorrelationIndex.removeAll(),
+                new IotHubException("Stopped waiting for message feedback because the client was closed"));
         }
 
-        this.reactorRunner.stop(timeoutMilliseconds);
-        this.reactorRunner = null;
         log.info("Closed MessagingClient");
     }
 
@@ -468,7 +587,8 @@ public final class MessagingClient
             messageSentLatch.countDown();
         };
 
-        this.sendAsync(deviceId, moduleId, message, onMessageAcknowledgedCallback, null);
+        // The message is given the same deadline, so that it doesn't linger in the client after this call times out
+        this.sendAsync(deviceId, moduleId, message, timeoutMilliseconds, onMessageAcknowledgedCallback, null);
 
         if (timeoutMilliseconds == 0)
         {
@@ -527,7 +647,45 @@ public final class MessagingClient
      */
     public void sendAsync(String deviceId, String moduleId, Message message, Consumer<SendResult> onMessageSentCallback, Object context) throws IllegalStateException
     {
-        if (!this.isOpen())
+        this.sendAsync(deviceId, moduleId, message, 0, onMessageSentCallback, context);
+    }
+
+    /**
+     * Asynchronously send a cloud to device message to the module with the provided module id on the device with the
+     * provided device Id, and fail it if the service doesn't acknowledge it within the given time.
+     * <p>
+     *     If the time runs out while the message is still waiting in the outgoing message queue, the message is not
+     *     sent at all. If it runs out after the message was sent, the service may still deliver the message to the
+     *     device. Either way, the {@link SendResult} provided in the onMessageSentCallback will contain an
+     *     {@link com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageTimeoutException}. Deadlines are enforced
+     *     with a precision of about 100 milliseconds.
+     * </p>
+     * @param deviceId the Id of the device that contains the module that the message is being sent to.
+     * @param moduleId the Id of the module to send the cloud to device message to. May be null to send the message to
+     * the device itself.
+     * @param message the message to send to the device.
+     * @param timeoutMilliseconds the time the service has to acknowledge the message. If 0, there is no time limit.
+     * @param onMessageSentCallback the callback that will be executed when the message has either successfully been
+     * sent, or has failed to send. May be null if you don't care if the sent message is acknowledged by the service.
+     * @param context user defined context that will be provided in the onMessageSentCallback callback when it executes. May be null.
+     * @throws IllegalStateException if the client has not been opened yet, or is closed for any other reason such as connectivity loss.
+     */
+    public void sendAsync(
+        String deviceId,
+        String moduleId,
+        Message message,
+        int timeoutMilliseconds,
+        Consumer<SendResult> onMessageSentCallback,
+        Object context) throws IllegalStateException
+    {
+        if (timeoutMilliseconds < 0)
+        {
+            throw new IllegalArgumentException("timeoutMilliseconds must be greater than or equal to 0");
+        }
+
+        // All messages for a device go over the same connection so that they are sent in the order they were queued
+        MessagingClientConnection connection = getConnection(deviceId);
+        if (!connection.isOpen())
         {
             throw new IllegalStateException("Client must be opened before any message can be sent");
         }
@@ -541,7 +699,470 @@ public final class MessagingClient
             log.info("Sending cloud to module message with correlation id {}", message.getCorrelationId());
         }
 
-        this.cloudToDeviceMessageConnectionHandler.sendAsync(deviceId, moduleId, message, onMessageSentCallback, context);
+        connection.sendAsync(deviceId, moduleId, message, timeoutMilliseconds, onMessageSentCallback, context);
+    }
+
+    /**
+     * Send a cloud to device message without waiting for, or finding out about, the service's acknowledgement.
+     * <p>
+     *     The message is sent settled over a link of its own, so the service doesn't acknowledge it and this client
+     *     keeps no record of it once it has been written to the connection. This saves a round trip and some
+     *     bookkeeping per message, at the cost of not knowing whether the message arrived. It suits best effort
+     *     messages, such as periodic notifications that are superseded by the next one. Fire and forget messages are
+     *     sent in order relative to each other, but not relative to messages sent with the other send methods.
+     * </p>
+     * <p>
+     *     Fire and forget sends must be enabled with {@link MessagingClientOptions#isFireAndForgetSendsEnabled()}.
+     * </p>
+     * @param deviceId the Id of the device to send the cloud to device message to.
+     * @param message the message to send.
+     * @throws IllegalStateException if the client has not been opened yet, is closed for any other reason such as
+     * connectivity loss, or was not created with fire and forget sends enabled.
+     */
+    public void sendFireAndForget(String deviceId, Message message) throws IllegalStateException
+    {
+        sendFireAndForget(deviceId, null, message);
+    }
+
+    /**
+     * Send a cloud to module message without waiting for, or finding out about, the service's acknowledgement. See
+     * {@link #sendFireAndForget(String, Message)}.
+     *
+     * @param deviceId the Id of the device that contains the module that the message is being sent to.
+     * @param moduleId the Id of the module to send the cloud to device message to.
+     * @param message the message to send.
+     * @throws IllegalStateException if the client has not been opened yet, is closed for any other reason such as
+     * connectivity loss, or was not created with fire and forget sends enabled.
+     */
+    public void sendFireAndForget(String deviceId, String moduleId, Message message) throws IllegalStateException
+    {
+        if (deviceId == null || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceId cannot be null or empty");
+        }
+
+        Objects.requireNonNull(message, "message cannot be null");
+
+        MessagingClientConnection connection = this.connections.get(getConnectionIndex(deviceId));
+        if (!connection.isFireAndForgetEnabled())
+        {
+            throw new IllegalStateException("Fire and forget sends must be enabled in the MessagingClientOptions before they can be used");
+        }
+
+        if (!connection.isOpen())
+        {
+            throw new IllegalStateException("Client must be opened before any message can be sent");
+        }
+
+        connection.sendFireAndForget(deviceId, moduleId, message);
+    }
+
+    /**
+     * Asynchronously send a cloud to device message to the device with the provided device Id, and find out whether the
+     * device completed it.
+     * <p>
+     *     The message must have {@link DeliveryAcknowledgement#Full}, the default, so that the service reports what
+     *     became of it in a {@link FeedbackRecord} once the device completes, rejects or abandons it too many times, or
+     *     once it expires. The returned future completes with that record. Records are matched to messages by message
+     *     Id, which must be a UUID. If the message has no message Id, this sets a random one on the provided message.
+     * </p>
+     * <p>
+     *     Sends that await feedback must be enabled with {@link MessagingClientOptions#getMaxAwaitedFeedbackMessages()}.
+     *     The records reach this client through the feedback batches that a {@link MessageFeedbackProcessorClient}
+     *     receives and passes to {@link #completeAwaitedFeedback(FeedbackBatch)}, or through the client's own feedback
+     *     receiver if {@link MessagingClientOptions#isAwaitedFeedbackReceiverEnabled()}.
+     * </p>
+     * @param deviceId the Id of the device to send the cloud to device message to.
+     * @param message the message to send to the device.
+     * @return a future that completes with the feedback record of the message. It completes exceptionally with the
+     * exception of the {@link SendResult} if the message failed to send, and with an
+     * {@link com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageTimeoutException} if no feedback arrived in
+     * time, see {@link MessagingClientOptions#getFeedbackTimeoutMilliseconds()}.
+     * @throws IllegalArgumentException if the message Id is not a UUID, if the message's delivery acknowledgement is
+     * not {@link DeliveryAcknowledgement#Full}, or if feedback is already awaited for a message with the same message Id.
+     * @throws IllegalStateException if the client has not been opened yet, is closed for any other reason such as
+     * connectivity loss, was not created with sends that await feedback enabled, or already awaits feedback for
+     * {@link MessagingClientOptions#getMaxAwaitedFeedbackMessages()} messages.
+     */
+    public CompletableFuture<FeedbackRecord> sendAndAwaitFeedback(String deviceId, Message message) throws IllegalArgumentException, IllegalStateException
+    {
+        return sendAndAwaitFeedback(deviceId, null, message);
+    }
+
+    /**
+     * Asynchronously send a cloud to module message to the module with the provided module id on the device with the
+     * provided device Id, and find out whether the module completed it. See {@link #sendAndAwaitFeedback(String, Message)}.
+     *
+     * @param deviceId the Id of the device that contains the module that the message is being sent to.
+     * @param moduleId the Id of the module to send the cloud to device message to.
+     * @param message the message to send to the module.
+     * @return a future that completes with the feedback record of the message.
+     * @throws IllegalArgumentException if the message Id is not a UUID, if the message's delivery acknowledgement is
+     * not {@link DeliveryAcknowledgement#Full}, or if feedback is already awaited for a message with the same message Id.
+     * @throws IllegalStateException if the client has not been opened yet, is closed for any other reason such as
+     * connectivity loss, was not created with sends that await feedback enabled, or already awaits feedback for
+     * {@link MessagingClientOptions#getMaxAwaitedFeedbackMessages()} messages.
+     */
+    public CompletableFuture<FeedbackRecord> sendAndAwaitFeedback(String deviceId, String moduleId, Message message) throws IllegalArgumentException, IllegalStateException
+    {
+        if (this.feedbackCorrelationIndex == null)
+        {
+            throw new IllegalStateException("Sends that await feedback must be enabled in the MessagingClientOptions before they can be used");
+        }
+
+        Objects.requireNonNull(message, "message cannot be null");
+
+        if (message.getDeliveryAcknowledgement() != DeliveryAcknowledgement.Full)
+        {
+            throw new IllegalArgumentException("The delivery acknowledgement of a message that awaits feedback must be Full");
+        }
+
+        if (message.getMessageId() == null)
+        {
+            message.setMessageId(UUID.randomUUID().toString());
+        }
+
+        UUID messageId;
+        try
+        {
+            messageId = UUID.fromString(message.getMessageId());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("The message Id of a message that awaits feedback must be a UUID", e);
+        }
+
+        long nowMilliseconds = System.currentTimeMillis();
+        long expiryTimeMilliseconds = message.getExpiryTimeUtc() != null
+            ? message.getExpiryTimeUtc().getTime()
+            : nowMilliseconds + DEFAULT_MESSAGE_TIME_TO_LIVE_MILLISECONDS;
+
+        // Added before the message is sent so that its feedback can't arrive before it is awaited
+        CompletableFuture<FeedbackRecord> feedbackFuture = new CompletableFuture<>();
+        addAwaitedFeedback(messageId, expiryTimeMilliseconds + this.feedbackTimeoutMilliseconds, feedbackFuture, nowMilliseconds);
+
+        try
+        {
+            sendAsync(
+                deviceId,
+                moduleId,
+                message,
+                0,
+                sendResult ->
+                {
+                    if (!sendResult.wasSentSuccessfully() && this.feedbackCorrelationIndex.remove(messageId, feedbackFuture))
+                    {
+                        feedbackFuture.completeExceptionally(sendResult.getException());
+                    }
+                },
+                null);
+        }
+        catch (RuntimeException e)
+        {
+            this.feedbackCorrelationIndex.remove(messageId, feedbackFuture);
+            throw e;
+        }
+
+        return feedbackFuture;
+    }
+
+    private void addAwaitedFeedback(UUID messageId, long evictionTimeMilliseconds, CompletableFuture<FeedbackRecord> feedbackFuture, long nowMilliseconds)
+    {
+        completeAwaitedFeedbackAsTimedOut(this.feedbackCorrelationIndex.removeExpired(nowMilliseconds, FEEDBACK_EVICTION_SLOTS_PER_SEND));
+
+        if (!this.feedbackCorrelationIndex.add(messageId, evictionTimeMilliseconds, feedbackFuture))
+        {
+            // Expired entries that the incremental sweeps haven't reached yet may still be taking up space
+            completeAwaitedFeedbackAsTimedOut(this.feedbackCorrelationIndex.removeExpired(nowMilliseconds, Integer.MAX_VALUE));
+
+            if (!this.feedbackCorrelationIndex.add(messageId, evictionTimeMilliseconds, feedbackFuture))
+            {
+                throw new IllegalStateException("Feedback is already awaited for the maximum number of messages set in the MessagingClientOptions");
+            }
+        }
+    }
+
+    private AcknowledgementType onFeedbackReceived(FeedbackBatch feedbackBatch)
+    {
+        completeAwaitedFeedback(feedbackBatch);
+
+        // Records for messages that this client didn't send, or no longer awaits, have no one else to go to
+        return AcknowledgementType.COMPLETE;
+    }
+
+    /**
+     * Complete the futures of the messages sent with {@link #sendAndAwaitFeedback(String, Message)} that the provided
+     * feedback batch has records for. Records for messages that this client didn't send, or no longer awaits, are
+     * ignored. Use this to pass the feedback that a {@link MessageFeedbackProcessorClient} receives to this client, see
+     * {@link MessagingClientOptions#getMaxAwaitedFeedbackMessages()}. May be called from any thread.
+     *
+     * @param feedbackBatch the feedback batch received from the service.
+     * @return the number of awaited messages that the batch had records for.
+     * @throws IllegalStateException if this client was not created with sends that await feedback enabled.
+     */
+    public int completeAwaitedFeedback(FeedbackBatch feedbackBatch) throws IllegalStateException
+    {
+        if (this.feedbackCorrelationIndex == null)
+        {
+            throw new IllegalStateException("Sends that await feedback must be enabled in the MessagingClientOptions before feedback can be completed");
+        }
+
+        Objects.requireNonNull(feedbackBatch, "feedbackBatch cannot be null");
+
+        int completedCount = 0;
+        if (feedbackBatch.getRecords() != null)
+        {
+            for (FeedbackRecord feedbackRecord : feedbackBatch.getRecords())
+            {
+                UUID messageId = parseFeedbackMessageId(feedbackRecord.getOriginalMessageId());
+                CompletableFuture<FeedbackRecord> feedbackFuture = messageId != null ? this.feedbackCorrelationIndex.remove(messageId) : null;
+                if (feedbackFuture != null)
+                {
+                    feedbackFuture.complete(feedbackRecord);
+                    completedCount++;
+                }
+            }
+        }
+
+        completeAwaitedFeedbackAsTimedOut(this.feedbackCorrelationIndex.removeExpired(System.currentTimeMillis(), FEEDBACK_EVICTION_SLOTS_PER_BATCH));
+        return completedCount;
+    }
+
+    private static UUID parseFeedbackMessageId(String originalMessageId)
+    {
+        if (originalMessageId == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return UUID.fromString(originalMessageId);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Not a message that this client sent, since those all have UUIDs for message Ids
+            return null;
+        }
+    }
+
+    private static void completeAwaitedFeedbackAsTimedOut(List<CompletableFuture<FeedbackRecord>> feedbackFutures)
+    {
+        if (!feedbackFutures.isEmpty())
+        {
+            completeAwaitedFeedbackExceptionally(
+                feedbackFutures,
+                new IotHubMessageTimeoutException("No feedback was received for the message before its feedback timeout passed"));
+        }
+    }
+
+    private static void completeAwaitedFeedbackExceptionally(List<CompletableFuture<FeedbackRecord>> feedbackFutures, IotHubException exception)
+    {
+        for (CompletableFuture<FeedbackRecord> feedbackFuture : feedbackFutures)
+        {
+            feedbackFuture.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * @return the number of messages sent with {@link #sendAndAwaitFeedback(String, Message)} whose feedback this
+     * client is still waiting for.
+     */
+    public int getAwaitedFeedbackMessageCount()
+    {
+        return this.feedbackCorrelationIndex == null ? 0 : this.feedbackCorrelationIndex.size();
+    }
+
+    /**
+     * Asynchronously send many cloud to device and/or cloud to module messages at once.
+     * <p>
+     *     This is cheaper than calling {@link #sendAsync(String, String, Message, Consumer, Object)} once per message,
+     *     for instance when sending the same command to thousands of devices. The messages are added to the outgoing
+     *     message queue of each connection atomically, so either all of the messages for a connection are queued or none
+     *     of them are, and the reactor is woken up once per connection rather than once per message. Rather than one
+     *     callback per message, the results of all the messages are reported at once when the returned future completes.
+     * </p>
+     * <p>
+     *     Like {@link #sendAsync(String, String, Message, Consumer, Object)}, the returned future does not complete
+     *     exceptionally when messages fail to send. Instead, any exception encountered while sending a message will be
+     *     provided in that message's {@link SendResult}.
+     * </p>
+     * @param messages the messages to send. Messages for the same device are sent in the order given.
+     * @return a future that completes once every message has either been acknowledged by the service or has failed to
+     * send. Its value contains the {@link SendResult} of each message, in the same order as the given messages.
+     * @throws IllegalStateException if the client has not been opened yet, or is closed for any other reason such as connectivity loss.
+     */
+    public CompletableFuture<List<SendResult>> sendBatch(Collection<DeviceMessage> messages) throws IllegalStateException
+    {
+        Objects.requireNonNull(messages, "messages cannot be null");
+
+        if (messages.isEmpty())
+        {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        // Split the batch by the connection that each device's messages go over, keeping each message's batch position
+        int connectionCount = this.connections.size();
+        int[] connectionIndices = new int[messages.size()];
+        int[] messageCountByConnection = new int[connectionCount];
+        int batchIndex = 0;
+        for (DeviceMessage message : messages)
+        {
+            Objects.requireNonNull(message, "messages cannot contain null elements");
+
+            connectionIndices[batchIndex] = getConnectionIndex(message.getDeviceId());
+            messageCountByConnection[connectionIndices[batchIndex]]++;
+            batchIndex++;
+        }
+
+        List<List<DeviceMessage>> messagesByConnection = new ArrayList<>(connectionCount);
+        int[][] batchIndicesByConnection = new int[connectionCount][];
+        for (int i = 0; i < connectionCount; i++)
+        {
+            messagesByConnection.add(new ArrayList<>(messageCountByConnection[i]));
+            batchIndicesByConnection[i] = new int[messageCountByConnection[i]];
+        }
+
+        batchIndex = 0;
+        for (DeviceMessage message : messages)
+        {
+            List<DeviceMessage> connectionMessages = messagesByConnection.get(connectionIndices[batchIndex]);
+            batchIndicesByConnection[connectionIndices[batchIndex]][connectionMessages.size()] = batchIndex;
+            connectionMessages.add(message);
+            batchIndex++;
+        }
+
+        // Checked before anything is queued so that a closed connection doesn't leave the batch partially sent
+        for (int i = 0; i < connectionCount; i++)
+        {
+            if (messageCountByConnection[i] > 0 && !this.connections.get(i).isOpen())
+            {
+                throw new IllegalStateException("Client must be opened before any message can be sent");
+            }
+        }
+
+        log.info("Sending batch of {} cloud to device messages", messages.size());
+
+        CloudToDeviceMessageBatch batch = new CloudToDeviceMessageBatch(messages.size());
+        for (int i = 0; i < connectionCount; i++)
+        {
+            if (messageCountByConnection[i] > 0)
+            {
+                this.connections.get(i).sendBatchAsync(messagesByConnection.get(i), batchIndicesByConnection[i], batch);
+            }
+        }
+
+        return this.callbackDispatcher.completeOnCallbackExecutor(batch.getFuture());
+    }
+
+    /**
+     * Asynchronously send the same cloud to device message to many devices.
+     * <p>
+     *     This is cheaper than {@link #sendBatch(Collection)} when every device gets the same message, such as a fleet
+     *     wide notification. The body and the application properties of the message are encoded once for all of the
+     *     devices rather than once per device, and the copy for each device only differs in its address. Like
+     *     {@link #sendBatch(Collection)}, the copies are queued atomically per connection and their results are reported
+     *     at once when the returned future completes.
+     * </p>
+     * <p>
+     *     Every copy is sent with the message Id of the given message. Use
+     *     {@link #sendBroadcast(Message, List, List)} to send each device a message Id of its own, for instance to
+     *     match feedback to the copy it is for.
+     * </p>
+     * @param message the message to send. Changes made to it after this method returns are not sent.
+     * @param deviceIds the Ids of the devices to send the message to.
+     * @return a future that completes once the copy for every device has either been acknowledged by the service or
+     * has failed to send. Its value contains the {@link SendResult} of each device, in the same order as the given
+     * device Ids. The {@link SendResult#getContext()} of each result is the Id of its device.
+     * @throws IllegalStateException if the client has not been opened yet, or is closed for any other reason such as connectivity loss.
+     */
+    public CompletableFuture<List<SendResult>> sendBroadcast(Message message, List<String> deviceIds) throws IllegalStateException
+    {
+        return sendBroadcast(message, deviceIds, null);
+    }
+
+    /**
+     * Asynchronously send the same cloud to device message to many devices, with a message Id of its own for each
+     * device. See {@link #sendBroadcast(Message, List)}.
+     *
+     * @param message the message to send. Changes made to it after this method returns are not sent.
+     * @param deviceIds the Ids of the devices to send the message to.
+     * @param messageIds the message Id to send to each device, in the same order as the device Ids. If null, every copy
+     * is sent with the message Id of the given message.
+     * @return a future that completes once the copy for every device has either been acknowledged by the service or
+     * has failed to send. Its value contains the {@link SendResult} of each device, in the same order as the given
+     * device Ids. The {@link SendResult#getContext()} of each result is the Id of its device.
+     * @throws IllegalStateException if the client has not been opened yet, or is closed for any other reason such as connectivity loss.
+     */
+    public CompletableFuture<List<SendResult>> sendBroadcast(Message message, List<String> deviceIds, List<String> messageIds) throws IllegalStateException
+    {
+        Objects.requireNonNull(message, "message cannot be null");
+        Objects.requireNonNull(deviceIds, "deviceIds cannot be null");
+
+        if (messageIds != null && messageIds.size() != deviceIds.size())
+        {
+            throw new IllegalArgumentException("messageIds must contain one message Id per device Id");
+        }
+
+        if (deviceIds.isEmpty())
+        {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        // Each connection picks its devices out of these lists by batch index
+        List<String> indexedDeviceIds = deviceIds instanceof RandomAccess ? deviceIds : new ArrayList<>(deviceIds);
+        List<String> indexedMessageIds = messageIds == null || messageIds instanceof RandomAccess ? messageIds : new ArrayList<>(messageIds);
+
+        int connectionCount = this.connections.size();
+        int[] connectionIndices = new int[indexedDeviceIds.size()];
+        int[] deviceCountByConnection = new int[connectionCount];
+        for (int batchIndex = 0; batchIndex < indexedDeviceIds.size(); batchIndex++)
+        {
+            String deviceId = indexedDeviceIds.get(batchIndex);
+            if (deviceId == null || deviceId.isEmpty())
+            {
+                throw new IllegalArgumentException("deviceIds cannot contain null or empty elements");
+            }
+
+            connectionIndices[batchIndex] = getConnectionIndex(deviceId);
+            deviceCountByConnection[connectionIndices[batchIndex]]++;
+        }
+
+        int[][] batchIndicesByConnection = new int[connectionCount][];
+        int[] nextPositionByConnection = new int[connectionCount];
+        for (int i = 0; i < connectionCount; i++)
+        {
+            batchIndicesByConnection[i] = new int[deviceCountByConnection[i]];
+        }
+
+        for (int batchIndex = 0; batchIndex < connectionIndices.length; batchIndex++)
+        {
+            int connectionIndex = connectionIndices[batchIndex];
+            batchIndicesByConnection[connectionIndex][nextPositionByConnection[connectionIndex]++] = batchIndex;
+        }
+
+        // Checked before anything is queued so that a closed connection doesn't leave the broadcast partially sent
+        for (int i = 0; i < connectionCount; i++)
+        {
+            if (deviceCountByConnection[i] > 0 && !this.connections.get(i).isOpen())
+            {
+                throw new IllegalStateException("Client must be opened before any message can be sent");
+            }
+        }
+
+        log.info("Sending cloud to device message with correlation id {} to {} devices", message.getCorrelationId(), indexedDeviceIds.size());
+
+        CloudToDeviceBroadcastMessage broadcastMessage = new CloudToDeviceBroadcastMessage(message);
+        CloudToDeviceMessageBatch batch = new CloudToDeviceMessageBatch(indexedDeviceIds.size());
+        for (int i = 0; i < connectionCount; i++)
+        {
+            if (deviceCountByConnection[i] > 0)
+            {
+                this.connections.get(i).sendBroadcastAsync(broadcastMessage, indexedDeviceIds, indexedMessageIds, batchIndicesByConnection[i], batch);
+            }
+        }
+
+        return this.callbackDispatcher.completeOnCallbackExecutor(batch.getFuture());
     }
 
     /**
@@ -554,6 +1175,125 @@ public final class MessagingClient
      */
     public boolean isOpen()
     {
-        return this.reactorRunner != null && this.reactorRunner.isRunning();
+        for (MessagingClientConnection connection : this.connections)
+        {
+            if (!connection.isOpen())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the number of messages that have been sent with this client, but are waiting in its outgoing message queues
+     * because the service has not granted this client enough link credit to send them yet. Applications that send
+     * faster than the service accepts messages can use this value to slow down.
+     *
+     * @return the number of messages in this client's outgoing message queues.
+     */
+    public int getQueuedMessageCount()
+    {
+        int queuedMessageCount = 0;
+        for (MessagingClientConnection connection : this.connections)
+        {
+            queuedMessageCount += connection.getQueuedMessageCount();
+        }
+
+        return queuedMessageCount;
+    }
+
+    /**
+     * @return the total size in bytes of the payloads of the messages in this client's outgoing message queues.
+     */
+    public long getQueuedMessageBytes()
+    {
+        long queuedMessageBytes = 0;
+        for (MessagingClientConnection connection : this.connections)
+        {
+            queuedMessageBytes += connection.getQueuedMessageBytes();
+        }
+
+        return queuedMessageBytes;
+    }
+
+    /**
+     * @return the number of messages that have been sent to the service, but not yet acknowledged by it.
+     */
+    public int getInFlightMessageCount()
+    {
+        int inFlightMessageCount = 0;
+        for (MessagingClientConnection connection : this.connections)
+        {
+            inFlightMessageCount += connection.getInFlightMessageCount();
+        }
+
+        return inFlightMessageCount;
+    }
+
+    /**
+     * Get the number of {@link SendResult} callbacks that took longer than
+     * {@link MessagingClientOptions#getSlowCallbackThresholdMilliseconds()} to execute. A callback that is still executing
+     * is counted once it exceeds the threshold, so callbacks that never return are counted too. Slow callbacks that
+     * execute on a reactor thread hold up all network IO of their connection, see
+     * {@link MessagingClientOptions#getCallbackExecutor()}.
+     *
+     * @return the number of slow callbacks since this client was created.
+     */
+    public long getSlowCallbackCount()
+    {
+        return this.callbackDispatcher.getSlowCallbackCount();
+    }
+
+    /**
+     * @return the longest time in milliseconds that any {@link SendResult} callback of this client took to execute. If
+     * there is a slow callback threshold, callbacks that are still executing are included.
+     */
+    public long getMaxCallbackDurationMilliseconds()
+    {
+        return this.callbackDispatcher.getMaxCallbackDurationMilliseconds();
+    }
+
+    /**
+     * Get the health and message counts of each of this client's AMQP connections. A connection that was lost can be
+     * reopened by calling {@link #open()}, which leaves the connections that are still open alone.
+     *
+     * @return a snapshot of the status of each connection, ordered by connection index.
+     */
+    public List<MessagingClientConnectionStatus> getConnectionStatuses()
+    {
+        List<MessagingClientConnectionStatus> statuses = new ArrayList<>(this.connections.size());
+        for (MessagingClientConnection connection : this.connections)
+        {
+            statuses.add(connection.getStatus());
+        }
+
+        return statuses;
+    }
+
+    /**
+     * @return the connection that the message feedback and file upload notification clients constructed from this
+     * client open their receiver links on. Those links receive from the whole hub rather than for a single device, so
+     * this is always the first connection.
+     */
+    MessagingClientConnection getSharedReceiverConnection()
+    {
+        return this.connections.get(0);
+    }
+
+    private MessagingClientConnection getConnection(String deviceId)
+    {
+        return this.connections.get(getConnectionIndex(deviceId));
+    }
+
+    private int getConnectionIndex(String deviceId)
+    {
+        if (this.connections.size() == 1)
+        {
+            return 0;
+        }
+
+        return Math.floorMod(Objects.hashCode(deviceId), this.connections.size());
     }
 }
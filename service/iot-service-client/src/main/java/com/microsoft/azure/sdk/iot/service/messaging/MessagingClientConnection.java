@@ -0,0 +1,609 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubUnauthorizedException;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceBroadcastMessage;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageBatch;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageConnectionHandler;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageQueue;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.ConnectionOpenTimings;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.ReactorRunner;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.ReceiverLinkMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * One of the AMQP connections of a {@link MessagingClient}, along with its reactor thread and outgoing message queue.
+ */
+@Slf4j
+final class MessagingClientConnection
+{
+    private static final int LOST_CONNECTION_CLEANUP_TIMEOUT_MILLISECONDS = 5 * 1000; // 5 seconds
+
+    private final int index;
+    private final String hostName;
+    private final String threadNamePostfix;
+    private final CloudToDeviceMessageQueue outgoingMessageQueue;
+    private final CloudToDeviceMessageQueue presettledMessageQueue;
+    private final CloudToDeviceMessageConnectionHandler connectionHandler;
+    private final SendResultCallbackDispatcher callbackDispatcher;
+
+    private final boolean automaticReconnectEnabled;
+    private final int initialReconnectDelayMilliseconds;
+    private final int maxReconnectDelayMilliseconds;
+    private final int maxReconnectAttempts;
+
+    // Guards the hand over of the reactor between the reconnect loop and the user threads that open and close this connection
+    private final Object reactorLock = new Object();
+    private volatile ReactorRunner reactorRunner;
+    private volatile boolean reactorRunning;
+    private volatile Thread reactorThread;
+    private volatile boolean reconnecting;
+
+    // Incremented under the reactor lock every time the reactor is stopped. Each reactor thread remembers the generation
+    // it was started in, so that a thread that outlives the timeout of a stop can't reconnect and replace the reactor
+    // of a newer generation.
+    private volatile long reactorGeneration;
+
+    private final AtomicLong openCount = new AtomicLong(0);
+    private final AtomicLong sentMessageCount = new AtomicLong(0);
+    private final AtomicLong failedMessageCount = new AtomicLong(0);
+
+    // The message feedback and file upload notification clients whose receiver links share this connection. Guarded by
+    // this connection's monitor.
+    private Object messageFeedbackReceiverOwner;
+    private Object fileUploadNotificationReceiverOwner;
+
+    MessagingClientConnection(
+        int index,
+        int connectionCount,
+        String hostName,
+        CloudToDeviceMessageQueue outgoingMessageQueue,
+        CloudToDeviceMessageQueue presettledMessageQueue,
+        MessagingClientOptions options,
+        SendResultCallbackDispatcher callbackDispatcher,
+        Function<CloudToDeviceMessageQueue, CloudToDeviceMessageConnectionHandler> connectionHandlerFactory)
+    {
+        this.index = index;
+        this.hostName = hostName;
+        this.threadNamePostfix = connectionCount == 1 ? "MessagingClient" : "MessagingClient-" + index;
+        this.outgoingMessageQueue = outgoingMessageQueue;
+        this.presettledMessageQueue = presettledMessageQueue;
+        this.callbackDispatcher = callbackDispatcher;
+        this.automaticReconnectEnabled = options.isAutomaticReconnectEnabled();
+        this.initialReconnectDelayMilliseconds = options.getInitialReconnectDelayMilliseconds();
+        this.maxReconnectDelayMilliseconds = options.getMaxReconnectDelayMilliseconds();
+        this.maxReconnectAttempts = options.getMaxReconnectAttempts();
+        this.connectionHandler = connectionHandlerFactory.apply(outgoingMessageQueue);
+        this.connectionHandler.setMessageEncodingExecutor(options.getMessageEncodingExecutor());
+        this.connectionHandler.setReplayUnacknowledgedMessages(options.isReplayUnacknowledgedMessages());
+        this.connectionHandler.setPresettledMessageQueue(presettledMessageQueue);
+        this.connectionHandler.setLingerMilliseconds(options.getLingerMilliseconds());
+        this.connectionHandler.setLingerMaxBatchBytes(options.getLingerMaxBatchBytes());
+        this.connectionHandler.setPipelinedLinkAttachEnabled(options.isPipelinedLinkAttachEnabled());
+    }
+
+    /**
+     * An open operation that has been started, but not waited on yet. This allows all of a client's connections to be
+     * opened in parallel.
+     */
+    final class OpenOperation
+    {
+        private final CountDownLatch openLatch = new CountDownLatch(1);
+        private final AtomicReference<IotHubException> iotHubException = new AtomicReference<>(null);
+        private final AtomicReference<IOException> ioException = new AtomicReference<>(null);
+
+        void await(long timeoutMilliseconds) throws IotHubException, IOException, InterruptedException, TimeoutException
+        {
+            boolean timedOut = timeoutMilliseconds > 0
+                ? !this.openLatch.await(timeoutMilliseconds, TimeUnit.MILLISECONDS)
+                : !this.openLatch.await(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            if (timedOut)
+            {
+                throw new TimeoutException("Timed out waiting for the connection to the service to open");
+            }
+
+            // if an IOException or IotHubException was encountered in the reactor thread, throw it here
+            if (this.ioException.get() != null)
+            {
+                throw this.ioException.get();
+            }
+
+            if (this.iotHubException.get() != null)
+            {
+                throw this.iotHubException.get();
+            }
+        }
+    }
+
+    /**
+     * Start opening this connection if it isn't open already. If this connection is being reconnected automatically,
+     * the reconnect attempts are stopped and replaced by this open operation.
+     *
+     * @return the operation to wait on, or null if this connection is already open.
+     * @throws IOException if the reactor could not be created.
+     * @throws InterruptedException if interrupted while cleaning up the reactor of a connection that was lost.
+     */
+    OpenOperation beginOpen() throws IOException, InterruptedException
+    {
+        if (isOpen())
+        {
+            return null;
+        }
+
+        if (this.reactorThread != null)
+        {
+            // The previous connection was lost, so clean up its reactor before opening a new one
+            log.debug("Connection {} of MessagingClient was lost, reopening it", this.index);
+            stopReactorThread(LOST_CONNECTION_CLEANUP_TIMEOUT_MILLISECONDS);
+        }
+
+        OpenOperation openOperation = new OpenOperation();
+        final ReactorRunner runner;
+        final long generation;
+        synchronized (this.reactorLock)
+        {
+            generation = this.reactorGeneration;
+            runner = createReactor(openOperation.openLatch::countDown);
+        }
+
+        Thread thread = new Thread(() -> runReactor(runner, openOperation, generation));
+        this.reactorThread = thread;
+        thread.start();
+
+        return openOperation;
+    }
+
+    void close(int timeoutMilliseconds) throws InterruptedException
+    {
+        stopReactorThread(timeoutMilliseconds);
+
+        // Messages are kept queued when the connection is lost so that they can be sent once it is reopened, which
+        // won't happen now
+        this.connectionHandler.failQueuedMessages();
+    }
+
+    // Must be called while holding the reactor lock
+    private ReactorRunner createReactor(Runnable onConnectionOpened) throws IOException
+    {
+        ReactorRunner runner = new ReactorRunner(this.hostName, this.threadNamePostfix, this.connectionHandler);
+        this.connectionHandler.setOnConnectionOpenedCallback(() ->
+        {
+            this.openCount.incrementAndGet();
+            onConnectionOpened.run();
+        });
+
+        this.reactorRunner = runner;
+        this.reactorRunning = true;
+        return runner;
+    }
+
+    private void runReactor(ReactorRunner runner, OpenOperation openOperation, long generation)
+    {
+        long previousOpenCount = this.openCount.get();
+        try
+        {
+            runner.run();
+
+            log.trace("MessagingClient Amqp reactor stopped, checking that the connection was opened");
+            this.connectionHandler.verifyConnectionWasOpened();
+
+            log.trace("MessagingClient reactor did successfully open the connection, returning without exception");
+        }
+        catch (IOException e)
+        {
+            openOperation.ioException.set(e);
+        }
+        catch (IotHubException e)
+        {
+            openOperation.iotHubException.set(e);
+        }
+        finally
+        {
+            onReactorStopped(generation);
+            openOperation.openLatch.countDown();
+        }
+
+        // A connection that never opened is reported to the caller of open() instead of being reconnected
+        if (this.automaticReconnectEnabled && this.openCount.get() != previousOpenCount)
+        {
+            reconnect(generation);
+        }
+    }
+
+    private void reconnect(long generation)
+    {
+        synchronized (this.reactorLock)
+        {
+            if (this.reactorGeneration != generation)
+            {
+                return;
+            }
+
+            this.reconnecting = true;
+        }
+
+        try
+        {
+            int attempt = 0;
+            while (true)
+            {
+                // Messages whose deadline passes while the connection is down fail now rather than once it is reopened
+                this.connectionHandler.failTimedOutQueuedMessages();
+
+                attempt++;
+                if (this.maxReconnectAttempts > 0 && attempt > this.maxReconnectAttempts)
+                {
+                    log.warn("Connection {} of MessagingClient could not be reopened after {} attempts, giving up", this.index, this.maxReconnectAttempts);
+                    failQueuedMessages(generation);
+                    return;
+                }
+
+                long delayMilliseconds = getReconnectDelayMilliseconds(
+                    attempt,
+                    this.initialReconnectDelayMilliseconds,
+                    this.maxReconnectDelayMilliseconds,
+                    ThreadLocalRandom.current().nextDouble());
+
+                log.debug("Connection {} of MessagingClient was lost, reopening it in {} milliseconds (attempt {})", this.index, delayMilliseconds, attempt);
+
+                ReactorRunner runner;
+                synchronized (this.reactorLock)
+                {
+                    long waitUntil = System.currentTimeMillis() + delayMilliseconds;
+                    long remainingMilliseconds = delayMilliseconds;
+                    while (this.reactorGeneration == generation && remainingMilliseconds > 0)
+                    {
+                        this.reactorLock.wait(remainingMilliseconds);
+                        remainingMilliseconds = waitUntil - System.currentTimeMillis();
+                    }
+
+                    // Checked under the same lock that stopReactorThread increments the generation with, so a stopped
+                    // reconnect loop can never create a reactor
+                    if (this.reactorGeneration != generation)
+                    {
+                        return;
+                    }
+
+                    try
+                    {
+                        runner = createReactor(() -> log.info("Reopened connection {} of MessagingClient", this.index));
+                    }
+                    catch (IOException e)
+                    {
+                        log.debug("Failed to create the reactor to reopen connection {} of MessagingClient", this.index, e);
+                        continue;
+                    }
+                }
+
+                long previousOpenCount = this.openCount.get();
+                try
+                {
+                    runner.run();
+                    this.connectionHandler.verifyConnectionWasOpened();
+                }
+                catch (IotHubUnauthorizedException e)
+                {
+                    // Retrying won't help until the credentials are fixed
+                    log.warn("Connection {} of MessagingClient could not be reopened because its credentials were rejected, giving up", this.index, e);
+                    failQueuedMessages(generation);
+                    return;
+                }
+                catch (IOException | IotHubException e)
+                {
+                    log.debug("Connection {} of MessagingClient closed with an exception", this.index, e);
+                }
+                finally
+                {
+                    onReactorStopped(generation);
+                }
+
+                if (this.reactorGeneration != generation)
+                {
+                    return;
+                }
+
+                if (this.openCount.get() != previousOpenCount)
+                {
+                    // The connection was reopened and then lost again, so start over with the shortest delay
+                    attempt = 0;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            synchronized (this.reactorLock)
+            {
+                if (this.reactorGeneration == generation)
+                {
+                    this.reconnecting = false;
+                }
+            }
+        }
+    }
+
+    private void onReactorStopped(long generation)
+    {
+        synchronized (this.reactorLock)
+        {
+            // The reactor of a newer generation may be running already
+            if (this.reactorGeneration == generation)
+            {
+                this.reactorRunning = false;
+            }
+        }
+    }
+
+    private void failQueuedMessages(long generation)
+    {
+        // Once stopped, the queued messages belong to whoever stopped this generation
+        if (this.reactorGeneration == generation)
+        {
+            this.connectionHandler.failQueuedMessages();
+        }
+    }
+
+    /**
+     * Get how long to wait before an attempt to reopen a lost connection. The delay is a random value between 0 and a
+     * cap that doubles with every attempt, so that clients that lost their connections at the same time don't all try
+     * to reopen them at the same time.
+     *
+     * @param attempt the number of the attempt, starting at 1.
+     * @param initialDelayMilliseconds the cap of the first attempt.
+     * @param maxDelayMilliseconds the largest value that the cap can grow to.
+     * @param jitter a random value between 0 (inclusive) and 1 (exclusive).
+     * @return the number of milliseconds to wait.
+     */
+    static long getReconnectDelayMilliseconds(int attempt, int initialDelayMilliseconds, int maxDelayMilliseconds, double jitter)
+    {
+        // Capping the exponent keeps the cap from overflowing. The cap reaches any int delay long before that anyway.
+        int exponent = Math.min(Math.max(attempt, 1) - 1, 31);
+        long capMilliseconds = Math.min(maxDelayMilliseconds, (long) initialDelayMilliseconds << exponent);
+        return (long) (capMilliseconds * jitter);
+    }
+
+    private void stopReactorThread(int timeoutMilliseconds) throws InterruptedException
+    {
+        ReactorRunner runner;
+        boolean running;
+        synchronized (this.reactorLock)
+        {
+            this.reactorGeneration++;
+            this.reconnecting = false;
+            this.reactorLock.notifyAll();
+            runner = this.reactorRunner;
+            running = this.reactorRunning;
+            this.reactorRunner = null;
+        }
+
+        if (runner != null && running)
+        {
+            runner.stop(timeoutMilliseconds);
+        }
+
+        Thread thread = this.reactorThread;
+        if (thread != null && thread != Thread.currentThread())
+        {
+            // Once the reactor has stopped, the thread only has to notice that its generation is over. If it doesn't
+            // within the timeout, it still can't reconnect.
+            thread.join(timeoutMilliseconds);
+        }
+
+        this.reactorThread = null;
+    }
+
+    boolean isOpen()
+    {
+        ReactorRunner runner = this.reactorRunner;
+        return runner != null && runner.isRunning();
+    }
+
+    /**
+     * @return true if this connection was lost and is waiting to be reopened automatically, or is being reopened.
+     */
+    boolean isReconnecting()
+    {
+        return this.reconnecting;
+    }
+
+    void sendAsync(String deviceId, String moduleId, Message message, long timeoutMilliseconds, Consumer<SendResult> onMessageSentCallback, Object context)
+    {
+        Consumer<SendResult> countingCallback = sendResult ->
+        {
+            if (sendResult.wasSentSuccessfully())
+            {
+                this.sentMessageCount.incrementAndGet();
+            }
+            else
+            {
+                this.failedMessageCount.incrementAndGet();
+            }
+
+            if (onMessageSentCallback != null)
+            {
+                this.callbackDispatcher.dispatch(onMessageSentCallback, sendResult, deviceId);
+            }
+        };
+
+        this.connectionHandler.sendAsync(deviceId, moduleId, message, timeoutMilliseconds, countingCallback, context);
+    }
+
+    boolean isFireAndForgetEnabled()
+    {
+        return this.presettledMessageQueue != null;
+    }
+
+    void sendFireAndForget(String deviceId, String moduleId, Message message)
+    {
+        this.connectionHandler.sendPresettledAsync(deviceId, moduleId, message);
+    }
+
+    void sendBatchAsync(List<DeviceMessage> messages, int[] batchIndices, CloudToDeviceMessageBatch batch)
+    {
+        countBatchResults(batchIndices, batch);
+        this.connectionHandler.sendBatchAsync(messages, batchIndices, batch);
+    }
+
+    void sendBroadcastAsync(
+        CloudToDeviceBroadcastMessage broadcastMessage,
+        List<String> deviceIds,
+        List<String> messageIds,
+        int[] batchIndices,
+        CloudToDeviceMessageBatch batch)
+    {
+        countBatchResults(batchIndices, batch);
+        this.connectionHandler.sendBroadcastAsync(broadcastMessage, deviceIds, messageIds, batchIndices, batch);
+    }
+
+    private void countBatchResults(int[] batchIndices, CloudToDeviceMessageBatch batch)
+    {
+        // Counted once the whole batch completes rather than per message, so that the batch needs no callback per message
+        batch.getFuture().thenAccept(sendResults ->
+        {
+            long sentMessages = 0;
+            for (int batchIndex : batchIndices)
+            {
+                if (sendResults.get(batchIndex).wasSentSuccessfully())
+                {
+                    sentMessages++;
+                }
+            }
+
+            this.sentMessageCount.addAndGet(sentMessages);
+            this.failedMessageCount.addAndGet(batchIndices.length - sentMessages);
+        });
+    }
+
+    /**
+     * Open a message feedback receiver link on this connection for the provided client, and reopen it every time this
+     * connection is reopened until it is removed.
+     *
+     * @throws IllegalStateException if another client's receiver link is already open on this connection.
+     */
+    synchronized void addMessageFeedbackReceiver(
+        Object owner,
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> messageFeedbackReceivedCallback,
+        Executor callbackExecutor,
+        int prefetchCount,
+        ReceiverLinkMetrics receiverLinkMetrics,
+        Runnable onReceiverOpenedCallback)
+    {
+        if (this.messageFeedbackReceiverOwner != null && this.messageFeedbackReceiverOwner != owner)
+        {
+            throw new IllegalStateException("Another MessageFeedbackProcessorClient is already started on the connection of this MessagingClient");
+        }
+
+        this.messageFeedbackReceiverOwner = owner;
+        this.connectionHandler.setMessageFeedbackReceiver(messageFeedbackReceivedCallback, callbackExecutor, prefetchCount, receiverLinkMetrics, onReceiverOpenedCallback);
+    }
+
+    synchronized void removeMessageFeedbackReceiver(Object owner)
+    {
+        if (this.messageFeedbackReceiverOwner == owner)
+        {
+            this.messageFeedbackReceiverOwner = null;
+            this.connectionHandler.setMessageFeedbackReceiver(null, null, 0, null, null);
+        }
+    }
+
+    boolean isMessageFeedbackReceiverOpen()
+    {
+        return this.connectionHandler.isMessageFeedbackReceiverOpen();
+    }
+
+    /**
+     * Open a file upload notification receiver link on this connection for the provided client, and reopen it every
+     * time this connection is reopened until it is removed.
+     *
+     * @throws IllegalStateException if another client's receiver link is already open on this connection.
+     */
+    synchronized void addFileUploadNotificationReceiver(
+        Object owner,
+        Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> fileUploadNotificationReceivedCallback,
+        Executor callbackExecutor,
+        int prefetchCount,
+        ReceiverLinkMetrics receiverLinkMetrics,
+        Runnable onReceiverOpenedCallback)
+    {
+        if (this.fileUploadNotificationReceiverOwner != null && this.fileUploadNotificationReceiverOwner != owner)
+        {
+            throw new IllegalStateException("Another FileUploadNotificationProcessorClient is already started on the connection of this MessagingClient");
+        }
+
+        this.fileUploadNotificationReceiverOwner = owner;
+        this.connectionHandler.setFileUploadNotificationReceiver(fileUploadNotificationReceivedCallback, callbackExecutor, prefetchCount, receiverLinkMetrics, onReceiverOpenedCallback);
+    }
+
+    synchronized void removeFileUploadNotificationReceiver(Object owner)
+    {
+        if (this.fileUploadNotificationReceiverOwner == owner)
+        {
+            this.fileUploadNotificationReceiverOwner = null;
+            this.connectionHandler.setFileUploadNotificationReceiver(null, null, 0, null, null);
+        }
+    }
+
+    boolean isFileUploadNotificationReceiverOpen()
+    {
+        return this.connectionHandler.isFileUploadNotificationReceiverOpen();
+    }
+
+    int getQueuedMessageCount()
+    {
+        int queuedMessageCount = this.outgoingMessageQueue.size();
+        return this.presettledMessageQueue != null ? queuedMessageCount + this.presettledMessageQueue.size() : queuedMessageCount;
+    }
+
+    long getQueuedMessageBytes()
+    {
+        long queuedMessageBytes = this.outgoingMessageQueue.sizeInBytes();
+        return this.presettledMessageQueue != null ? queuedMessageBytes + this.presettledMessageQueue.sizeInBytes() : queuedMessageBytes;
+    }
+
+    int getInFlightMessageCount()
+    {
+        return this.connectionHandler.getInFlightMessageCount();
+    }
+
+    ConnectionOpenTimings getOpenTimings()
+    {
+        return this.connectionHandler.getOpenTimings();
+    }
+
+    MessagingClientConnectionStatus getStatus()
+    {
+        return new MessagingClientConnectionStatus(
+            this.index,
+            isOpen(),
+            isReconnecting(),
+            Math.max(0, this.openCount.get() - 1),
+            getQueuedMessageCount(),
+            getQueuedMessageBytes(),
+            getInFlightMessageCount(),
+            this.sentMessageCount.get(),
+            this.failedMessageCount.get(),
+            getOpenTimings());
+    }
+}
@@ -0,0 +1,89 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import com.microsoft.azure.sdk.iot.service.transport.amqps.ConnectionOpenTimings;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A snapshot of the health and message counts of one of the AMQP connections of a {@link MessagingClient}. See
+ * {@link MessagingClientOptions#getConnectionCount()}.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class MessagingClientConnectionStatus
+{
+    /**
+     * The index of this connection, from 0 to {@link MessagingClientOptions#getConnectionCount()} - 1. Messages for a
+     * given device are always sent over the same connection.
+     */
+    @Getter
+    private final int index;
+
+    private final boolean open;
+
+    private final boolean reconnecting;
+
+    /**
+     * The number of times this connection was reopened after it was lost.
+     */
+    @Getter
+    private final long reconnectCount;
+
+    /**
+     * The number of messages waiting in this connection's outgoing message queue.
+     */
+    @Getter
+    private final int queuedMessageCount;
+
+    /**
+     * The total size in bytes of the payloads of the messages waiting in this connection's outgoing message queue.
+     */
+    @Getter
+    private final long queuedMessageBytes;
+
+    /**
+     * The number of messages that have been sent over this connection, but not yet acknowledged by the service.
+     */
+    @Getter
+    private final int inFlightMessageCount;
+
+    /**
+     * The number of messages sent over this connection that the service acknowledged.
+     */
+    @Getter
+    private final long sentMessageCount;
+
+    /**
+     * The number of messages sent over this connection that failed to send.
+     */
+    @Getter
+    private final long failedMessageCount;
+
+    /**
+     * How long each phase of the latest successful open of this connection took, or null if it was never opened. See
+     * {@link MessagingClientOptions#isPipelinedLinkAttachEnabled()}.
+     */
+    @Getter
+    private final ConnectionOpenTimings openTimings;
+
+    /**
+     * @return true if this connection was open when this snapshot was taken, and false otherwise.
+     */
+    public boolean isOpen()
+    {
+        // opting not to use lombok getter so that the naming matches MessagingClient#isOpen()
+        return this.open;
+    }
+
+    /**
+     * @return true if this connection was lost and was being reopened automatically when this snapshot was taken, and
+     * false otherwise. See {@link MessagingClientOptions#isAutomaticReconnectEnabled()}.
+     */
+    public boolean isReconnecting()
+    {
+        return this.reconnecting;
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Getter;
 
 import javax.net.ssl.SSLContext;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import static com.microsoft.azure.sdk.iot.service.messaging.FileUploadNotificationProcessorClientOptions.DEFAULT_KEEP_ALIVE_INTERVAL_IN_SECONDS;
@@ -15,6 +16,13 @@ import static com.microsoft.azure.sdk.iot.service.messaging.FileUploadNotificati
 @Builder
 public final class MessagingClientOptions
 {
+    private static final int DEFAULT_QUEUE_OVERFLOW_TIMEOUT_MILLISECONDS = 60 * 1000;
+    private static final int DEFAULT_SLOW_CALLBACK_THRESHOLD_MILLISECONDS = 1000;
+    private static final int DEFAULT_INITIAL_RECONNECT_DELAY_MILLISECONDS = 1000;
+    private static final int DEFAULT_MAX_RECONNECT_DELAY_MILLISECONDS = 60 * 1000;
+    private static final long DEFAULT_LINGER_MAX_BATCH_BYTES = 64 * 1024;
+    private static final int DEFAULT_FEEDBACK_TIMEOUT_MILLISECONDS = 10 * 60 * 1000;
+
     /**
      * The options that specify what proxy to tunnel through. If null, no proxy will be used
      */
@@ -45,4 +53,207 @@ public final class MessagingClientOptions
     @Getter
     @Builder.Default
     private final int keepAliveInterval = DEFAULT_KEEP_ALIVE_INTERVAL_IN_SECONDS;
+
+    /**
+     * The maximum number of messages that can wait in the client's outgoing message queue for the service to grant
+     * link credit. If 0, the number of queued messages is not limited. By default, it is not limited.
+     */
+    @Getter
+    private final int maxQueuedMessages;
+
+    /**
+     * The maximum total size in bytes of the payloads of the messages that can wait in the client's outgoing message
+     * queue for the service to grant link credit. If 0, the size of the queue is not limited. By default, it is not limited.
+     */
+    @Getter
+    private final long maxQueuedBytes;
+
+    /**
+     * What to do when a message is sent while the outgoing message queue is full. The default is
+     * {@link QueueOverflowPolicy#BLOCK}.
+     */
+    @Getter
+    @Builder.Default
+    private final QueueOverflowPolicy queueOverflowPolicy = QueueOverflowPolicy.BLOCK;
+
+    /**
+     * The maximum number of milliseconds that a send waits for space in the outgoing message queue when the
+     * {@link #getQueueOverflowPolicy()} is {@link QueueOverflowPolicy#BLOCK}. If 0, it waits indefinitely. The default
+     * value is 60 seconds.
+     */
+    @Getter
+    @Builder.Default
+    private final int queueOverflowTimeoutMilliseconds = DEFAULT_QUEUE_OVERFLOW_TIMEOUT_MILLISECONDS;
+
+    /**
+     * The number of AMQP connections that the client opens to the service. Each connection has its own reactor thread
+     * and its own outgoing message queue, bounded by {@link #getMaxQueuedMessages()} and {@link #getMaxQueuedBytes()}.
+     * Messages are assigned to a connection by a hash of their device Id, so messages for a given device are always sent
+     * over the same connection and in order. The default value is 1.
+     */
+    @Getter
+    @Builder.Default
+    private final int connectionCount = 1;
+
+    /**
+     * The executor that encodes messages into their AMQP representation before they are handed to the reactor thread,
+     * which then only has to write the encoded bytes to the connection. By default this is null, and each connection's
+     * reactor thread encodes every message it sends, which limits throughput to what a single thread can encode.
+     *
+     * <p>To encode messages on the threads that send them, set this to {@code Runnable::run}. To encode them on a
+     * dedicated pool of threads, set this to that pool. Messages are still sent in the order they were sent in, no
+     * matter which thread finishes encoding them first. This client does not shut the executor down.</p>
+     */
+    @Getter
+    private final Executor messageEncodingExecutor;
+
+    /**
+     * The executor that executes the callbacks given to {@link MessagingClient#sendAsync(String, Message, Consumer, Object)}
+     * and the dependent stages of the futures returned by {@link MessagingClient#sendBatch(java.util.Collection)}. By
+     * default this is null, and callbacks execute on the reactor thread of the connection that the message was sent
+     * over, so a slow callback holds up all network IO of that connection until it returns. This client does not shut
+     * the executor down.
+     */
+    @Getter
+    private final Executor callbackExecutor;
+
+    /**
+     * Which callbacks execute in order relative to each other when they execute on {@link #getCallbackExecutor()}. The
+     * default is {@link SendResultCallbackOrdering#PER_DEVICE}.
+     */
+    @Getter
+    @Builder.Default
+    private final SendResultCallbackOrdering callbackOrdering = SendResultCallbackOrdering.PER_DEVICE;
+
+    /**
+     * Callbacks that take longer than this many milliseconds to execute are logged and counted by
+     * {@link MessagingClient#getSlowCallbackCount()}. If 0, callbacks are never considered slow. The default value is 1
+     * second.
+     */
+    @Getter
+    @Builder.Default
+    private final long slowCallbackThresholdMilliseconds = DEFAULT_SLOW_CALLBACK_THRESHOLD_MILLISECONDS;
+
+    /**
+     * If true, a connection that is lost after it was opened is reopened automatically, after a delay that grows with
+     * every failed attempt. Messages that were still queued when the connection was lost are sent once it is reopened,
+     * and sends made while it is being reopened throw an {@link IllegalStateException} just like sends made while the
+     * client is closed. The {@link #getErrorProcessor()} is still notified of every lost connection. By default this is
+     * false, and a lost connection stays closed until {@link MessagingClient#open()} is called again.
+     */
+    @Getter
+    private final boolean automaticReconnectEnabled;
+
+    /**
+     * The longest possible delay before the first attempt to reopen a lost connection. The longest possible delay
+     * doubles with every failed attempt, up to {@link #getMaxReconnectDelayMilliseconds()}, and the actual delay is a
+     * random value between 0 and that so that clients that lost their connections at the same time don't all try to
+     * reopen them at the same time. The default value is 1 second.
+     */
+    @Getter
+    @Builder.Default
+    private final int initialReconnectDelayMilliseconds = DEFAULT_INITIAL_RECONNECT_DELAY_MILLISECONDS;
+
+    /**
+     * The longest possible delay between two attempts to reopen a lost connection. The default value is 60 seconds.
+     */
+    @Getter
+    @Builder.Default
+    private final int maxReconnectDelayMilliseconds = DEFAULT_MAX_RECONNECT_DELAY_MILLISECONDS;
+
+    /**
+     * The number of failed attempts to reopen a lost connection after which the client gives up, and fails the messages
+     * that are still queued. If 0, the client keeps trying until it is closed. Attempts that fail because the service
+     * rejected the client's credentials are never retried. By default, the number of attempts is not limited.
+     */
+    @Getter
+    private final int maxReconnectAttempts;
+
+    /**
+     * If true, messages that were sent but not yet acknowledged by the service when their connection was lost are sent
+     * again once it is reopened, ahead of the messages that are still queued and unless they are past their send
+     * timeout or have expired by then. Since the service may have received them before the connection was lost, a
+     * device may then receive some of them twice. If false, these messages fail. By default this is false.
+     */
+    @Getter
+    private final boolean replayUnacknowledgedMessages;
+
+    /**
+     * If true, each connection opens a second link to the service that {@link MessagingClient#sendFireAndForget(String, Message)}
+     * sends messages over without waiting for the service to acknowledge them. That link has an outgoing message queue
+     * of its own, with the same limits as the queue of the link that acknowledged messages are sent over. By default
+     * this is false, and fire and forget sends throw an {@link IllegalStateException}.
+     */
+    @Getter
+    private final boolean fireAndForgetSendsEnabled;
+
+    /**
+     * If true, each connection attaches the links that messages are sent over right after sending its authentication
+     * token to the service, rather than waiting for the service to accept the token first. This saves a network round
+     * trip each time a connection is opened. {@link MessagingClient#open()} still only returns once the service has
+     * accepted the token, and fails if it was rejected. By default this is false. See
+     * {@link MessagingClientConnectionStatus#getOpenTimings()} for how long each phase of opening a connection took.
+     */
+    @Getter
+    private final boolean pipelinedLinkAttachEnabled;
+
+    /**
+     * The longest time in milliseconds that a sent message waits in its connection's outgoing message queue for more
+     * messages to be sent along with it. Messages that are written to the connection together go out in fewer, larger
+     * network writes and TLS records, which raises the rate at which messages can be sent when many threads send at
+     * once, at the cost of up to this much latency per message. Messages stop waiting early once the payloads in the
+     * queue add up to {@link #getLingerMaxBatchBytes()}. If 0, messages are sent as soon as possible. By default this
+     * is 0.
+     */
+    @Getter
+    private final int lingerMilliseconds;
+
+    /**
+     * The total size in bytes of the payloads of queued messages at which they are sent without waiting for
+     * {@link #getLingerMilliseconds()} to pass. Only used if {@link #getLingerMilliseconds()} is greater than 0. The
+     * default value is 64 KB.
+     */
+    @Getter
+    @Builder.Default
+    private final long lingerMaxBatchBytes = DEFAULT_LINGER_MAX_BATCH_BYTES;
+
+    /**
+     * The maximum number of messages sent with {@link MessagingClient#sendAndAwaitFeedback(String, Message)} whose
+     * feedback can be awaited at once. Once this many messages await feedback, further sends that await feedback throw
+     * an {@link IllegalStateException}. The memory needed to track this many messages, under 100 bytes per message, is
+     * allocated when the client is constructed. If 0, sends that await feedback are disabled and throw an
+     * {@link IllegalStateException}. By default this is 0.
+     *
+     * <p>The client doesn't receive message feedback itself unless {@link #isAwaitedFeedbackReceiverEnabled()}, so
+     * the feedback batches that a {@link MessageFeedbackProcessorClient} receives must be passed to
+     * {@link MessagingClient#completeAwaitedFeedback(FeedbackBatch)}.</p>
+     */
+    @Getter
+    private final int maxAwaitedFeedbackMessages;
+
+    /**
+     * If true, and {@link #getMaxAwaitedFeedbackMessages()} is greater than 0, the client receives the message feedback
+     * of the whole hub over its first connection and completes the futures of messages sent with
+     * {@link MessagingClient#sendAndAwaitFeedback(String, Message)} itself. The service delivers each feedback batch of
+     * a hub to only one of its feedback receivers, and the client completes every batch it receives, including the
+     * records of messages that it didn't send. So only enable this if no {@link MessageFeedbackProcessorClient}, and no
+     * other client with this enabled, receives feedback for the same hub. If false, the futures only complete for
+     * feedback batches that are passed to {@link MessagingClient#completeAwaitedFeedback(FeedbackBatch)}. By default
+     * this is false.
+     */
+    @Getter
+    private final boolean awaitedFeedbackReceiverEnabled;
+
+    /**
+     * How long in milliseconds after a message sent with {@link MessagingClient#sendAndAwaitFeedback(String, Message)}
+     * expires the client keeps waiting for its feedback. After that, the future of the message completes exceptionally
+     * with an {@link com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageTimeoutException}. Messages without an
+     * {@link Message#getExpiryTimeUtc()} are assumed to expire one hour after they are sent, which is the default time
+     * to live of cloud to device messages. The client looks for messages whose wait is over as it sends messages and
+     * receives feedback, so if it does neither for a while, their futures complete late. The default value is 10
+     * minutes.
+     */
+    @Getter
+    @Builder.Default
+    private final int feedbackTimeoutMilliseconds = DEFAULT_FEEDBACK_TIMEOUT_MILLISECONDS;
 }
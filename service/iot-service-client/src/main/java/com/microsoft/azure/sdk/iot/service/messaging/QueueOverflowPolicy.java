@@ -0,0 +1,30 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+/**
+ * What a {@link MessagingClient} does when a message is sent while its outgoing message queue is full. See
+ * {@link MessagingClientOptions#getMaxQueuedMessages()} and {@link MessagingClientOptions#getMaxQueuedBytes()}.
+ */
+public enum QueueOverflowPolicy
+{
+    /**
+     * The sending thread waits for space in the queue for up to {@link MessagingClientOptions#getQueueOverflowTimeoutMilliseconds()}
+     * milliseconds. If there is still no space after that, the message fails to send with a
+     * {@link com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageQueueFullException}.
+     */
+    BLOCK,
+
+    /**
+     * The message fails to send right away with a
+     * {@link com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageQueueFullException}.
+     */
+    FAIL_FAST,
+
+    /**
+     * The oldest queued messages are removed from the queue to make space for the new message. Each removed message
+     * fails to send with a {@link com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageQueueFullException}.
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,318 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Executes the {@link SendResult} callbacks of a {@link MessagingClient}, either on the thread that reports the result
+ * (usually a reactor thread) or on a user provided executor so that slow callbacks don't hold up network IO. Also
+ * tracks how long callbacks take, so that callbacks that exceed a time budget can be flagged. Callbacks that are still
+ * executing are checked against the budget whenever a callback is dispatched or the counters are read, so that a
+ * callback that never returns is flagged too.
+ */
+@Slf4j
+final class SendResultCallbackDispatcher
+{
+    // Callbacks that must be ordered relative to each other are assigned to one of these by a hash of their ordering
+    // key. Unrelated keys may share a stripe, which only costs some concurrency.
+    private static final int ORDERED_STRIPE_COUNT = 64;
+
+    private final Executor callbackExecutor;
+    private final SendResultCallbackOrdering ordering;
+    private final long slowCallbackThresholdNanoseconds;
+    private final SerialExecutor[] orderedStripes;
+
+    private final AtomicLong slowCallbackCount = new AtomicLong(0);
+    private final AtomicLong maxCallbackDurationNanoseconds = new AtomicLong(0);
+
+    // Only tracked if there is a slow callback threshold
+    private final Set<RunningCallback> runningCallbacks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param callbackExecutor the executor to execute callbacks on. If null, callbacks execute on the thread that
+     * reports the result.
+     * @param ordering which callbacks must execute in order. Ignored if callbackExecutor is null, since callbacks then
+     * always execute in order.
+     * @param slowCallbackThresholdMilliseconds callbacks that take longer than this are counted and logged. If 0,
+     * callbacks are never considered slow.
+     */
+    SendResultCallbackDispatcher(Executor callbackExecutor, SendResultCallbackOrdering ordering, long slowCallbackThresholdMilliseconds)
+    {
+        Objects.requireNonNull(ordering, "ordering cannot be null");
+
+        if (slowCallbackThresholdMilliseconds < 0)
+        {
+            throw new IllegalArgumentException("slowCallbackThresholdMilliseconds must be non-negative");
+        }
+
+        this.callbackExecutor = callbackExecutor;
+        this.ordering = ordering;
+        this.slowCallbackThresholdNanoseconds = TimeUnit.MILLISECONDS.toNanos(slowCallbackThresholdMilliseconds);
+
+        if (callbackExecutor != null && ordering != SendResultCallbackOrdering.NONE)
+        {
+            this.orderedStripes = new SerialExecutor[ORDERED_STRIPE_COUNT];
+            for (int i = 0; i < ORDERED_STRIPE_COUNT; i++)
+            {
+                this.orderedStripes[i] = new SerialExecutor(callbackExecutor);
+            }
+        }
+        else
+        {
+            this.orderedStripes = null;
+        }
+    }
+
+    /**
+     * Execute a callback with the result of sending a message.
+     *
+     * @param callback the callback to execute.
+     * @param sendResult the result to give the callback.
+     * @param deviceId the Id of the device that the message was sent to.
+     */
+    void dispatch(Consumer<SendResult> callback, SendResult sendResult, String deviceId)
+    {
+        flagOverdueCallbacks();
+
+        Runnable task = () -> executeTimed(callback, sendResult);
+
+        if (this.callbackExecutor == null)
+        {
+            task.run();
+            return;
+        }
+
+        Executor executor = this.callbackExecutor;
+        if (this.orderedStripes != null)
+        {
+            Object orderingKey = this.ordering == SendResultCallbackOrdering.PER_DEVICE ? deviceId : sendResult.getCorrelationId();
+            executor = this.orderedStripes[Math.floorMod(Objects.hashCode(orderingKey), ORDERED_STRIPE_COUNT)];
+        }
+
+        try
+        {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // The callback must still execute, or the sender may wait forever for its result
+            log.debug("Callback executor rejected a send result callback, executing it on the current thread instead", e);
+            task.run();
+        }
+    }
+
+    /**
+     * @return a future that completes like the given one, but whose dependent stages execute on the callback executor
+     * rather than on the thread that completes the given future.
+     */
+    <T> CompletableFuture<T> completeOnCallbackExecutor(CompletableFuture<T> future)
+    {
+        if (this.callbackExecutor == null)
+        {
+            return future;
+        }
+
+        CompletableFuture<T> callbackFuture = new CompletableFuture<>();
+        future.whenComplete((result, throwable) ->
+        {
+            Runnable completion = () ->
+            {
+                if (throwable != null)
+                {
+                    callbackFuture.completeExceptionally(throwable);
+                }
+                else
+                {
+                    callbackFuture.complete(result);
+                }
+            };
+
+            try
+            {
+                this.callbackExecutor.execute(completion);
+            }
+            catch (RejectedExecutionException e)
+            {
+                completion.run();
+            }
+        });
+
+        return callbackFuture;
+    }
+
+    long getSlowCallbackCount()
+    {
+        flagOverdueCallbacks();
+        return this.slowCallbackCount.get();
+    }
+
+    long getMaxCallbackDurationMilliseconds()
+    {
+        flagOverdueCallbacks();
+        return TimeUnit.NANOSECONDS.toMillis(this.maxCallbackDurationNanoseconds.get());
+    }
+
+    private void executeTimed(Consumer<SendResult> callback, SendResult sendResult)
+    {
+        RunningCallback runningCallback = new RunningCallback(sendResult.getCorrelationId());
+        if (this.slowCallbackThresholdNanoseconds > 0)
+        {
+            this.runningCallbacks.add(runningCallback);
+        }
+
+        try
+        {
+            callback.accept(sendResult);
+        }
+        catch (Exception e)
+        {
+            log.warn("Send result callback for message with correlation id {} threw an exception", sendResult.getCorrelationId(), e);
+        }
+        finally
+        {
+            this.runningCallbacks.remove(runningCallback);
+
+            long duration = System.nanoTime() - runningCallback.startTime;
+            this.maxCallbackDurationNanoseconds.accumulateAndGet(duration, Math::max);
+
+            if (this.slowCallbackThresholdNanoseconds > 0 && duration > this.slowCallbackThresholdNanoseconds)
+            {
+                if (runningCallback.flagAsSlow())
+                {
+                    this.slowCallbackCount.incrementAndGet();
+                    log.warn(
+                        "Send result callback for message with correlation id {} took {} milliseconds, which exceeds the slow callback threshold of {} milliseconds",
+                        sendResult.getCorrelationId(),
+                        TimeUnit.NANOSECONDS.toMillis(duration),
+                        TimeUnit.NANOSECONDS.toMillis(this.slowCallbackThresholdNanoseconds));
+                }
+                else
+                {
+                    log.info(
+                        "Send result callback for message with correlation id {} returned after {} milliseconds",
+                        sendResult.getCorrelationId(),
+                        TimeUnit.NANOSECONDS.toMillis(duration));
+                }
+            }
+        }
+    }
+
+    // Counts and logs each callback that has been executing for longer than the slow callback threshold
+    private void flagOverdueCallbacks()
+    {
+        if (this.runningCallbacks.isEmpty())
+        {
+            return;
+        }
+
+        long now = System.nanoTime();
+        for (RunningCallback runningCallback : this.runningCallbacks)
+        {
+            long elapsed = now - runningCallback.startTime;
+            this.maxCallbackDurationNanoseconds.accumulateAndGet(elapsed, Math::max);
+
+            if (elapsed > this.slowCallbackThresholdNanoseconds && runningCallback.flagAsSlow())
+            {
+                this.slowCallbackCount.incrementAndGet();
+                log.warn(
+                    "Send result callback for message with correlation id {} has been executing for {} milliseconds, which exceeds the slow callback threshold of {} milliseconds",
+                    runningCallback.correlationId,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    TimeUnit.NANOSECONDS.toMillis(this.slowCallbackThresholdNanoseconds));
+            }
+        }
+    }
+
+    private static final class RunningCallback
+    {
+        private final String correlationId;
+        private final long startTime = System.nanoTime();
+        private final AtomicBoolean flaggedAsSlow = new AtomicBoolean(false);
+
+        RunningCallback(String correlationId)
+        {
+            this.correlationId = correlationId;
+        }
+
+        // True only the first time, so a callback is counted once whether it was caught while executing or after it returned
+        boolean flagAsSlow()
+        {
+            return this.flaggedAsSlow.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * Executes tasks one at a time, in the order they were submitted, on a possibly concurrent executor.
+     */
+    private static final class SerialExecutor implements Executor
+    {
+        private final Executor delegate;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        SerialExecutor(Executor delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable task)
+        {
+            this.tasks.add(task);
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if (this.scheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    this.delegate.execute(this::drain);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    log.debug("Callback executor rejected ordered send result callbacks, executing them on the current thread instead", e);
+                    drain();
+                }
+            }
+        }
+
+        private void drain()
+        {
+            try
+            {
+                Runnable task;
+                while ((task = this.tasks.poll()) != null)
+                {
+                    task.run();
+                }
+            }
+            finally
+            {
+                this.scheduled.set(false);
+            }
+
+            // A task may have been added after the queue was found empty, but before it was marked as unscheduled
+            if (!this.tasks.isEmpty())
+            {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+/**
+ * Which {@link SendResult} callbacks a {@link MessagingClient} executes in order, relative to each other, when the
+ * callbacks are executed by {@link MessagingClientOptions#getCallbackExecutor()}.
+ */
+public enum SendResultCallbackOrdering
+{
+    /**
+     * Callbacks may execute concurrently and in any order.
+     */
+    NONE,
+
+    /**
+     * Callbacks for messages sent to the same device execute one at a time, in the order that the service acknowledged
+     * the messages. Callbacks for different devices may execute concurrently.
+     */
+    PER_DEVICE,
+
+    /**
+     * Callbacks for messages with the same correlation Id execute one at a time, in the order that the service
+     * acknowledged the messages. Callbacks for other correlation Ids may execute concurrently.
+     */
+    PER_CORRELATION_ID
+}
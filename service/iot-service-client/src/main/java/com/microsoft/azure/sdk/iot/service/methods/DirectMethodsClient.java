@@ -9,11 +9,12 @@ import com.google.gson.GsonBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.ProxyOptions;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.methods.serializers.MethodParser;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.AsyncHttpRequestExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -24,6 +25,8 @@ import java.net.Proxy;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest.REQUEST_ID;
 
@@ -33,13 +36,15 @@ import static com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest.REQ
 @Slf4j
 public final class DirectMethodsClient
 {
-    private Integer requestId = 0;
+    private final AtomicInteger requestId = new AtomicInteger(0);
 
     private final DirectMethodsClientOptions options;
+    private final AsyncHttpRequestExecutor asyncExecutor;
     private final String hostName;
     private TokenCredentialCache credentialCache;
     private AzureSasCredential azureSasCredential;
     private IotHubConnectionString iotHubConnectionString;
+    private IotHubServiceSasTokenCache sasTokenCache;
 
     /**
      * Create a DirectMethodsClient instance from the information in the connection string.
@@ -67,7 +72,9 @@ public final class DirectMethodsClient
 
         this.hostName = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString).getHostName();
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         this.iotHubConnectionString = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
+        this.sasTokenCache = IotHubServiceSasTokenCache.getInstance(this.iotHubConnectionString);
         commonConstructorSetup();
     }
 
@@ -101,7 +108,8 @@ public final class DirectMethodsClient
         }
 
         this.options = options;
-        this.credentialCache = new TokenCredentialCache(credential);
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
+        this.credentialCache = TokenCredentialCache.getInstance(credential);
         this.hostName = hostName;
         commonConstructorSetup();
 
@@ -135,6 +143,7 @@ public final class DirectMethodsClient
         }
 
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         this.azureSasCredential = azureSasCredential;
         this.hostName = hostName;
         commonConstructorSetup();
@@ -238,6 +247,66 @@ public final class DirectMethodsClient
         return invokeMethod(url, methodName, options);
     }
 
+    /**
+     * Asynchronously invoke a direct method on the specified device. See {@link #invoke(String, String)} for more
+     * details.
+     *
+     * @param deviceId The id of the device to invoke the method on.
+     * @param methodName The name of the method to invoke.
+     * @return A future that completes with the device's response to the method, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<DirectMethodResponse> invokeAsync(String deviceId, String methodName)
+    {
+        return this.asyncExecutor.submit(() -> invoke(deviceId, methodName));
+    }
+
+    /**
+     * Asynchronously invoke a direct method on the specified device. See {@link #invoke(String, String,
+     * DirectMethodRequestOptions)} for more details.
+     *
+     * @param deviceId The id of the device to invoke the method on.
+     * @param methodName The name of the method to invoke.
+     * @param options The optional parameters to the method invocation. May not be null.
+     * @return A future that completes with the device's response to the method, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<DirectMethodResponse> invokeAsync(String deviceId, String methodName, DirectMethodRequestOptions options)
+    {
+        return this.asyncExecutor.submit(() -> invoke(deviceId, methodName, options));
+    }
+
+    /**
+     * Asynchronously invoke a direct method on the specified module. See {@link #invoke(String, String, String)} for
+     * more details.
+     *
+     * @param deviceId The id of the device that the module belongs to.
+     * @param moduleId The id of the module to invoke the method on.
+     * @param methodName The name of the method to invoke.
+     * @return A future that completes with the module's response to the method, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<DirectMethodResponse> invokeAsync(String deviceId, String moduleId, String methodName)
+    {
+        return this.asyncExecutor.submit(() -> invoke(deviceId, moduleId, methodName));
+    }
+
+    /**
+     * Asynchronously invoke a direct method on the specified module. See {@link #invoke(String, String, String,
+     * DirectMethodRequestOptions)} for more details.
+     *
+     * @param deviceId The id of the device that the module belongs to.
+     * @param moduleId The id of the module to invoke the method on.
+     * @param methodName The name of the method to invoke.
+     * @param options The optional parameters to the method invocation. May not be null.
+     * @return A future that completes with the module's response to the method, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<DirectMethodResponse> invokeAsync(String deviceId, String moduleId, String methodName, DirectMethodRequestOptions options)
+    {
+        return this.asyncExecutor.submit(() -> invoke(deviceId, moduleId, methodName, options));
+    }
+
     private DirectMethodResponse invokeMethod(URL url, String methodName, DirectMethodRequestOptions options)
             throws IotHubException, IOException
     {
@@ -261,11 +330,13 @@ public final class DirectMethodsClient
             HttpMethod.POST,
             json.getBytes(StandardCharsets.UTF_8),
             this.getAuthenticationToken(),
-            proxy);
+            proxy,
+            this.options.getHttpConnectionFactory());
 
         httpRequest.setReadTimeoutSeconds(Math.max(this.options.getHttpReadTimeoutSeconds(), options.getMethodResponseTimeoutSeconds()));
         httpRequest.setConnectTimeoutSeconds(Math.max(this.options.getHttpConnectTimeoutSeconds(), options.getMethodConnectTimeoutSeconds()));
-        httpRequest.setHeaderField(REQUEST_ID, String.valueOf(requestId++));
+        httpRequest.setHeaderField(REQUEST_ID, String.valueOf(requestId.getAndIncrement()));
+        this.asyncExecutor.registerRequest(httpRequest);
 
         HttpResponse response = httpRequest.send();
 
@@ -289,6 +360,6 @@ public final class DirectMethodsClient
             return this.azureSasCredential.getSignature();
         }
 
-        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+        return this.sasTokenCache.getTokenString();
     }
 }
@@ -16,6 +16,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -41,6 +43,11 @@ public class JobQueryResponse
     final ScheduledJobStatus jobStatus;
 
     JobQueryResponse(String json, QueryClient queryClient, String originalQuery)
+    {
+        this(new StringReader(json), queryClient, originalQuery);
+    }
+
+    JobQueryResponse(Reader json, QueryClient queryClient, String originalQuery)
     {
         gson = new GsonBuilder().disableHtmlEscaping().create();
 
@@ -60,6 +67,11 @@ public class JobQueryResponse
     }
 
     JobQueryResponse(String json, QueryClient queryClient, ScheduledJobType jobType, ScheduledJobStatus jobStatus)
+    {
+        this(new StringReader(json), queryClient, jobType, jobStatus);
+    }
+
+    JobQueryResponse(Reader json, QueryClient queryClient, ScheduledJobType jobType, ScheduledJobStatus jobStatus)
     {
         gson = new GsonBuilder().disableHtmlEscaping().create();
 
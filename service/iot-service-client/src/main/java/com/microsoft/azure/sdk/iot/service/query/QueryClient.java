@@ -7,22 +7,25 @@ import com.azure.core.credential.AzureSasCredential;
 import com.azure.core.credential.TokenCredential;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.jobs.ScheduledJobStatus;
 import com.microsoft.azure.sdk.iot.service.jobs.ScheduledJobType;
 import com.microsoft.azure.sdk.iot.service.query.serializers.QueryRequestParser;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.AsyncHttpRequestExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.Proxy;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public final class QueryClient
@@ -34,8 +37,10 @@ public final class QueryClient
     private TokenCredentialCache credentialCache;
     private AzureSasCredential azureSasCredential;
     private IotHubConnectionString iotHubConnectionString;
+    private IotHubServiceSasTokenCache sasTokenCache;
 
     private final QueryClientOptions options;
+    private final AsyncHttpRequestExecutor asyncExecutor;
 
     /**
      * Constructor to create instance from connection string
@@ -67,9 +72,11 @@ public final class QueryClient
 
         this.iotHubConnectionString =
             IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
+        this.sasTokenCache = IotHubServiceSasTokenCache.getInstance(this.iotHubConnectionString);
 
         this.hostName = iotHubConnectionString.getHostName();
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         commonConstructorSetup();
     }
 
@@ -103,7 +110,8 @@ public final class QueryClient
         }
 
         this.options = options;
-        this.credentialCache = new TokenCredentialCache(credential);
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
+        this.credentialCache = TokenCredentialCache.getInstance(credential);
         this.hostName = hostName;
         commonConstructorSetup();
     }
@@ -136,6 +144,7 @@ public final class QueryClient
         }
 
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         this.azureSasCredential = azureSasCredential;
         this.hostName = hostName;
         commonConstructorSetup();
@@ -192,13 +201,15 @@ public final class QueryClient
             HttpMethod.POST,
             payload,
             getAuthenticationToken(),
-            proxy);
+            proxy,
+            this.options.getHttpConnectionFactory());
 
         setCommonHttpHeaders(httpRequest, options);
+        this.asyncExecutor.registerRequest(httpRequest);
 
         HttpResponse httpResponse = httpRequest.send();
 
-        String responsePayload = new String(httpResponse.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader responsePayload = new InputStreamReader(httpResponse.getBodyAsInputStream(), StandardCharsets.UTF_8);
         TwinQueryResponse twinQueryResponse = new TwinQueryResponse(responsePayload, this, query);
 
         String continuationToken = httpResponse.getHeaderFields().get(CONTINUATION_TOKEN_KEY); // may be null
@@ -249,13 +260,15 @@ public final class QueryClient
             HttpMethod.POST,
             payload,
             getAuthenticationToken(),
-            proxy);
+            proxy,
+            this.options.getHttpConnectionFactory());
 
         setCommonHttpHeaders(httpRequest, options);
+        this.asyncExecutor.registerRequest(httpRequest);
 
         HttpResponse httpResponse = httpRequest.send();
 
-        String responsePayload = new String(httpResponse.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader responsePayload = new InputStreamReader(httpResponse.getBodyAsInputStream(), StandardCharsets.UTF_8);
         JobQueryResponse jobQueryResponse = new JobQueryResponse(responsePayload, this, query);
 
         String continuationToken = httpResponse.getHeaderFields().get(CONTINUATION_TOKEN_KEY); // may be null
@@ -306,13 +319,15 @@ public final class QueryClient
             HttpMethod.GET,
             new byte[0],
             getAuthenticationToken(),
-            proxy);
+            proxy,
+            this.options.getHttpConnectionFactory());
 
         setCommonHttpHeaders(httpRequest, options);
+        this.asyncExecutor.registerRequest(httpRequest);
 
         HttpResponse httpResponse = httpRequest.send();
 
-        String responsePayload = new String(httpResponse.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader responsePayload = new InputStreamReader(httpResponse.getBodyAsInputStream(), StandardCharsets.UTF_8);
         JobQueryResponse jobQueryResponse = new JobQueryResponse(responsePayload, this, jobType, jobStatus);
 
         String continuationToken = httpResponse.getHeaderFields().get(CONTINUATION_TOKEN_KEY); // may be null
@@ -363,13 +378,15 @@ public final class QueryClient
             HttpMethod.POST,
             payload,
             getAuthenticationToken(),
-            proxy);
+            proxy,
+            this.options.getHttpConnectionFactory());
 
         setCommonHttpHeaders(httpRequest, options);
+        this.asyncExecutor.registerRequest(httpRequest);
 
         HttpResponse httpResponse = httpRequest.send();
 
-        String responsePayload = new String(httpResponse.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader responsePayload = new InputStreamReader(httpResponse.getBodyAsInputStream(), StandardCharsets.UTF_8);
         RawQueryResponse rawQueryResponse = new RawQueryResponse(responsePayload, this, query);
 
         String continuationToken = httpResponse.getHeaderFields().get(CONTINUATION_TOKEN_KEY); // may be null
@@ -378,6 +395,48 @@ public final class QueryClient
         return rawQueryResponse;
     }
 
+    /**
+     * Asynchronously query from your IoT Hub's set of Twins. See {@link #queryTwins(String, QueryPageOptions)} for
+     * more details.
+     *
+     * @param query The IoT Hub query for selecting which twins to get.
+     * @param options The optional parameters used to decide how the query's results are returned. May not be null.
+     * @return A future that completes with the first page of the queried twins, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<TwinQueryResponse> queryTwinsAsync(String query, QueryPageOptions options)
+    {
+        return this.asyncExecutor.submit(() -> queryTwins(query, options));
+    }
+
+    /**
+     * Asynchronously query from your IoT Hub's set of scheduled jobs. See {@link #queryJobs(String, QueryPageOptions)}
+     * for more details.
+     *
+     * @param query The IoT Hub query for selecting which jobs to get.
+     * @param options The optional parameters used to decide how the query's results are returned. May not be null.
+     * @return A future that completes with the first page of the queried jobs, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<JobQueryResponse> queryJobsAsync(String query, QueryPageOptions options)
+    {
+        return this.asyncExecutor.submit(() -> queryJobs(query, options));
+    }
+
+    /**
+     * Asynchronously query miscellaneous data from your IoT Hub. See {@link #queryRaw(String, QueryPageOptions)} for
+     * more details.
+     *
+     * @param query The IoT Hub query for selecting what information should be returned.
+     * @param options The optional parameters used to decide how the query's results are returned. May not be null.
+     * @return A future that completes with the first page of the query results, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<RawQueryResponse> queryRawAsync(String query, QueryPageOptions options)
+    {
+        return this.asyncExecutor.submit(() -> queryRaw(query, options));
+    }
+
     private String getAuthenticationToken()
     {
         // Three different constructor types for this class, and each type provides either a TokenCredential implementation,
@@ -392,7 +451,7 @@ public final class QueryClient
             return this.azureSasCredential.getSignature();
         }
 
-        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+        return this.sasTokenCache.getTokenString();
     }
 
     private void setCommonHttpHeaders(HttpRequest httpRequest, QueryPageOptions options)
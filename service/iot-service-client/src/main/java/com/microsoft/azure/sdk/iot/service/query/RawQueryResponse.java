@@ -14,6 +14,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -36,6 +38,11 @@ public class RawQueryResponse
     final String originalQuery;
 
     public RawQueryResponse(String json, QueryClient queryClient, String originalQuery)
+    {
+        this(new StringReader(json), queryClient, originalQuery);
+    }
+
+    RawQueryResponse(Reader json, QueryClient queryClient, String originalQuery)
     {
         gson = new GsonBuilder().disableHtmlEscaping().create();
 
@@ -15,6 +15,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -38,6 +40,11 @@ public class TwinQueryResponse
     final String originalQuery;
 
     public TwinQueryResponse(String json, QueryClient queryClient, String originalQuery)
+    {
+        this(new StringReader(json), queryClient, originalQuery);
+    }
+
+    TwinQueryResponse(Reader json, QueryClient queryClient, String originalQuery)
     {
         gson = new GsonBuilder().disableHtmlEscaping().create();
 
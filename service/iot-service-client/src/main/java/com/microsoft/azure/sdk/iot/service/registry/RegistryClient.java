@@ -10,7 +10,7 @@ import com.azure.core.credential.TokenCredential;
 import com.google.gson.Gson;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
@@ -18,6 +18,7 @@ import com.microsoft.azure.sdk.iot.service.registry.serializers.JobPropertiesPar
 import com.microsoft.azure.sdk.iot.service.registry.serializers.RegistryIdentityParser;
 import com.microsoft.azure.sdk.iot.service.registry.serializers.RegistryStatisticsParser;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.AsyncHttpRequestExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -25,12 +26,14 @@ import com.microsoft.azure.sdk.iot.service.twin.TwinClient;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.Proxy;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Use the RegistryClient to manage the identity registry in IoT hubs.
@@ -43,8 +46,10 @@ public final class RegistryClient
     private TokenCredentialCache credentialCache;
     private AzureSasCredential azureSasCredential;
     private IotHubConnectionString iotHubConnectionString;
+    private IotHubServiceSasTokenCache sasTokenCache;
 
     private final RegistryClientOptions options;
+    private final AsyncHttpRequestExecutor asyncExecutor;
 
     /**
      * Constructor to create instance from connection string
@@ -76,9 +81,11 @@ public final class RegistryClient
 
         this.iotHubConnectionString =
                 IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
+        this.sasTokenCache = IotHubServiceSasTokenCache.getInstance(this.iotHubConnectionString);
 
         this.hostName = iotHubConnectionString.getHostName();
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         commonConstructorSetup();
     }
 
@@ -112,7 +119,8 @@ public final class RegistryClient
         }
 
         this.options = options;
-        this.credentialCache = new TokenCredentialCache(credential);
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
+        this.credentialCache = TokenCredentialCache.getInstance(credential);
         this.hostName = hostName;
         commonConstructorSetup();
     }
@@ -145,6 +153,7 @@ public final class RegistryClient
         }
 
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         this.azureSasCredential = azureSasCredential;
         this.hostName = hostName;
         commonConstructorSetup();
@@ -180,9 +189,9 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
 
-        return new Device(new RegistryIdentityParser(bodyStr));
+        return new Device(RegistryIdentityParser.fromJson(body));
     }
 
     /**
@@ -208,9 +217,9 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
 
-        return new Device(new RegistryIdentityParser(bodyStr));
+        return new Device(RegistryIdentityParser.fromJson(body));
     }
 
     /**
@@ -237,9 +246,9 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
 
-        return new Device(new RegistryIdentityParser(bodyStr));
+        return new Device(RegistryIdentityParser.fromJson(body));
     }
 
     /**
@@ -318,8 +327,8 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        return new RegistryStatistics(new RegistryStatisticsParser(bodyStr));
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
+        return new RegistryStatistics(RegistryStatisticsParser.fromJson(body));
     }
 
     /**
@@ -348,9 +357,9 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
 
-        return new Module(new RegistryIdentityParser(bodyStr));
+        return new Module(RegistryIdentityParser.fromJson(body));
     }
 
     /**
@@ -382,9 +391,9 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
 
-        return new Module(new RegistryIdentityParser(bodyStr));
+        return new Module(RegistryIdentityParser.fromJson(body));
     }
 
     /**
@@ -410,10 +419,10 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
 
         Gson gson = new Gson();
-        RegistryIdentityParser[] registryIdentityParsers = gson.fromJson(bodyStr, RegistryIdentityParser[].class);
+        RegistryIdentityParser[] registryIdentityParsers = gson.fromJson(body, RegistryIdentityParser[].class);
 
         List<Module> moduleList = new ArrayList<>();
         for (int i = 0; i < registryIdentityParsers.length; i++)
@@ -448,9 +457,9 @@ public final class RegistryClient
 
         IotHubExceptionManager.httpResponseVerification(response);
 
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
 
-        return new Module(new RegistryIdentityParser(bodyStr));
+        return new Module(RegistryIdentityParser.fromJson(body));
     }
 
     /**
@@ -658,10 +667,117 @@ public final class RegistryClient
         return processJobResponse(response);
     }
 
+    /**
+     * Asynchronously add a device to the IoT hub registry. See {@link #addDevice(Device)} for more details.
+     *
+     * @param device The device to add.
+     * @return A future that completes with the added device, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Device> addDeviceAsync(Device device)
+    {
+        return this.asyncExecutor.submit(() -> addDevice(device));
+    }
+
+    /**
+     * Asynchronously get a device from the IoT hub registry. See {@link #getDevice(String)} for more details.
+     *
+     * @param deviceId The id of the device to get.
+     * @return A future that completes with the retrieved device, or that completes exceptionally with the exception
+     * the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Device> getDeviceAsync(String deviceId)
+    {
+        return this.asyncExecutor.submit(() -> getDevice(deviceId));
+    }
+
+    /**
+     * Asynchronously update a device in the IoT hub registry. See {@link #updateDevice(Device)} for more details.
+     *
+     * @param device The device to update.
+     * @return A future that completes with the updated device, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Device> updateDeviceAsync(Device device)
+    {
+        return this.asyncExecutor.submit(() -> updateDevice(device));
+    }
+
+    /**
+     * Asynchronously remove a device from the IoT hub registry. See {@link #removeDevice(String)} for more details.
+     *
+     * @param deviceId The id of the device to remove.
+     * @return A future that completes once the operation has finished, or that completes exceptionally with the
+     * exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Void> removeDeviceAsync(String deviceId)
+    {
+        return this.asyncExecutor.submit(() ->
+        {
+            removeDevice(deviceId);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously add a module to the IoT hub registry. See {@link #addModule(Module)} for more details.
+     *
+     * @param module The module to add.
+     * @return A future that completes with the added module, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Module> addModuleAsync(Module module)
+    {
+        return this.asyncExecutor.submit(() -> addModule(module));
+    }
+
+    /**
+     * Asynchronously get a module from the IoT hub registry. See {@link #getModule(String, String)} for more details.
+     *
+     * @param deviceId The id of the device that the module belongs to.
+     * @param moduleId The id of the module to get.
+     * @return A future that completes with the retrieved module, or that completes exceptionally with the exception
+     * the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Module> getModuleAsync(String deviceId, String moduleId)
+    {
+        return this.asyncExecutor.submit(() -> getModule(deviceId, moduleId));
+    }
+
+    /**
+     * Asynchronously update a module in the IoT hub registry. See {@link #updateModule(Module)} for more details.
+     *
+     * @param module The module to update.
+     * @return A future that completes with the updated module, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Module> updateModuleAsync(Module module)
+    {
+        return this.asyncExecutor.submit(() -> updateModule(module));
+    }
+
+    /**
+     * Asynchronously remove a module from the IoT hub registry. See {@link #removeModule(String, String)} for more
+     * details.
+     *
+     * @param deviceId The id of the device that the module belongs to.
+     * @param moduleId The id of the module to remove.
+     * @return A future that completes once the operation has finished, or that completes exceptionally with the
+     * exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Void> removeModuleAsync(String deviceId, String moduleId)
+    {
+        return this.asyncExecutor.submit(() ->
+        {
+            removeModule(deviceId, moduleId);
+            return null;
+        });
+    }
+
     private RegistryJob processJobResponse(HttpResponse response) throws IotHubException
     {
-        String bodyStr = new String(response.getBody(), StandardCharsets.UTF_8);
-        return new RegistryJob(new JobPropertiesParser(bodyStr));
+        InputStreamReader body = new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8);
+        return new RegistryJob(JobPropertiesParser.fromJson(body));
     }
 
     private String createExportJobPropertiesJson(String exportBlobContainerUri, boolean excludeKeysInExport)
@@ -690,9 +806,10 @@ public final class RegistryClient
             proxy = this.options.getProxyOptions().getProxy();
         }
 
-        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy);
+        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy, this.options.getHttpConnectionFactory());
         request.setReadTimeoutSeconds(options.getHttpReadTimeoutSeconds());
         request.setConnectTimeoutSeconds(options.getHttpConnectTimeoutSeconds());
+        this.asyncExecutor.registerRequest(request);
         return request;
     }
 
@@ -710,6 +827,6 @@ public final class RegistryClient
             return this.azureSasCredential.getSignature();
         }
 
-        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+        return this.sasTokenCache.getTokenString();
     }
 }
\ No newline at end of file
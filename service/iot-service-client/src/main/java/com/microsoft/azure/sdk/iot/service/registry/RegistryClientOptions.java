@@ -1,9 +1,13 @@
 package com.microsoft.azure.sdk.iot.service.registry;
 
 import com.microsoft.azure.sdk.iot.service.ProxyOptions;
+import com.microsoft.azure.sdk.iot.service.transport.http.AsyncHttpRequestExecutor;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnectionFactory;
 import lombok.Builder;
 import lombok.Getter;
 
+import java.util.concurrent.Executor;
+
 /**
  * Configurable options for all registry operations
  */
@@ -38,4 +42,28 @@ public final class RegistryClientOptions
     @Getter
     @Builder.Default
     private final int httpConnectTimeoutSeconds = DEFAULT_HTTP_CONNECT_TIMEOUT_SECONDS;
+
+    /**
+     * The factory that opens the HTTPS connections used by this client. If null, the connection pool shared by all
+     * clients in this SDK ({@link com.microsoft.azure.sdk.iot.service.transport.http.PooledHttpConnectionFactory#getDefault()})
+     * will be used.
+     */
+    @Getter
+    private final HttpConnectionFactory httpConnectionFactory;
+
+    /**
+     * The executor that this client's async operations run on. If null, a thread pool shared by all clients in this SDK
+     * will be used.
+     */
+    @Getter
+    private final Executor asyncExecutor;
+
+    /**
+     * The maximum number of async operations that this client will run at a time. Operations beyond this limit are
+     * queued until a running one completes. By default, this value is
+     * {@link AsyncHttpRequestExecutor#DEFAULT_MAX_CONCURRENT_REQUESTS}. Must be a non-negative value.
+     */
+    @Getter
+    @Builder.Default
+    private final int maxConcurrentAsyncRequests = AsyncHttpRequestExecutor.DEFAULT_MAX_CONCURRENT_REQUESTS;
 }
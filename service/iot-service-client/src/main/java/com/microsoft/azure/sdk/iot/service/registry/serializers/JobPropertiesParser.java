@@ -13,6 +13,8 @@ import com.microsoft.azure.sdk.iot.service.registry.StorageAuthenticationType;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Date;
 
 public class JobPropertiesParser
@@ -117,9 +119,25 @@ public class JobPropertiesParser
      */
     public JobPropertiesParser(String json) throws IllegalArgumentException
     {
-        if (json == null || json.isEmpty())
+        this(new StringReader(requireJson(json)));
+    }
+
+    /**
+     * Create a JobPropertiesParser object from the Json that the provided reader reads
+     * @param json the reader of the json to build the JobPropertiesParser from
+     * @return the parsed JobPropertiesParser.
+     * @throws IllegalArgumentException if the provided reader is null, or reads Json that is empty, cannot be parsed,
+     * or is missing the jobId field
+     */
+    public static JobPropertiesParser fromJson(Reader json) throws IllegalArgumentException
+    {
+        return new JobPropertiesParser(json);
+    }
+
+    private JobPropertiesParser(Reader json) throws IllegalArgumentException
+    {
+        if (json == null)
         {
-            //Codes_SRS_JOB_PROPERTIES_PARSER_34_007: [If the provided json is null or empty, an IllegalArgumentException shall be thrown.]
             throw new IllegalArgumentException("The provided json cannot be null or empty");
         }
 
@@ -134,6 +152,11 @@ public class JobPropertiesParser
             throw new IllegalArgumentException("The provided json could not be parsed");
         }
 
+        if (parser == null)
+        {
+            throw new IllegalArgumentException("The provided json cannot be null or empty");
+        }
+
         if (parser.getJobId() == null || parser.getJobId().isEmpty())
         {
             //Codes_SRS_JOB_PROPERTIES_PARSER_34_009: [If the provided json is missing the field for jobId, or if its value is null or empty, an IllegalArgumentException shall be thrown.]
@@ -164,6 +187,17 @@ public class JobPropertiesParser
         }
     }
 
+    private static String requireJson(String json)
+    {
+        if (json == null || json.isEmpty())
+        {
+            //Codes_SRS_JOB_PROPERTIES_PARSER_34_007: [If the provided json is null or empty, an IllegalArgumentException shall be thrown.]
+            throw new IllegalArgumentException("The provided json cannot be null or empty");
+        }
+
+        return json;
+    }
+
     /**
      * Converts this into json and returns it
      * @return the json representation of this
@@ -11,6 +11,8 @@ import com.microsoft.azure.sdk.iot.service.ParserUtility;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -170,7 +172,25 @@ public class RegistryIdentityParser
      */
     public RegistryIdentityParser(String json)
     {
-        if (json == null || json.isEmpty())
+        this(new StringReader(requireJson(json)));
+    }
+
+    /**
+     * Create a RegistryIdentityParser object from the JSON that the provided reader reads.
+     *
+     * @param json The reader of the JSON to build the object from.
+     * @return The parsed object.
+     * @throws IllegalArgumentException If the provided reader is {@code null}, or reads JSON that is empty or not the
+     * expected format.
+     */
+    public static RegistryIdentityParser fromJson(Reader json)
+    {
+        return new RegistryIdentityParser(json);
+    }
+
+    private RegistryIdentityParser(Reader json)
+    {
+        if (json == null)
         {
             throw new IllegalArgumentException("The provided json cannot be null or empty.");
         }
@@ -185,6 +205,11 @@ public class RegistryIdentityParser
             throw new IllegalArgumentException("The provided json could not be parsed.");
         }
 
+        if (registryIdentityParser == null)
+        {
+            throw new IllegalArgumentException("The provided json cannot be null or empty.");
+        }
+
         if (registryIdentityParser.deviceId == null || registryIdentityParser.deviceId.isEmpty())
         {
             throw new IllegalArgumentException(
@@ -232,6 +257,16 @@ public class RegistryIdentityParser
         }
     }
 
+    private static String requireJson(String json)
+    {
+        if (json == null || json.isEmpty())
+        {
+            throw new IllegalArgumentException("The provided json cannot be null or empty.");
+        }
+
+        return json;
+    }
+
     /**
      * Getter for StatusUpdatedTime.
      *
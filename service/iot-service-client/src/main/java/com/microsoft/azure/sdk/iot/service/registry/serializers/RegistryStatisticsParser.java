@@ -10,6 +10,9 @@ import com.google.gson.annotations.SerializedName;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.Reader;
+import java.io.StringReader;
+
 public class RegistryStatisticsParser
 {
     private final transient static Gson gson = new Gson();
@@ -48,9 +51,24 @@ public class RegistryStatisticsParser
      */
     public RegistryStatisticsParser(String json)
     {
-        if (json == null || json.isEmpty())
+        this(new StringReader(requireJson(json)));
+    }
+
+    /**
+     * Create a RegistryStatisticsParser object from the json that the provided reader reads
+     * @param json the reader of the json to build the RegistryStatisticsParser from
+     * @return the parsed RegistryStatisticsParser.
+     * @throws IllegalArgumentException if the provided reader is null, or reads json that is empty or cannot be parsed
+     */
+    public static RegistryStatisticsParser fromJson(Reader json)
+    {
+        return new RegistryStatisticsParser(json);
+    }
+
+    private RegistryStatisticsParser(Reader json)
+    {
+        if (json == null)
         {
-            //Codes_SRS_REGISTRY_STATISTICS_PROPERTIES_PARSER_34_003: [If the provided json is null, empty, or cannot be parsed into a RegistryStatisticsParser object, an IllegalArgumentException shall be thrown.]
             throw new IllegalArgumentException("The provided json cannot be null or empty");
         }
 
@@ -66,11 +84,27 @@ public class RegistryStatisticsParser
             throw new IllegalArgumentException("The provided json could not be parsed");
         }
 
+        if (parser == null)
+        {
+            throw new IllegalArgumentException("The provided json cannot be null or empty");
+        }
+
         this.totalDeviceCount = parser.totalDeviceCount;
         this.enabledDeviceCount = parser.enabledDeviceCount;
         this.disabledDeviceCount = parser.disabledDeviceCount;
     }
 
+    private static String requireJson(String json)
+    {
+        if (json == null || json.isEmpty())
+        {
+            //Codes_SRS_REGISTRY_STATISTICS_PROPERTIES_PARSER_34_003: [If the provided json is null, empty, or cannot be parsed into a RegistryStatisticsParser object, an IllegalArgumentException shall be thrown.]
+            throw new IllegalArgumentException("The provided json cannot be null or empty");
+        }
+
+        return json;
+    }
+
     /**
      * Converts this into a json string.
      * @return the json representation of this.
@@ -18,12 +18,16 @@ import com.microsoft.azure.sdk.iot.service.ProxyOptions;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Connection;
 import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Sasl;
 import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Ssl;
 import org.apache.qpid.proton.engine.SslDomain;
 import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.engine.impl.TransportInternal;
@@ -62,6 +66,41 @@ abstract class AmqpConnectionHandler extends ErrorLoggingBaseHandlerWithCleanup
     private CbsSessionHandler cbsSessionHandler;
     private Runnable onConnectionClosedCallback;
 
+    // If true, the session and links that messages are sent or received over are attached right after the first
+    // authentication message is sent, rather than once the service has accepted it
+    @Setter
+    private boolean pipelinedLinkAttachEnabled;
+
+    // Set on the reactor thread once the service accepted the first authentication message of the current connection,
+    // and read from any thread
+    private volatile boolean authenticated;
+
+    // Only accessed on the reactor thread
+    private boolean opened;
+    private Transport transport;
+    private Ssl ssl;
+    private Sasl sasl;
+    private final ConnectionOpenTimer openTimer = new ConnectionOpenTimer();
+
+    /**
+     * How long each phase of the latest successful open of this connection took, or null if it was never opened.
+     */
+    @Getter
+    private volatile ConnectionOpenTimings openTimings;
+
+    private final BaseHandler linkAttachTimerHandler = new BaseHandler()
+    {
+        @Override
+        public void onTimerTask(Event event)
+        {
+            // The connection may have failed to authenticate, or been closed, since this was scheduled
+            if (!authenticated && connection != null && connection.getLocalState() == EndpointState.ACTIVE)
+            {
+                startOpeningLinks(true);
+            }
+        }
+    };
+
     AmqpConnectionHandler(
         String connectionString,
         IotHubServiceClientProtocol protocol,
@@ -162,9 +201,51 @@ abstract class AmqpConnectionHandler extends ErrorLoggingBaseHandlerWithCleanup
         add(new Handshaker());
     }
 
+    /**
+     * Open the session and links that messages are sent or received over, unless they were opened already for the
+     * current connection. Executed on the reactor thread.
+     */
+    abstract void openLinks();
+
+    /**
+     * @return true if all of the session and links that {@link #openLinks()} opened are open.
+     */
+    abstract boolean areLinksOpen();
+
+    /**
+     * Executed on the reactor thread once per connection, as soon as it is authenticated and its links are open.
+     */
+    abstract void onOpened();
+
+    /**
+     * Execute {@link #onOpened()} if this connection just finished opening. Subclasses call this each time one of their
+     * links opens.
+     */
+    void checkOpened()
+    {
+        if (!this.opened && this.authenticated && areLinksOpen())
+        {
+            this.opened = true;
+            this.openTimings = this.openTimer.onOpened(System.nanoTime());
+            log.debug("Opened amqp connection ({})", this.openTimings);
+            onOpened();
+        }
+    }
+
+    boolean isAuthenticated()
+    {
+        return this.authenticated;
+    }
+
     @Override
     public void onReactorInit(Event event)
     {
+        // The same handler is used again each time the connection is reopened
+        this.authenticated = false;
+        this.opened = false;
+        this.transport = null;
+        this.openTimer.onConnectStarted(System.nanoTime());
+
         Reactor reactor = event.getReactor();
 
         if (this.protocol == IotHubServiceClientProtocol.AMQPS_WS)
@@ -210,7 +291,9 @@ abstract class AmqpConnectionHandler extends ErrorLoggingBaseHandlerWithCleanup
 
         SslDomain domain = makeDomain();
         domain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
-        transport.ssl(domain);
+        this.ssl = transport.ssl(domain);
+        this.sasl = transport.sasl();
+        this.transport = transport;
 
         if (this.proxyOptions != null)
         {
@@ -218,6 +301,30 @@ abstract class AmqpConnectionHandler extends ErrorLoggingBaseHandlerWithCleanup
         }
     }
 
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        // The reactor quiesces each time it is done handling the events of its latest network IO. Connecting the socket
+        // and the TLS and SASL handshakes don't raise events of their own, so this is where their progress is checked.
+        // Whether the socket is connected can't be told from the transport, so that is timed as part of the TLS phase.
+        if (this.transport == null || this.transport.isClosed() || this.openTimer.isSaslHandshakeCompleted())
+        {
+            return;
+        }
+
+        long nowNanos = System.nanoTime();
+
+        if (!this.openTimer.isTlsHandshakeCompleted() && this.ssl.getCipherName() != null)
+        {
+            this.openTimer.onTlsHandshakeCompleted(nowNanos);
+        }
+
+        if (this.sasl.getOutcome() != Sasl.SaslOutcome.PN_SASL_NONE)
+        {
+            this.openTimer.onSaslHandshakeCompleted(nowNanos);
+        }
+    }
+
     @Override
     public void onConnectionInit(Event event)
     {
@@ -245,6 +352,9 @@ abstract class AmqpConnectionHandler extends ErrorLoggingBaseHandlerWithCleanup
         super.onConnectionRemoteOpen(event);
         this.connection = event.getConnection();
 
+        // The service only opens the connection once the SASL handshake is done
+        this.openTimer.onSaslHandshakeCompleted(System.nanoTime());
+
         // Once the connection opens, get that connection and make it create a new session that will serve as the CBS
         // session where authentication will take place.
         Session cbsSession = event.getConnection().session();
@@ -334,7 +444,8 @@ abstract class AmqpConnectionHandler extends ErrorLoggingBaseHandlerWithCleanup
 
     public boolean isOpen()
     {
-        return this.connection != null
+        return this.authenticated
+            && this.connection != null
             && this.connection.getLocalState() == EndpointState.ACTIVE
             && this.connection.getRemoteState() == EndpointState.ACTIVE
             && this.cbsSessionHandler.isOpen();
@@ -357,6 +468,36 @@ abstract class AmqpConnectionHandler extends ErrorLoggingBaseHandlerWithCleanup
         this.onConnectionClosedCallback = onConnectionClosedCallback;
     }
 
+    @Override
+    public void onAuthenticationMessageSent()
+    {
+        if (this.pipelinedLinkAttachEnabled && !this.authenticated)
+        {
+            // Proton writes the frames that attach links ahead of message transfers that are ready at the same time, so
+            // the links are attached on the next pass of the reactor, once the authentication message has been written
+            this.connection.getReactor().schedule(0, this.linkAttachTimerHandler);
+        }
+    }
+
+    @Override
+    public void onAuthenticationSucceeded()
+    {
+        // This is executed again after every proactive renewal, but the links are only opened once per connection
+        if (!this.authenticated)
+        {
+            this.authenticated = true;
+            this.openTimer.onAuthenticated(System.nanoTime());
+            startOpeningLinks(false);
+            checkOpened();
+        }
+    }
+
+    private void startOpeningLinks(boolean pipelined)
+    {
+        this.openTimer.onLinkAttachStarted(System.nanoTime(), pipelined);
+        openLinks();
+    }
+
     @Override
     public void onAuthenticationFailed(IotHubException e)
     {
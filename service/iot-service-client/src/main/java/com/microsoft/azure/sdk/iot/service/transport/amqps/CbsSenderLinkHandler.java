@@ -6,10 +6,10 @@ package com.microsoft.azure.sdk.iot.service.transport.amqps;
 import com.azure.core.credential.AccessToken;
 import com.azure.core.credential.AzureSasCredential;
 import com.azure.core.credential.TokenCredential;
-import com.azure.core.credential.TokenRequestContext;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.messaging.AmqpValue;
@@ -26,8 +26,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-
-import static com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache.IOTHUB_PUBLIC_SCOPE;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Every token based authentication over AMQP requires a CBS session with a sender and receiver link. This
@@ -97,7 +96,40 @@ final class CbsSenderLinkHandler extends SenderLinkHandler
         return LINK_TYPE;
     }
 
-    public int sendAuthenticationMessage(UUID authenticationMessageCorrelationId)
+    /**
+     * Start getting the token for the next authentication message. Tokens from a TokenCredential are requested on the
+     * background threads of {@link TokenCredentialCache} since that request may block on the network, and the reactor
+     * thread must never wait for it.
+     * Shared access signatures are generated without any I/O, so their future is already complete.
+     *
+     * @return the future token. It completes with null if the TokenCredential supplied no token.
+     */
+    CompletableFuture<AccessToken> fetchAccessToken()
+    {
+        if (this.credential != null)
+        {
+            return TokenCredentialCache.fetchAccessTokenAsync(this.credential);
+        }
+        else if (this.sasTokenProvider != null)
+        {
+            return CompletableFuture.completedFuture(getAccessTokenFromSasToken(this.sasTokenProvider.getSignature()));
+        }
+        else
+        {
+            IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
+            String sasToken = new IotHubServiceSasToken(iotHubConnectionString).toString();
+            return CompletableFuture.completedFuture(getAccessTokenFromSasToken(sasToken));
+        }
+    }
+
+    /**
+     * Send an authentication message with a token that was obtained from {@link #fetchAccessToken()}.
+     *
+     * @param authenticationMessageCorrelationId the correlation id that the service's response will have.
+     * @param accessToken the token to authenticate with.
+     * @return the delivery tag of the sent message, or -1 if it could not be sent.
+     */
+    public int sendAuthenticationMessage(UUID authenticationMessageCorrelationId, AccessToken accessToken)
     {
         MessageImpl outgoingMessage = (MessageImpl) Proton.message();
 
@@ -114,41 +146,22 @@ final class CbsSenderLinkHandler extends SenderLinkHandler
         Map<String, Object> applicationProperties = new HashMap<>();
         applicationProperties.put(PUT_TOKEN_OPERATION, PUT_TOKEN_OPERATION_VALUE);
 
+        this.currentAccessToken = accessToken;
+
         if (credential != null)
         {
-            TokenRequestContext context = new TokenRequestContext().addScopes(IOTHUB_PUBLIC_SCOPE);
-            this.currentAccessToken = credential.getToken(context).block();
-
-            if (this.currentAccessToken == null)
-            {
-                log.error("The AccessToken supplied by the TokenCredential for the CbsSenderLinkHandler was null.");
-                return -1;
-            }
-
             applicationProperties.put(PUT_TOKEN_EXPIRY, Date.from(this.currentAccessToken.getExpiresAt().toInstant()));
             applicationProperties.put(PUT_TOKEN_TYPE, BEARER);
             Section section = new AmqpValue("Bearer " + this.currentAccessToken.getToken());
             outgoingMessage.setBody(section);
         }
-        else if (this.sasTokenProvider != null)
-        {
-            String sasToken = this.sasTokenProvider.getSignature();
-            this.currentAccessToken = getAccessTokenFromSasToken(sasToken);
-            applicationProperties.put(PUT_TOKEN_TYPE, SAS_TOKEN);
-            Section section = new AmqpValue(sasToken);
-            outgoingMessage.setBody(section);
-        }
         else
         {
-            IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
-            String sasToken = new IotHubServiceSasToken(iotHubConnectionString).toString();
-            this.currentAccessToken = getAccessTokenFromSasToken(sasToken);
             applicationProperties.put(PUT_TOKEN_TYPE, SAS_TOKEN);
-            Section section = new AmqpValue(sasToken);
+            Section section = new AmqpValue(this.currentAccessToken.getToken());
             outgoingMessage.setBody(section);
         }
 
-
         applicationProperties.put(PUT_TOKEN_AUDIENCE, this.senderLink.getSession().getConnection().getHostname());
 
         outgoingMessage.setApplicationProperties(new ApplicationProperties(applicationProperties));
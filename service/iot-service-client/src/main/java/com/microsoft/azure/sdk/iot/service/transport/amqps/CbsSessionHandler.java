@@ -18,15 +18,24 @@ import org.apache.qpid.proton.engine.Receiver;
 import org.apache.qpid.proton.engine.Sender;
 import org.apache.qpid.proton.engine.Session;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements AuthenticationMessageCallback, LinkStateCallback
 {
     // Token's should be proactively renewed at 85% of the lifespan of the previous token
     private static final double TOKEN_RENEWAL_PERCENT = .85;
+
+    // Tokens from a TokenCredential are requested ahead of that, at 75% of the lifespan of the previous token, so that
+    // a slow token request doesn't delay the renewal
+    private static final double TOKEN_PREFETCH_PERCENT = .75;
+
     private Session session;
     private CbsSenderLinkHandler cbsSenderLinkHandler;
     private CbsReceiverLinkHandler cbsReceiverLinkHandler;
@@ -37,6 +46,24 @@ class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements Au
     private boolean senderLinkOpened = false;
     private boolean receiverLinkOpened = false;
 
+    // The token for the next authentication message, once it has been requested
+    private CompletableFuture<AccessToken> pendingAccessToken;
+
+    // True once the next authentication message is due, in which case it is sent as soon as its token is ready
+    private boolean authenticationDue = false;
+
+    // Wakes up the reactor thread once a token that was requested on another thread is ready
+    private ReactorWakeup accessTokenWakeup;
+
+    private final BaseHandler tokenPrefetchTimerHandler = new BaseHandler()
+    {
+        @Override
+        public void onTimerTask(Event event)
+        {
+            prefetchAccessToken();
+        }
+    };
+
     CbsSessionHandler(Session session, CbsSessionStateCallback cbsSessionStateCallback, TokenCredential credential)
     {
         this(session, cbsSessionStateCallback);
@@ -87,6 +114,25 @@ class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements Au
 
         Receiver cbsReceiver = this.session.receiver(CbsReceiverLinkHandler.getCbsTag());
         this.cbsReceiverLinkHandler = new CbsReceiverLinkHandler(cbsReceiver, this, this);
+
+        if (this.credential != null)
+        {
+            try
+            {
+                this.accessTokenWakeup = new ReactorWakeup(event.getReactor(), this::sendAuthenticationMessageIfAccessTokenReady);
+            }
+            catch (IOException e)
+            {
+                // Without the wakeup, the reactor thread would never find out that a token is ready
+                IotHubException iotHubException = new IotHubException("Failed to create the reactor wakeup that CBS authentication requires");
+                iotHubException.initCause(e);
+                failAuthentication(iotHubException);
+                return;
+            }
+        }
+
+        // Start getting the first token now, so that it can be ready by the time the CBS links are open
+        fetchAccessToken();
     }
 
     @Override
@@ -103,6 +149,7 @@ class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements Au
 
         this.cbsSenderLinkHandler.close();
         this.cbsReceiverLinkHandler.close();
+        closeAccessTokenWakeup();
     }
 
     @Override
@@ -121,6 +168,7 @@ class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements Au
         this.session.close();
         this.cbsSenderLinkHandler.close();
         this.cbsReceiverLinkHandler.close();
+        closeAccessTokenWakeup();
     }
 
     @Override
@@ -183,12 +231,106 @@ class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements Au
     }
 
     private void authenticate()
+    {
+        if (this.session.getLocalState() != EndpointState.ACTIVE)
+        {
+            return;
+        }
+
+        this.authenticationDue = true;
+
+        // A token that was requested ahead of time may have failed before the reactor was woken up to find out
+        if (this.pendingAccessToken == null || this.pendingAccessToken.isCompletedExceptionally())
+        {
+            fetchAccessToken();
+        }
+
+        sendAuthenticationMessageIfAccessTokenReady();
+    }
+
+    private void prefetchAccessToken()
+    {
+        if (this.session.getLocalState() == EndpointState.ACTIVE && this.pendingAccessToken == null)
+        {
+            log.debug("Requesting the token for the next proactive renewal ahead of time");
+            fetchAccessToken();
+        }
+    }
+
+    private void fetchAccessToken()
+    {
+        CompletableFuture<AccessToken> accessTokenFuture = this.cbsSenderLinkHandler.fetchAccessToken();
+        this.pendingAccessToken = accessTokenFuture;
+
+        // Only tokens from a TokenCredential complete later, on another thread
+        ReactorWakeup wakeup = this.accessTokenWakeup;
+        if (!accessTokenFuture.isDone() && wakeup != null)
+        {
+            accessTokenFuture.whenComplete((accessToken, throwable) -> wakeup.wakeup());
+        }
+    }
+
+    private void sendAuthenticationMessageIfAccessTokenReady()
+    {
+        CompletableFuture<AccessToken> accessTokenFuture = this.pendingAccessToken;
+        if (accessTokenFuture == null || !accessTokenFuture.isDone() || this.session.getLocalState() != EndpointState.ACTIVE)
+        {
+            return;
+        }
+
+        AccessToken accessToken = null;
+        Throwable fetchFailure = null;
+        try
+        {
+            accessToken = accessTokenFuture.join();
+        }
+        catch (CompletionException e)
+        {
+            fetchFailure = e.getCause() != null ? e.getCause() : e;
+        }
+        catch (CancellationException e)
+        {
+            fetchFailure = e;
+        }
+
+        if (accessToken == null)
+        {
+            this.pendingAccessToken = null;
+
+            if (!this.authenticationDue)
+            {
+                // The token is requested again once it is due
+                log.warn("Failed to get the next authentication token ahead of time, retrying once it is due", fetchFailure);
+                return;
+            }
+
+            IotHubException e = new IotHubException("Failed to get an authentication token from the TokenCredential");
+            if (fetchFailure != null)
+            {
+                e.initCause(fetchFailure);
+            }
+
+            failAuthentication(e);
+            return;
+        }
+
+        if (!this.authenticationDue)
+        {
+            // The token was requested ahead of time, and is sent once the renewal is due
+            return;
+        }
+
+        this.pendingAccessToken = null;
+        this.authenticationDue = false;
+        sendAuthenticationMessage(accessToken);
+    }
+
+    private void sendAuthenticationMessage(AccessToken currentAccessToken)
     {
         UUID authenticationMessageCorrelationId = UUID.randomUUID();
 
         this.cbsReceiverLinkHandler.setAuthenticationMessageCorrelationId(authenticationMessageCorrelationId);
-        int authenticationMessageDeliveryTag = this.cbsSenderLinkHandler.sendAuthenticationMessage(authenticationMessageCorrelationId);
-        AccessToken currentAccessToken = this.cbsSenderLinkHandler.getCurrentAccessToken();
+        int authenticationMessageDeliveryTag = this.cbsSenderLinkHandler.sendAuthenticationMessage(authenticationMessageCorrelationId, currentAccessToken);
 
         if (authenticationMessageDeliveryTag == -1)
         {
@@ -197,6 +339,7 @@ class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements Au
         else
         {
             log.debug("Successfully sent authentication message");
+            this.cbsSessionStateCallback.onAuthenticationMessageSent();
         }
 
         // delivery tags are used to map acknowledgements from service to messages sent by client.
@@ -212,24 +355,41 @@ class CbsSessionHandler extends ErrorLoggingBaseHandlerWithCleanup implements Au
             Duration diff = Duration.between(tokenExpiryOffsetDateTime, currentOffsetDateTime).abs();
             long millisecondsToTokenExpiry = diff.toMillis();
 
-            // Cast of double to int here is safe because this value does not need to be precisely 85% of the token renewal time
-            // so it is okay to truncate this double to its int value
-            double proactiveTokenRenewalMillis = (millisecondsToTokenExpiry * TOKEN_RENEWAL_PERCENT);
+            scheduleProactiveRenewal(toTimerMilliseconds(millisecondsToTokenExpiry * TOKEN_RENEWAL_PERCENT));
 
-            if (proactiveTokenRenewalMillis >= Integer.MAX_VALUE)
-            {
-                // To avoid overflow issues, don't try to schedule any further in the future than Integer.MAX_VALUE
-                scheduleProactiveRenewal(Integer.MAX_VALUE);
-            }
-            else
+            if (this.credential != null)
             {
-                // Safe cast since we don't need to preserve the precision of the double, we just need to be at roughly 85% of
-                // the token's lifespan
-                scheduleProactiveRenewal((int) (proactiveTokenRenewalMillis));
+                int millisecondsBeforePrefetch = toTimerMilliseconds(millisecondsToTokenExpiry * TOKEN_PREFETCH_PERCENT);
+                log.debug("Scheduling the token request for the next proactive renewal for {} milliseconds in the future", millisecondsBeforePrefetch);
+                this.session.getConnection().getReactor().schedule(millisecondsBeforePrefetch, this.tokenPrefetchTimerHandler);
             }
         }
     }
 
+    private static int toTimerMilliseconds(double milliseconds)
+    {
+        // To avoid overflow issues, don't try to schedule any further in the future than Integer.MAX_VALUE. Otherwise the
+        // cast is safe since the timer doesn't need to preserve the precision of the double, it just needs to be at
+        // roughly the given percentage of the token's lifespan.
+        return milliseconds >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) milliseconds;
+    }
+
+    private void failAuthentication(IotHubException e)
+    {
+        log.error("CBS session failed to authenticate", e);
+        this.cbsSessionStateCallback.onAuthenticationFailed(e);
+        this.session.close(); // should chain to close the connection from logic in ErrorLoggingBaseHandlerWithCleanup
+    }
+
+    private void closeAccessTokenWakeup()
+    {
+        if (this.accessTokenWakeup != null)
+        {
+            this.accessTokenWakeup.close();
+            this.accessTokenWakeup = null;
+        }
+    }
+
     private void scheduleProactiveRenewal(int millisecondsBeforeRenewal)
     {
         log.debug("Scheduling proactive token renewal for {} milliseconds in the future", millisecondsBeforeRenewal);
@@ -13,6 +13,11 @@ interface CbsSessionStateCallback
      */
     void onAuthenticationSucceeded();
 
+    /**
+     * Executes each time the CBS session has sent an authentication message, before the service has responded to it.
+     */
+    void onAuthenticationMessageSent();
+
     /**
      * Executes when the CBS session has failed to authenticate the connection
      * @param e the reason why authentication failed.
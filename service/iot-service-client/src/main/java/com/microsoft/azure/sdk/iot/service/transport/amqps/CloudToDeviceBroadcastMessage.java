@@ -0,0 +1,53 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.messaging.Message;
+import lombok.Getter;
+import org.apache.qpid.proton.Proton;
+
+import java.util.Objects;
+
+/**
+ * A cloud to device message that is sent to many devices. Of the sections that make up an AMQP message, only the
+ * properties section holds the address of the device and the message Id, so the application properties and body sections
+ * are encoded once here and only the properties section is encoded for each device.
+ *
+ * <p>The message is captured when this object is created, so later changes to it are not sent.</p>
+ */
+public final class CloudToDeviceBroadcastMessage
+{
+    @Getter
+    private final Message message;
+
+    // The application properties and body sections, which come after the properties section in an encoded message
+    private final byte[] encodedSharedSections;
+
+    /**
+     * @param message the message to send to every device.
+     */
+    public CloudToDeviceBroadcastMessage(Message message)
+    {
+        this.message = Objects.requireNonNull(message, "message cannot be null");
+
+        org.apache.qpid.proton.message.Message sharedSections = Proton.message();
+        sharedSections.setApplicationProperties(CloudToDeviceMessage.createApplicationProperties(message));
+        sharedSections.setBody(CloudToDeviceMessage.createBody(message));
+        this.encodedSharedSections = ProtonMessageEncoder.encodeToArray(sharedSections);
+    }
+
+    /**
+     * Encode the message for one of the devices it is sent to.
+     *
+     * @param deviceId the Id of the device.
+     * @param messageId the message Id to send this copy of the message with. May be null.
+     * @return the encoded message, which is the same as if the whole message had been encoded for that device.
+     */
+    byte[] encode(String deviceId, String messageId)
+    {
+        org.apache.qpid.proton.message.Message deviceSections = Proton.message();
+        deviceSections.setProperties(CloudToDeviceMessage.createProperties(CloudToDeviceMessage.getTargetPath(deviceId, null), this.message, messageId));
+        return ProtonMessageEncoder.encodeToArray(deviceSections, this.encodedSharedSections);
+    }
+}
@@ -3,9 +3,12 @@
 
 package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.messaging.Message;
 import com.microsoft.azure.sdk.iot.service.messaging.SendResult;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
@@ -14,11 +17,14 @@ import org.apache.qpid.proton.amqp.messaging.Properties;
 import org.apache.qpid.proton.amqp.messaging.Section;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
-class CloudToDeviceMessage
+@Slf4j
+class CloudToDeviceMessage extends HashedTimingWheel.Entry
 {
     private static final String DEVICE_PATH_FORMAT = "/devices/%s/messages/devicebound";
     private static final String MODULE_PATH_FORMAT = "/devices/%s/modules/%s/messages/devicebound";
@@ -41,45 +47,225 @@ class CloudToDeviceMessage
     @Getter
     final org.apache.qpid.proton.message.Message protonMessage;
 
+    // The payload size, which is what counts towards the size limit of the outgoing message queue
+    @Getter
+    final int sizeInBytes;
+
+    // Set instead of onMessageSentCallback when this message was sent as part of a batch
+    private final CloudToDeviceMessageBatch batch;
+    private final int batchIndex;
+
+    // Set when the message was encoded before it was handed to the reactor thread, so that the reactor thread only has to write it
+    @Getter
+    private volatile byte[] encodedMessage;
+
+    // The System.nanoTime() by which the service must have acknowledged this message, if hasSendDeadline is true
+    @Getter
+    private long sendDeadlineNanoseconds;
+
+    private boolean hasSendDeadline;
+
+    // The delivery tag that the message was sent with. Only used by the reactor thread.
+    @Getter
+    @Setter
+    private int deliveryTag = -1;
+
+    // True from when the message is handed to an encoder until the encoder is done with it. The message can't be sent in the meantime.
+    private volatile boolean encodingPending;
+
     CloudToDeviceMessage(String targetDeviceId, String targetModuleId, Message iotHubMessage, Consumer<SendResult> onMessageSentCallback, Object onMessageSentCallbackContext)
     {
+        this(
+            targetDeviceId,
+            targetModuleId,
+            iotHubMessage,
+            onMessageSentCallback,
+            onMessageSentCallbackContext,
+            null,
+            -1,
+            createProtonMessage(getTargetPath(targetDeviceId, targetModuleId), iotHubMessage),
+            null);
+    }
+
+    CloudToDeviceMessage(String targetDeviceId, String targetModuleId, Message iotHubMessage, Object context, CloudToDeviceMessageBatch batch, int batchIndex)
+    {
+        this(
+            targetDeviceId,
+            targetModuleId,
+            iotHubMessage,
+            null,
+            context,
+            batch,
+            batchIndex,
+            createProtonMessage(getTargetPath(targetDeviceId, targetModuleId), iotHubMessage),
+            null);
+    }
+
+    /**
+     * Create a message that was already encoded, such as one delivery of a {@link CloudToDeviceBroadcastMessage}. Its
+     * context is the Id of the device that it is sent to.
+     */
+    CloudToDeviceMessage(String targetDeviceId, Message iotHubMessage, byte[] encodedMessage, CloudToDeviceMessageBatch batch, int batchIndex)
+    {
+        this(targetDeviceId, null, iotHubMessage, null, targetDeviceId, batch, batchIndex, null, encodedMessage);
+    }
+
+    private CloudToDeviceMessage(
+        String targetDeviceId,
+        String targetModuleId,
+        Message iotHubMessage,
+        Consumer<SendResult> onMessageSentCallback,
+        Object onMessageSentCallbackContext,
+        CloudToDeviceMessageBatch batch,
+        int batchIndex,
+        org.apache.qpid.proton.message.Message protonMessage,
+        byte[] encodedMessage)
+    {
+        this.batch = batch;
+        this.batchIndex = batchIndex;
         this.targetDeviceId = targetDeviceId;
         this.targetModuleId = targetModuleId; // may be null
         this.iotHubMessage = iotHubMessage;
         this.onMessageSentCallback = onMessageSentCallback;
         this.onMessageSentCallbackContext = onMessageSentCallbackContext;
+        this.sizeInBytes = iotHubMessage.getBytes() != null ? iotHubMessage.getBytes().length : 0;
+        this.protonMessage = protonMessage; // null if the message was already encoded
+        this.encodedMessage = encodedMessage;
+    }
 
-        if (this.targetModuleId != null)
+    String getCorrelationId()
+    {
+        return this.getIotHubMessage().getCorrelationId();
+    }
+
+    /**
+     * Fail this message if the service hasn't acknowledged it within the given time from now.
+     *
+     * @param timeoutMilliseconds the time to wait for the acknowledgement. If 0, waits indefinitely.
+     */
+    void setSendTimeout(long timeoutMilliseconds)
+    {
+        if (timeoutMilliseconds > 0)
         {
-            this.protonMessage = createProtonMessage(this.targetDeviceId, this.targetModuleId, this.iotHubMessage);
+            this.sendDeadlineNanoseconds = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMilliseconds);
+            this.hasSendDeadline = true;
         }
-        else
+    }
+
+    boolean hasSendDeadline()
+    {
+        return this.hasSendDeadline;
+    }
+
+    /**
+     * @param nowNanoseconds the current {@link System#nanoTime()}.
+     * @return true if this message's send deadline has passed.
+     */
+    boolean isPastSendDeadline(long nowNanoseconds)
+    {
+        return this.hasSendDeadline && nowNanoseconds - this.sendDeadlineNanoseconds >= 0;
+    }
+
+    /**
+     * @return true if the message's expiry time has passed, in which case the service would discard it anyway.
+     */
+    boolean isExpired()
+    {
+        Date expiryTimeUtc = this.iotHubMessage.getExpiryTimeUtc();
+        return expiryTimeUtc != null && expiryTimeUtc.getTime() <= System.currentTimeMillis();
+    }
+
+    /**
+     * @return false if an encoder has yet to finish encoding this message, and true otherwise.
+     */
+    boolean isReadyToSend()
+    {
+        return !this.encodingPending;
+    }
+
+    /**
+     * Mark this message as waiting to be encoded, so that it isn't sent until {@link #encode()} or
+     * {@link #cancelEncoding()} is called.
+     */
+    void setEncodingPending()
+    {
+        this.encodingPending = true;
+    }
+
+    /**
+     * Encode this message into the bytes that the reactor thread will send. If encoding fails, the reactor thread will
+     * encode the message itself when it sends it, and report the failure then.
+     */
+    void encode()
+    {
+        try
         {
-            this.protonMessage = createProtonMessage(this.targetDeviceId, this.iotHubMessage);
+            this.encodedMessage = ProtonMessageEncoder.encodeToArray(this.protonMessage);
+        }
+        catch (RuntimeException e)
+        {
+            log.debug("Failed to encode cloud to device message with correlation id {} ahead of sending it", getCorrelationId(), e);
+        }
+        finally
+        {
+            this.encodingPending = false;
         }
     }
 
-    String getCorrelationId()
+    /**
+     * Let the reactor thread send this message without it being encoded ahead of time.
+     */
+    void cancelEncoding()
     {
-        return this.getIotHubMessage().getCorrelationId();
+        this.encodingPending = false;
     }
 
-    private static org.apache.qpid.proton.message.Message createProtonMessage(String deviceId, Message message)
+    /**
+     * Report the outcome of sending this message to its callback, or to its batch if it was sent as part of one.
+     *
+     * @param exception the exception that caused the message to fail to send, or null if it was sent successfully.
+     */
+    void complete(IotHubException exception)
     {
-        return populateProtonMessage(String.format(DEVICE_PATH_FORMAT, deviceId), message);
+        if (this.onMessageSentCallback == null && this.batch == null)
+        {
+            return;
+        }
+
+        SendResult sendResult = new SendResult(exception == null, getCorrelationId(), this.onMessageSentCallbackContext, exception);
+        if (this.batch != null)
+        {
+            this.batch.complete(this.batchIndex, sendResult);
+        }
+        else
+        {
+            this.onMessageSentCallback.accept(sendResult);
+        }
     }
 
-    private static org.apache.qpid.proton.message.Message createProtonMessage(String deviceId, String moduleId, Message message)
+    static String getTargetPath(String deviceId, String moduleId)
     {
-        return populateProtonMessage(String.format(MODULE_PATH_FORMAT, deviceId, moduleId), message);
+        return moduleId == null
+            ? String.format(DEVICE_PATH_FORMAT, deviceId)
+            : String.format(MODULE_PATH_FORMAT, deviceId, moduleId);
     }
 
-    private static org.apache.qpid.proton.message.Message populateProtonMessage(String targetPath, Message message)
+    private static org.apache.qpid.proton.message.Message createProtonMessage(String targetPath, Message message)
     {
         org.apache.qpid.proton.message.Message protonMessage = Proton.message();
+        protonMessage.setProperties(createProperties(targetPath, message, message.getMessageId()));
+        protonMessage.setApplicationProperties(createApplicationProperties(message));
+        protonMessage.setBody(createBody(message));
+        return protonMessage;
+    }
 
+    /**
+     * @return the properties section of the message, which is the only section that depends on who the message is sent to.
+     */
+    static Properties createProperties(String targetPath, Message message, String messageId)
+    {
         Properties properties = new Properties();
-        properties.setMessageId(message.getMessageId());
+        properties.setMessageId(messageId);
         properties.setTo(targetPath);
         properties.setAbsoluteExpiryTime(message.getExpiryTimeUtc());
         properties.setCorrelationId(message.getCorrelationId());
@@ -88,17 +274,26 @@ class CloudToDeviceMessage
             properties.setUserId(new Binary(message.getUserId().getBytes(StandardCharsets.UTF_8)));
         }
 
-        protonMessage.setProperties(properties);
+        return properties;
+    }
 
-        if (message.getProperties() != null && message.getProperties().size() > 0)
+    /**
+     * @return the application properties section of the message, or null if the message has no application properties.
+     */
+    static ApplicationProperties createApplicationProperties(Message message)
+    {
+        if (message.getProperties() == null || message.getProperties().size() == 0)
         {
-            Map<String, Object> applicationPropertiesMap = new HashMap<>(message.getProperties().size());
-            applicationPropertiesMap.putAll(message.getProperties());
-
-            ApplicationProperties applicationProperties = new ApplicationProperties(applicationPropertiesMap);
-            protonMessage.setApplicationProperties(applicationProperties);
+            return null;
         }
 
+        Map<String, Object> applicationPropertiesMap = new HashMap<>(message.getProperties().size());
+        applicationPropertiesMap.putAll(message.getProperties());
+        return new ApplicationProperties(applicationPropertiesMap);
+    }
+
+    static Section createBody(Message message)
+    {
         Binary binary;
         //Messages may have no payload, so check that the message has a payload before giving message.getBytes(StandardCharsets.UTF_8) as the payload
         if (message.getBytes() != null)
@@ -110,8 +305,6 @@ class CloudToDeviceMessage
             binary = new Binary(new byte[0]);
         }
 
-        Section section = new Data(binary);
-        protonMessage.setBody(section);
-        return protonMessage;
+        return new Data(binary);
     }
 }
@@ -0,0 +1,57 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.messaging.SendResult;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the results of a batch of cloud to device messages, possibly sent over several connections, and completes a
+ * single future once every message in the batch has been acknowledged or has failed. Each message in the batch refers
+ * to this object and its position in the batch rather than to a callback of its own.
+ */
+public final class CloudToDeviceMessageBatch
+{
+    private final SendResult[] results;
+    private final AtomicInteger remainingMessages;
+
+    /**
+     * The future that completes with the result of each message in the batch, in the order that the messages were
+     * given in.
+     */
+    @Getter
+    private final CompletableFuture<List<SendResult>> future = new CompletableFuture<>();
+
+    /**
+     * Create a batch.
+     *
+     * @param size the number of messages in the batch. Must be greater than 0.
+     */
+    public CloudToDeviceMessageBatch(int size)
+    {
+        if (size <= 0)
+        {
+            throw new IllegalArgumentException("A batch must contain at least one message");
+        }
+
+        this.results = new SendResult[size];
+        this.remainingMessages = new AtomicInteger(size);
+    }
+
+    void complete(int index, SendResult result)
+    {
+        // Each index is completed exactly once, and the final decrement publishes every earlier write to the array
+        this.results[index] = result;
+        if (this.remainingMessages.decrementAndGet() == 0)
+        {
+            this.future.complete(Collections.unmodifiableList(Arrays.asList(this.results)));
+        }
+    }
+}
@@ -8,7 +8,11 @@ package com.microsoft.azure.sdk.iot.service.transport.amqps;
 import com.azure.core.credential.AzureSasCredential;
 import com.azure.core.credential.TokenCredential;
 import com.microsoft.azure.sdk.iot.service.ProxyOptions;
+import com.microsoft.azure.sdk.iot.service.messaging.AcknowledgementType;
+import com.microsoft.azure.sdk.iot.service.messaging.DeviceMessage;
 import com.microsoft.azure.sdk.iot.service.messaging.ErrorContext;
+import com.microsoft.azure.sdk.iot.service.messaging.FeedbackBatch;
+import com.microsoft.azure.sdk.iot.service.messaging.FileUploadNotification;
 import com.microsoft.azure.sdk.iot.service.messaging.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.messaging.Message;
 import com.microsoft.azure.sdk.iot.service.messaging.SendResult;
@@ -17,16 +21,22 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
 import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Sender;
 import org.apache.qpid.proton.engine.Session;
 
 import javax.net.ssl.SSLContext;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class to override
@@ -39,23 +49,67 @@ import java.util.function.Consumer;
 public class CloudToDeviceMessageConnectionHandler extends AmqpConnectionHandler implements LinkStateCallback
 {
     private static final String SEND_TAG = "sender";
+    private static final String PRESETTLED_SEND_TAG = "presettled-sender";
     private static final String ENDPOINT = "/messages/devicebound";
 
     private Session session;
     private CloudToDeviceMessageSenderLinkHandler cloudToDeviceMessageSenderLinkHandler;
+    private CloudToDeviceMessageSenderLinkHandler presettledSenderLinkHandler;
+    private final CloudToDeviceMessageQueue outgoingMessageQueue;
+
+    // The queue of the link that sends messages settled, without waiting for the service to acknowledge them. If null,
+    // that link isn't opened.
+    @Setter
+    private CloudToDeviceMessageQueue presettledMessageQueue;
 
     @Setter
     private Runnable onConnectionOpenedCallback;
 
+    // The executor that encodes messages before the reactor thread sends them. If null, the reactor thread encodes them.
+    @Setter
+    private Executor messageEncodingExecutor;
+
+    // If true, messages that were sent but not acknowledged when the connection was lost are sent again once it is
+    // reopened. If false, they fail.
+    @Setter
+    private boolean replayUnacknowledgedMessages;
+
+    // How long queued messages may wait to be written to the connection along with more messages, and the total size
+    // of queued payloads at which they stop waiting. If lingerMilliseconds is 0, they don't wait.
+    @Setter
+    private int lingerMilliseconds;
+
+    @Setter
+    private long lingerMaxBatchBytes;
+
+    // The callbacks of the message feedback and file upload notification clients that share this connection rather
+    // than opening connections of their own. They are set and cleared from any thread, and the reactor thread then
+    // opens or closes their receiver links on this connection's session.
+    private volatile Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> messageFeedbackReceivedCallback;
+    private volatile Executor messageFeedbackCallbackExecutor;
+    private volatile Runnable onMessageFeedbackReceiverOpenedCallback;
+    private volatile int messageFeedbackPrefetchCount;
+    private volatile ReceiverLinkMetrics messageFeedbackReceiverLinkMetrics;
+    private volatile Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> fileUploadNotificationReceivedCallback;
+    private volatile Executor fileUploadNotificationCallbackExecutor;
+    private volatile Runnable onFileUploadNotificationReceiverOpenedCallback;
+    private volatile int fileUploadNotificationPrefetchCount;
+    private volatile ReceiverLinkMetrics fileUploadNotificationReceiverLinkMetrics;
+    private volatile MessageFeedbackReceiverLinkHandler messageFeedbackReceiverLinkHandler;
+    private volatile FileUploadNotificationReceiverLinkHandler fileUploadNotificationReceiverLinkHandler;
+    private volatile ReactorWakeup receiverLinkWakeup;
+
     public CloudToDeviceMessageConnectionHandler(
             String connectionString,
             IotHubServiceClientProtocol protocol,
             Consumer<ErrorContext> errorProcessor,
             ProxyOptions proxyOptions,
             SSLContext sslContext,
-            int keepAliveIntervalSeconds)
+            int keepAliveIntervalSeconds,
+            CloudToDeviceMessageQueue outgoingMessageQueue)
     {
         super(connectionString, protocol, errorProcessor, proxyOptions, sslContext, keepAliveIntervalSeconds);
+        this.outgoingMessageQueue = outgoingMessageQueue;
     }
 
     public CloudToDeviceMessageConnectionHandler(
@@ -65,9 +119,11 @@ public class CloudToDeviceMessageConnectionHandler extends AmqpConnectionHandler
             Consumer<ErrorContext> errorProcessor,
             ProxyOptions proxyOptions,
             SSLContext sslContext,
-            int keepAliveIntervalSeconds)
+            int keepAliveIntervalSeconds,
+            CloudToDeviceMessageQueue outgoingMessageQueue)
     {
         super(hostName, credential, protocol, errorProcessor, proxyOptions, sslContext, keepAliveIntervalSeconds);
+        this.outgoingMessageQueue = outgoingMessageQueue;
     }
 
     public CloudToDeviceMessageConnectionHandler(
@@ -77,16 +133,17 @@ public class CloudToDeviceMessageConnectionHandler extends AmqpConnectionHandler
             Consumer<ErrorContext> errorProcessor,
             ProxyOptions proxyOptions,
             SSLContext sslContext,
-            int keepAliveIntervalSeconds)
+            int keepAliveIntervalSeconds,
+            CloudToDeviceMessageQueue outgoingMessageQueue)
     {
         super(hostName, azureSasCredential, protocol, errorProcessor, proxyOptions, sslContext, keepAliveIntervalSeconds);
+        this.outgoingMessageQueue = outgoingMessageQueue;
     }
 
     @Override
-    public void onAuthenticationSucceeded()
+    void openLinks()
     {
-        // Only open the session and sending link if this authentication was for the first open. This callback
-        // will be executed again after every proactive renewal, but nothing needs to be done after a proactive renewal
+        // Only open the session and sending link if they weren't opened already for this connection
         if (this.cloudToDeviceMessageSenderLinkHandler == null)
         {
             // Every session or link could have their own handler(s) if we
@@ -100,57 +157,331 @@ public class CloudToDeviceMessageConnectionHandler extends AmqpConnectionHandler
             // the events go to its parent connection. If the connection
             // doesn't have a handler, the events go to the reactor.
 
-            Map<Symbol, Object> properties = new HashMap<>();
-            properties.put(Symbol.getSymbol(TransportUtils.versionIdentifierKey), TransportUtils.USER_AGENT_STRING);
             this.session.open();
 
-            Sender cloudToDeviceMessageSendingLink = this.session.sender(SEND_TAG);
-            cloudToDeviceMessageSendingLink.setProperties(properties);
-            Target t = new Target();
-            t.setAddress(ENDPOINT);
-            cloudToDeviceMessageSendingLink.setTarget(t);
-            cloudToDeviceMessageSendingLink.open();
-
             this.cloudToDeviceMessageSenderLinkHandler =
                 new CloudToDeviceMessageSenderLinkHandler(
-                    cloudToDeviceMessageSendingLink,
+                    openSenderLink(SEND_TAG, SenderSettleMode.UNSETTLED),
                     UUID.randomUUID().toString(),
-                    this);
+                    this,
+                    this.outgoingMessageQueue,
+                    this.messageEncodingExecutor);
+            this.cloudToDeviceMessageSenderLinkHandler.setLinger(this.lingerMilliseconds, this.lingerMaxBatchBytes);
 
             log.debug("Opening sender link for amqp cloud to device messages");
+
+            if (this.presettledMessageQueue != null)
+            {
+                this.presettledSenderLinkHandler =
+                    new CloudToDeviceMessageSenderLinkHandler(
+                        openSenderLink(PRESETTLED_SEND_TAG, SenderSettleMode.SETTLED),
+                        UUID.randomUUID().toString(),
+                        this,
+                        this.presettledMessageQueue,
+                        this.messageEncodingExecutor,
+                        true);
+                this.presettledSenderLinkHandler.setLinger(this.lingerMilliseconds, this.lingerMaxBatchBytes);
+
+                log.debug("Opening presettled sender link for amqp cloud to device messages");
+            }
         }
     }
 
     @Override
-    public void onSenderLinkRemoteOpen()
+    boolean areLinksOpen()
+    {
+        return this.session != null
+            && this.session.getLocalState() == EndpointState.ACTIVE
+            && this.session.getRemoteState() == EndpointState.ACTIVE
+            && this.cloudToDeviceMessageSenderLinkHandler != null
+            && this.cloudToDeviceMessageSenderLinkHandler.isOpen()
+            && (this.presettledMessageQueue == null
+                || (this.presettledSenderLinkHandler != null && this.presettledSenderLinkHandler.isOpen()));
+    }
+
+    @Override
+    void onOpened()
     {
         this.onConnectionOpenedCallback.run();
     }
 
+    @Override
+    public void onAuthenticationSucceeded()
+    {
+        super.onAuthenticationSucceeded();
+
+        // The receiver links of the clients sharing this connection are only opened once it is authenticated
+        updateReceiverLinks();
+    }
+
+    private Sender openSenderLink(String tag, SenderSettleMode senderSettleMode)
+    {
+        Map<Symbol, Object> properties = new HashMap<>();
+        properties.put(Symbol.getSymbol(TransportUtils.versionIdentifierKey), TransportUtils.USER_AGENT_STRING);
+
+        Sender cloudToDeviceMessageSendingLink = this.session.sender(tag);
+        cloudToDeviceMessageSendingLink.setProperties(properties);
+        Target t = new Target();
+        t.setAddress(ENDPOINT);
+        cloudToDeviceMessageSendingLink.setTarget(t);
+        cloudToDeviceMessageSendingLink.setSenderSettleMode(senderSettleMode);
+        cloudToDeviceMessageSendingLink.open();
+        return cloudToDeviceMessageSendingLink;
+    }
+
+    @Override
+    public void onSenderLinkRemoteOpen()
+    {
+        // With the presettled link, this is called once per link, and the connection is only open once both are
+        checkOpened();
+    }
+
     @Override
     public void onReceiverLinkRemoteOpen()
     {
-        // no action needed. This connection doesn't open any receiver links other than the CBS link which is handled elsewhere.
+        // The only receiver links that report here are those of the clients sharing this connection
+        if (isMessageFeedbackReceiverOpen() && this.onMessageFeedbackReceiverOpenedCallback != null)
+        {
+            this.onMessageFeedbackReceiverOpenedCallback.run();
+        }
+
+        if (isFileUploadNotificationReceiverOpen() && this.onFileUploadNotificationReceiverOpenedCallback != null)
+        {
+            this.onFileUploadNotificationReceiverOpenedCallback.run();
+        }
+    }
+
+    @Override
+    public void onConnectionRemoteOpen(Event event)
+    {
+        super.onConnectionRemoteOpen(event);
+
+        try
+        {
+            this.receiverLinkWakeup = new ReactorWakeup(event.getReactor(), this::updateReceiverLinks);
+        }
+        catch (IOException e)
+        {
+            // Receivers that are already set are still opened once the connection is authenticated
+            log.warn("Failed to create the reactor wakeup for shared receiver links. Receivers set while this connection is open won't be opened until it is reopened", e);
+        }
+    }
+
+    /**
+     * Share this connection with a cloud to device message feedback receiver. Its link is opened on this connection as
+     * soon as this connection is authenticated, and again every time this connection is reopened, until it is removed by
+     * setting a null callback. May be called from any thread.
+     *
+     * @param messageFeedbackReceivedCallback the callback to execute for each received feedback batch, or null to close the link.
+     * @param callbackExecutor the executor to execute the callback on, or null to execute it on the reactor thread.
+     * @param prefetchCount the number of feedback messages the service may send ahead of the one being processed.
+     * @param receiverLinkMetrics the metrics to count the link's messages in. May be null.
+     * @param onReceiverOpenedCallback the callback to execute each time the link opens. May be null.
+     */
+    public void setMessageFeedbackReceiver(
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> messageFeedbackReceivedCallback,
+        Executor callbackExecutor,
+        int prefetchCount,
+        ReceiverLinkMetrics receiverLinkMetrics,
+        Runnable onReceiverOpenedCallback)
+    {
+        this.messageFeedbackCallbackExecutor = callbackExecutor;
+        this.messageFeedbackPrefetchCount = prefetchCount;
+        this.messageFeedbackReceiverLinkMetrics = receiverLinkMetrics;
+        this.onMessageFeedbackReceiverOpenedCallback = onReceiverOpenedCallback;
+        this.messageFeedbackReceivedCallback = messageFeedbackReceivedCallback;
+        wakeupReceiverLinks();
+    }
+
+    /**
+     * Share this connection with a file upload notification receiver. Its link is opened on this connection as soon as
+     * this connection is authenticated, and again every time this connection is reopened, until it is removed by
+     * setting a null callback. May be called from any thread.
+     *
+     * @param fileUploadNotificationReceivedCallback the callback to execute for each received notification, or null to close the link.
+     * @param callbackExecutor the executor to execute the callback on, or null to execute it on the reactor thread.
+     * @param prefetchCount the number of notifications the service may send ahead of the one being processed.
+     * @param receiverLinkMetrics the metrics to count the link's messages in. May be null.
+     * @param onReceiverOpenedCallback the callback to execute each time the link opens. May be null.
+     */
+    public void setFileUploadNotificationReceiver(
+        Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> fileUploadNotificationReceivedCallback,
+        Executor callbackExecutor,
+        int prefetchCount,
+        ReceiverLinkMetrics receiverLinkMetrics,
+        Runnable onReceiverOpenedCallback)
+    {
+        this.fileUploadNotificationCallbackExecutor = callbackExecutor;
+        this.fileUploadNotificationPrefetchCount = prefetchCount;
+        this.fileUploadNotificationReceiverLinkMetrics = receiverLinkMetrics;
+        this.onFileUploadNotificationReceiverOpenedCallback = onReceiverOpenedCallback;
+        this.fileUploadNotificationReceivedCallback = fileUploadNotificationReceivedCallback;
+        wakeupReceiverLinks();
+    }
+
+    public boolean isMessageFeedbackReceiverOpen()
+    {
+        MessageFeedbackReceiverLinkHandler receiverLinkHandler = this.messageFeedbackReceiverLinkHandler;
+        return receiverLinkHandler != null && receiverLinkHandler.isOpen();
+    }
+
+    public boolean isFileUploadNotificationReceiverOpen()
+    {
+        FileUploadNotificationReceiverLinkHandler receiverLinkHandler = this.fileUploadNotificationReceiverLinkHandler;
+        return receiverLinkHandler != null && receiverLinkHandler.isOpen();
+    }
+
+    private void wakeupReceiverLinks()
+    {
+        ReactorWakeup wakeup = this.receiverLinkWakeup;
+        if (wakeup != null)
+        {
+            wakeup.wakeup();
+        }
+    }
+
+    // Must be called on the reactor thread
+    private void updateReceiverLinks()
+    {
+        // The sender link is cleared when the reactor stops
+        if (!isAuthenticated() || this.cloudToDeviceMessageSenderLinkHandler == null || this.session.getLocalState() != EndpointState.ACTIVE)
+        {
+            // Not authenticated yet, or closing. The links are opened once this connection is authenticated.
+            return;
+        }
+
+        if (this.messageFeedbackReceivedCallback != null && this.messageFeedbackReceiverLinkHandler == null)
+        {
+            log.debug("Opening shared receiver link for amqp cloud to device message feedback");
+            this.messageFeedbackReceiverLinkHandler = new MessageFeedbackReceiverLinkHandler(
+                EventReceivingConnectionHandler.openMessageFeedbackReceiverLink(this.session, this.messageFeedbackPrefetchCount),
+                this,
+                this::onMessageFeedbackReceived,
+                this.messageFeedbackCallbackExecutor,
+                this.messageFeedbackPrefetchCount);
+            this.messageFeedbackReceiverLinkHandler.setCloseSessionWithLink(false);
+            if (this.messageFeedbackReceiverLinkMetrics != null)
+            {
+                this.messageFeedbackReceiverLinkHandler.setMetrics(this.messageFeedbackReceiverLinkMetrics);
+            }
+        }
+        else if (this.messageFeedbackReceivedCallback == null && this.messageFeedbackReceiverLinkHandler != null)
+        {
+            log.debug("Closing shared receiver link for amqp cloud to device message feedback");
+            this.messageFeedbackReceiverLinkHandler.close();
+            this.messageFeedbackReceiverLinkHandler = null;
+        }
+
+        if (this.fileUploadNotificationReceivedCallback != null && this.fileUploadNotificationReceiverLinkHandler == null)
+        {
+            log.debug("Opening shared receiver link for amqp file upload notifications");
+            this.fileUploadNotificationReceiverLinkHandler = new FileUploadNotificationReceiverLinkHandler(
+                EventReceivingConnectionHandler.openFileUploadNotificationReceiverLink(this.session, this.fileUploadNotificationPrefetchCount),
+                this,
+                this::onFileUploadNotificationReceived,
+                this.fileUploadNotificationCallbackExecutor,
+                this.fileUploadNotificationPrefetchCount);
+            this.fileUploadNotificationReceiverLinkHandler.setCloseSessionWithLink(false);
+            if (this.fileUploadNotificationReceiverLinkMetrics != null)
+            {
+                this.fileUploadNotificationReceiverLinkHandler.setMetrics(this.fileUploadNotificationReceiverLinkMetrics);
+            }
+        }
+        else if (this.fileUploadNotificationReceivedCallback == null && this.fileUploadNotificationReceiverLinkHandler != null)
+        {
+            log.debug("Closing shared receiver link for amqp file upload notifications");
+            this.fileUploadNotificationReceiverLinkHandler.close();
+            this.fileUploadNotificationReceiverLinkHandler = null;
+        }
+    }
+
+    private CompletableFuture<AcknowledgementType> onMessageFeedbackReceived(FeedbackBatch feedbackBatch)
+    {
+        // The receiver may have been removed after the batch arrived but before its link was closed, in which case the
+        // batch is left for the next receiver
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> callback = this.messageFeedbackReceivedCallback;
+        return callback != null ? callback.apply(feedbackBatch) : CompletableFuture.completedFuture(AcknowledgementType.ABANDON);
+    }
+
+    private CompletableFuture<AcknowledgementType> onFileUploadNotificationReceived(FileUploadNotification fileUploadNotification)
+    {
+        Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> callback = this.fileUploadNotificationReceivedCallback;
+        return callback != null ? callback.apply(fileUploadNotification) : CompletableFuture.completedFuture(AcknowledgementType.ABANDON);
     }
 
     public boolean isOpen()
     {
-        return super.isOpen()
-            && this.session != null
-            && this.session.getLocalState() == EndpointState.ACTIVE
-            && this.session.getRemoteState() == EndpointState.ACTIVE
-            && this.cloudToDeviceMessageSenderLinkHandler != null
-            && this.cloudToDeviceMessageSenderLinkHandler.isOpen();
+        return super.isOpen() && areLinksOpen();
     }
 
     public void sendAsync(String deviceId, String moduleId, Message iotHubMessage, Consumer<SendResult> callback, Object context)
+    {
+        sendAsync(deviceId, moduleId, iotHubMessage, 0, callback, context);
+    }
+
+    public void sendAsync(String deviceId, String moduleId, Message iotHubMessage, long timeoutMilliseconds, Consumer<SendResult> callback, Object context)
+    {
+        if (!isOpen())
+        {
+            throw new IllegalStateException("Client is currently closed. Must open messagingClient before sending.");
+        }
+
+        this.cloudToDeviceMessageSenderLinkHandler.sendAsync(deviceId, moduleId, iotHubMessage, timeoutMilliseconds, callback, context);
+    }
+
+    /**
+     * Queue a message to be sent settled over the presettled link. The service doesn't acknowledge it, so there is no
+     * way to find out whether it arrived.
+     *
+     * @throws IllegalStateException if the client is closed, or if the presettled link isn't enabled.
+     */
+    public void sendPresettledAsync(String deviceId, String moduleId, Message iotHubMessage)
+    {
+        if (this.presettledMessageQueue == null)
+        {
+            throw new IllegalStateException("Fire and forget sends must be enabled in the client options before they can be used.");
+        }
+
+        if (!isOpen())
+        {
+            throw new IllegalStateException("Client is currently closed. Must open messagingClient before sending.");
+        }
+
+        this.presettledSenderLinkHandler.sendAsync(deviceId, moduleId, iotHubMessage, null, null);
+    }
+
+    public void sendBatchAsync(List<DeviceMessage> messages, int[] batchIndices, CloudToDeviceMessageBatch batch)
     {
         if (!isOpen())
         {
             throw new IllegalStateException("Client is currently closed. Must open messagingClient before sending.");
         }
 
-        this.cloudToDeviceMessageSenderLinkHandler.sendAsync(deviceId, moduleId, iotHubMessage, callback, context);
+        this.cloudToDeviceMessageSenderLinkHandler.sendBatchAsync(messages, batchIndices, batch);
+    }
+
+    public void sendBroadcastAsync(
+        CloudToDeviceBroadcastMessage broadcastMessage,
+        List<String> deviceIds,
+        List<String> messageIds,
+        int[] batchIndices,
+        CloudToDeviceMessageBatch batch)
+    {
+        if (!isOpen())
+        {
+            throw new IllegalStateException("Client is currently closed. Must open messagingClient before sending.");
+        }
+
+        this.cloudToDeviceMessageSenderLinkHandler.sendBroadcastAsync(broadcastMessage, deviceIds, messageIds, batchIndices, batch);
+    }
+
+    /**
+     * @return the number of messages that have been sent to the service, but not yet acknowledged by it.
+     */
+    public int getInFlightMessageCount()
+    {
+        CloudToDeviceMessageSenderLinkHandler senderLinkHandler = this.cloudToDeviceMessageSenderLinkHandler;
+        return senderLinkHandler != null ? senderLinkHandler.getInFlightMessageCount() : 0;
     }
 
     @Override
@@ -162,6 +493,24 @@ public class CloudToDeviceMessageConnectionHandler extends AmqpConnectionHandler
             this.cloudToDeviceMessageSenderLinkHandler.close();
         }
 
+        if (this.presettledSenderLinkHandler != null)
+        {
+            log.debug("Shutdown event occurred, closing presettled sender link");
+            this.presettledSenderLinkHandler.close();
+        }
+
+        if (this.messageFeedbackReceiverLinkHandler != null)
+        {
+            log.debug("Shutdown event occurred, closing shared cloud to device feedback message receiver link");
+            this.messageFeedbackReceiverLinkHandler.close();
+        }
+
+        if (this.fileUploadNotificationReceiverLinkHandler != null)
+        {
+            log.debug("Shutdown event occurred, closing shared file upload notification receiver link");
+            this.fileUploadNotificationReceiverLinkHandler.close();
+        }
+
         if (this.session != null)
         {
             log.debug("Shutdown event occurred, closing session");
@@ -171,9 +520,82 @@ public class CloudToDeviceMessageConnectionHandler extends AmqpConnectionHandler
         super.closeAsync(onConnectionClosedCallback);
     }
 
+    /**
+     * Fail all messages that are still queued. Messages stay queued when the connection is lost so that they can be
+     * sent once it is reopened, so this is needed when the connection won't be reopened.
+     */
+    public void failQueuedMessages()
+    {
+        CloudToDeviceMessageSenderLinkHandler.failQueuedMessages(this.outgoingMessageQueue);
+        if (this.presettledMessageQueue != null)
+        {
+            CloudToDeviceMessageSenderLinkHandler.failQueuedMessages(this.presettledMessageQueue);
+        }
+    }
+
+    /**
+     * Fail the queued messages that are past their send deadline or that have expired.
+     */
+    public void failTimedOutQueuedMessages()
+    {
+        CloudToDeviceMessageSenderLinkHandler.failTimedOutQueuedMessages(this.outgoingMessageQueue);
+        if (this.presettledMessageQueue != null)
+        {
+            CloudToDeviceMessageSenderLinkHandler.failTimedOutQueuedMessages(this.presettledMessageQueue);
+        }
+    }
+
+    @Override
+    public void onConnectionLocalClose(Event event)
+    {
+        super.onConnectionLocalClose(event);
+
+        // Does nothing if the connection was closed by the user, since the link was closed first
+        onConnectionLost();
+    }
+
+    @Override
+    public void onTransportError(Event event)
+    {
+        super.onTransportError(event);
+
+        // The service can't close the connection once the transport failed, so stop the reactor rather than waiting
+        // for it to
+        if (event.getReactor() != null)
+        {
+            log.debug("Stopping reactor since amqp transport error was thrown");
+            event.getReactor().stop();
+        }
+    }
+
     @Override
     public void onReactorFinal(Event event)
     {
+        onConnectionLost();
         this.cloudToDeviceMessageSenderLinkHandler = null;
+        this.presettledSenderLinkHandler = null;
+        this.messageFeedbackReceiverLinkHandler = null;
+        this.fileUploadNotificationReceiverLinkHandler = null;
+    }
+
+    private void onConnectionLost()
+    {
+        ReactorWakeup wakeup = this.receiverLinkWakeup;
+        if (wakeup != null)
+        {
+            this.receiverLinkWakeup = null;
+            wakeup.close();
+        }
+
+        if (this.cloudToDeviceMessageSenderLinkHandler != null)
+        {
+            this.cloudToDeviceMessageSenderLinkHandler.onConnectionLost(this.replayUnacknowledgedMessages);
+        }
+
+        if (this.presettledSenderLinkHandler != null)
+        {
+            // Presettled messages are never unacknowledged, so there is nothing to replay
+            this.presettledSenderLinkHandler.onConnectionLost(false);
+        }
     }
 }
\ No newline at end of file
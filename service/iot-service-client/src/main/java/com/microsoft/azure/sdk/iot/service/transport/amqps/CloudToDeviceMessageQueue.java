@@ -0,0 +1,400 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageQueueFullException;
+import com.microsoft.azure.sdk.iot.service.messaging.QueueOverflowPolicy;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * The queue of cloud to device messages that have been sent by the user but not yet handed to the sender link. The
+ * queue can be bounded by a number of messages and by the total size of the queued message payloads. What happens when
+ * a message doesn't fit is decided by the {@link QueueOverflowPolicy}.
+ */
+public final class CloudToDeviceMessageQueue
+{
+    /**
+     * The maximum number of queued messages, or 0 if the number of messages is not limited.
+     */
+    @Getter
+    private final int maxMessages;
+
+    /**
+     * The maximum total size in bytes of the queued message payloads, or 0 if the size is not limited.
+     */
+    @Getter
+    private final long maxBytes;
+
+    @Getter
+    private final QueueOverflowPolicy overflowPolicy;
+
+    @Getter
+    private final long overflowTimeoutMilliseconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition spaceAvailable = this.lock.newCondition();
+    private final ArrayDeque<CloudToDeviceMessage> messages = new ArrayDeque<>();
+
+    // Written while holding the lock, but readable without it for monitoring purposes
+    private volatile int size;
+    private volatile long sizeInBytes;
+
+    /**
+     * Create a queue that doesn't limit the number or size of queued messages.
+     */
+    public CloudToDeviceMessageQueue()
+    {
+        this(0, 0, QueueOverflowPolicy.FAIL_FAST, 0);
+    }
+
+    /**
+     * Create a bounded queue.
+     *
+     * @param maxMessages the maximum number of queued messages. If 0, the number of messages is not limited.
+     * @param maxBytes the maximum total size in bytes of the queued message payloads. If 0, the size is not limited.
+     * @param overflowPolicy what to do when a message doesn't fit in the queue.
+     * @param overflowTimeoutMilliseconds how long to wait for space in the queue when the overflow policy is
+     * {@link QueueOverflowPolicy#BLOCK}. If 0, waits indefinitely.
+     */
+    public CloudToDeviceMessageQueue(int maxMessages, long maxBytes, QueueOverflowPolicy overflowPolicy, long overflowTimeoutMilliseconds)
+    {
+        Objects.requireNonNull(overflowPolicy, "overflowPolicy cannot be null");
+
+        if (maxMessages < 0 || maxBytes < 0 || overflowTimeoutMilliseconds < 0)
+        {
+            throw new IllegalArgumentException("Queue limits and timeouts must be non-negative");
+        }
+
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowTimeoutMilliseconds = overflowTimeoutMilliseconds;
+    }
+
+    /**
+     * @return the number of queued messages.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the total size in bytes of the queued message payloads.
+     */
+    public long sizeInBytes()
+    {
+        return this.sizeInBytes;
+    }
+
+    /**
+     * Add a message to the end of the queue, applying the overflow policy if it doesn't fit.
+     *
+     * @param message the message to add.
+     * @param mayBlock false if the calling thread must not wait for space in the queue, in which case the
+     * {@link QueueOverflowPolicy#BLOCK} policy fails right away instead.
+     * @param onMessageDropped called, after this method released the queue, with each message that the
+     * {@link QueueOverflowPolicy#DROP_OLDEST} policy removed from the queue.
+     * @throws IotHubMessageQueueFullException if the message did not fit in the queue.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for space in the queue.
+     */
+    void add(CloudToDeviceMessage message, boolean mayBlock, Consumer<CloudToDeviceMessage> onMessageDropped)
+        throws IotHubMessageQueueFullException, InterruptedException
+    {
+        int messageBytes = message.getSizeInBytes();
+        if (this.maxBytes > 0 && messageBytes > this.maxBytes)
+        {
+            throw new IotHubMessageQueueFullException(
+                "The message payload is larger than the maximum size of the outgoing message queue (" + this.maxBytes + " bytes)");
+        }
+
+        List<CloudToDeviceMessage> droppedMessages;
+        this.lock.lock();
+        try
+        {
+            droppedMessages = makeSpaceFor(1, messageBytes, mayBlock);
+            addLast(message);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+
+        for (CloudToDeviceMessage droppedMessage : droppedMessages)
+        {
+            onMessageDropped.accept(droppedMessage);
+        }
+    }
+
+    /**
+     * Add several messages to the end of the queue at once, applying the overflow policy if they don't all fit. Either
+     * all of the messages are added, in order and without any other message in between them, or none of them are.
+     *
+     * @param messages the messages to add.
+     * @param mayBlock false if the calling thread must not wait for space in the queue, in which case the
+     * {@link QueueOverflowPolicy#BLOCK} policy fails right away instead.
+     * @param onMessageDropped called, after this method released the queue, with each message that the
+     * {@link QueueOverflowPolicy#DROP_OLDEST} policy removed from the queue.
+     * @throws IotHubMessageQueueFullException if the messages did not fit in the queue.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for space in the queue.
+     */
+    void addAll(List<CloudToDeviceMessage> messages, boolean mayBlock, Consumer<CloudToDeviceMessage> onMessageDropped)
+        throws IotHubMessageQueueFullException, InterruptedException
+    {
+        long messagesBytes = 0;
+        for (CloudToDeviceMessage message : messages)
+        {
+            messagesBytes += message.getSizeInBytes();
+        }
+
+        if ((this.maxMessages > 0 && messages.size() > this.maxMessages) || (this.maxBytes > 0 && messagesBytes > this.maxBytes))
+        {
+            throw new IotHubMessageQueueFullException("The batch of messages is larger than the maximum size of the outgoing message queue");
+        }
+
+        List<CloudToDeviceMessage> droppedMessages;
+        this.lock.lock();
+        try
+        {
+            droppedMessages = makeSpaceFor(messages.size(), messagesBytes, mayBlock);
+            for (CloudToDeviceMessage message : messages)
+            {
+                addLast(message);
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+
+        for (CloudToDeviceMessage droppedMessage : droppedMessages)
+        {
+            onMessageDropped.accept(droppedMessage);
+        }
+    }
+
+    /**
+     * @return the message at the front of the queue, or null if the queue is empty.
+     */
+    CloudToDeviceMessage poll()
+    {
+        if (this.size == 0)
+        {
+            return null;
+        }
+
+        this.lock.lock();
+        try
+        {
+            return this.messages.isEmpty() ? null : removeFirst();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the message at the front of the queue, or null if the queue is empty or if the message at the front of
+     * the queue is still being encoded. Messages behind it are not returned either, so that messages are always sent in
+     * the order they were queued.
+     */
+    CloudToDeviceMessage pollReadyToSend()
+    {
+        if (this.size == 0)
+        {
+            return null;
+        }
+
+        this.lock.lock();
+        try
+        {
+            CloudToDeviceMessage message = this.messages.peekFirst();
+            return message == null || !message.isReadyToSend() ? null : removeFirst();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Put messages back at the front of the queue, ahead of the messages already in it, in the given order. The queue
+     * limits are not applied, since the messages were already admitted to the queue once.
+     *
+     * @param messages the messages to put back.
+     */
+    void addFirst(List<CloudToDeviceMessage> messages)
+    {
+        this.lock.lock();
+        try
+        {
+            for (int i = messages.size() - 1; i >= 0; i--)
+            {
+                CloudToDeviceMessage message = messages.get(i);
+                this.messages.addFirst(message);
+                this.size++;
+                this.sizeInBytes += message.getSizeInBytes();
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the messages that are past their send deadline or that have expired.
+     *
+     * @param nowNanoseconds the current value of {@link System#nanoTime()}.
+     * @return the removed messages, in queue order.
+     */
+    List<CloudToDeviceMessage> removeTimedOut(long nowNanoseconds)
+    {
+        if (this.size == 0)
+        {
+            return Collections.emptyList();
+        }
+
+        List<CloudToDeviceMessage> removedMessages = new ArrayList<>();
+        this.lock.lock();
+        try
+        {
+            Iterator<CloudToDeviceMessage> iterator = this.messages.iterator();
+            while (iterator.hasNext())
+            {
+                CloudToDeviceMessage message = iterator.next();
+                if (message.isPastSendDeadline(nowNanoseconds) || message.isExpired())
+                {
+                    iterator.remove();
+                    this.size--;
+                    this.sizeInBytes -= message.getSizeInBytes();
+                    removedMessages.add(message);
+                }
+            }
+
+            if (!removedMessages.isEmpty())
+            {
+                this.spaceAvailable.signalAll();
+            }
+
+            return removedMessages;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all messages from the queue.
+     *
+     * @return the removed messages, in queue order.
+     */
+    List<CloudToDeviceMessage> clear()
+    {
+        this.lock.lock();
+        try
+        {
+            List<CloudToDeviceMessage> removedMessages = new ArrayList<>(this.messages);
+            this.messages.clear();
+            this.size = 0;
+            this.sizeInBytes = 0;
+            this.spaceAvailable.signalAll();
+            return removedMessages;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    // Must be called while holding the lock. Returns the messages that were dropped to make space, if any.
+    private List<CloudToDeviceMessage> makeSpaceFor(int messageCount, long messagesBytes, boolean mayBlock)
+        throws IotHubMessageQueueFullException, InterruptedException
+    {
+        if (hasSpaceFor(messageCount, messagesBytes))
+        {
+            return Collections.emptyList();
+        }
+
+        switch (this.overflowPolicy)
+        {
+            case BLOCK:
+                if (!mayBlock || !awaitSpaceFor(messageCount, messagesBytes))
+                {
+                    throw new IotHubMessageQueueFullException("Timed out waiting for space in the outgoing message queue");
+                }
+                return Collections.emptyList();
+
+            case DROP_OLDEST:
+                List<CloudToDeviceMessage> droppedMessages = new ArrayList<>();
+                while (!hasSpaceFor(messageCount, messagesBytes))
+                {
+                    droppedMessages.add(removeFirst());
+                }
+                return droppedMessages;
+
+            default:
+                throw new IotHubMessageQueueFullException("The outgoing message queue is full");
+        }
+    }
+
+    private boolean hasSpaceFor(int messageCount, long messagesBytes)
+    {
+        // An empty queue always accepts messages that passed the size check in add() or addAll()
+        return this.messages.isEmpty()
+            || ((this.maxMessages == 0 || this.size + messageCount <= this.maxMessages)
+                && (this.maxBytes == 0 || this.sizeInBytes + messagesBytes <= this.maxBytes));
+    }
+
+    private boolean awaitSpaceFor(int messageCount, long messagesBytes) throws InterruptedException
+    {
+        long remainingNanoseconds = TimeUnit.MILLISECONDS.toNanos(this.overflowTimeoutMilliseconds);
+        while (!hasSpaceFor(messageCount, messagesBytes))
+        {
+            if (this.overflowTimeoutMilliseconds == 0)
+            {
+                this.spaceAvailable.await();
+            }
+            else if (remainingNanoseconds <= 0)
+            {
+                return false;
+            }
+            else
+            {
+                remainingNanoseconds = this.spaceAvailable.awaitNanos(remainingNanoseconds);
+            }
+        }
+
+        return true;
+    }
+
+    private void addLast(CloudToDeviceMessage message)
+    {
+        this.messages.addLast(message);
+        this.size++;
+        this.sizeInBytes += message.getSizeInBytes();
+    }
+
+    private CloudToDeviceMessage removeFirst()
+    {
+        CloudToDeviceMessage message = this.messages.removeFirst();
+        this.size--;
+        this.sizeInBytes -= message.getSizeInBytes();
+        this.spaceAvailable.signalAll();
+        return message;
+    }
+}
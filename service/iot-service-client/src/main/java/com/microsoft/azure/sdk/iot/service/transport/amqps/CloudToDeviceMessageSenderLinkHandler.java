@@ -6,20 +6,28 @@
 package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageQueueFullException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageTimeoutException;
+import com.microsoft.azure.sdk.iot.service.messaging.DeviceMessage;
 import com.microsoft.azure.sdk.iot.service.messaging.Message;
 import com.microsoft.azure.sdk.iot.service.messaging.SendResult;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.amqp.messaging.Rejected;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.reactor.Reactor;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
 /**
@@ -32,15 +40,119 @@ import java.util.function.Consumer;
 @Slf4j
 public class CloudToDeviceMessageSenderLinkHandler extends SenderLinkHandler
 {
-    private final Queue<CloudToDeviceMessage> outgoingMessageQueue = new ConcurrentLinkedQueue<>();
-    private final Map<Integer, CloudToDeviceMessage> unacknowledgedMessages = new ConcurrentHashMap<>();
+    // Send deadlines are enforced with this precision
+    private static final int SEND_DEADLINE_TICK_MILLISECONDS = 100;
+    private static final int SEND_DEADLINE_WHEEL_BUCKET_COUNT = 512;
+
+    private final CloudToDeviceMessageQueue outgoingMessageQueue;
+    private final Executor messageEncodingExecutor;
+
+    // If true, messages are settled as soon as they are sent, so they are neither acknowledged by the service nor tracked
+    private final boolean presettled;
+    private final IntObjectHashMap<CloudToDeviceMessage> unacknowledgedMessages = new IntObjectHashMap<>();
+    private volatile ReactorWakeup reactorWakeup;
+    private volatile Thread reactorThread;
+    private volatile boolean closed;
+
+    // Only used by the reactor thread. Tracks the send deadlines of messages that were sent, but not acknowledged yet.
+    private final HashedTimingWheel<CloudToDeviceMessage> sendDeadlines =
+        new HashedTimingWheel<>(SEND_DEADLINE_TICK_MILLISECONDS, SEND_DEADLINE_WHEEL_BUCKET_COUNT, System.nanoTime());
+    private Reactor reactor;
+    private boolean sendDeadlineTimerScheduled;
+
+    // How long queued messages may wait for more messages to be written to the connection along with them, and how many
+    // bytes of queued message payloads end that wait early. Lingering is read by the threads that send messages, so
+    // that they don't wake the reactor up for messages that would wait anyway.
+    private int lingerMilliseconds;
+    private long lingerMaxBatchBytes;
+    private volatile boolean lingering;
+
+    // Only used by the reactor thread. Stamps each linger period so that the timer of a period that already ended when
+    // its batch filled up can't end a later period early.
+    private long lingerPeriod;
 
     public CloudToDeviceMessageSenderLinkHandler(Sender sender, String linkCorrelationId, LinkStateCallback linkStateCallback)
+    {
+        this(sender, linkCorrelationId, linkStateCallback, new CloudToDeviceMessageQueue());
+    }
+
+    public CloudToDeviceMessageSenderLinkHandler(
+        Sender sender,
+        String linkCorrelationId,
+        LinkStateCallback linkStateCallback,
+        CloudToDeviceMessageQueue outgoingMessageQueue)
+    {
+        this(sender, linkCorrelationId, linkStateCallback, outgoingMessageQueue, null);
+    }
+
+    /**
+     * @param messageEncodingExecutor the executor that encodes messages before the reactor thread sends them. If null,
+     * messages are encoded by the reactor thread as it sends them.
+     */
+    public CloudToDeviceMessageSenderLinkHandler(
+        Sender sender,
+        String linkCorrelationId,
+        LinkStateCallback linkStateCallback,
+        CloudToDeviceMessageQueue outgoingMessageQueue,
+        Executor messageEncodingExecutor)
+    {
+        this(sender, linkCorrelationId, linkStateCallback, outgoingMessageQueue, messageEncodingExecutor, false);
+    }
+
+    /**
+     * @param messageEncodingExecutor the executor that encodes messages before the reactor thread sends them. If null,
+     * messages are encoded by the reactor thread as it sends them.
+     * @param presettled if true, messages are sent settled. The service doesn't acknowledge them, so they complete as
+     * soon as they are written to the link, and this link keeps no record of them.
+     */
+    public CloudToDeviceMessageSenderLinkHandler(
+        Sender sender,
+        String linkCorrelationId,
+        LinkStateCallback linkStateCallback,
+        CloudToDeviceMessageQueue outgoingMessageQueue,
+        Executor messageEncodingExecutor,
+        boolean presettled)
     {
         super(sender, linkCorrelationId, linkStateCallback);
+        this.outgoingMessageQueue = outgoingMessageQueue;
+        this.messageEncodingExecutor = messageEncodingExecutor;
+        this.presettled = presettled;
+    }
+
+    /**
+     * Let queued messages wait a little before they are sent, so that more messages can be written to the connection
+     * along with them. Must be called before the link opens.
+     *
+     * @param lingerMilliseconds the longest time that a queued message waits. If 0, messages are sent right away.
+     * @param lingerMaxBatchBytes the total size of queued message payloads at which they are sent without waiting any
+     * longer.
+     */
+    void setLinger(int lingerMilliseconds, long lingerMaxBatchBytes)
+    {
+        this.lingerMilliseconds = lingerMilliseconds;
+        this.lingerMaxBatchBytes = lingerMaxBatchBytes;
+    }
+
+    /**
+     * @return the number of messages that have been sent over this link, but not yet acknowledged by the service.
+     */
+    public int getInFlightMessageCount()
+    {
+        return this.unacknowledgedMessages.size();
     }
 
     public void sendAsync(String deviceId, String moduleId, Message iotHubMessage, Consumer<SendResult> callback, Object context)
+    {
+        sendAsync(deviceId, moduleId, iotHubMessage, 0, callback, context);
+    }
+
+    /**
+     * Queue a message.
+     *
+     * @param timeoutMilliseconds the time that the service has to acknowledge the message from now on. If it doesn't,
+     * the message fails with an {@link IotHubMessageTimeoutException}. If 0, there is no time limit.
+     */
+    public void sendAsync(String deviceId, String moduleId, Message iotHubMessage, long timeoutMilliseconds, Consumer<SendResult> callback, Object context)
     {
         if (moduleId == null)
         {
@@ -51,7 +163,176 @@ public class CloudToDeviceMessageSenderLinkHandler extends SenderLinkHandler
             log.trace("Queueing cloud to module message with correlation id {}", iotHubMessage.getCorrelationId());
         }
 
-        outgoingMessageQueue.add(new CloudToDeviceMessage(deviceId, moduleId, iotHubMessage, callback, context));
+        CloudToDeviceMessage outgoingMessage = new CloudToDeviceMessage(deviceId, moduleId, iotHubMessage, callback, context);
+        outgoingMessage.setSendTimeout(timeoutMilliseconds);
+        if (this.messageEncodingExecutor != null)
+        {
+            outgoingMessage.setEncodingPending();
+        }
+
+        try
+        {
+            // The reactor thread is the one that empties the queue, so it must never wait for space in it
+            boolean mayBlock = Thread.currentThread() != this.reactorThread;
+            this.outgoingMessageQueue.add(outgoingMessage, mayBlock, CloudToDeviceMessageSenderLinkHandler::completeAsDropped);
+        }
+        catch (IotHubMessageQueueFullException e)
+        {
+            outgoingMessage.complete(e);
+            return;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            outgoingMessage.complete(new IotHubException("Interrupted while waiting for space in the outgoing message queue"));
+            return;
+        }
+
+        if (this.messageEncodingExecutor != null)
+        {
+            // Queued before being encoded so that messages keep the order they were sent in no matter which encoder
+            // thread finishes first. The reactor is woken up again once the message is encoded.
+            encodeAsync(outgoingMessage);
+        }
+
+        wakeupReactor();
+    }
+
+    /**
+     * Queue several messages at once. The messages are added to the outgoing message queue atomically and the reactor
+     * is woken up only once for all of them, so they are sent together as link credit allows. The result of each
+     * message is reported to the batch rather than to a callback of its own.
+     *
+     * @param messages the messages of the batch that should be sent over this link.
+     * @param batchIndices the position in the batch of each of the messages, in the same order as the messages.
+     * @param batch the batch to report the result of each message to.
+     */
+    public void sendBatchAsync(List<DeviceMessage> messages, int[] batchIndices, CloudToDeviceMessageBatch batch)
+    {
+        log.trace("Queueing batch of {} cloud to device messages", messages.size());
+
+        List<CloudToDeviceMessage> outgoingMessages = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++)
+        {
+            DeviceMessage message = messages.get(i);
+            outgoingMessages.add(
+                new CloudToDeviceMessage(
+                    message.getDeviceId(),
+                    message.getModuleId(),
+                    message.getMessage(),
+                    message.getContext(),
+                    batch,
+                    batchIndices[i]));
+
+            if (this.messageEncodingExecutor != null)
+            {
+                outgoingMessages.get(i).setEncodingPending();
+            }
+        }
+
+        queueAll(outgoingMessages);
+    }
+
+    /**
+     * Queue one message for many devices at once, in the same way as {@link #sendBatchAsync(List, int[], CloudToDeviceMessageBatch)}.
+     * The copy of the message for each device is encoded right away on the calling thread, which only has to encode
+     * the part of the message that differs between devices.
+     *
+     * @param broadcastMessage the message to send.
+     * @param deviceIds the Ids of all the devices of the broadcast, in batch order. Only the ones at the given batch
+     * indices are sent to over this link.
+     * @param messageIds the message Id to send to each device, in batch order, or null to send the message Id of the
+     * message itself to every device.
+     * @param batchIndices the positions in the batch of the devices that should be sent to over this link.
+     * @param batch the batch to report the result of each device's message to.
+     */
+    public void sendBroadcastAsync(
+        CloudToDeviceBroadcastMessage broadcastMessage,
+        List<String> deviceIds,
+        List<String> messageIds,
+        int[] batchIndices,
+        CloudToDeviceMessageBatch batch)
+    {
+        log.trace("Queueing broadcast of cloud to device message with correlation id {} to {} devices", broadcastMessage.getMessage().getCorrelationId(), batchIndices.length);
+
+        List<CloudToDeviceMessage> outgoingMessages = new ArrayList<>(batchIndices.length);
+        for (int batchIndex : batchIndices)
+        {
+            String deviceId = deviceIds.get(batchIndex);
+            String messageId = messageIds != null ? messageIds.get(batchIndex) : broadcastMessage.getMessage().getMessageId();
+            outgoingMessages.add(
+                new CloudToDeviceMessage(
+                    deviceId,
+                    broadcastMessage.getMessage(),
+                    broadcastMessage.encode(deviceId, messageId),
+                    batch,
+                    batchIndex));
+        }
+
+        queueAll(outgoingMessages);
+    }
+
+    private void queueAll(List<CloudToDeviceMessage> outgoingMessages)
+    {
+        try
+        {
+            boolean mayBlock = Thread.currentThread() != this.reactorThread;
+            this.outgoingMessageQueue.addAll(outgoingMessages, mayBlock, CloudToDeviceMessageSenderLinkHandler::completeAsDropped);
+        }
+        catch (IotHubMessageQueueFullException e)
+        {
+            completeAll(outgoingMessages, e);
+            return;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            completeAll(outgoingMessages, new IotHubException("Interrupted while waiting for space in the outgoing message queue"));
+            return;
+        }
+
+        for (CloudToDeviceMessage outgoingMessage : outgoingMessages)
+        {
+            if (!outgoingMessage.isReadyToSend())
+            {
+                encodeAsync(outgoingMessage);
+            }
+        }
+
+        wakeupReactor();
+    }
+
+    private void encodeAsync(CloudToDeviceMessage outgoingMessage)
+    {
+        try
+        {
+            this.messageEncodingExecutor.execute(() ->
+            {
+                outgoingMessage.encode();
+                wakeupReactor();
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            log.debug("Message encoding executor rejected a message, so it will be encoded by the reactor thread instead", e);
+            outgoingMessage.cancelEncoding();
+        }
+    }
+
+    private void wakeupReactor()
+    {
+        if (this.lingering && this.outgoingMessageQueue.sizeInBytes() < this.lingerMaxBatchBytes)
+        {
+            // The linger timer sends this message along with the others. The reactor stops lingering before it sends
+            // the queued messages, so a message queued after they were sent always sees that and wakes it up.
+            return;
+        }
+
+        ReactorWakeup wakeup = this.reactorWakeup;
+        if (wakeup != null)
+        {
+            wakeup.wakeup();
+        }
     }
 
     /**
@@ -61,27 +342,167 @@ public class CloudToDeviceMessageSenderLinkHandler extends SenderLinkHandler
     @Override
     public void onLinkFlow(Event event)
     {
-        event.getReactor().schedule(200, this);
+        // New link credit may allow messages that were queued while there was none to be sent now. If the queued
+        // messages are lingering, the linger timer sends them.
+        if (!this.lingering)
+        {
+            sendQueuedMessages();
+        }
     }
 
-
     @Override
-    public void onTimerTask(Event event)
+    public void onLinkRemoteOpen(Event event)
     {
+        this.reactorThread = Thread.currentThread();
+        this.reactor = event.getReactor();
+
+        try
+        {
+            // Lets sendAsync wake up the reactor so that queued messages go out right away instead of on a timer
+            this.reactorWakeup = new ReactorWakeup(event.getReactor(), this::sendQueuedMessagesOrLinger);
+        }
+        catch (IOException e)
+        {
+            // Without a way to wake up the reactor, queued messages could wait indefinitely, so fail the link instead
+            log.warn("Failed to create the reactor wakeup for {} sender link, closing the link", getLinkInstanceType(), e);
+            this.senderLink.close();
+            return;
+        }
+
+        super.onLinkRemoteOpen(event);
+
+        // Messages queued between the link opening and the reactor wakeup being created would otherwise wait for the
+        // next wakeup
         sendQueuedMessages();
+    }
+
+    private void sendQueuedMessagesOrLinger()
+    {
+        if (this.lingerMilliseconds > 0)
+        {
+            long queuedBytes = this.outgoingMessageQueue.sizeInBytes();
+            if (this.lingering && queuedBytes < this.lingerMaxBatchBytes)
+            {
+                // Woken up by a message that was queued just before the reactor started lingering
+                return;
+            }
 
-        // schedule the next onTimerTask event so that messages can be sent again later
-        event.getReactor().schedule(200, this);
+            if (!this.lingering && this.outgoingMessageQueue.size() > 0 && queuedBytes < this.lingerMaxBatchBytes)
+            {
+                this.lingering = true;
+                final long period = ++this.lingerPeriod;
+                this.reactor.schedule(this.lingerMilliseconds, new BaseHandler()
+                {
+                    @Override
+                    public void onTimerTask(Event event)
+                    {
+                        onLingerTimerTask(period);
+                    }
+                });
+                return;
+            }
+        }
+
+        sendLingeringMessages();
+    }
+
+    private void onLingerTimerTask(long period)
+    {
+        // Once the link is closed, its queue may belong to the next connection
+        if (period == this.lingerPeriod && this.lingering && !this.closed)
+        {
+            sendLingeringMessages();
+        }
+    }
+
+    private void sendLingeringMessages()
+    {
+        // Must be cleared before the queue is read, see wakeupReactor()
+        this.lingering = false;
+        sendQueuedMessages();
     }
 
     private void sendQueuedMessages()
     {
-        CloudToDeviceMessage outgoingMessage = this.outgoingMessageQueue.poll();
-        while (outgoingMessage != null)
+        // Messages beyond the link credit the service has granted stay in the bounded queue rather than being buffered
+        // by proton-j without any limit
+        while (this.senderLink.getCredit() > 0)
         {
-            int deliveryTag = this.sendMessageAndGetDeliveryTag(outgoingMessage.getProtonMessage());
-            this.unacknowledgedMessages.put(deliveryTag, outgoingMessage);
-            outgoingMessage = this.outgoingMessageQueue.poll();
+            // Stops at a message that is still being encoded. Its encoder wakes the reactor up again once it is done.
+            CloudToDeviceMessage outgoingMessage = this.outgoingMessageQueue.pollReadyToSend();
+            if (outgoingMessage == null)
+            {
+                return;
+            }
+
+            // Checked here rather than while the message is queued, so that queued messages don't need a timer of their own
+            if (outgoingMessage.isPastSendDeadline(System.nanoTime()))
+            {
+                outgoingMessage.complete(new IotHubMessageTimeoutException("Message timed out before it could be sent"));
+                continue;
+            }
+
+            if (outgoingMessage.isExpired())
+            {
+                // The service would discard the message anyway, so don't spend link credit on it
+                outgoingMessage.complete(new IotHubMessageTimeoutException("Message expired before it could be sent"));
+                continue;
+            }
+
+            byte[] encodedMessage = outgoingMessage.getEncodedMessage();
+            int deliveryTag = encodedMessage != null
+                ? this.sendEncodedMessageAndGetDeliveryTag(encodedMessage)
+                : this.sendMessageAndGetDeliveryTag(outgoingMessage.getProtonMessage());
+            if (deliveryTag == -1)
+            {
+                outgoingMessage.complete(new IotHubException("Message failed to send over the amqp link"));
+            }
+            else if (this.presettled)
+            {
+                outgoingMessage.complete(null);
+            }
+            else
+            {
+                outgoingMessage.setDeliveryTag(deliveryTag);
+                this.unacknowledgedMessages.put(deliveryTag, outgoingMessage);
+                if (outgoingMessage.hasSendDeadline())
+                {
+                    this.sendDeadlines.add(outgoingMessage, outgoingMessage.getSendDeadlineNanoseconds());
+                    scheduleSendDeadlineTimer();
+                }
+            }
+        }
+    }
+
+    private void scheduleSendDeadlineTimer()
+    {
+        if (!this.sendDeadlineTimerScheduled && !this.closed)
+        {
+            // Only scheduled while there are deadlines to enforce, so that an idle link doesn't keep waking the reactor
+            this.reactor.schedule(SEND_DEADLINE_TICK_MILLISECONDS, this);
+            this.sendDeadlineTimerScheduled = true;
+        }
+    }
+
+    @Override
+    public void onTimerTask(Event event)
+    {
+        this.sendDeadlineTimerScheduled = false;
+        this.sendDeadlines.advance(System.nanoTime(), this::onSendDeadlinePassed);
+
+        if (this.sendDeadlines.size() > 0)
+        {
+            scheduleSendDeadlineTimer();
+        }
+    }
+
+    private void onSendDeadlinePassed(CloudToDeviceMessage message)
+    {
+        // May have been removed already if the link was closed from another thread
+        if (this.unacknowledgedMessages.remove(message.getDeliveryTag()) != null)
+        {
+            log.debug("Cloud to device message with correlation id {} was not acknowledged before its send deadline", message.getCorrelationId());
+            message.complete(new IotHubMessageTimeoutException("Message was sent, but the service did not acknowledge it before the send timeout"));
         }
     }
 
@@ -92,12 +513,14 @@ public class CloudToDeviceMessageSenderLinkHandler extends SenderLinkHandler
 
         DeliveryState remoteState = delivery.getRemoteState();
 
-        int deliveryTag = Integer.parseInt(new String(delivery.getTag(), StandardCharsets.UTF_8));
+        int deliveryTag = decodeDeliveryTag(delivery.getTag());
 
         CloudToDeviceMessage message = unacknowledgedMessages.remove(deliveryTag);
 
         if (message != null)
         {
+            this.sendDeadlines.remove(message);
+
             String correlationId = message.getCorrelationId();
             log.trace("Acknowledgement arrived for sent cloud to device message with correlation id {}", correlationId);
 
@@ -109,19 +532,7 @@ public class CloudToDeviceMessageSenderLinkHandler extends SenderLinkHandler
                 messageException = new ProtonJExceptionParser(error, errorDescription).getIotHubException();
             }
 
-            Consumer<SendResult> onMessageSentCallback = message.getOnMessageSentCallback();
-
-            if (onMessageSentCallback != null)
-            {
-                SendResult sendResult =
-                    new SendResult(
-                        messageException == null,
-                        correlationId,
-                        message.getOnMessageSentCallbackContext(),
-                        messageException);
-
-                onMessageSentCallback.accept(sendResult);
-            }
+            message.complete(messageException);
         }
         else
         {
@@ -141,45 +552,129 @@ public class CloudToDeviceMessageSenderLinkHandler extends SenderLinkHandler
     @Override
     void close()
     {
+        this.closed = true;
         super.close();
+        closeReactorWakeup();
+
+        failQueuedMessages(this.outgoingMessageQueue);
 
-        for (CloudToDeviceMessage unsentMessage : outgoingMessageQueue)
+        completeAll(
+            unacknowledgedMessages.removeAll(),
+            new IotHubException("Message failed to send because the client was closed after it was sent, but before it was acknowledged by the service."));
+    }
+
+    /**
+     * Called on the reactor thread when the connection of this link was lost rather than closed by the user. Queued
+     * messages stay queued so that they can be sent once the connection is reopened.
+     *
+     * @param replayUnacknowledgedMessages if true, messages that were sent but not acknowledged yet are put back at the
+     * front of the queue in the order they were sent in, unless they are past their send deadline or have expired, so
+     * that they are sent again once the connection is reopened. The service may then receive some of them twice. If
+     * false, they fail.
+     */
+    void onConnectionLost(boolean replayUnacknowledgedMessages)
+    {
+        if (this.closed)
         {
-            IotHubException exception = new IotHubException("Message failed to send because the client was closed while it was still queued.");
-            Consumer<SendResult> callback = unsentMessage.getOnMessageSentCallback();
-            if (callback != null)
-            {
-                callback.accept(
-                    new SendResult(
-                        false,
-                        unsentMessage.getCorrelationId(),
-                        unsentMessage.getOnMessageSentCallbackContext(),
-                        exception));
-            }
+            // Closed by the user, so all messages were already completed
+            return;
         }
 
-        for (CloudToDeviceMessage unacknowledgedMessage : unacknowledgedMessages.values())
+        this.closed = true;
+
+        // The wakeup would otherwise keep the reactor running after the connection is gone
+        closeReactorWakeup();
+
+        List<CloudToDeviceMessage> lostMessages = this.unacknowledgedMessages.removeAll();
+        for (CloudToDeviceMessage lostMessage : lostMessages)
         {
-            IotHubException exception = new IotHubException("Message failed to send because the client was closed after it was sent, but before it was acknowledged by the service.");
-            Consumer<SendResult> callback = unacknowledgedMessage.getOnMessageSentCallback();
-            if (callback != null)
+            this.sendDeadlines.remove(lostMessage);
+        }
+
+        if (!replayUnacknowledgedMessages)
+        {
+            completeAll(
+                lostMessages,
+                new IotHubException("Message failed to send because the connection was lost after it was sent, but before it was acknowledged by the service."));
+            return;
+        }
+
+        // Delivery tags increase with every message sent over a link, so this restores the order they were sent in
+        lostMessages.sort(Comparator.comparingInt(CloudToDeviceMessage::getDeliveryTag));
+
+        long nowNanoseconds = System.nanoTime();
+        List<CloudToDeviceMessage> replayedMessages = new ArrayList<>(lostMessages.size());
+        for (CloudToDeviceMessage lostMessage : lostMessages)
+        {
+            if (lostMessage.isPastSendDeadline(nowNanoseconds) || lostMessage.isExpired())
             {
-                callback.accept(
-                    new SendResult(
-                        false,
-                        unacknowledgedMessage.getCorrelationId(),
-                        unacknowledgedMessage.getOnMessageSentCallbackContext(),
-                        exception));
+                lostMessage.complete(new IotHubMessageTimeoutException("Message timed out before it could be sent again after the connection was lost"));
             }
+            else
+            {
+                lostMessage.setDeliveryTag(-1);
+                replayedMessages.add(lostMessage);
+            }
+        }
+
+        log.debug("Connection was lost with {} unacknowledged cloud to device messages, {} of which will be sent again once it is reopened", lostMessages.size(), replayedMessages.size());
+        this.outgoingMessageQueue.addFirst(replayedMessages);
+    }
+
+    private void closeReactorWakeup()
+    {
+        ReactorWakeup wakeup = this.reactorWakeup;
+        if (wakeup != null)
+        {
+            wakeup.close();
+            this.reactorWakeup = null;
+        }
+    }
+
+    /**
+     * Fail all messages in the given queue because the client was closed while they were still queued.
+     */
+    static void failQueuedMessages(CloudToDeviceMessageQueue outgoingMessageQueue)
+    {
+        completeAll(
+            outgoingMessageQueue.clear(),
+            new IotHubException("Message failed to send because the client was closed while it was still queued."));
+    }
+
+    /**
+     * Fail the messages in the given queue that are past their send deadline or that have expired, so that their
+     * senders find out while the connection is down rather than once it is reopened.
+     */
+    static void failTimedOutQueuedMessages(CloudToDeviceMessageQueue outgoingMessageQueue)
+    {
+        completeAll(
+            outgoingMessageQueue.removeTimedOut(System.nanoTime()),
+            new IotHubMessageTimeoutException("Message timed out before it could be sent"));
+    }
+
+    private static void completeAsDropped(CloudToDeviceMessage droppedMessage)
+    {
+        droppedMessage.complete(
+            new IotHubMessageQueueFullException("Message was dropped from the full outgoing message queue to make space for a newer message"));
+    }
+
+    private static void completeAll(Collection<CloudToDeviceMessage> messages, IotHubException exception)
+    {
+        for (CloudToDeviceMessage message : messages)
+        {
+            message.complete(exception);
         }
+    }
 
-        outgoingMessageQueue.clear();
-        unacknowledgedMessages.clear();
+    @Override
+    SenderSettleMode getSenderSettleMode()
+    {
+        return this.presettled ? SenderSettleMode.SETTLED : SenderSettleMode.UNSETTLED;
     }
 
     @Override
     protected String getLinkInstanceType()
     {
-        return "cloudToDeviceSender";
+        return this.presettled ? "cloudToDevicePresettledSender" : "cloudToDeviceSender";
     }
 }
@@ -0,0 +1,108 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records when each phase of opening an AMQP connection ended, and turns that into {@link ConnectionOpenTimings} once
+ * the connection is open. Each phase can only end once the phases before it have, so ending a phase also ends any of
+ * the earlier ones that haven't been observed to end yet. Only used on the reactor thread.
+ */
+final class ConnectionOpenTimer
+{
+    // System.nanoTime() may be any value, so unset times are tracked separately rather than with a sentinel value
+    private long connectStartNanos;
+    private long tlsHandshakeCompletedNanos;
+    private long saslHandshakeCompletedNanos;
+    private long authenticatedNanos;
+    private long linkAttachStartNanos;
+
+    private boolean tlsHandshakeCompleted;
+    private boolean saslHandshakeCompleted;
+    private boolean authenticated;
+    private boolean linkAttachStarted;
+    private boolean linkAttachPipelined;
+
+    void onConnectStarted(long nowNanos)
+    {
+        this.connectStartNanos = nowNanos;
+        this.tlsHandshakeCompleted = false;
+        this.saslHandshakeCompleted = false;
+        this.authenticated = false;
+        this.linkAttachStarted = false;
+        this.linkAttachPipelined = false;
+    }
+
+    void onTlsHandshakeCompleted(long nowNanos)
+    {
+        if (!this.tlsHandshakeCompleted)
+        {
+            this.tlsHandshakeCompleted = true;
+            this.tlsHandshakeCompletedNanos = nowNanos;
+        }
+    }
+
+    void onSaslHandshakeCompleted(long nowNanos)
+    {
+        onTlsHandshakeCompleted(nowNanos);
+        if (!this.saslHandshakeCompleted)
+        {
+            this.saslHandshakeCompleted = true;
+            this.saslHandshakeCompletedNanos = nowNanos;
+        }
+    }
+
+    void onAuthenticated(long nowNanos)
+    {
+        onSaslHandshakeCompleted(nowNanos);
+        if (!this.authenticated)
+        {
+            this.authenticated = true;
+            this.authenticatedNanos = nowNanos;
+        }
+    }
+
+    /**
+     * @param pipelined true if the links are attached before the service accepted the authentication token.
+     */
+    void onLinkAttachStarted(long nowNanos, boolean pipelined)
+    {
+        if (!this.linkAttachStarted)
+        {
+            this.linkAttachStarted = true;
+            this.linkAttachStartNanos = nowNanos;
+            this.linkAttachPipelined = pipelined;
+        }
+    }
+
+    boolean isTlsHandshakeCompleted()
+    {
+        return this.tlsHandshakeCompleted;
+    }
+
+    boolean isSaslHandshakeCompleted()
+    {
+        return this.saslHandshakeCompleted;
+    }
+
+    ConnectionOpenTimings onOpened(long nowNanos)
+    {
+        onAuthenticated(nowNanos);
+        onLinkAttachStarted(nowNanos, false);
+
+        return new ConnectionOpenTimings(
+            toMilliseconds(this.tlsHandshakeCompletedNanos - this.connectStartNanos),
+            toMilliseconds(this.saslHandshakeCompletedNanos - this.tlsHandshakeCompletedNanos),
+            toMilliseconds(this.authenticatedNanos - this.saslHandshakeCompletedNanos),
+            toMilliseconds(nowNanos - this.linkAttachStartNanos),
+            toMilliseconds(nowNanos - this.connectStartNanos),
+            this.linkAttachPipelined);
+    }
+
+    private static long toMilliseconds(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
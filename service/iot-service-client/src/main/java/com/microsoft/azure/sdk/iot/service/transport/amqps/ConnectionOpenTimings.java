@@ -0,0 +1,75 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * How long each phase of the latest successful open of an AMQP connection took, for diagnosing slow opens. The phases
+ * are timed on the reactor thread as it handles network IO, so each is accurate to within one pass of the reactor's
+ * event loop. If the end of a phase wasn't observed separately from the end of the next one, it is reported as ending
+ * along with the next one.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class ConnectionOpenTimings
+{
+    /**
+     * The milliseconds from starting to connect to the service, or to the proxy, until the TLS handshake completed. This
+     * covers connecting the socket, tunneling through the proxy if there is one, and the TLS handshake. The reactor
+     * doesn't raise an event once the socket is connected, so connecting isn't timed separately from the handshake.
+     */
+    @Getter
+    private final long connectAndTlsHandshakeMilliseconds;
+
+    /**
+     * The milliseconds from the end of the connect and TLS phase until the SASL handshake completed.
+     */
+    @Getter
+    private final long saslHandshakeMilliseconds;
+
+    /**
+     * The milliseconds from the end of the SASL phase until the service accepted the authentication token. This covers
+     * opening the AMQP connection and the CBS session and links, getting the token, and the put-token round trip.
+     */
+    @Getter
+    private final long cbsAuthenticationMilliseconds;
+
+    /**
+     * The milliseconds from starting to attach the session and links that messages are sent or received over until all
+     * of them were open. If {@link #isLinkAttachPipelined()}, this overlaps with the CBS phase.
+     */
+    @Getter
+    private final long linkAttachMilliseconds;
+
+    /**
+     * The milliseconds from starting to connect until the connection was open.
+     */
+    @Getter
+    private final long totalMilliseconds;
+
+    private final boolean linkAttachPipelined;
+
+    /**
+     * @return true if the session and links were attached right after the authentication token was sent, rather than
+     * once the service accepted it.
+     */
+    public boolean isLinkAttachPipelined()
+    {
+        // opting not to use lombok getter so that the naming matches the option that enables it
+        return this.linkAttachPipelined;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "connect+tls=" + this.connectAndTlsHandshakeMilliseconds
+            + "ms, sasl=" + this.saslHandshakeMilliseconds
+            + "ms, cbs=" + this.cbsAuthenticationMilliseconds
+            + "ms, attach=" + this.linkAttachMilliseconds
+            + (this.linkAttachPipelined ? "ms (pipelined)" : "ms")
+            + ", total=" + this.totalMilliseconds + "ms";
+    }
+}
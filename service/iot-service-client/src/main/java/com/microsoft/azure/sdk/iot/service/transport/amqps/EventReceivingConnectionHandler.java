@@ -24,7 +24,11 @@ import org.apache.qpid.proton.engine.Session;
 
 import javax.net.ssl.SSLContext;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -43,13 +47,41 @@ public class EventReceivingConnectionHandler extends AmqpConnectionHandler imple
     public static final String MESSAGE_FEEDBACK_RECEIVE_TAG = "cloudToDeviceMessageFeedbackReceiver";
     private static final String MESSAGE_FEEDBACK_ENDPOINT = "/messages/servicebound/feedback";
 
-    private FileUploadNotificationReceiverLinkHandler fileUploadNotificationReceiverLinkHandler;
-    private MessageFeedbackReceiverLinkHandler messageFeedbackReceiverLinkHandler;
+    // The competing receiver links of this connection. Written on the reactor thread and read from any thread.
+    private final List<ReceiverLinkHandler> receiverLinkHandlers = new CopyOnWriteArrayList<>();
     private Session session;
 
+    // The number of receiver links that the service has opened. Only accessed on the reactor thread.
+    private int openedReceiverLinkCount;
+
+    // Executed once the connection is authenticated and every receiver link has been opened
     @Setter
     private Runnable onConnectionOpenedCallback;
 
+    // The number of messages that the service may send on each receiver link ahead of the one being processed
+    @Setter
+    private int prefetchCount = 1;
+
+    // The number of receiver links that compete for the messages of the endpoint
+    @Setter
+    private int receiverLinkCount = 1;
+
+    // Shared by all the receiver links of this connection, so that they are counted together
+    @Setter
+    private ReceiverLinkMetrics receiverLinkMetrics = new ReceiverLinkMetrics();
+
+    // Callbacks that complete their acknowledgement asynchronously. Used instead of the synchronous callbacks passed to
+    // the constructor, which must be null when these are set.
+    @Setter
+    private Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> asyncFileUploadNotificationReceivedCallback;
+
+    @Setter
+    private Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> asyncMessageFeedbackReceivedCallback;
+
+    // The executor that the asynchronous callbacks execute on. If null, they execute on the reactor thread.
+    @Setter
+    private Executor callbackExecutor;
+
     private final Function<FileUploadNotification, AcknowledgementType> fileUploadNotificationReceivedCallback;
     private final Function<FeedbackBatch, AcknowledgementType> messageFeedbackReceivedCallback;
 
@@ -101,11 +133,10 @@ public class EventReceivingConnectionHandler extends AmqpConnectionHandler imple
     }
 
     @Override
-    public void onAuthenticationSucceeded()
+    void openLinks()
     {
-        // Only open the session and receiver link if this authentication was for the first open. This callback
-        // will be executed again after every proactive renewal, but nothing needs to be done after a proactive renewal
-        if (fileUploadNotificationReceiverLinkHandler == null)
+        // Only open the session and receiver links if they weren't opened already for this connection
+        if (this.session == null)
         {
             // Every session or link could have their own handler(s) if we
             // wanted simply by adding the handler to the given session
@@ -113,49 +144,168 @@ public class EventReceivingConnectionHandler extends AmqpConnectionHandler imple
 
             this.session = this.connection.session();
             this.session.open();
+            this.openedReceiverLinkCount = 0;
 
             // If a link doesn't have an event handler, the events go to
             // its parent session. If the session doesn't have a handler
             // the events go to its parent connection. If the connection
             // doesn't have a handler, the events go to the reactor.
 
-            Map<Symbol, Object> properties = new HashMap<>();
-            properties.put(Symbol.getSymbol(TransportUtils.versionIdentifierKey), TransportUtils.USER_AGENT_STRING);
-
-            if (this.fileUploadNotificationReceivedCallback != null)
+            // The links compete for the messages of the endpoint, each with its own credit, so that the service can have
+            // a prefetch count of messages in flight on each of them
+            for (int linkIndex = 0; linkIndex < this.receiverLinkCount; linkIndex++)
             {
-                Receiver fileUploadNotificationReceiverLink = this.session.receiver(FILE_NOTIFICATION_RECEIVE_TAG);
-                fileUploadNotificationReceiverLink.setProperties(properties);
-                fileUploadNotificationReceiverLink.open();
-                Source source = new Source();
-                source.setAddress(FILENOTIFICATION_ENDPOINT);
-                fileUploadNotificationReceiverLink.setSource(source);
-
-                // We only want to receive, at most, one file upload notification since each receive call the user makes can
-                // only return either a single file upload notification or null (no file upload notification received).
-                // Extend only a single link credit to the service so that the service can't send more than one message.
-                fileUploadNotificationReceiverLink.flow(1);
-                fileUploadNotificationReceiverLinkHandler = new FileUploadNotificationReceiverLinkHandler(fileUploadNotificationReceiverLink, this, this.fileUploadNotificationReceivedCallback);
+                ReceiverLinkHandler receiverLinkHandler = createReceiverLinkHandler(linkIndex);
+                if (receiverLinkHandler == null)
+                {
+                    break;
+                }
+
+                receiverLinkHandler.setMetrics(this.receiverLinkMetrics);
+                this.receiverLinkHandlers.add(receiverLinkHandler);
             }
+        }
+    }
+
+    @Override
+    boolean areLinksOpen()
+    {
+        return !this.receiverLinkHandlers.isEmpty() && this.openedReceiverLinkCount == this.receiverLinkHandlers.size();
+    }
+
+    @Override
+    void onOpened()
+    {
+        if (this.onConnectionOpenedCallback != null)
+        {
+            this.onConnectionOpenedCallback.run();
+        }
+    }
+
+    private ReceiverLinkHandler createReceiverLinkHandler(int linkIndex)
+    {
+        if (this.fileUploadNotificationReceivedCallback != null)
+        {
+            return new FileUploadNotificationReceiverLinkHandler(
+                openFileUploadNotificationReceiverLink(this.session, linkIndex, this.prefetchCount),
+                this,
+                this.fileUploadNotificationReceivedCallback,
+                this.prefetchCount);
+        }
+        else if (this.asyncFileUploadNotificationReceivedCallback != null)
+        {
+            return new FileUploadNotificationReceiverLinkHandler(
+                openFileUploadNotificationReceiverLink(this.session, linkIndex, this.prefetchCount),
+                this,
+                this.asyncFileUploadNotificationReceivedCallback,
+                this.callbackExecutor,
+                this.prefetchCount);
+        }
+        else if (this.messageFeedbackReceivedCallback != null)
+        {
+            return new MessageFeedbackReceiverLinkHandler(
+                openMessageFeedbackReceiverLink(this.session, linkIndex, this.prefetchCount),
+                this,
+                this.messageFeedbackReceivedCallback,
+                this.prefetchCount);
+        }
+        else if (this.asyncMessageFeedbackReceivedCallback != null)
+        {
+            return new MessageFeedbackReceiverLinkHandler(
+                openMessageFeedbackReceiverLink(this.session, linkIndex, this.prefetchCount),
+                this,
+                this.asyncMessageFeedbackReceivedCallback,
+                this.callbackExecutor,
+                this.prefetchCount);
+        }
+
+        return null;
+    }
 
-            if (this.messageFeedbackReceivedCallback != null)
+    /**
+     * @return the number of this connection's receiver links that are open.
+     */
+    public int getOpenReceiverLinkCount()
+    {
+        int openReceiverLinkCount = 0;
+        for (ReceiverLinkHandler receiverLinkHandler : this.receiverLinkHandlers)
+        {
+            if (receiverLinkHandler.isOpen())
             {
-                Receiver feedbackReceiverLink = this.session.receiver(MESSAGE_FEEDBACK_RECEIVE_TAG);
-                feedbackReceiverLink.setProperties(properties);
-
-                log.debug("Opening connection, session and link for amqp feedback receiver");
-                feedbackReceiverLink.open();
-                Source source = new Source();
-                source.setAddress(MESSAGE_FEEDBACK_ENDPOINT);
-                feedbackReceiverLink.setSource(source);
-
-                // We only want to receive, at most, one feedback message since each receive call the user makes can only return
-                // either a single feedback message or null (no feedback message received). Extend only a single link credit
-                // to the service so that the service can't send more than one message.
-                feedbackReceiverLink.flow(1);
-                messageFeedbackReceiverLinkHandler = new MessageFeedbackReceiverLinkHandler(feedbackReceiverLink, this, this.messageFeedbackReceivedCallback);
+                openReceiverLinkCount++;
             }
         }
+
+        return openReceiverLinkCount;
+    }
+
+    /**
+     * Open a file upload notification receiver link on the provided session. Must be called on the reactor thread.
+     */
+    static Receiver openFileUploadNotificationReceiverLink(Session session, int prefetchCount)
+    {
+        return openFileUploadNotificationReceiverLink(session, 0, prefetchCount);
+    }
+
+    /**
+     * Open one of several competing file upload notification receiver links on the provided session. Must be called on
+     * the reactor thread.
+     */
+    static Receiver openFileUploadNotificationReceiverLink(Session session, int linkIndex, int prefetchCount)
+    {
+        Receiver fileUploadNotificationReceiverLink = session.receiver(getLinkName(FILE_NOTIFICATION_RECEIVE_TAG, linkIndex));
+        fileUploadNotificationReceiverLink.setProperties(getLinkProperties());
+        fileUploadNotificationReceiverLink.open();
+        Source source = new Source();
+        source.setAddress(FILENOTIFICATION_ENDPOINT);
+        fileUploadNotificationReceiverLink.setSource(source);
+
+        // Notifications are processed one at a time, but the service may send up to the prefetch count of them ahead of
+        // the one being processed so that the next one doesn't have to be requested only once that one is done.
+        fileUploadNotificationReceiverLink.flow(prefetchCount);
+        return fileUploadNotificationReceiverLink;
+    }
+
+    /**
+     * Open a cloud to device message feedback receiver link on the provided session. Must be called on the reactor thread.
+     */
+    static Receiver openMessageFeedbackReceiverLink(Session session, int prefetchCount)
+    {
+        return openMessageFeedbackReceiverLink(session, 0, prefetchCount);
+    }
+
+    /**
+     * Open one of several competing cloud to device message feedback receiver links on the provided session. Must be
+     * called on the reactor thread.
+     */
+    static Receiver openMessageFeedbackReceiverLink(Session session, int linkIndex, int prefetchCount)
+    {
+        Receiver feedbackReceiverLink = session.receiver(getLinkName(MESSAGE_FEEDBACK_RECEIVE_TAG, linkIndex));
+        feedbackReceiverLink.setProperties(getLinkProperties());
+
+        log.debug("Opening connection, session and link for amqp feedback receiver");
+        feedbackReceiverLink.open();
+        Source source = new Source();
+        source.setAddress(MESSAGE_FEEDBACK_ENDPOINT);
+        feedbackReceiverLink.setSource(source);
+
+        // Feedback messages are processed one at a time, but the service may send up to the prefetch count of them ahead
+        // of the one being processed so that the next one doesn't have to be requested only once that one is done.
+        feedbackReceiverLink.flow(prefetchCount);
+        return feedbackReceiverLink;
+    }
+
+    private static String getLinkName(String tag, int linkIndex)
+    {
+        // Link names must be unique within a session. The first link keeps the plain tag.
+        return linkIndex == 0 ? tag : tag + "-" + linkIndex;
+    }
+
+    private static Map<Symbol, Object> getLinkProperties()
+    {
+        Map<Symbol, Object> properties = new HashMap<>();
+        properties.put(Symbol.getSymbol(TransportUtils.versionIdentifierKey), TransportUtils.USER_AGENT_STRING);
+        return properties;
     }
 
     @Override
@@ -167,10 +317,8 @@ public class EventReceivingConnectionHandler extends AmqpConnectionHandler imple
     @Override
     public void onReceiverLinkRemoteOpen()
     {
-        if (this.onConnectionOpenedCallback != null)
-        {
-            this.onConnectionOpenedCallback.run();
-        }
+        this.openedReceiverLinkCount++;
+        checkOpened();
     }
 
     @Override
@@ -182,16 +330,10 @@ public class EventReceivingConnectionHandler extends AmqpConnectionHandler imple
             this.session.close();
         }
 
-        if (this.fileUploadNotificationReceiverLinkHandler != null)
-        {
-            log.debug("Shutdown event occurred, closing file upload notification receiver link");
-            this.fileUploadNotificationReceiverLinkHandler.close();
-        }
-
-        if (this.messageFeedbackReceiverLinkHandler != null)
+        for (ReceiverLinkHandler receiverLinkHandler : this.receiverLinkHandlers)
         {
-            log.debug("Shutdown event occurred, closing cloud to device feedback message receiver link");
-            this.messageFeedbackReceiverLinkHandler.close();
+            log.debug("Shutdown event occurred, closing {} receiver link", receiverLinkHandler.getLinkInstanceType());
+            receiverLinkHandler.close();
         }
 
         super.closeAsync(onConnectionClosedCallback);
@@ -200,7 +342,7 @@ public class EventReceivingConnectionHandler extends AmqpConnectionHandler imple
     @Override
     public void onReactorFinal(Event event)
     {
-        this.messageFeedbackReceiverLinkHandler = null;
-        this.fileUploadNotificationReceiverLinkHandler = null;
+        this.receiverLinkHandlers.clear();
+        this.session = null;
     }
 }
\ No newline at end of file
@@ -8,30 +8,57 @@ import com.microsoft.azure.sdk.iot.service.messaging.FileUploadNotification;
 import com.microsoft.azure.sdk.iot.service.messaging.serializers.FileUploadNotificationParser;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.Proton;
-import org.apache.qpid.proton.amqp.messaging.Accepted;
 import org.apache.qpid.proton.amqp.messaging.Data;
-import org.apache.qpid.proton.amqp.messaging.Released;
-import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Receiver;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 @Slf4j
 public class FileUploadNotificationReceiverLinkHandler extends ReceiverLinkHandler
 {
-    private final Function<FileUploadNotification, AcknowledgementType> fileUploadNotificationReceivedCallback;
+    private final Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> fileUploadNotificationReceivedCallback;
+
+    // The executor that the callback executes on. If null, it executes on the reactor thread.
+    private final Executor callbackExecutor;
 
     public FileUploadNotificationReceiverLinkHandler(
         Receiver link,
         LinkStateCallback linkStateCallback,
         Function<FileUploadNotification, AcknowledgementType> fileUploadNotificationReceivedCallback)
     {
-        super(link, UUID.randomUUID().toString(), linkStateCallback);
+        this(link, linkStateCallback, fileUploadNotificationReceivedCallback, 1);
+    }
+
+    public FileUploadNotificationReceiverLinkHandler(
+        Receiver link,
+        LinkStateCallback linkStateCallback,
+        Function<FileUploadNotification, AcknowledgementType> fileUploadNotificationReceivedCallback,
+        int prefetchCount)
+    {
+        this(
+            link,
+            linkStateCallback,
+            notification -> CompletableFuture.completedFuture(fileUploadNotificationReceivedCallback.apply(notification)),
+            null,
+            prefetchCount);
+    }
+
+    public FileUploadNotificationReceiverLinkHandler(
+        Receiver link,
+        LinkStateCallback linkStateCallback,
+        Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> fileUploadNotificationReceivedCallback,
+        Executor callbackExecutor,
+        int prefetchCount)
+    {
+        super(link, UUID.randomUUID().toString(), linkStateCallback, prefetchCount);
 
         this.fileUploadNotificationReceivedCallback = fileUploadNotificationReceivedCallback;
+        this.callbackExecutor = callbackExecutor;
     }
 
     /**
@@ -57,9 +84,9 @@ public class FileUploadNotificationReceiverLinkHandler extends ReceiverLinkHandl
             if (msg.getBody() instanceof Data)
             {
                 String fileUploadNotificationJson = ((Data) msg.getBody()).getValue().toString();
-                AcknowledgementType messageResult = AcknowledgementType.ABANDON;
 
-                try
+                // Parsed by the processor so that a callback executor takes the parsing off the reactor thread as well
+                processDelivery(event, delivery, this.callbackExecutor, () ->
                 {
                     FileUploadNotificationParser notificationParser = new FileUploadNotificationParser(fileUploadNotificationJson);
 
@@ -67,28 +94,12 @@ public class FileUploadNotificationReceiverLinkHandler extends ReceiverLinkHandl
                         notificationParser.getBlobUri(), notificationParser.getBlobName(), notificationParser.getLastUpdatedTime(),
                         notificationParser.getBlobSizeInBytesTag(), notificationParser.getEnqueuedTimeUtc());
 
-                    messageResult = fileUploadNotificationReceivedCallback.apply(fileUploadNotification);
-                }
-                catch (Exception e)
-                {
-                    // this should never happen. However if it does, proton can't handle it. So guard against throwing it at proton.
-                    log.warn("Encountered an exception while handling file upload notification", e);
-                }
-
-                DeliveryState deliveryState = Accepted.getInstance();
-                if (messageResult == AcknowledgementType.ABANDON)
-                {
-                    deliveryState = Released.getInstance();
-                }
-                else if (messageResult == AcknowledgementType.COMPLETE)
-                {
-                    deliveryState = Accepted.getInstance();
-                }
-
-                delivery.disposition(deliveryState);
-                delivery.settle();
-                recv.flow(1); // flow back the credit so the service can send another message now
+                    return fileUploadNotificationReceivedCallback.apply(fileUploadNotification);
+                });
             }
+
+            // Let the service send the next message now, so that it is already here once this one has been processed
+            replenishCredit(recv);
         }
     }
 
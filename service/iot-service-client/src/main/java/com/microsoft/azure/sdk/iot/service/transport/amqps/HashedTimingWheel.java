@@ -0,0 +1,179 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tracks deadlines in a hashed timing wheel, so that adding and removing a deadline takes constant time no matter how
+ * many deadlines are outstanding, and no timer or scheduler task is needed per deadline. The wheel is advanced
+ * periodically by its owner, and expires the entries whose deadline has passed with a precision of one tick.
+ *
+ * <p>Entries are linked into the wheel's buckets directly rather than being wrapped, so tracking a deadline doesn't
+ * allocate. This class is not thread safe. It is meant to be used by a single reactor thread.</p>
+ *
+ * @param <E> the type of the entries in the wheel.
+ */
+final class HashedTimingWheel<E extends HashedTimingWheel.Entry>
+{
+    /**
+     * An object that can be added to a {@link HashedTimingWheel}. An entry can be in at most one wheel at a time.
+     */
+    abstract static class Entry
+    {
+        private Entry previous;
+        private Entry next;
+        private HashedTimingWheel<?> wheel;
+        private long deadlineTick;
+
+        boolean isInTimingWheel()
+        {
+            return this.wheel != null;
+        }
+    }
+
+    private final long tickNanoseconds;
+    private final long startTimeNanoseconds;
+    private final Entry[] buckets;
+    private final int mask;
+
+    // The last tick whose bucket has been expired
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMilliseconds the length of a tick, which is the precision of the deadlines.
+     * @param bucketCount the number of buckets in the wheel. Rounded up to a power of two. Deadlines further than
+     * bucketCount ticks away are checked once per revolution of the wheel until they expire.
+     * @param startTimeNanoseconds the current {@link System#nanoTime()}.
+     */
+    HashedTimingWheel(long tickMilliseconds, int bucketCount, long startTimeNanoseconds)
+    {
+        if (tickMilliseconds <= 0 || bucketCount <= 0)
+        {
+            throw new IllegalArgumentException("tickMilliseconds and bucketCount must be greater than 0");
+        }
+
+        int capacity = Integer.highestOneBit(bucketCount - 1) << 1;
+        capacity = Math.max(capacity, 1);
+
+        this.tickNanoseconds = TimeUnit.MILLISECONDS.toNanos(tickMilliseconds);
+        this.startTimeNanoseconds = startTimeNanoseconds;
+        this.buckets = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Add an entry that expires at the given time.
+     *
+     * @param entry the entry. Must not be in a wheel already.
+     * @param deadlineNanoseconds the {@link System#nanoTime()} at which the entry expires.
+     */
+    void add(E entryToAdd, long deadlineNanoseconds)
+    {
+        Entry entry = entryToAdd;
+        if (entry.wheel != null)
+        {
+            throw new IllegalStateException("Entry is already in a timing wheel");
+        }
+
+        // Rounded up so that entries never expire early. Deadlines that have already passed expire on the next advance.
+        long deadlineTick = Math.max(toTick(deadlineNanoseconds + this.tickNanoseconds - 1), this.currentTick + 1);
+
+        Entry head = this.buckets[(int) (deadlineTick & this.mask)];
+        entry.deadlineTick = deadlineTick;
+        entry.wheel = this;
+        entry.previous = null;
+        entry.next = head;
+        if (head != null)
+        {
+            head.previous = entry;
+        }
+
+        this.buckets[(int) (deadlineTick & this.mask)] = entry;
+        this.size++;
+    }
+
+    /**
+     * Remove an entry before it expires. Does nothing if the entry is not in this wheel.
+     *
+     * @param entry the entry to remove.
+     */
+    void remove(E entryToRemove)
+    {
+        Entry entry = entryToRemove;
+        if (entry.wheel != this)
+        {
+            return;
+        }
+
+        unlink(entry);
+    }
+
+    /**
+     * Expire all entries whose deadline has passed.
+     *
+     * @param nowNanoseconds the current {@link System#nanoTime()}.
+     * @param onExpired called with each expired entry, after it was removed from the wheel. May add entries to the
+     * wheel, but must not remove any.
+     */
+    @SuppressWarnings("unchecked")
+    void advance(long nowNanoseconds, Consumer<E> onExpired)
+    {
+        long targetTick = toTick(nowNanoseconds);
+
+        // After a long pause, every bucket only needs to be visited once
+        long firstTick = Math.max(this.currentTick + 1, targetTick - this.mask);
+        for (long tick = firstTick; tick <= targetTick; tick++)
+        {
+            Entry entry = this.buckets[(int) (tick & this.mask)];
+            while (entry != null)
+            {
+                Entry next = entry.next;
+                if (entry.deadlineTick <= targetTick)
+                {
+                    unlink(entry);
+                    onExpired.accept((E) entry);
+                }
+
+                entry = next;
+            }
+        }
+
+        this.currentTick = Math.max(this.currentTick, targetTick);
+    }
+
+    private long toTick(long timeNanoseconds)
+    {
+        return Math.max(0, (timeNanoseconds - this.startTimeNanoseconds) / this.tickNanoseconds);
+    }
+
+    private void unlink(Entry entry)
+    {
+        if (entry.previous != null)
+        {
+            entry.previous.next = entry.next;
+        }
+        else
+        {
+            this.buckets[(int) (entry.deadlineTick & this.mask)] = entry.next;
+        }
+
+        if (entry.next != null)
+        {
+            entry.next.previous = entry.previous;
+        }
+
+        entry.previous = null;
+        entry.next = null;
+        entry.wheel = null;
+        this.size--;
+    }
+}
@@ -0,0 +1,227 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hash map from non-negative int keys to objects that uses open addressing with linear probing, so that putting and
+ * removing entries doesn't box the keys or allocate an entry object. Used to track messages by their delivery tag until
+ * the service acknowledges them.
+ *
+ * <p>All methods that change the map are synchronized. The reactor thread is nearly always the only caller, so the lock
+ * is uncontended, but a link may be closed from another thread.</p>
+ *
+ * @param <V> the type of the values in the map.
+ */
+final class IntObjectHashMap<V>
+{
+    private static final int EMPTY_KEY = -1;
+    private static final int DEFAULT_INITIAL_CAPACITY = 64;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+
+    // Written while holding the lock, but readable without it for monitoring purposes
+    private volatile int size;
+
+    IntObjectHashMap()
+    {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    IntObjectHashMap(int initialCapacity)
+    {
+        // The table is kept at most half full so that probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 2) * 2 - 1) * 2;
+        allocateTable(capacity);
+    }
+
+    int size()
+    {
+        return this.size;
+    }
+
+    synchronized V get(int key)
+    {
+        int index = indexOf(key);
+        return index == -1 ? null : valueAt(index);
+    }
+
+    /**
+     * Associate a value with a key, replacing any value the key was already associated with.
+     *
+     * @param key the key. Must be non-negative.
+     * @param value the value.
+     * @return the value that the key was associated with before, or null if there was none.
+     */
+    synchronized V put(int key, V value)
+    {
+        if (key < 0)
+        {
+            throw new IllegalArgumentException("key must be non-negative");
+        }
+
+        int index = slotOf(key);
+        while (this.keys[index] != EMPTY_KEY)
+        {
+            if (this.keys[index] == key)
+            {
+                V previousValue = valueAt(index);
+                this.values[index] = value;
+                return previousValue;
+            }
+
+            index = (index + 1) & this.mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.size++;
+
+        if (this.size * 2 > this.keys.length)
+        {
+            rehash(this.keys.length * 2);
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove the value associated with a key.
+     *
+     * @param key the key.
+     * @return the value that the key was associated with, or null if there was none.
+     */
+    synchronized V remove(int key)
+    {
+        int index = indexOf(key);
+        if (index == -1)
+        {
+            return null;
+        }
+
+        V removedValue = valueAt(index);
+        this.size--;
+
+        // Shift later entries of the same probe sequence back into the freed slot rather than leaving a tombstone, so
+        // that lookups never have to skip over removed entries
+        int freeIndex = index;
+        int nextIndex = index;
+        while (true)
+        {
+            nextIndex = (nextIndex + 1) & this.mask;
+            int nextKey = this.keys[nextIndex];
+            if (nextKey == EMPTY_KEY)
+            {
+                break;
+            }
+
+            int nextSlot = slotOf(nextKey);
+            boolean canMove = freeIndex <= nextIndex
+                ? (nextSlot <= freeIndex || nextSlot > nextIndex)
+                : (nextSlot <= freeIndex && nextSlot > nextIndex);
+
+            if (canMove)
+            {
+                this.keys[freeIndex] = nextKey;
+                this.values[freeIndex] = this.values[nextIndex];
+                freeIndex = nextIndex;
+            }
+        }
+
+        this.keys[freeIndex] = EMPTY_KEY;
+        this.values[freeIndex] = null;
+        return removedValue;
+    }
+
+    /**
+     * Remove all entries from the map.
+     *
+     * @return the values that were removed, in no particular order.
+     */
+    synchronized List<V> removeAll()
+    {
+        List<V> removedValues = new ArrayList<>(this.size);
+        for (int i = 0; i < this.keys.length; i++)
+        {
+            if (this.keys[i] != EMPTY_KEY)
+            {
+                removedValues.add(valueAt(i));
+            }
+        }
+
+        Arrays.fill(this.keys, EMPTY_KEY);
+        Arrays.fill(this.values, null);
+        this.size = 0;
+        return removedValues;
+    }
+
+    private int indexOf(int key)
+    {
+        if (key < 0)
+        {
+            return -1;
+        }
+
+        int index = slotOf(key);
+        while (this.keys[index] != EMPTY_KEY)
+        {
+            if (this.keys[index] == key)
+            {
+                return index;
+            }
+
+            index = (index + 1) & this.mask;
+        }
+
+        return -1;
+    }
+
+    private int slotOf(int key)
+    {
+        // Delivery tags are sequential, so spread them over the table rather than filling it in order
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index)
+    {
+        return (V) this.values[index];
+    }
+
+    private void rehash(int newCapacity)
+    {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        allocateTable(newCapacity);
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY_KEY)
+            {
+                int index = slotOf(oldKeys[i]);
+                while (this.keys[index] != EMPTY_KEY)
+                {
+                    index = (index + 1) & this.mask;
+                }
+
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocateTable(int capacity)
+    {
+        this.keys = new int[capacity];
+        Arrays.fill(this.keys, EMPTY_KEY);
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+}
@@ -8,30 +8,58 @@ import com.microsoft.azure.sdk.iot.service.messaging.FeedbackBatch;
 import com.microsoft.azure.sdk.iot.service.messaging.FeedbackBatchMessage;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.Proton;
-import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.messaging.Data;
-import org.apache.qpid.proton.amqp.messaging.Released;
-import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.Receiver;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 @Slf4j
 public class MessageFeedbackReceiverLinkHandler extends ReceiverLinkHandler
 {
-    private final Function<FeedbackBatch, AcknowledgementType> feedbackBatchReceivedCallback;
+    private final Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> feedbackBatchReceivedCallback;
+
+    // The executor that the callback executes on. If null, it executes on the reactor thread.
+    private final Executor callbackExecutor;
 
     public MessageFeedbackReceiverLinkHandler(
         Receiver link,
         LinkStateCallback linkStateCallback,
         Function<FeedbackBatch, AcknowledgementType> feedbackBatchReceivedCallback)
     {
-        super(link, UUID.randomUUID().toString(), linkStateCallback);
+        this(link, linkStateCallback, feedbackBatchReceivedCallback, 1);
+    }
+
+    public MessageFeedbackReceiverLinkHandler(
+        Receiver link,
+        LinkStateCallback linkStateCallback,
+        Function<FeedbackBatch, AcknowledgementType> feedbackBatchReceivedCallback,
+        int prefetchCount)
+    {
+        this(
+            link,
+            linkStateCallback,
+            feedbackBatch -> CompletableFuture.completedFuture(feedbackBatchReceivedCallback.apply(feedbackBatch)),
+            null,
+            prefetchCount);
+    }
+
+    public MessageFeedbackReceiverLinkHandler(
+        Receiver link,
+        LinkStateCallback linkStateCallback,
+        Function<FeedbackBatch, CompletableFuture<AcknowledgementType>> feedbackBatchReceivedCallback,
+        Executor callbackExecutor,
+        int prefetchCount)
+    {
+        super(link, UUID.randomUUID().toString(), linkStateCallback, prefetchCount);
 
         this.feedbackBatchReceivedCallback = feedbackBatchReceivedCallback;
+        this.callbackExecutor = callbackExecutor;
     }
 
     /**
@@ -56,33 +84,18 @@ public class MessageFeedbackReceiverLinkHandler extends ReceiverLinkHandler
 
             if (msg.getBody() instanceof Data)
             {
-                AcknowledgementType messageResult = AcknowledgementType.ABANDON;
-                try
-                {
-                    String feedbackJson = ((Data) msg.getBody()).getValue().toString();
-                    FeedbackBatch feedbackBatch = FeedbackBatchMessage.parse(feedbackJson);
-
-                    messageResult = feedbackBatchReceivedCallback.apply(feedbackBatch);
-                }
-                catch (Exception e)
+                // Parsed by the processor so that a callback executor takes the parsing off the reactor thread as well
+                processDelivery(event, delivery, this.callbackExecutor, () ->
                 {
-                    log.warn("Encountered an exception while handling feedback batch message", e);
-                }
+                    Binary feedbackJson = ((Data) msg.getBody()).getValue();
+                    FeedbackBatch feedbackBatch = FeedbackBatchMessage.parse(feedbackJson.getArray(), feedbackJson.getArrayOffset(), feedbackJson.getLength());
 
-                DeliveryState deliveryState = Accepted.getInstance();
-                if (messageResult == AcknowledgementType.ABANDON)
-                {
-                    deliveryState = Released.getInstance();
-                }
-                else if (messageResult == AcknowledgementType.COMPLETE)
-                {
-                    deliveryState = Accepted.getInstance();
-                }
-
-                delivery.disposition(deliveryState);
-                delivery.settle();
-                recv.flow(1); // flow back the credit so the service can send another message now
+                    return feedbackBatchReceivedCallback.apply(feedbackBatch);
+                });
             }
+
+            // Let the service send the next message now, so that it is already here once this one has been processed
+            replenishCredit(recv);
         }
     }
 
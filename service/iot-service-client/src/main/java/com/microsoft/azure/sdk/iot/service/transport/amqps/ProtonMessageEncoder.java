@@ -0,0 +1,152 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.message.Message;
+
+import java.nio.BufferOverflowException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encodes proton-j messages into a reusable buffer that is sized from an estimate of the encoded message, so that
+ * encoding a message neither allocates a new buffer nor has to be retried with ever larger buffers. Instances are not
+ * thread safe.
+ */
+final class ProtonMessageEncoder
+{
+    // Room for the message header, properties and the encoding of the body section itself
+    private static final int ENCODED_MESSAGE_OVERHEAD_ESTIMATE = 512;
+    private static final int ENCODED_APPLICATION_PROPERTY_OVERHEAD_ESTIMATE = 16;
+    private static final int MIN_ENCODE_BUFFER_SIZE = 1024;
+
+    // IoT hub rejects cloud to device messages larger than 64 KB, so buffers beyond this size are not worth keeping
+    private static final int MAX_RETAINED_ENCODE_BUFFER_SIZE = 128 * 1024;
+
+    // Used when messages are encoded on the threads that send them rather than on the reactor thread
+    private static final ThreadLocal<ProtonMessageEncoder> THREAD_LOCAL_ENCODER = ThreadLocal.withInitial(ProtonMessageEncoder::new);
+
+    private byte[] encodeBuffer = new byte[MIN_ENCODE_BUFFER_SIZE];
+
+    // The buffer that the last message was encoded into. Usually the same as encodeBuffer, unless the message was too large to retain a buffer for
+    private byte[] encodedBytes = this.encodeBuffer;
+
+    /**
+     * Encode a message into this encoder's buffer.
+     *
+     * @param protonMessage the message to encode.
+     * @return the length of the encoded message, which starts at index 0 of {@link #getEncodedBytes()}.
+     */
+    int encode(Message protonMessage)
+    {
+        byte[] buffer = getEncodeBuffer(estimateEncodedSize(protonMessage));
+        while (true)
+        {
+            try
+            {
+                int length = protonMessage.encode(buffer, 0, buffer.length);
+                this.encodedBytes = buffer;
+                return length;
+            }
+            catch (BufferOverflowException e)
+            {
+                buffer = getEncodeBuffer(buffer.length * 2);
+            }
+        }
+    }
+
+    /**
+     * @return the buffer that the last message was encoded into. Its contents are overwritten by the next call to
+     * {@link #encode(Message)}.
+     */
+    byte[] getEncodedBytes()
+    {
+        return this.encodedBytes;
+    }
+
+    /**
+     * Encode a message into a new array of exactly the encoded length, using a buffer that is reused by the calling thread.
+     *
+     * @param protonMessage the message to encode.
+     * @return the encoded message.
+     */
+    static byte[] encodeToArray(Message protonMessage)
+    {
+        ProtonMessageEncoder encoder = THREAD_LOCAL_ENCODER.get();
+        int length = encoder.encode(protonMessage);
+        return Arrays.copyOf(encoder.getEncodedBytes(), length);
+    }
+
+    /**
+     * Encode a message into a new array of exactly the encoded length plus the length of the given sections, which are
+     * copied in after the encoded message. AMQP messages are a sequence of independently encoded sections, so this can
+     * be used to complete a message with sections that were encoded ahead of time.
+     *
+     * @param protonMessage the message to encode, holding only the sections that come before the given ones.
+     * @param encodedSections the sections to append, already encoded.
+     * @return the encoded message.
+     */
+    static byte[] encodeToArray(Message protonMessage, byte[] encodedSections)
+    {
+        ProtonMessageEncoder encoder = THREAD_LOCAL_ENCODER.get();
+        int length = encoder.encode(protonMessage);
+        byte[] encodedMessage = new byte[length + encodedSections.length];
+        System.arraycopy(encoder.getEncodedBytes(), 0, encodedMessage, 0, length);
+        System.arraycopy(encodedSections, 0, encodedMessage, length, encodedSections.length);
+        return encodedMessage;
+    }
+
+    static int estimateEncodedSize(Message protonMessage)
+    {
+        int estimate = ENCODED_MESSAGE_OVERHEAD_ESTIMATE;
+
+        Section body = protonMessage.getBody();
+        if (body instanceof Data && ((Data) body).getValue() != null)
+        {
+            estimate += ((Data) body).getValue().getLength();
+        }
+
+        ApplicationProperties applicationProperties = protonMessage.getApplicationProperties();
+        if (applicationProperties != null && applicationProperties.getValue() != null)
+        {
+            for (Map.Entry<String, Object> property : applicationProperties.getValue().entrySet())
+            {
+                estimate += ENCODED_APPLICATION_PROPERTY_OVERHEAD_ESTIMATE + property.getKey().length();
+                if (property.getValue() instanceof String)
+                {
+                    estimate += ((String) property.getValue()).length();
+                }
+            }
+        }
+
+        return estimate;
+    }
+
+    private byte[] getEncodeBuffer(int minimumSize)
+    {
+        if (this.encodeBuffer.length >= minimumSize)
+        {
+            return this.encodeBuffer;
+        }
+
+        // Rounded up to a power of two so that messages of slightly different sizes don't keep growing the buffer
+        int size = Integer.highestOneBit(minimumSize - 1) << 1;
+        if (size <= 0)
+        {
+            // Too large to round up without overflowing
+            size = minimumSize;
+        }
+
+        byte[] buffer = new byte[size];
+        if (size <= MAX_RETAINED_ENCODE_BUFFER_SIZE)
+        {
+            this.encodeBuffer = buffer;
+        }
+
+        return buffer;
+    }
+}
@@ -0,0 +1,136 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.Selectable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets any thread wake up a reactor so that it runs a callback on the reactor thread as soon as possible, rather than
+ * waiting for a timer to fire. Proton-j's reactor is not thread safe, so work that other threads hand to it has to be
+ * picked up by the reactor thread itself.
+ *
+ * <p>This is done by registering the read end of a pipe with the reactor's selector. Writing to the other end of the
+ * pipe makes the selector return, and the reactor then runs the callback. Any number of wakeups that happen before the
+ * reactor gets to the callback are coalesced into a single callback execution.</p>
+ *
+ * <p>Instances of this class must be created on the reactor thread.</p>
+ */
+@Slf4j
+final class ReactorWakeup
+{
+    private static final byte[] WAKEUP_SIGNAL = new byte[] { 1 };
+
+    private final Reactor reactor;
+    private final Runnable onWakeup;
+    private final Pipe pipe;
+    private final Selectable selectable;
+    private final ByteBuffer drainBuffer = ByteBuffer.allocate(64);
+
+    // True if a wakeup signal has been written to the pipe that the reactor thread hasn't read yet
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    private volatile boolean closed;
+
+    ReactorWakeup(Reactor reactor, Runnable onWakeup) throws IOException
+    {
+        this.reactor = reactor;
+        this.onWakeup = onWakeup;
+        this.pipe = Pipe.open();
+        this.pipe.source().configureBlocking(false);
+        this.pipe.sink().configureBlocking(false);
+
+        this.selectable = reactor.selectable();
+        this.selectable.setChannel(this.pipe.source());
+        this.selectable.onReadable(this::onReadable);
+        this.selectable.onFree(selectable -> closePipe());
+        this.selectable.setReading(true);
+        reactor.update(this.selectable);
+    }
+
+    /**
+     * Make the reactor run the callback on its thread as soon as possible. May be called from any thread.
+     */
+    void wakeup()
+    {
+        if (this.closed || !this.wakeupPending.compareAndSet(false, true))
+        {
+            // Either the reactor is going away, or it has yet to pick up an earlier wakeup that will cover this one
+            return;
+        }
+
+        try
+        {
+            this.pipe.sink().write(ByteBuffer.wrap(WAKEUP_SIGNAL));
+        }
+        catch (IOException e)
+        {
+            // Only happens if the pipe was closed because the reactor was freed, so there is no one left to wake up
+            log.debug("Failed to wake up the reactor", e);
+        }
+    }
+
+    /**
+     * Stop waking up the reactor and release the pipe. May be called from any thread.
+     */
+    void close()
+    {
+        this.closed = true;
+
+        // The selectable can only be terminated from the reactor thread, so wake it up one last time to do that
+        try
+        {
+            this.pipe.sink().write(ByteBuffer.wrap(WAKEUP_SIGNAL));
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to wake up the reactor to stop listening for wakeups", e);
+        }
+    }
+
+    private void onReadable(Selectable selectable)
+    {
+        try
+        {
+            this.drainBuffer.clear();
+            while (this.pipe.source().read(this.drainBuffer) > 0)
+            {
+                this.drainBuffer.clear();
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to read the reactor wakeup signal", e);
+        }
+
+        if (this.closed)
+        {
+            selectable.terminate();
+            this.reactor.update(selectable);
+            return;
+        }
+
+        // Cleared before running the callback so that a wakeup during the callback is not lost
+        this.wakeupPending.set(false);
+        this.onWakeup.run();
+    }
+
+    private void closePipe()
+    {
+        try
+        {
+            this.pipe.source().close();
+            this.pipe.sink().close();
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to close the reactor wakeup pipe", e);
+        }
+    }
+}
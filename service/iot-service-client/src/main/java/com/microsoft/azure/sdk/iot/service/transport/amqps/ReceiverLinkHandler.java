@@ -3,9 +3,12 @@
 
 package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.service.messaging.AcknowledgementType;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Released;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.transport.ReceiverSettleMode;
 import org.apache.qpid.proton.engine.BaseHandler;
@@ -16,9 +19,16 @@ import org.apache.qpid.proton.engine.Handler;
 import org.apache.qpid.proton.engine.Link;
 import org.apache.qpid.proton.engine.Receiver;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 @Slf4j
 abstract class ReceiverLinkHandler extends BaseHandler
@@ -36,12 +46,48 @@ abstract class ReceiverLinkHandler extends BaseHandler
     String receiverLinkAddress;
     private final Receiver receiverLink;
 
+    // The number of messages that the service may send ahead of the one being processed. 0 if credit is left to the
+    // default flow controller window. Otherwise, replenishCredit is the only thing that extends credit to the service.
+    private final int prefetchCount;
+
     private final LinkStateCallback linkStateCallback;
 
+    // False if this link shares its session with other links, in which case closing this link must leave the session open
+    private boolean closeSessionWithLink = true;
+
+    // Deliveries whose processing completed off the reactor thread, waiting for the reactor thread to settle them. The
+    // wakeup is only created once the first delivery is processed that way.
+    private final Queue<ProcessedDelivery> processedDeliveries = new ConcurrentLinkedQueue<>();
+    private volatile ReactorWakeup reactorWakeup;
+
+    // The number of deliveries that are being processed and haven't been settled yet. Only accessed on the reactor thread.
+    private int unsettledDeliveryCount;
+
+    // May be shared with other links, so that links that compete for the messages of the same endpoint are counted together
+    private ReceiverLinkMetrics metrics = new ReceiverLinkMetrics();
+
+    private static final class ProcessedDelivery
+    {
+        private final Delivery delivery;
+        private final AcknowledgementType acknowledgementType;
+
+        private ProcessedDelivery(Delivery delivery, AcknowledgementType acknowledgementType)
+        {
+            this.delivery = delivery;
+            this.acknowledgementType = acknowledgementType;
+        }
+    }
+
     abstract String getLinkInstanceType();
 
     ReceiverLinkHandler(Receiver receiver, String linkCorrelationId, LinkStateCallback linkStateCallback)
     {
+        this(receiver, linkCorrelationId, linkStateCallback, 0);
+    }
+
+    ReceiverLinkHandler(Receiver receiver, String linkCorrelationId, LinkStateCallback linkStateCallback, int prefetchCount)
+    {
+        this.prefetchCount = prefetchCount;
         this.amqpProperties = new HashMap<>();
         this.amqpProperties.put(Symbol.getSymbol(API_VERSION_KEY), TransportUtils.IOTHUB_API_VERSION);
         this.receiverLink = receiver;
@@ -52,8 +98,11 @@ abstract class ReceiverLinkHandler extends BaseHandler
         //All events that happen to this receiver link will be handled in this class (onLinkRemoteOpen, for instance)
         BaseHandler.setHandler(receiver, this);
 
-        //This flow controller handles all link credit handling on our behalf
-        add(new LoggingFlowController(this.linkCorrelationId));
+        if (this.prefetchCount == 0)
+        {
+            //This flow controller handles all link credit handling on our behalf
+            add(new LoggingFlowController(this.linkCorrelationId));
+        }
     }
 
     @Override
@@ -62,6 +111,13 @@ abstract class ReceiverLinkHandler extends BaseHandler
         log.debug("{} receiver link with link correlation id {} was successfully opened", getLinkInstanceType(), this.linkCorrelationId);
         this.linkStateCallback.onReceiverLinkRemoteOpen();
 
+        if (this.prefetchCount > 0)
+        {
+            // A flow controller would top the credit back up to its window regardless of how many deliveries are still
+            // being processed, so credit is only extended by replenishCredit
+            return;
+        }
+
         boolean hasFlowController = false;
         Iterator<Handler> children = children();
         while (children.hasNext())
@@ -76,6 +132,158 @@ abstract class ReceiverLinkHandler extends BaseHandler
         }
     }
 
+    /**
+     * Extend enough link credit to the service that it can send up to the prefetch count of messages ahead of the ones
+     * this client has settled. Call after advancing past a delivery, rather than after it has been processed, so that
+     * the next messages are already on their way while it is.
+     */
+    void replenishCredit(Receiver receiver)
+    {
+        // Deliveries that arrived but haven't been consumed yet, and deliveries that are still being processed, count
+        // against the prefetch count just like credit does. This is what bounds the number of concurrent processors.
+        int delta = this.prefetchCount - receiver.getCredit() - receiver.getQueued() - this.unsettledDeliveryCount;
+        if (delta > 0)
+        {
+            receiver.flow(delta);
+        }
+    }
+
+    /**
+     * Process a delivery that has been advanced past, and settle it with the acknowledgement that the processor's future
+     * completes with. If the executor is null, the processor executes on the reactor thread and a future that is already
+     * complete is settled right away. Otherwise the processor executes on the executor, and the reactor thread settles
+     * the delivery once the future completes. A processor that throws, or a future that completes exceptionally,
+     * abandons the delivery. Must be called on the reactor thread.
+     */
+    void processDelivery(
+        Event event,
+        Delivery delivery,
+        Executor executor,
+        Supplier<CompletableFuture<AcknowledgementType>> processor)
+    {
+        this.unsettledDeliveryCount++;
+        this.metrics.onMessageReceived();
+
+        if (executor == null)
+        {
+            CompletableFuture<AcknowledgementType> future = getProcessorFuture(processor);
+            if (future.isDone())
+            {
+                this.unsettledDeliveryCount--;
+                settle(delivery, future.getNow(AcknowledgementType.ABANDON));
+                return;
+            }
+
+            if (!createReactorWakeup(event))
+            {
+                this.unsettledDeliveryCount--;
+                settle(delivery, AcknowledgementType.ABANDON);
+                return;
+            }
+
+            future.whenComplete((acknowledgementType, throwable) -> onDeliveryProcessed(delivery, acknowledgementType, throwable));
+            return;
+        }
+
+        if (!createReactorWakeup(event))
+        {
+            this.unsettledDeliveryCount--;
+            settle(delivery, AcknowledgementType.ABANDON);
+            return;
+        }
+
+        try
+        {
+            executor.execute(() ->
+                getProcessorFuture(processor).whenComplete((acknowledgementType, throwable) ->
+                    onDeliveryProcessed(delivery, acknowledgementType, throwable)));
+        }
+        catch (RejectedExecutionException e)
+        {
+            log.warn("The executor of the {} receiver link with link correlation id {} rejected a delivery, abandoning it", getLinkInstanceType(), this.linkCorrelationId, e);
+            this.unsettledDeliveryCount--;
+            settle(delivery, AcknowledgementType.ABANDON);
+        }
+    }
+
+    private CompletableFuture<AcknowledgementType> getProcessorFuture(Supplier<CompletableFuture<AcknowledgementType>> processor)
+    {
+        try
+        {
+            CompletableFuture<AcknowledgementType> future = processor.get();
+            if (future != null)
+            {
+                return future;
+            }
+
+            log.warn("The processor of a {} receiver link returned a null future, abandoning the delivery", getLinkInstanceType());
+        }
+        catch (Exception e)
+        {
+            // this should never happen. However if it does, proton can't handle it. So guard against throwing it at proton.
+            log.warn("Encountered an exception while processing a delivery on a {} receiver link", getLinkInstanceType(), e);
+        }
+
+        return CompletableFuture.completedFuture(AcknowledgementType.ABANDON);
+    }
+
+    private boolean createReactorWakeup(Event event)
+    {
+        if (this.reactorWakeup == null)
+        {
+            try
+            {
+                this.reactorWakeup = new ReactorWakeup(event.getReactor(), this::settleProcessedDeliveries);
+            }
+            catch (IOException e)
+            {
+                log.warn("Failed to create the reactor wakeup of the {} receiver link with link correlation id {}", getLinkInstanceType(), this.linkCorrelationId, e);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void onDeliveryProcessed(Delivery delivery, AcknowledgementType acknowledgementType, Throwable throwable)
+    {
+        if (throwable != null)
+        {
+            log.warn("Processing a delivery on a {} receiver link completed exceptionally, abandoning it", getLinkInstanceType(), throwable);
+            acknowledgementType = AcknowledgementType.ABANDON;
+        }
+
+        this.processedDeliveries.add(new ProcessedDelivery(delivery, acknowledgementType));
+        this.reactorWakeup.wakeup();
+    }
+
+    private void settleProcessedDeliveries()
+    {
+        ProcessedDelivery processedDelivery;
+        while ((processedDelivery = this.processedDeliveries.poll()) != null)
+        {
+            this.unsettledDeliveryCount--;
+
+            // Deliveries of a link that has closed can't be settled anymore. The service delivers them again instead.
+            if (this.receiverLink.getLocalState() == EndpointState.ACTIVE)
+            {
+                settle(processedDelivery.delivery, processedDelivery.acknowledgementType);
+            }
+        }
+
+        if (this.receiverLink.getLocalState() == EndpointState.ACTIVE)
+        {
+            replenishCredit(this.receiverLink);
+        }
+    }
+
+    private void settle(Delivery delivery, AcknowledgementType acknowledgementType)
+    {
+        delivery.disposition(acknowledgementType == AcknowledgementType.ABANDON ? Released.getInstance() : Accepted.getInstance());
+        delivery.settle();
+        this.metrics.onMessageSettled(acknowledgementType);
+    }
+
     @Override
     public void onLinkLocalOpen(Event event)
     {
@@ -128,7 +336,7 @@ abstract class ReceiverLinkHandler extends BaseHandler
             log.debug("{} receiver link with link correlation id {} was closed remotely unexpectedly", getLinkInstanceType(), this.linkCorrelationId);
             link.close();
         }
-        else
+        else if (this.closeSessionWithLink)
         {
             log.trace("Closing amqp session now that this {} receiver link with link correlation id {} has closed remotely and locally", getLinkInstanceType(), linkCorrelationId);
             event.getSession().close();
@@ -139,7 +347,7 @@ abstract class ReceiverLinkHandler extends BaseHandler
     public void onLinkLocalClose(Event event)
     {
         Link link = event.getLink();
-        if (link.getRemoteState() == EndpointState.CLOSED)
+        if (link.getRemoteState() == EndpointState.CLOSED && this.closeSessionWithLink)
         {
             log.trace("Closing amqp session now that this {} receiver link with link correlation id {} has closed remotely and locally", getLinkInstanceType(), linkCorrelationId);
             event.getSession().close();
@@ -150,8 +358,30 @@ abstract class ReceiverLinkHandler extends BaseHandler
         }
     }
 
+    void setMetrics(ReceiverLinkMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    void setCloseSessionWithLink(boolean closeSessionWithLink)
+    {
+        this.closeSessionWithLink = closeSessionWithLink;
+    }
+
+    boolean isOpen()
+    {
+        return this.receiverLink.getLocalState() == EndpointState.ACTIVE
+            && this.receiverLink.getRemoteState() == EndpointState.ACTIVE;
+    }
+
     void close()
     {
+        ReactorWakeup wakeup = this.reactorWakeup;
+        if (wakeup != null)
+        {
+            wakeup.close();
+        }
+
         if (this.receiverLink.getLocalState() != EndpointState.CLOSED)
         {
             log.debug("Closing {} receiver link with link correlation id {}", getLinkInstanceType(), this.linkCorrelationId);
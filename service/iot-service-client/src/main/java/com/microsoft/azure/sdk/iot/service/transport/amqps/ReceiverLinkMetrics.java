@@ -0,0 +1,62 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.messaging.AcknowledgementType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages received over a group of receiver links, such as the competing links that a processor client opens
+ * to the same endpoint, so that the group can be monitored as a whole. Updated on the reactor thread and readable from
+ * any thread.
+ */
+public final class ReceiverLinkMetrics
+{
+    private final AtomicLong receivedMessageCount = new AtomicLong(0);
+    private final AtomicLong completedMessageCount = new AtomicLong(0);
+    private final AtomicLong abandonedMessageCount = new AtomicLong(0);
+
+    /**
+     * @return the number of messages that were received and handed to the processor.
+     */
+    public long getReceivedMessageCount()
+    {
+        return this.receivedMessageCount.get();
+    }
+
+    /**
+     * @return the number of messages that were settled with any acknowledgement other than
+     * {@link AcknowledgementType#ABANDON}.
+     */
+    public long getCompletedMessageCount()
+    {
+        return this.completedMessageCount.get();
+    }
+
+    /**
+     * @return the number of messages that were abandoned, including those whose processor failed.
+     */
+    public long getAbandonedMessageCount()
+    {
+        return this.abandonedMessageCount.get();
+    }
+
+    void onMessageReceived()
+    {
+        this.receivedMessageCount.incrementAndGet();
+    }
+
+    void onMessageSettled(AcknowledgementType acknowledgementType)
+    {
+        if (acknowledgementType == AcknowledgementType.ABANDON)
+        {
+            this.abandonedMessageCount.incrementAndGet();
+        }
+        else
+        {
+            this.completedMessageCount.incrementAndGet();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.Target;
 import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.codec.ReadableBuffer;
 import org.apache.qpid.proton.engine.BaseHandler;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.EndpointState;
@@ -18,8 +19,6 @@ import org.apache.qpid.proton.message.Message;
 import org.apache.qpid.proton.reactor.FlowController;
 
 import java.io.IOException;
-import java.nio.BufferOverflowException;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +26,9 @@ import java.util.Map;
 abstract class SenderLinkHandler extends BaseHandler
 {
     private static final String API_VERSION_KEY = "com.microsoft:api-version";
+
+    static final int DELIVERY_TAG_SIZE = 4;
+
     private final Map<Symbol, Object> amqpProperties;
     @SuppressWarnings("unused") // protected member may be used for expansion
     String senderLinkTag;
@@ -35,10 +37,22 @@ abstract class SenderLinkHandler extends BaseHandler
     final Sender senderLink;
     private long nextTag = 0;
 
+    // Only used by the reactor thread. Proton-j copies the bytes that are sent, so one buffer can be reused for every message
+    private final ProtonMessageEncoder messageEncoder = new ProtonMessageEncoder();
+
     private final LinkStateCallback linkStateCallback;
 
     protected abstract String getLinkInstanceType();
 
+    /**
+     * @return the settle mode that this link is opened with. With {@link SenderSettleMode#SETTLED}, messages are settled
+     * as soon as they are sent, and the service does not acknowledge them.
+     */
+    SenderSettleMode getSenderSettleMode()
+    {
+        return SenderSettleMode.UNSETTLED;
+    }
+
     SenderLinkHandler(Sender sender, String linkCorrelationId, LinkStateCallback linkStateCallback)
     {
         this.amqpProperties = new HashMap<>();
@@ -80,7 +94,7 @@ abstract class SenderLinkHandler extends BaseHandler
 
         link.setTarget(target);
 
-        link.setSenderSettleMode(SenderSettleMode.UNSETTLED);
+        link.setSenderSettleMode(getSenderSettleMode());
         link.setProperties(this.amqpProperties);
         link.open();
         log.trace("Opening {} sender link with correlation id {}", this.getLinkInstanceType(), this.linkCorrelationId);
@@ -134,6 +148,24 @@ abstract class SenderLinkHandler extends BaseHandler
     }
 
     int sendMessageAndGetDeliveryTag(Message protonMessage)
+    {
+        int length = this.messageEncoder.encode(protonMessage);
+        return sendAndGetDeliveryTag(this.messageEncoder.getEncodedBytes(), length, true);
+    }
+
+    /**
+     * Send a message that was already encoded, for instance by the thread that sent it.
+     *
+     * @param encodedMessage the encoded message. Proton-j keeps a reference to it rather than copying it, so it must
+     * not be changed afterwards.
+     * @return the delivery tag of the message, or -1 if it failed to send.
+     */
+    int sendEncodedMessageAndGetDeliveryTag(byte[] encodedMessage)
+    {
+        return sendAndGetDeliveryTag(encodedMessage, encodedMessage.length, false);
+    }
+
+    private int sendAndGetDeliveryTag(byte[] msgData, int length, boolean copy)
     {
         // Callers of this method are responsible for putting the returned delivery tag into the inProgressMessages map
         // so that this link can respond to this message being acknowledged appropriately
@@ -148,29 +180,16 @@ abstract class SenderLinkHandler extends BaseHandler
             this.nextTag++;
         }
 
-        byte[] msgData = new byte[1024];
-        int length;
-
-        while (true)
-        {
-            try
-            {
-                length = protonMessage.encode(msgData, 0, msgData.length);
-                break;
-            }
-            catch (BufferOverflowException e)
-            {
-                msgData = new byte[msgData.length * 2];
-            }
-        }
-
-        byte[] deliveryTag = String.valueOf(this.nextTag).getBytes(StandardCharsets.UTF_8);
+        int deliveryTagValue = (int) this.nextTag;
+        byte[] deliveryTag = encodeDeliveryTag(deliveryTagValue);
 
         Delivery delivery = this.senderLink.delivery(deliveryTag);
         try
         {
             log.trace("Sending {} bytes over the amqp {} sender link with link correlation id {}", length, getLinkInstanceType(), this.linkCorrelationId);
-            int bytesSent = this.senderLink.send(msgData, 0, length);
+            int bytesSent = copy
+                ? this.senderLink.send(msgData, 0, length)
+                : this.senderLink.sendNoCopy(ReadableBuffer.ByteBufferReader.wrap(msgData));
             log.trace("{} bytes sent over the amqp {} sender link with link correlation id {}", bytesSent, getLinkInstanceType(), this.linkCorrelationId);
 
             if (bytesSent != length)
@@ -185,9 +204,14 @@ abstract class SenderLinkHandler extends BaseHandler
                 throw new IOException(String.format("Failed to advance the senderLink after sending a message on %s sender link with link correlation id %s, retrying to send the message", getLinkInstanceType(), this.linkCorrelationId));
             }
 
-            String deliveryTagString = new String(deliveryTag, StandardCharsets.UTF_8);
-            log.trace("Message was sent over {} sender link with delivery tag {} and hash {}", getLinkInstanceType(), deliveryTagString, delivery.hashCode());
-            return Integer.parseInt(deliveryTagString);
+            if (this.senderLink.getSenderSettleMode() == SenderSettleMode.SETTLED)
+            {
+                // The service won't acknowledge the message, so there is nothing left to track
+                delivery.settle();
+            }
+
+            log.trace("Message was sent over {} sender link with delivery tag {} and hash {}", getLinkInstanceType(), deliveryTagValue, delivery.hashCode());
+            return deliveryTagValue;
         }
         catch (Exception e)
         {
@@ -197,4 +221,35 @@ abstract class SenderLinkHandler extends BaseHandler
             return -1;
         }
     }
+
+    /**
+     * Get the delivery tag that {@link #sendMessageAndGetDeliveryTag(Message)} returned for a delivery.
+     *
+     * @param deliveryTag the tag of the delivery.
+     * @return the delivery tag as an int, or -1 if the tag was not created by this class.
+     */
+    static int decodeDeliveryTag(byte[] deliveryTag)
+    {
+        if (deliveryTag == null || deliveryTag.length != DELIVERY_TAG_SIZE)
+        {
+            return -1;
+        }
+
+        return ((deliveryTag[0] & 0xFF) << 24)
+            | ((deliveryTag[1] & 0xFF) << 16)
+            | ((deliveryTag[2] & 0xFF) << 8)
+            | (deliveryTag[3] & 0xFF);
+    }
+
+    static byte[] encodeDeliveryTag(int deliveryTag)
+    {
+        // A new array per delivery since proton-j holds on to the tag until the delivery is settled
+        return new byte[]
+            {
+                (byte) (deliveryTag >>> 24),
+                (byte) (deliveryTag >>> 16),
+                (byte) (deliveryTag >>> 8),
+                (byte) deliveryTag
+            };
+    }
 }
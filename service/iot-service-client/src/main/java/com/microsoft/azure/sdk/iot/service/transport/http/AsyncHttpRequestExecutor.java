@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking HTTP operations of a service client on an executor and exposes them as {@link CompletableFuture}
+ * instances. At most {@code maxConcurrentRequests} operations run at a time; the rest wait in a queue without holding a
+ * thread. Cancelling a returned future aborts the HTTP request it is running, if any.
+ */
+@Slf4j
+public final class AsyncHttpRequestExecutor
+{
+    /**
+     * The default number of async operations that a single client will run at a time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+
+    private static final String THREAD_NAME = "azure-iot-sdk-AsyncHttpWorker";
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger(0);
+
+    // Shared by all clients that were not given their own executor. Idle threads are released after 60 seconds.
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable ->
+    {
+        Thread thread = new Thread(runnable, THREAD_NAME + "-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor executor;
+    private final int maxConcurrentRequests;
+    private final Queue<Operation<?>> pendingOperations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeOperations = new AtomicInteger(0);
+
+    // The operation of this executor that is running on the current thread, if any
+    private final ThreadLocal<Operation<?>> runningOperation = new ThreadLocal<>();
+
+    /**
+     * A blocking service client operation.
+     *
+     * @param <T> the type of the operation's result.
+     */
+    @FunctionalInterface
+    public interface HttpOperation<T>
+    {
+        T execute() throws IotHubException, IOException;
+    }
+
+    /**
+     * Create an executor for a single service client.
+     *
+     * @param executor the executor to run operations on. If null, a thread pool shared by all clients is used.
+     * @param maxConcurrentRequests the maximum number of operations to run at a time. If 0,
+     * {@link #DEFAULT_MAX_CONCURRENT_REQUESTS} is used.
+     */
+    public AsyncHttpRequestExecutor(Executor executor, int maxConcurrentRequests)
+    {
+        if (maxConcurrentRequests < 0)
+        {
+            throw new IllegalArgumentException("maxConcurrentRequests must be non-negative");
+        }
+
+        this.executor = executor != null ? executor : DEFAULT_EXECUTOR;
+        this.maxConcurrentRequests = maxConcurrentRequests == 0 ? DEFAULT_MAX_CONCURRENT_REQUESTS : maxConcurrentRequests;
+    }
+
+    /**
+     * Queue the provided operation for execution.
+     *
+     * @param operation the blocking operation to run.
+     * @param <T> the type of the operation's result.
+     * @return a future that completes with the result of the operation, or exceptionally with the exception that it
+     * threw. Cancelling this future aborts the operation's in-flight HTTP request.
+     */
+    public <T> CompletableFuture<T> submit(HttpOperation<T> operation)
+    {
+        Operation<T> pendingOperation = new Operation<>(operation);
+        this.pendingOperations.add(pendingOperation);
+        dispatch();
+        return pendingOperation.future;
+    }
+
+    /**
+     * @return the number of operations that are currently running.
+     */
+    public int getActiveRequestCount()
+    {
+        return this.activeOperations.get();
+    }
+
+    /**
+     * @return the number of operations that are waiting for one of the running operations to finish.
+     */
+    public int getQueuedRequestCount()
+    {
+        return this.pendingOperations.size();
+    }
+
+    /**
+     * Register the request that an operation of this executor is about to send so that cancelling the operation's
+     * future aborts it. Does nothing if the calling thread is not running an operation of this executor, for instance
+     * when the operation was called synchronously.
+     *
+     * @param request the request that the operation will send.
+     * @throws IOException if the operation's future was already cancelled.
+     */
+    public void registerRequest(HttpRequest request) throws IOException
+    {
+        Operation<?> operation = this.runningOperation.get();
+        if (operation != null)
+        {
+            operation.setInFlightRequest(request);
+        }
+    }
+
+    private void dispatch()
+    {
+        while (!this.pendingOperations.isEmpty())
+        {
+            int active = this.activeOperations.get();
+            if (active >= this.maxConcurrentRequests)
+            {
+                // A running operation will dispatch the next one when it finishes
+                return;
+            }
+
+            if (!this.activeOperations.compareAndSet(active, active + 1))
+            {
+                continue;
+            }
+
+            Operation<?> operation = this.pendingOperations.poll();
+            if (operation == null)
+            {
+                this.activeOperations.decrementAndGet();
+                continue;
+            }
+
+            try
+            {
+                this.executor.execute(() -> run(operation));
+            }
+            catch (RuntimeException e)
+            {
+                // For instance, a RejectedExecutionException from a user provided executor that has been shut down
+                this.activeOperations.decrementAndGet();
+                operation.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private <T> void run(Operation<T> operation)
+    {
+        T result = null;
+        Throwable failure = null;
+        try
+        {
+            if (!operation.future.isDone())
+            {
+                this.runningOperation.set(operation);
+                result = operation.operation.execute();
+            }
+        }
+        catch (Throwable e)
+        {
+            failure = e;
+        }
+        finally
+        {
+            this.runningOperation.remove();
+            operation.inFlightRequest = null;
+            this.activeOperations.decrementAndGet();
+            dispatch();
+        }
+
+        // Completed only after the next operation was dispatched so that dependent stages that run synchronously on
+        // this thread don't delay the rest of the queue
+        if (failure != null)
+        {
+            operation.future.completeExceptionally(failure);
+        }
+        else
+        {
+            operation.future.complete(result);
+        }
+    }
+
+    private static final class Operation<T>
+    {
+        private final HttpOperation<T> operation;
+        private final CompletableFuture<T> future;
+        private volatile HttpRequest inFlightRequest;
+
+        private Operation(HttpOperation<T> operation)
+        {
+            this.operation = operation;
+            this.future = new CompletableFuture<T>()
+            {
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning)
+                {
+                    boolean cancelled = super.cancel(mayInterruptIfRunning);
+                    HttpRequest request = inFlightRequest;
+                    if (cancelled && request != null)
+                    {
+                        log.debug("Aborting in-flight http request because its future was cancelled");
+                        request.abort();
+                    }
+
+                    return cancelled;
+                }
+            };
+        }
+
+        private void setInFlightRequest(HttpRequest request) throws IOException
+        {
+            this.inFlightRequest = request;
+            if (this.future.isCancelled())
+            {
+                this.inFlightRequest = null;
+                throw new IOException("The http request was cancelled");
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.URL;
+
+/**
+ * The transport layer behind {@link HttpRequest}. Implementations decide how connections to the service are opened,
+ * which TLS settings they use, and how many of them may be in use at once for a single host.
+ *
+ * <p>By default, every HTTP client in this SDK uses the shared {@link PooledHttpConnectionFactory#getDefault()}
+ * instance.</p>
+ */
+public interface HttpConnectionFactory
+{
+    /**
+     * Open a new, not yet connected, HTTPS connection to the provided URL.
+     *
+     * @param url the URL to open the connection to.
+     * @param proxy the proxy to open the connection through. May be null if no proxy should be used.
+     * @return the opened connection.
+     * @throws IOException if the connection could not be opened.
+     */
+    HttpsURLConnection openConnection(URL url, Proxy proxy) throws IOException;
+
+    /**
+     * Called right before a request is sent to the provided URL. Implementations may block here until the host has
+     * capacity for another request, for as long as they are configured to wait.
+     *
+     * @param url the URL that the request will be sent to.
+     * @throws IOException if no capacity became available in time.
+     */
+    default void acquire(URL url) throws IOException
+    {
+    }
+
+    /**
+     * Called once the response of a request to the provided URL has been fully read, or once the request has failed.
+     * Always paired with a successful {@link #acquire(URL)} call.
+     *
+     * @param url the URL that the request was sent to.
+     */
+    default void release(URL url)
+    {
+    }
+}
@@ -10,11 +10,13 @@ import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
 
 import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
 import java.net.Proxy;
+import java.net.Socket;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -31,9 +33,21 @@ public class HttpRequest
     public static final String REQUEST_ID = "Request-Id";
     public static final String IF_MATCH = "If-Match";
 
+    private static final int DEFAULT_READ_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_INITIAL_READ_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
     /** The underlying HTTPS connection. */
     private final HttpsURLConnection connection;
 
+    /** The factory that opened the underlying connection, and that limits how many requests are in flight per host. */
+    private final HttpConnectionFactory connectionFactory;
+
+    private final URL url;
+
+    /** Set by {@link #abort()}, possibly from another thread than the one sending this request. */
+    private volatile boolean aborted;
+
     /**
      * The body. HttpsURLConnection silently calls connect() when the output
      * stream is written to. We buffer the body and defer writing to the output
@@ -77,14 +91,31 @@ public class HttpRequest
      */
     public HttpRequest(URL url, HttpMethod method, byte[] body, String authorizationToken, Proxy proxy) throws IOException
     {
-        if (proxy != null)
-        {
-            this.connection = (HttpsURLConnection) url.openConnection(proxy);
-        }
-        else
-        {
-            this.connection = (HttpsURLConnection) url.openConnection();
-        }
+        this(url, method, body, authorizationToken, proxy, null);
+    }
+
+    /**
+     * Constructor. Takes a URL as an argument and returns an HTTPS request that
+     * is ready to be sent through an optional proxy using the provided connection factory.
+     *
+     * @param url The URL for the request.
+     * @param method The HTTPS request method (i.e. GET).
+     * @param body The request body. Must be an array of size 0 if the request method is GET or DELETE.
+     * @param authorizationToken The header value for the Authorization header.
+     * @param proxy The proxy to send the request through. May be null if no proxy should be used
+     * @param connectionFactory The factory to open the HTTPS connection with. May be null, in which case
+     * {@link PooledHttpConnectionFactory#getDefault()} is used.
+     *
+     * @throws IOException This exception thrown if an IOException occurs
+     * in setting up the HTTPS connection.
+     * @throws IllegalArgumentException This exception thrown if the endpoint
+     * given does not use the HTTPS protocol.
+     */
+    public HttpRequest(URL url, HttpMethod method, byte[] body, String authorizationToken, Proxy proxy, HttpConnectionFactory connectionFactory) throws IOException
+    {
+        this.url = url;
+        this.connectionFactory = connectionFactory != null ? connectionFactory : PooledHttpConnectionFactory.getDefault();
+        this.connection = this.connectionFactory.openConnection(url, proxy);
 
         if (method != HttpMethod.POST && method != HttpMethod.PUT && method != HttpMethod.PATCH)
         {
@@ -134,8 +165,14 @@ public class HttpRequest
         byte[] responseBody = new byte[0];
         byte[] errorReason = new byte[0];
         Map<String, List<String>> headerFields;
+        this.connectionFactory.acquire(this.url);
         try
         {
+            if (this.aborted)
+            {
+                throw new IOException("The request was aborted before it was sent");
+            }
+
             if (this.body != null && this.body.length > 0)
             {
                 this.connection.setDoOutput(true);
@@ -144,18 +181,32 @@ public class HttpRequest
 
             this.connection.connect();
 
+            // abort() may have run while the connection was being opened, when there was no connection for it to close
+            if (this.aborted)
+            {
+                this.connection.disconnect();
+                throw new IOException("The request was aborted before it was sent");
+            }
+
             responseStatus = this.connection.getResponseCode();
             headerFields = this.connection.getHeaderFields();
 
             try (InputStream inputStream = this.connection.getInputStream())
             {
-                responseBody = readInputStream(inputStream);
+                responseBody = readInputStream(inputStream, this.connection.getContentLengthLong());
             }
         }
         // Can be caused either by an unsuccessful
         // connection or by a bad status code.
         catch (IOException e)
         {
+            // The connection was disconnected by abort(), so there is no response to read. Asking for the response
+            // code would have HttpsURLConnection reconnect and send the request again.
+            if (this.aborted)
+            {
+                throw e;
+            }
+
             // If the IOException was caused by a bad status code in the
             // response, then getResponseStatus() returns a valid status code.
             // Otherwise, a connection could not be established and
@@ -169,17 +220,36 @@ public class HttpRequest
             {
                 if (errorStream != null)
                 {
-                    errorReason = readInputStream(errorStream);
+                    errorReason = readInputStream(errorStream, this.connection.getContentLengthLong());
                 }
             }
         }
+        finally
+        {
+            this.connectionFactory.release(this.url);
+        }
 
-        HttpResponse response = new HttpResponse(responseStatus, responseBody, headerFields, errorReason);
+        // The response body was just read into a buffer that nothing else references, so there is no need to copy it again
+        HttpResponse response = HttpResponse.withoutCopy(responseStatus, responseBody, headerFields, errorReason);
         IotHubExceptionManager.httpResponseVerification(response);
 
         return response;
     }
 
+    /**
+     * Aborts this request by closing its underlying connection. If the request is in flight, {@link #send()} will
+     * throw an {@link IOException}.
+     */
+    public void abort()
+    {
+        this.aborted = true;
+
+        // HttpsURLConnection opens a new connection and sends the request again if it is asked for the response after
+        // being disconnected, so make any connection that it opens from now on fail before anything is written to it
+        this.connection.setSSLSocketFactory(AbortedSSLSocketFactory.INSTANCE);
+        this.connection.disconnect();
+    }
+
     /**
      * Sets the header field to the given value.
      *
@@ -248,26 +318,101 @@ public class HttpRequest
     protected HttpRequest()
     {
         this.connection = null;
+        this.connectionFactory = null;
+        this.url = null;
     }
 
-    private static byte[] readInputStream(InputStream stream) throws IOException
+    private static byte[] readInputStream(InputStream stream, long contentLength) throws IOException
     {
-        ArrayList<Byte> byteBuffer = new ArrayList<>();
-        int nextByte;
-        // read(byte[]) reads the byte into the buffer and returns the number
-        // of bytes read, or -1 if the end of the stream has been reached.
-        while ((nextByte = stream.read()) > -1)
+        // Size the buffer to the advertised content length when there is one, so that the common case is a single
+        // allocation with no copies. Otherwise, grow the buffer geometrically as the body is read. The content length
+        // isn't trusted with more than the initial buffer, so a large one only costs memory once the body arrives.
+        int initialSize = contentLength >= 0 ? (int) Math.min(contentLength, MAX_INITIAL_READ_BUFFER_SIZE) : DEFAULT_READ_BUFFER_SIZE;
+        byte[] buffer = new byte[initialSize];
+        int count = 0;
+        while (true)
         {
-            byteBuffer.add((byte) nextByte);
+            if (count == buffer.length)
+            {
+                // The advertised content length may have been exact, so check for the end of the stream before growing
+                int nextByte = stream.read();
+                if (nextByte == -1)
+                {
+                    break;
+                }
+
+                if (buffer.length >= MAX_BUFFER_SIZE)
+                {
+                    throw new IOException("Response body exceeded the maximum supported size of " + MAX_BUFFER_SIZE + " bytes");
+                }
+
+                buffer = Arrays.copyOf(buffer, (int) Math.min((long) Math.max(buffer.length, DEFAULT_READ_BUFFER_SIZE) * 2, MAX_BUFFER_SIZE));
+                buffer[count++] = (byte) nextByte;
+            }
+
+            // read(byte[], int, int) returns the number of bytes read, or -1 if the end of the stream has been reached.
+            int bytesRead = stream.read(buffer, count, buffer.length - count);
+            if (bytesRead == -1)
+            {
+                break;
+            }
+
+            count += bytesRead;
         }
 
-        int bufferSize = byteBuffer.size();
-        byte[] byteArray = new byte[bufferSize];
-        for (int i = 0; i < bufferSize; ++i)
+        return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    private static final class AbortedSSLSocketFactory extends SSLSocketFactory
+    {
+        private static final AbortedSSLSocketFactory INSTANCE = new AbortedSSLSocketFactory();
+
+        @Override
+        public String[] getDefaultCipherSuites()
         {
-            byteArray[i] = byteBuffer.get(i);
+            return new String[0];
         }
 
-        return byteArray;
+        @Override
+        public String[] getSupportedCipherSuites()
+        {
+            return new String[0];
+        }
+
+        @Override
+        public Socket createSocket() throws IOException
+        {
+            throw new IOException("The request was aborted");
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException
+        {
+            throw new IOException("The request was aborted");
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException
+        {
+            throw new IOException("The request was aborted");
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+        {
+            throw new IOException("The request was aborted");
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException
+        {
+            throw new IOException("The request was aborted");
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+        {
+            throw new IOException("The request was aborted");
+        }
     }
 }
@@ -5,6 +5,9 @@
 
 package com.microsoft.azure.sdk.iot.service.transport.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -32,9 +35,17 @@ public class HttpResponse
     public HttpResponse(int status, byte[] body,
                         Map<String, List<String>> headerFields,
                         byte[] errorReason)
+    {
+        this(status, body, headerFields, errorReason, true);
+    }
+
+    private HttpResponse(int status, byte[] body,
+                         Map<String, List<String>> headerFields,
+                         byte[] errorReason,
+                         boolean copyBody)
     {
         this.status = status;
-        this.body = Arrays.copyOf(body, body.length);
+        this.body = copyBody ? Arrays.copyOf(body, body.length) : body;
         this.errorReason = errorReason;
 
         this.headerFields = new HashMap<>();
@@ -51,6 +62,15 @@ public class HttpResponse
         }
     }
 
+    /**
+     * Create a response that takes ownership of the provided body rather than copying it. The caller must not
+     * modify the body array after this call.
+     */
+    static HttpResponse withoutCopy(int status, byte[] body, Map<String, List<String>> headerFields, byte[] errorReason)
+    {
+        return new HttpResponse(status, body, headerFields, errorReason, false);
+    }
+
     /**
      * Getter for the HTTPS status code.
      *
@@ -71,6 +91,26 @@ public class HttpResponse
         return Arrays.copyOf(this.body, this.body.length);
     }
 
+    /**
+     * Getter for the response body that does not copy it.
+     *
+     * @return A read-only view of the response body.
+     */
+    public ByteBuffer getBodyAsByteBuffer()
+    {
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
+    /**
+     * Getter for the response body as a stream that does not copy it.
+     *
+     * @return A stream over the response body.
+     */
+    public InputStream getBodyAsInputStream()
+    {
+        return new ByteArrayInputStream(this.body);
+    }
+
     /**
      * Getter for a header field.
      *
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.auth.IotHubSSLContext;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.URL;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default {@link HttpConnectionFactory}. All connections opened by one instance of this class share a single
+ * {@link SSLSocketFactory}, so the JVM's keep-alive cache can hand back an idle socket to the same host instead of
+ * opening a new one, and so that TLS sessions are resumed rather than renegotiated when a new socket is needed.
+ *
+ * <p>If no SSLContext is provided, this class builds its own with the JVM's default TLS protocols, key managers and
+ * trust managers, so that the TLS session cache settings can be applied to it without changing the JVM wide default
+ * SSLContext.</p>
+ *
+ * <p>Sockets that this instance opened are closed once none of its requests have been in flight for
+ * {@link #getIdleConnectionTimeoutSeconds()}, so that a request never picks up a socket that the service or a load
+ * balancer has already dropped for being idle. The JVM's keep-alive cache may close them sooner.</p>
+ *
+ * <p>By default, the number of requests in flight to a single host is not capped. If {@link #getMaxConnectionsPerHost()}
+ * is set, requests beyond that cap wait up to {@link #getConnectionAcquireTimeoutMilliseconds()} for a free connection
+ * rather than opening short lived sockets that the keep-alive cache would discard once they are done. The number of
+ * idle sockets the JVM keeps alive per host is controlled by the "http.maxConnections" system property, so it is
+ * recommended to keep the two values equal. The cap applies to every client that shares this instance, so it should be
+ * larger than the number of asynchronous requests those clients may have in flight at once.</p>
+ */
+@Slf4j
+public final class PooledHttpConnectionFactory implements HttpConnectionFactory
+{
+    private static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 1000;
+    private static final int DEFAULT_TLS_SESSION_TIMEOUT_SECONDS = 60 * 60;
+    private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+    private static final int DEFAULT_CONNECTION_ACQUIRE_TIMEOUT_MILLISECONDS = 60 * 1000;
+
+    /**
+     * The maximum number of requests that may be in flight to a single host at a time. 0 if there is no limit.
+     */
+    @Getter
+    private final int maxConnectionsPerHost;
+
+    /**
+     * The maximum amount of time, in milliseconds, that a request waits for a free connection when
+     * {@link #getMaxConnectionsPerHost()} requests to its host are already in flight.
+     */
+    @Getter
+    private final int connectionAcquireTimeoutMilliseconds;
+
+    /**
+     * The amount of time, in seconds, that this instance may have no requests in flight before the sockets it opened
+     * are closed.
+     */
+    @Getter
+    private final int idleConnectionTimeoutSeconds;
+
+    /**
+     * The maximum number of TLS sessions that will be cached for resumption.
+     */
+    @Getter
+    private final int tlsSessionCacheSize;
+
+    /**
+     * The amount of time, in seconds, that a cached TLS session may be resumed for.
+     */
+    @Getter
+    private final int tlsSessionTimeoutSeconds;
+
+    // Null if the SSLContext with the JVM's defaults should be used
+    private final IotHubSSLContext sslContext;
+
+    // Handed to every connection. Only creates the SSLContext's socket factory once a socket is first needed, so that
+    // building this instance is cheap.
+    private final SSLSocketFactory sslSocketFactory = new SocketTrackingSSLSocketFactory();
+    private final Object sslLock = new Object();
+    private volatile SSLSocketFactory contextSocketFactory;
+
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    // Guards the idle socket bookkeeping below
+    private final Object idleLock = new Object();
+    private final Set<Socket> openedSockets = Collections.newSetFromMap(new WeakHashMap<>());
+    private int requestsInFlight;
+    private long lastRequestCompletedNanos = System.nanoTime();
+
+    /**
+     * Create a connection factory.
+     *
+     * @param maxConnectionsPerHost the maximum number of requests that may be in flight to a single host at a time.
+     * If 0, the number of requests is not limited.
+     * @param connectionAcquireTimeoutMilliseconds the maximum amount of time, in milliseconds, that a request waits for
+     * a free connection to its host. If 0, a default of 60 seconds is used.
+     * @param idleConnectionTimeoutSeconds the amount of time, in seconds, that this instance may have no requests in
+     * flight before the sockets it opened are closed. If 0, a default of 60 seconds is used.
+     * @param tlsSessionCacheSize the maximum number of TLS sessions that will be cached for resumption. If 0, a default
+     * of 1000 is used.
+     * @param tlsSessionTimeoutSeconds the amount of time, in seconds, that a cached TLS session may be resumed for. If 0,
+     * a default of 1 hour is used.
+     * @param sslContext the SSLContext to open connections with. If null, an SSLContext with the JVM's default TLS
+     * protocols, key managers and trust managers is used.
+     */
+    @Builder
+    private PooledHttpConnectionFactory(
+        int maxConnectionsPerHost,
+        int connectionAcquireTimeoutMilliseconds,
+        int idleConnectionTimeoutSeconds,
+        int tlsSessionCacheSize,
+        int tlsSessionTimeoutSeconds,
+        IotHubSSLContext sslContext)
+    {
+        if (maxConnectionsPerHost < 0
+            || connectionAcquireTimeoutMilliseconds < 0
+            || idleConnectionTimeoutSeconds < 0
+            || tlsSessionCacheSize < 0
+            || tlsSessionTimeoutSeconds < 0)
+        {
+            throw new IllegalArgumentException("Connection pool settings must be non-negative");
+        }
+
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.connectionAcquireTimeoutMilliseconds = connectionAcquireTimeoutMilliseconds == 0
+            ? DEFAULT_CONNECTION_ACQUIRE_TIMEOUT_MILLISECONDS
+            : connectionAcquireTimeoutMilliseconds;
+        this.idleConnectionTimeoutSeconds = idleConnectionTimeoutSeconds == 0 ? DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS : idleConnectionTimeoutSeconds;
+        this.tlsSessionCacheSize = tlsSessionCacheSize == 0 ? DEFAULT_TLS_SESSION_CACHE_SIZE : tlsSessionCacheSize;
+        this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds == 0 ? DEFAULT_TLS_SESSION_TIMEOUT_SECONDS : tlsSessionTimeoutSeconds;
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * @return the connection factory that is shared by all clients that were not configured with their own.
+     */
+    public static PooledHttpConnectionFactory getDefault()
+    {
+        return DefaultInstanceHolder.INSTANCE;
+    }
+
+    @Override
+    public HttpsURLConnection openConnection(URL url, Proxy proxy) throws IOException
+    {
+        HttpsURLConnection connection = (HttpsURLConnection) (proxy != null ? url.openConnection(proxy) : url.openConnection());
+
+        // The keep-alive cache only hands back an idle socket if it was created by the same socket factory instance
+        connection.setSSLSocketFactory(this.sslSocketFactory);
+        return connection;
+    }
+
+    @Override
+    public void acquire(URL url) throws IOException
+    {
+        if (this.maxConnectionsPerHost > 0)
+        {
+            acquirePermit(url);
+        }
+
+        List<Socket> idleSockets = null;
+        synchronized (this.idleLock)
+        {
+            if (this.requestsInFlight == 0
+                && System.nanoTime() - this.lastRequestCompletedNanos >= TimeUnit.SECONDS.toNanos(this.idleConnectionTimeoutSeconds))
+            {
+                // No request can be using these sockets, since none are in flight, and this request hasn't connected yet
+                idleSockets = new ArrayList<>(this.openedSockets);
+                this.openedSockets.clear();
+            }
+
+            this.requestsInFlight++;
+        }
+
+        if (idleSockets != null)
+        {
+            closeSockets(idleSockets);
+        }
+    }
+
+    @Override
+    public void release(URL url)
+    {
+        synchronized (this.idleLock)
+        {
+            this.requestsInFlight--;
+            this.lastRequestCompletedNanos = System.nanoTime();
+        }
+
+        Semaphore permits = this.hostPermits.get(getHostKey(url));
+        if (permits != null)
+        {
+            permits.release();
+        }
+    }
+
+    private void acquirePermit(URL url) throws IOException
+    {
+        Semaphore permits = this.hostPermits.computeIfAbsent(getHostKey(url), key -> new Semaphore(this.maxConnectionsPerHost, true));
+
+        try
+        {
+            if (!permits.tryAcquire(this.connectionAcquireTimeoutMilliseconds, TimeUnit.MILLISECONDS))
+            {
+                throw new IOException("Timed out waiting for an available connection to " + url.getHost());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an available connection to " + url.getHost(), e);
+        }
+    }
+
+    private SSLSocketFactory getContextSocketFactory()
+    {
+        SSLSocketFactory socketFactory = this.contextSocketFactory;
+        if (socketFactory == null)
+        {
+            synchronized (this.sslLock)
+            {
+                socketFactory = this.contextSocketFactory;
+                if (socketFactory == null)
+                {
+                    SSLContext context = this.sslContext != null ? this.sslContext.getSSLContext() : createDefaultSSLContext();
+                    SSLSessionContext sessionContext = context.getClientSessionContext();
+                    if (sessionContext != null)
+                    {
+                        sessionContext.setSessionCacheSize(this.tlsSessionCacheSize);
+                        sessionContext.setSessionTimeout(this.tlsSessionTimeoutSeconds);
+                    }
+
+                    socketFactory = context.getSocketFactory();
+                    this.contextSocketFactory = socketFactory;
+                }
+            }
+        }
+
+        return socketFactory;
+    }
+
+    private void onSocketCreated(Socket socket)
+    {
+        synchronized (this.idleLock)
+        {
+            this.openedSockets.add(socket);
+        }
+    }
+
+    private static void closeSockets(List<Socket> sockets)
+    {
+        // The keep-alive cache checks that a socket is still usable before handing it back, so it discards these
+        for (Socket socket : sockets)
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                log.debug("Failed to close an idle socket", e);
+            }
+        }
+    }
+
+    private static String getHostKey(URL url)
+    {
+        return url.getHost() + ":" + url.getPort();
+    }
+
+    private static SSLContext createDefaultSSLContext()
+    {
+        try
+        {
+            // Null managers make the context use the JVM's default key managers and trust managers
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            return context;
+        }
+        catch (NoSuchAlgorithmException | KeyManagementException e)
+        {
+            throw new IllegalStateException("Failed to build the default SSLContext instance", e);
+        }
+    }
+
+    // Only built the first time it is needed, rather than whenever this class is loaded
+    private static final class DefaultInstanceHolder
+    {
+        private static final PooledHttpConnectionFactory INSTANCE = PooledHttpConnectionFactory.builder().build();
+    }
+
+    // Records the sockets that it creates so that they can be closed once they have been idle for too long
+    private final class SocketTrackingSSLSocketFactory extends SSLSocketFactory
+    {
+        @Override
+        public String[] getDefaultCipherSuites()
+        {
+            return getContextSocketFactory().getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites()
+        {
+            return getContextSocketFactory().getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException
+        {
+            return track(getContextSocketFactory().createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException
+        {
+            return track(getContextSocketFactory().createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException
+        {
+            return track(getContextSocketFactory().createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+        {
+            return track(getContextSocketFactory().createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException
+        {
+            return track(getContextSocketFactory().createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+        {
+            return track(getContextSocketFactory().createSocket(address, port, localAddress, localPort));
+        }
+
+        private Socket track(Socket socket)
+        {
+            onSocketCreated(socket);
+            return socket;
+        }
+    }
+}
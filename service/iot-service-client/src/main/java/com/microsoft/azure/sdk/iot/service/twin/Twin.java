@@ -9,6 +9,7 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.Reader;
 import java.util.*;
 
 /**
@@ -89,8 +90,19 @@ public class Twin
 
     public static Twin fromJson(String json)
     {
-        TwinState twinState = new TwinState(json);
+        return fromTwinState(new TwinState(json));
+    }
 
+    /**
+     * Parse the twin JSON that the provided reader reads, without first reading it into a {@code String}.
+     */
+    static Twin fromJson(Reader json)
+    {
+        return fromTwinState(new TwinState(json));
+    }
+
+    private static Twin fromTwinState(TwinState twinState)
+    {
         Twin twin = new Twin(twinState.getDeviceId());
         twin.setVersion(twinState.getVersion());
         twin.setETag(twinState.getETag());
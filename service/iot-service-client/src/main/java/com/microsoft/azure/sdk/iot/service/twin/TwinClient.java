@@ -9,7 +9,7 @@ import com.azure.core.credential.AzureSasCredential;
 import com.azure.core.credential.TokenCredential;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.auth.TokenCredentialCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.query.QueryClient;
@@ -17,16 +17,20 @@ import com.microsoft.azure.sdk.iot.service.query.QueryClientOptions;
 import com.microsoft.azure.sdk.iot.service.query.QueryPageOptions;
 import com.microsoft.azure.sdk.iot.service.query.TwinQueryResponse;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
+import com.microsoft.azure.sdk.iot.service.transport.http.AsyncHttpRequestExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.Proxy;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest.IF_MATCH;
 import static com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest.REQUEST_ID;
@@ -37,13 +41,15 @@ import static com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest.REQ
 @Slf4j
 public final class TwinClient
 {
-    private int requestId = 0;
+    private final AtomicInteger requestId = new AtomicInteger(0);
 
     private final TwinClientOptions options;
+    private final AsyncHttpRequestExecutor asyncExecutor;
     private final String hostName;
     private TokenCredentialCache credentialCache;
     private AzureSasCredential azureSasCredential;
     private IotHubConnectionString iotHubConnectionString;
+    private IotHubServiceSasTokenCache sasTokenCache;
 
     // keep a queryClient within this client so that twins can be queried
     private final QueryClient queryClient;
@@ -72,7 +78,9 @@ public final class TwinClient
         }
 
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         this.iotHubConnectionString = IotHubConnectionStringBuilder.createIotHubConnectionString(connectionString);
+        this.sasTokenCache = IotHubServiceSasTokenCache.getInstance(this.iotHubConnectionString);
         this.hostName = this.iotHubConnectionString.getHostName();
         commonConstructorSetup();
 
@@ -81,6 +89,7 @@ public final class TwinClient
                 .httpReadTimeoutSeconds(options.getHttpReadTimeoutSeconds())
                 .httpConnectTimeoutSeconds(options.getHttpConnectTimeoutSeconds())
                 .proxyOptions(options.getProxyOptions())
+                .httpConnectionFactory(options.getHttpConnectionFactory())
                 .build();
 
         this.queryClient = new QueryClient(connectionString, queryClientOptions);
@@ -116,7 +125,8 @@ public final class TwinClient
         }
 
         this.options = options;
-        this.credentialCache = new TokenCredentialCache(credential);
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
+        this.credentialCache = TokenCredentialCache.getInstance(credential);
         this.hostName = hostName;
         commonConstructorSetup();
 
@@ -125,6 +135,7 @@ public final class TwinClient
                 .httpReadTimeoutSeconds(options.getHttpReadTimeoutSeconds())
                 .httpConnectTimeoutSeconds(options.getHttpConnectTimeoutSeconds())
                 .proxyOptions(options.getProxyOptions())
+                .httpConnectionFactory(options.getHttpConnectionFactory())
                 .build();
 
         this.queryClient = new QueryClient(hostName, credential, queryClientOptions);
@@ -158,6 +169,7 @@ public final class TwinClient
         }
 
         this.options = options;
+        this.asyncExecutor = new AsyncHttpRequestExecutor(options.getAsyncExecutor(), options.getMaxConcurrentAsyncRequests());
         this.azureSasCredential = azureSasCredential;
         this.hostName = hostName;
         commonConstructorSetup();
@@ -167,6 +179,7 @@ public final class TwinClient
                 .httpReadTimeoutSeconds(options.getHttpReadTimeoutSeconds())
                 .httpConnectTimeoutSeconds(options.getHttpConnectTimeoutSeconds())
                 .proxyOptions(options.getProxyOptions())
+                .httpConnectionFactory(options.getHttpConnectionFactory())
                 .build();
 
         this.queryClient = new QueryClient(hostName, azureSasCredential, queryClientOptions);
@@ -218,8 +231,7 @@ public final class TwinClient
     {
         HttpRequest httpRequest = createRequest(url, HttpMethod.GET, new byte[0]);
         HttpResponse response = httpRequest.send();
-        String twinString = new String(response.getBody(), StandardCharsets.UTF_8);
-        return Twin.fromJson(twinString);
+        return Twin.fromJson(new InputStreamReader(response.getBodyAsInputStream(), StandardCharsets.UTF_8));
     }
 
     /**
@@ -282,8 +294,7 @@ public final class TwinClient
 
         // no need to return http response since method returns void
         HttpResponse httpResponse = httpRequest.send();
-        String twinString = new String(httpResponse.getBody(), StandardCharsets.UTF_8);
-        return Twin.fromJson(twinString);
+        return Twin.fromJson(new InputStreamReader(httpResponse.getBodyAsInputStream(), StandardCharsets.UTF_8));
     }
 
     /**
@@ -338,8 +349,7 @@ public final class TwinClient
         }
 
         HttpResponse httpResponse = httpRequest.send();
-        String twinString = new String(httpResponse.getBody(), StandardCharsets.UTF_8);
-        return Twin.fromJson(twinString);
+        return Twin.fromJson(new InputStreamReader(httpResponse.getBodyAsInputStream(), StandardCharsets.UTF_8));
     }
 
     /**
@@ -371,6 +381,102 @@ public final class TwinClient
         return this.queryClient.queryTwins(query, options);
     }
 
+    /**
+     * Asynchronously retrieve the twin of the specified device. See {@link #get(String)} for more details.
+     *
+     * @param deviceId The id of the device whose twin will be retrieved.
+     * @return A future that completes with the retrieved twin, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Twin> getAsync(String deviceId)
+    {
+        return this.asyncExecutor.submit(() -> get(deviceId));
+    }
+
+    /**
+     * Asynchronously retrieve the twin of the specified module. See {@link #get(String, String)} for more details.
+     *
+     * @param deviceId The id of the device whose twin will be retrieved.
+     * @param moduleId The id of the module on the device whose twin will be retrieved.
+     * @return A future that completes with the retrieved twin, or that completes exceptionally with the exception the
+     * synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Twin> getAsync(String deviceId, String moduleId)
+    {
+        return this.asyncExecutor.submit(() -> get(deviceId, moduleId));
+    }
+
+    /**
+     * Asynchronously patch the twin of the specified device or module. See {@link #patch(Twin)} for more details.
+     *
+     * @param twin The twin to be patched. To delete a particular property, set the value to null.
+     * @return A future that completes with the twin's state after the patch, or that completes exceptionally with the
+     * exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Twin> patchAsync(Twin twin)
+    {
+        return this.asyncExecutor.submit(() -> patch(twin));
+    }
+
+    /**
+     * Asynchronously patch the twin of the specified device or module. See {@link #patch(Twin, String)} for more
+     * details.
+     *
+     * @param twin The twin to be patched. To delete a particular property, set the value to null.
+     * @param ifMatch the string representing a ETag for the device twin, as per RFC7232. If null, no if-match header
+     * will be sent as a part of this request and it will be executed unconditionally.
+     * @return A future that completes with the twin's state after the patch, or that completes exceptionally with the
+     * exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<Twin> patchAsync(Twin twin, String ifMatch)
+    {
+        return this.asyncExecutor.submit(() -> patch(twin, ifMatch));
+    }
+
+    /**
+     * Asynchronously replace the full twin of the specified device or module. See {@link #replace(Twin)} for more
+     * details.
+     *
+     * @param twin The twin object to replace the current twin object.
+     * @return A future that completes with the twin's state after the replace operation, or that completes
+     * exceptionally with the exception the synchronous operation would have thrown. Cancelling the future aborts the
+     * request.
+     */
+    public CompletableFuture<Twin> replaceAsync(Twin twin)
+    {
+        return this.asyncExecutor.submit(() -> replace(twin));
+    }
+
+    /**
+     * Asynchronously replace the full twin of the specified device or module. See {@link #replace(Twin, String)} for
+     * more details.
+     *
+     * @param twin The twin object to replace the current twin object.
+     * @param ifMatch the string representing a ETag for the device twin, as per RFC7232. If null, no if-match header
+     * will be sent as a part of this request and it will be executed unconditionally.
+     * @return A future that completes with the twin's state after the replace operation, or that completes
+     * exceptionally with the exception the synchronous operation would have thrown. Cancelling the future aborts the
+     * request.
+     */
+    public CompletableFuture<Twin> replaceAsync(Twin twin, String ifMatch)
+    {
+        return this.asyncExecutor.submit(() -> replace(twin, ifMatch));
+    }
+
+    /**
+     * Asynchronously query from your IoT Hub's set of Twins. See {@link #query(String, QueryPageOptions)} for more
+     * details.
+     *
+     * @param query The IoT Hub query for selecting which twins to get.
+     * @param options The optional parameters used to decide how the query's results are returned. May not be null.
+     * @return A future that completes with the first page of the queried twins, or that completes exceptionally with
+     * the exception the synchronous operation would have thrown. Cancelling the future aborts the request.
+     */
+    public CompletableFuture<TwinQueryResponse> queryAsync(String query, QueryPageOptions options)
+    {
+        return this.asyncExecutor.submit(() -> query(query, options));
+    }
+
     private HttpRequest createRequest(URL url, HttpMethod method, byte[] payload) throws IOException
     {
         Proxy proxy = null;
@@ -379,10 +485,11 @@ public final class TwinClient
             proxy = this.options.getProxyOptions().getProxy();
         }
 
-        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy);
+        HttpRequest request = new HttpRequest(url, method, payload, getAuthenticationToken(), proxy, this.options.getHttpConnectionFactory());
         request.setReadTimeoutSeconds(options.getHttpReadTimeoutSeconds());
         request.setConnectTimeoutSeconds(options.getHttpConnectTimeoutSeconds());
-        request.setHeaderField(REQUEST_ID, String.valueOf(requestId++));
+        request.setHeaderField(REQUEST_ID, String.valueOf(requestId.getAndIncrement()));
+        this.asyncExecutor.registerRequest(request);
         return request;
     }
 
@@ -400,6 +507,6 @@ public final class TwinClient
             return this.azureSasCredential.getSignature();
         }
 
-        return new IotHubServiceSasToken(iotHubConnectionString).toString();
+        return this.sasTokenCache.getTokenString();
     }
 }
@@ -9,6 +9,8 @@ import com.google.gson.annotations.SerializedName;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -426,7 +428,18 @@ public class TwinState
      */
     public TwinState(String json)
     {
-        if (Tools.isNullOrEmpty(json))
+        this(new StringReader(requireJson(json)));
+    }
+
+    /**
+     * Create a new instance of the TwinState parsing the JSON that the provided reader reads, without first reading it
+     * into a {@code String}.
+     *
+     * @param json the {@code Reader} of the JSON received from the service. It cannot be {@code null} or read an empty JSON.
+     */
+    TwinState(Reader json)
+    {
+        if (json == null)
         {
             throw new IllegalArgumentException("JSON with result is null or empty");
         }
@@ -434,6 +447,10 @@ public class TwinState
         Gson gson = TwinGsonBuilder.getGson();
 
         TwinState result = gson.fromJson(json, TwinState.class);
+        if (result == null)
+        {
+            throw new IllegalArgumentException("JSON with result is null or empty");
+        }
 
         /*
          * During the deserialization process, the GSON will convert both tags and
@@ -466,6 +483,16 @@ public class TwinState
         this.setCloudToDeviceMessageCount(result.cloudToDeviceMessageCount);
     }
 
+    private static String requireJson(String json)
+    {
+        if (Tools.isNullOrEmpty(json))
+        {
+            throw new IllegalArgumentException("JSON with result is null or empty");
+        }
+
+        return json;
+    }
+
     /**
      * Factory
      *
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for IotHubServiceSasTokenCache. */
+public class IotHubServiceSasTokenCacheTest
+{
+    private static final String CONNECTION_STRING =
+        "HostName=some-hub.azure-devices.net;SharedAccessKeyName=iothubowner;SharedAccessKey=c29tZSBzaGFyZWQgYWNjZXNzIGtleQ==";
+
+    private static final String OTHER_CONNECTION_STRING =
+        "HostName=some-hub.azure-devices.net;SharedAccessKeyName=service;SharedAccessKey=c29tZSBzaGFyZWQgYWNjZXNzIGtleQ==";
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getInstanceRejectsNullConnectionString()
+    {
+        IotHubServiceSasTokenCache.getInstance(null);
+    }
+
+    @Test
+    public void getInstanceReturnsSameCacheForSamePolicy()
+    {
+        // Act
+        IotHubServiceSasTokenCache first = IotHubServiceSasTokenCache.getInstance(IotHubConnectionStringBuilder.createIotHubConnectionString(CONNECTION_STRING));
+        IotHubServiceSasTokenCache second = IotHubServiceSasTokenCache.getInstance(IotHubConnectionStringBuilder.createIotHubConnectionString(CONNECTION_STRING));
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    public void getInstanceReturnsDifferentCacheForDifferentPolicy()
+    {
+        // Act
+        IotHubServiceSasTokenCache first = IotHubServiceSasTokenCache.getInstance(IotHubConnectionStringBuilder.createIotHubConnectionString(CONNECTION_STRING));
+        IotHubServiceSasTokenCache second = IotHubServiceSasTokenCache.getInstance(IotHubConnectionStringBuilder.createIotHubConnectionString(OTHER_CONNECTION_STRING));
+
+        // Assert
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void getInstanceDoesNotKeepTheSharedAccessKey()
+    {
+        // Act
+        IotHubServiceSasTokenCache.getInstance(IotHubConnectionStringBuilder.createIotHubConnectionString(CONNECTION_STRING));
+
+        // Assert
+        Map<String, ?> caches = Deencapsulation.getField(IotHubServiceSasTokenCache.class, "CACHES");
+        synchronized (caches)
+        {
+            for (String cacheKey : caches.keySet())
+            {
+                assertFalse(cacheKey.contains("c29tZSBzaGFyZWQgYWNjZXNzIGtleQ=="));
+            }
+        }
+    }
+
+    @Test
+    public void getInstanceDoesNotKeepUnreferencedCachesAlive() throws InterruptedException
+    {
+        // Arrange
+        WeakReference<IotHubServiceSasTokenCache> cacheReference = new WeakReference<>(
+            IotHubServiceSasTokenCache.getInstance(IotHubConnectionStringBuilder.createIotHubConnectionString(CONNECTION_STRING)));
+
+        // Act
+        for (int attempt = 0; attempt < 50 && cacheReference.get() != null; attempt++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertNull(cacheReference.get());
+    }
+
+    @Test
+    public void getTokenStringReturnsCachedSasToken()
+    {
+        // Arrange
+        IotHubServiceSasTokenCache cache = IotHubServiceSasTokenCache.getInstance(IotHubConnectionStringBuilder.createIotHubConnectionString(CONNECTION_STRING));
+
+        // Act
+        String first = cache.getTokenString();
+        String second = cache.getTokenString();
+
+        // Assert
+        assertTrue(first.startsWith("SharedAccessSignature sr=some-hub.azure-devices.net&sig="));
+        assertTrue(first.endsWith("&skn=iothubowner"));
+        assertSame(first, second);
+    }
+}
@@ -6,6 +6,7 @@ package com.microsoft.azure.sdk.iot.service.auth;
 import com.azure.core.credential.AccessToken;
 import com.azure.core.credential.TokenCredential;
 import com.azure.core.credential.TokenRequestContext;
+import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Mocked;
 import org.junit.Test;
@@ -14,8 +15,15 @@ import reactor.core.publisher.Mono;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TokenCredentialCacheTest
 {
@@ -82,15 +90,22 @@ public class TokenCredentialCacheTest
 
                 mockTokenCredential.getToken((TokenRequestContext) any).block();
                 result = mockAccessToken2;
+
+                mockAccessToken2.getExpiresAt();
+                result = OffsetDateTime.MAX;
             }
         };
 
         // act
         AccessToken accessToken2 = cache.getAccessToken();
+        AccessToken accessToken3 = waitForRenewedToken(cache, mockAccessToken2);
 
         // assert
         assertEquals(mockAccessToken, accessToken);
-        assertEquals(mockAccessToken2, accessToken2);
+
+        // the still valid token is returned while the renewal happens in the background
+        assertEquals(mockAccessToken, accessToken2);
+        assertEquals(mockAccessToken2, accessToken3);
     }
 
     @Test
@@ -167,4 +182,279 @@ public class TokenCredentialCacheTest
         assertEquals(mockAccessToken, accessToken);
         assertEquals(mockAccessToken, accessToken2);
     }
+
+    @Test
+    public void tokenCredentialMakesSingleTokenRequestForConcurrentCallers() throws InterruptedException
+    {
+        TokenCredentialCache cache = new TokenCredentialCache(mockTokenCredential);
+        final AtomicInteger tokenRequests = new AtomicInteger(0);
+
+        new Expectations()
+        {
+            {
+                mockTokenCredential.getToken((TokenRequestContext) any).block();
+                result = new Delegate<AccessToken>()
+                {
+                    @SuppressWarnings("unused")
+                    AccessToken block() throws InterruptedException
+                    {
+                        tokenRequests.incrementAndGet();
+                        Thread.sleep(200);
+                        return mockAccessToken;
+                    }
+                };
+
+                mockAccessToken.getExpiresAt();
+                result = OffsetDateTime.MAX;
+            }
+        };
+
+        List<Thread> callers = new ArrayList<>();
+        List<AccessToken> accessTokens = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 10; i++)
+        {
+            callers.add(new Thread(() -> accessTokens.add(cache.getAccessToken())));
+        }
+
+        // act
+        for (Thread caller : callers)
+        {
+            caller.start();
+        }
+
+        for (Thread caller : callers)
+        {
+            caller.join();
+        }
+
+        // assert
+        assertEquals(1, tokenRequests.get());
+        assertEquals(10, accessTokens.size());
+        for (AccessToken accessToken : accessTokens)
+        {
+            assertEquals(mockAccessToken, accessToken);
+        }
+
+        assertEquals(1, cache.getRefreshCount());
+        assertEquals(0, cache.getRefreshFailureCount());
+    }
+
+    @Test
+    public void tokenCredentialCountsFailedTokenRequests()
+    {
+        TokenCredentialCache cache = new TokenCredentialCache(mockTokenCredential);
+
+        new Expectations()
+        {
+            {
+                mockTokenCredential.getToken((TokenRequestContext) any).block();
+                result = new IllegalStateException("token request failed");
+            }
+        };
+
+        // act
+        try
+        {
+            cache.getAccessToken();
+            fail("Expected the token credential's exception to be thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        // assert
+        assertEquals(0, cache.getRefreshCount());
+        assertEquals(1, cache.getRefreshFailureCount());
+    }
+
+    @Test
+    public void tokenCredentialRenewsTokenOnFetchThread()
+    {
+        TokenCredentialCache cache = new TokenCredentialCache(mockTokenCredential);
+
+        new Expectations()
+        {
+            {
+                mockTokenCredential.getToken((TokenRequestContext) any).block();
+                result = mockAccessToken;
+
+                mockAccessToken.getExpiresAt();
+                result = OffsetDateTime.MAX;
+            }
+        };
+
+        cache.getAccessToken();
+
+        // 8 minutes from the current time, should fit within the proactive renewal range
+        final long milliseconds = System.currentTimeMillis() + (8 * 60 * 1000);
+        final List<String> fetchThreadNames = Collections.synchronizedList(new ArrayList<>());
+        new Expectations()
+        {
+            {
+                mockAccessToken.getExpiresAt();
+                result = Instant.ofEpochMilli(milliseconds).atOffset(ZoneOffset.UTC);
+
+                mockTokenCredential.getToken((TokenRequestContext) any);
+                result = mockTokenTask;
+
+                mockTokenTask.block();
+                result = new Delegate<AccessToken>()
+                {
+                    @SuppressWarnings("unused")
+                    AccessToken block()
+                    {
+                        fetchThreadNames.add(Thread.currentThread().getName());
+                        return mockAccessToken2;
+                    }
+                };
+
+                mockAccessToken2.getExpiresAt();
+                result = OffsetDateTime.MAX;
+            }
+        };
+
+        // act
+        cache.getAccessToken();
+        waitForRenewedToken(cache, mockAccessToken2);
+
+        // assert
+        assertEquals(1, fetchThreadNames.size());
+        assertTrue(fetchThreadNames.get(0).startsWith("azure-iot-sdk-TokenCredentialFetch-"));
+    }
+
+    @Test
+    public void tokenCredentialBacksOffAfterFailedRenewal() throws InterruptedException
+    {
+        TokenCredentialCache cache = new TokenCredentialCache(mockTokenCredential);
+
+        new Expectations()
+        {
+            {
+                mockTokenCredential.getToken((TokenRequestContext) any).block();
+                result = mockAccessToken;
+
+                mockAccessToken.getExpiresAt();
+                result = OffsetDateTime.MAX;
+            }
+        };
+
+        cache.getAccessToken();
+
+        // 8 minutes from the current time, should fit within the proactive renewal range
+        final long milliseconds = System.currentTimeMillis() + (8 * 60 * 1000);
+        final AtomicInteger tokenRequestCount = new AtomicInteger(0);
+        new Expectations()
+        {
+            {
+                mockAccessToken.getExpiresAt();
+                result = Instant.ofEpochMilli(milliseconds).atOffset(ZoneOffset.UTC);
+
+                mockTokenCredential.getToken((TokenRequestContext) any);
+                result = mockTokenTask;
+
+                mockTokenTask.block();
+                result = new Delegate<AccessToken>()
+                {
+                    @SuppressWarnings("unused")
+                    AccessToken block()
+                    {
+                        if (tokenRequestCount.incrementAndGet() == 1)
+                        {
+                            throw new IllegalStateException("token request failed");
+                        }
+
+                        return mockAccessToken2;
+                    }
+                };
+
+                mockAccessToken2.getExpiresAt();
+                result = OffsetDateTime.MAX;
+            }
+        };
+
+        // act
+        cache.getAccessToken();
+        waitForRefreshFailure(cache);
+        for (int i = 0; i < 10; i++)
+        {
+            assertSame(mockAccessToken, cache.getAccessToken());
+        }
+
+        // give any renewal that was started anyway the chance to make its request, well within the first retry delay
+        Thread.sleep(200);
+
+        // assert
+        assertEquals(1, tokenRequestCount.get());
+
+        // act
+        AccessToken renewedAccessToken = waitForRenewedToken(cache, mockAccessToken2);
+
+        // assert
+        assertSame(mockAccessToken2, renewedAccessToken);
+        assertEquals(2, tokenRequestCount.get());
+    }
+
+    @Test
+    public void retryDelayDoublesUpToMaximum()
+    {
+        assertEquals(1000, TokenCredentialCache.getRetryDelayMilliseconds(1));
+        assertEquals(2000, TokenCredentialCache.getRetryDelayMilliseconds(2));
+        assertEquals(32000, TokenCredentialCache.getRetryDelayMilliseconds(6));
+        assertEquals(60000, TokenCredentialCache.getRetryDelayMilliseconds(7));
+        assertEquals(60000, TokenCredentialCache.getRetryDelayMilliseconds(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void getInstanceReturnsSameCacheForSameTokenCredential()
+    {
+        // act
+        TokenCredentialCache cache = TokenCredentialCache.getInstance(mockTokenCredential);
+        TokenCredentialCache cache2 = TokenCredentialCache.getInstance(mockTokenCredential);
+
+        // assert
+        assertSame(cache, cache2);
+        assertEquals(mockTokenCredential, cache.getTokenCredential());
+    }
+
+    private static void waitForRefreshFailure(TokenCredentialCache cache)
+    {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (cache.getRefreshFailureCount() == 0 && System.currentTimeMillis() < deadline)
+        {
+            try
+            {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        assertEquals(1, cache.getRefreshFailureCount());
+    }
+
+    private static AccessToken waitForRenewedToken(TokenCredentialCache cache, AccessToken renewedAccessToken)
+    {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        AccessToken accessToken = cache.getAccessToken();
+        while (accessToken != renewedAccessToken && System.currentTimeMillis() < deadline)
+        {
+            try
+            {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            accessToken = cache.getAccessToken();
+        }
+
+        return accessToken;
+    }
 }
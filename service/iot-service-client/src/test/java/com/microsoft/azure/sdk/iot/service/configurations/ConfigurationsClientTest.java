@@ -9,6 +9,8 @@ import com.microsoft.azure.sdk.iot.service.registry.Device;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnectionFactory;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -57,6 +59,9 @@ public class ConfigurationsClientTest
     @Mocked
     IotHubServiceSasToken iotHubServiceSasToken;
 
+    @Mocked
+    IotHubServiceSasTokenCache mockedSasTokenCache;
+
     final String configJson = "{\"id\":\"mockconfig\",\"schemaVersion\":\"1.0\",\"etag\":\"MQ==\",\"" +
         "labels\":{\"App\":\"label2\"},\"content\":{\"modulesContent\":{}, \"deviceContent\":{\"properties.desired.settings1\": {\"c\":3,\"d\":4}}}," +
         "\"targetCondition\":\"*\", \"createdTimeUtc\":\"0001-01-01T00:00:00\", \"lastUpdatedTimeUtc\":\"0001-01-01T00:00:00\"," +
@@ -116,7 +121,7 @@ public class ConfigurationsClientTest
         {
             {
                 IotHubConnectionString.getUrlConfiguration(anyString, requestConfigId);
-                new HttpRequest(mockUrl, httpMethod, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockUrl, httpMethod, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.send();
             }
@@ -150,7 +155,7 @@ public class ConfigurationsClientTest
             {
                 IotHubConnectionString.getUrlConfigurationsList(anyString, numOfConfigs);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setConnectTimeoutSeconds(anyInt);
@@ -432,7 +437,7 @@ public class ConfigurationsClientTest
             {
                 IotHubConnectionString.getUrlConfiguration(anyString, configId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setHeaderField("If-Match", etag);
@@ -461,7 +466,7 @@ public class ConfigurationsClientTest
             {
                 IotHubConnectionString.getUrlConfiguration(anyString, configId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setHeaderField("If-Match", "*");
@@ -521,7 +526,7 @@ public class ConfigurationsClientTest
                 IotHubConnectionString.getUrlApplyConfigurationContent(anyString, expectedDeviceId);
                 times = 1;
 
-                new HttpRequest(mockUrl, HttpMethod.POST, expectedJson.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.POST, expectedJson.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
 
                 mockHttpRequest.send();
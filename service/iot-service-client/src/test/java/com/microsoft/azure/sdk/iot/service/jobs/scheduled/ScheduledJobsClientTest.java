@@ -8,6 +8,7 @@ package com.microsoft.azure.sdk.iot.service.jobs.scheduled;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.jobs.DirectMethodsJobOptions;
 import com.microsoft.azure.sdk.iot.service.jobs.ScheduledJob;
@@ -18,6 +19,7 @@ import com.microsoft.azure.sdk.iot.service.jobs.ScheduledJobsClientOptions;
 import com.microsoft.azure.sdk.iot.service.jobs.serializers.ScheduledJobParser;
 import com.microsoft.azure.sdk.iot.service.methods.serializers.MethodParser;
 import com.microsoft.azure.sdk.iot.service.query.SqlQueryBuilder;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnectionFactory;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -80,6 +82,9 @@ public class ScheduledJobsClientTest
 
     @Mocked
     IotHubServiceSasToken mockIotHubServiceSasToken;
+
+    @Mocked
+    IotHubServiceSasTokenCache mockedSasTokenCache;
     
     @Mocked
     HttpRequest mockHttpRequest;
@@ -205,7 +210,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -271,7 +276,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -344,7 +349,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -601,7 +606,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -677,7 +682,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -745,7 +750,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = new IOException();
             }
         };
@@ -806,7 +811,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1066,7 +1071,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1116,7 +1121,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1175,7 +1180,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1226,7 +1231,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = new IOException();
             }
         };
@@ -1270,7 +1275,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.PUT, json.getBytes(StandardCharsets.UTF_8), anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1382,7 +1387,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.GET, new byte[]{}, anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.GET, new byte[]{}, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1431,7 +1436,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.GET, new byte[]{}, anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.GET, new byte[]{}, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1471,7 +1476,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobs(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.GET, new byte[]{}, anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.GET, new byte[]{}, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1587,7 +1592,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobsCancel(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.POST, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.POST, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1636,7 +1641,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobsCancel(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.POST, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.POST, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -1677,7 +1682,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobsCancel(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, HttpMethod.POST, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockedURL, HttpMethod.POST, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = new IOException();
             }
         };
@@ -1711,7 +1716,7 @@ public class ScheduledJobsClientTest
                 IotHubConnectionString.getUrlJobsCancel(anyString, jobId);
                 result = mockedURL;
 
-                new HttpRequest(mockedURL, (HttpMethod) any, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockedURL, (HttpMethod) any, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
 
                 mockHttpRequest.send();
@@ -9,8 +9,11 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /** Unit tests for FeedbackBatchMessage */
 @RunWith(JMockit.class)
@@ -131,4 +134,42 @@ public class FeedbackBatchMessageTest
         assertEquals(feedbackBatch.getUserId(), "");
         assertEquals(feedbackBatch.getLockToken(), "");
     }
+
+    @Test
+    public void parse_bytes_reads_records_at_offset()
+    {
+        // Arrange
+        String json =
+                "[" +
+                        "{\"originalMessageId\":\"a1aaaaaa-bbbb-cccc-dddd-eeeeeeeeeeee\",\"description\":\"Success\",\"statusCode\":\"Success\",\"deviceGenerationId\":\"111111111111111111\",\"deviceId\":\"xxx-01\",\"enqueuedTimeUtc\":\"2015-10-10T23:35:19.9774002Z\"}," +
+                        "{\"originalMessageId\":\"a2aaaaaa-bbbb-cccc-dddd-eeeeeeeeeeee\",\"description\":null,\"statusCode\":\"Rejected\",\"unknownField\":{\"nested\":[1,2]},\"deviceId\":\"xxx-\u00e9\",\"enqueuedTimeUtc\":\"2015-10-14T23:35:19.9774002Z\"}" +
+                        "]";
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[jsonBytes.length + 4];
+        System.arraycopy(jsonBytes, 0, body, 2, jsonBytes.length);
+
+        // Act
+        FeedbackBatch feedbackBatch = FeedbackBatchMessage.parse(body, 2, jsonBytes.length);
+
+        // Assert
+        assertEquals(2, feedbackBatch.getRecords().size());
+        assertEquals("a1aaaaaa-bbbb-cccc-dddd-eeeeeeeeeeee", feedbackBatch.getRecords().get(0).getOriginalMessageId());
+        assertEquals(FeedbackStatusCode.success, feedbackBatch.getRecords().get(0).getStatusCode());
+        assertEquals("", feedbackBatch.getRecords().get(0).getCorrelationId());
+        assertEquals("xxx-\u00e9", feedbackBatch.getRecords().get(1).getDeviceId());
+        assertNull(feedbackBatch.getRecords().get(1).getDescription());
+        assertEquals(FeedbackStatusCode.rejected, feedbackBatch.getRecords().get(1).getStatusCode());
+        assertEquals(feedbackBatch.getRecords().get(1).getEnqueuedTimeUtc(), feedbackBatch.getEnqueuedTimeUtc());
+    }
+
+    @Test
+    public void parse_bytes_empty()
+    {
+        // Act
+        FeedbackBatch feedbackBatch = FeedbackBatchMessage.parse(new byte[0], 0, 0);
+
+        // Assert
+        assertNotNull(feedbackBatch);
+        assertNull(feedbackBatch.getRecords());
+    }
 }
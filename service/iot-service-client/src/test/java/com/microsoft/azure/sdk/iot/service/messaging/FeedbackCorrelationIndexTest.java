@@ -0,0 +1,199 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for FeedbackCorrelationIndex. */
+public class FeedbackCorrelationIndexTest
+{
+    @Test
+    public void addThenRemoveReturnsFuture()
+    {
+        // Arrange
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(4);
+        UUID messageId = UUID.randomUUID();
+        CompletableFuture<FeedbackRecord> future = new CompletableFuture<>();
+        assertTrue(index.add(messageId, 1000, future));
+
+        // Act
+        CompletableFuture<FeedbackRecord> removedFuture = index.remove(messageId);
+
+        // Assert
+        assertSame(future, removedFuture);
+        assertNull(index.remove(messageId));
+        assertEquals(0, index.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addRejectsDuplicateMessageIds()
+    {
+        // Arrange
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(4);
+        UUID messageId = UUID.randomUUID();
+        index.add(messageId, 1000, new CompletableFuture<>());
+
+        // Act
+        index.add(messageId, 1000, new CompletableFuture<>());
+    }
+
+    @Test
+    public void addReturnsFalseOnceFull()
+    {
+        // Arrange
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(3);
+        for (int i = 0; i < 3; i++)
+        {
+            assertTrue(index.add(UUID.randomUUID(), 1000, new CompletableFuture<>()));
+        }
+
+        // Act
+        boolean added = index.add(UUID.randomUUID(), 1000, new CompletableFuture<>());
+
+        // Assert
+        assertFalse(added);
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void conditionalRemoveOnlyRemovesMatchingFuture()
+    {
+        // Arrange
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(4);
+        UUID messageId = UUID.randomUUID();
+        CompletableFuture<FeedbackRecord> future = new CompletableFuture<>();
+        index.add(messageId, 1000, future);
+
+        // Act
+        boolean removedOtherFuture = index.remove(messageId, new CompletableFuture<>());
+        boolean removedFuture = index.remove(messageId, future);
+
+        // Assert
+        assertFalse(removedOtherFuture);
+        assertTrue(removedFuture);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void removeExpiredOnlyRemovesEntriesPastTheirEvictionTime()
+    {
+        // Arrange
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(16);
+        Set<CompletableFuture<FeedbackRecord>> expiredFutures = new HashSet<>();
+        List<UUID> liveMessageIds = new ArrayList<>();
+        for (int i = 0; i < 16; i++)
+        {
+            UUID messageId = UUID.randomUUID();
+            CompletableFuture<FeedbackRecord> future = new CompletableFuture<>();
+            if (i % 2 == 0)
+            {
+                index.add(messageId, 100, future);
+                expiredFutures.add(future);
+            }
+            else
+            {
+                index.add(messageId, 300, future);
+                liveMessageIds.add(messageId);
+            }
+        }
+
+        // Act
+        List<CompletableFuture<FeedbackRecord>> removedFutures = index.removeExpired(200, Integer.MAX_VALUE);
+
+        // Assert
+        assertEquals(expiredFutures, new HashSet<>(removedFutures));
+        assertEquals(8, index.size());
+        for (UUID messageId : liveMessageIds)
+        {
+            assertTrue(index.remove(messageId) != null);
+        }
+    }
+
+    @Test
+    public void repeatedSmallSweepsRemoveEveryExpiredEntry()
+    {
+        // Arrange
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(100);
+        for (int i = 0; i < 100; i++)
+        {
+            index.add(UUID.randomUUID(), 100, new CompletableFuture<>());
+        }
+
+        // Act
+        int removedCount = 0;
+        for (int sweep = 0; sweep < 1000 && index.size() > 0; sweep++)
+        {
+            removedCount += index.removeExpired(200, 4).size();
+        }
+
+        // Assert
+        assertEquals(100, removedCount);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void removeAllReturnsEveryFutureAndEmptiesIndex()
+    {
+        // Arrange
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(8);
+        for (int i = 0; i < 5; i++)
+        {
+            index.add(UUID.randomUUID(), 1000, new CompletableFuture<>());
+        }
+
+        // Act
+        List<CompletableFuture<FeedbackRecord>> removedFutures = index.removeAll();
+
+        // Assert
+        assertEquals(5, removedFutures.size());
+        assertEquals(0, index.size());
+        assertTrue(index.add(UUID.randomUUID(), 1000, new CompletableFuture<>()));
+    }
+
+    @Test
+    public void randomAddsAndRemovesMatchReferenceSet()
+    {
+        // Arrange
+        Random random = new Random(21);
+        FeedbackCorrelationIndex index = new FeedbackCorrelationIndex(64);
+        List<UUID> addedMessageIds = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 10000; i++)
+        {
+            if (addedMessageIds.size() < 64 && (addedMessageIds.isEmpty() || random.nextBoolean()))
+            {
+                UUID messageId = new UUID(random.nextLong(), random.nextLong());
+                assertTrue(index.add(messageId, 1000, new CompletableFuture<>()));
+                addedMessageIds.add(messageId);
+            }
+            else
+            {
+                UUID messageId = addedMessageIds.remove(random.nextInt(addedMessageIds.size()));
+                assertTrue(index.remove(messageId) != null);
+            }
+        }
+
+        // Assert
+        assertEquals(addedMessageIds.size(), index.size());
+        for (UUID messageId : addedMessageIds)
+        {
+            assertTrue(index.remove(messageId) != null);
+        }
+    }
+}
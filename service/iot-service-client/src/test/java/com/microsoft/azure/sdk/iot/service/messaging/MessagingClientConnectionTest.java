@@ -0,0 +1,137 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageConnectionHandler;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.ReactorRunner;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for MessagingClientConnection. */
+@RunWith(JMockit.class)
+public class MessagingClientConnectionTest
+{
+    @Mocked
+    CloudToDeviceMessageConnectionHandler mockConnectionHandler;
+
+    @Mocked
+    ReactorRunner mockReactorRunner;
+
+    @Test
+    public void reconnectDelayCapDoublesWithEveryAttempt()
+    {
+        // Arrange
+        double almostOne = Math.nextDown(1.0);
+
+        // Act
+        long firstDelay = MessagingClientConnection.getReconnectDelayMilliseconds(1, 1000, 60 * 1000, almostOne);
+        long secondDelay = MessagingClientConnection.getReconnectDelayMilliseconds(2, 1000, 60 * 1000, almostOne);
+        long thirdDelay = MessagingClientConnection.getReconnectDelayMilliseconds(3, 1000, 60 * 1000, almostOne);
+
+        // Assert
+        assertEquals(999, firstDelay);
+        assertEquals(1999, secondDelay);
+        assertEquals(3999, thirdDelay);
+    }
+
+    @Test
+    public void reconnectDelayNeverExceedsMaxDelay()
+    {
+        // Act
+        long delay = MessagingClientConnection.getReconnectDelayMilliseconds(Integer.MAX_VALUE, Integer.MAX_VALUE, 60 * 1000, Math.nextDown(1.0));
+
+        // Assert
+        assertTrue(delay < 60 * 1000);
+        assertTrue(delay > 59 * 1000);
+    }
+
+    @Test
+    public void reconnectDelayIsScaledByJitter()
+    {
+        // Act
+        long noDelay = MessagingClientConnection.getReconnectDelayMilliseconds(4, 1000, 60 * 1000, 0);
+        long halfDelay = MessagingClientConnection.getReconnectDelayMilliseconds(4, 1000, 60 * 1000, 0.5);
+
+        // Assert
+        assertEquals(0, noDelay);
+        assertEquals(4000, halfDelay);
+    }
+
+    @Test
+    public void reconnectOfStoppedGenerationDoesNotCreateReactor() throws Exception
+    {
+        // Arrange
+        MessagingClientConnection connection = createConnection(1000);
+        Deencapsulation.setField(connection, "reactorRunner", mockReactorRunner);
+
+        // The reactor was stopped, and possibly reopened, after the reconnecting thread was started
+        Deencapsulation.setField(connection, "reactorGeneration", 1L);
+
+        // Act
+        Deencapsulation.invoke(connection, "reconnect", 0L);
+
+        // Assert
+        assertFalse(connection.isReconnecting());
+        assertEquals(mockReactorRunner, Deencapsulation.getField(connection, "reactorRunner"));
+        new Verifications()
+        {
+            {
+                new ReactorRunner(anyString, anyString, (CloudToDeviceMessageConnectionHandler) any);
+                times = 0;
+                mockConnectionHandler.failQueuedMessages();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void closeEndsReconnectThatIsWaitingToReconnect() throws Exception
+    {
+        // Arrange
+        MessagingClientConnection connection = createConnection(Integer.MAX_VALUE);
+        Thread reconnectThread = new Thread(() -> Deencapsulation.invoke(connection, "reconnect", 0L));
+        reconnectThread.start();
+        long waitUntil = System.currentTimeMillis() + 10 * 1000;
+        while (!connection.isReconnecting() && System.currentTimeMillis() < waitUntil)
+        {
+            Thread.sleep(1);
+        }
+
+        assertTrue(connection.isReconnecting());
+
+        // Act
+        connection.close(1000);
+        reconnectThread.join(10 * 1000);
+
+        // Assert
+        assertFalse(reconnectThread.isAlive());
+        assertFalse(connection.isReconnecting());
+        new Verifications()
+        {
+            {
+                new ReactorRunner(anyString, anyString, (CloudToDeviceMessageConnectionHandler) any);
+                times = 0;
+            }
+        };
+    }
+
+    private MessagingClientConnection createConnection(int initialReconnectDelayMilliseconds)
+    {
+        MessagingClientOptions options = MessagingClientOptions.builder()
+            .automaticReconnectEnabled(true)
+            .initialReconnectDelayMilliseconds(initialReconnectDelayMilliseconds)
+            .maxReconnectDelayMilliseconds(Integer.MAX_VALUE)
+            .build();
+
+        return new MessagingClientConnection(0, 1, "some-hub.azure-devices.net", null, null, options, null, queue -> mockConnectionHandler);
+    }
+}
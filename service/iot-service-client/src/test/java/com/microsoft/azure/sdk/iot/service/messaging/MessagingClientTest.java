@@ -11,8 +11,21 @@ import com.microsoft.azure.sdk.iot.service.transport.amqps.CloudToDeviceMessageC
 import mockit.*;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class MessagingClientTest
 {
+    private static final String CONNECTION_STRING = "HostName=some-hub.azure-devices.net;SharedAccessKeyName=iothubowner;SharedAccessKey=c29tZSBzaGFyZWQgYWNjZXNzIGtleQ==";
+
     @Mocked
     CloudToDeviceMessageConnectionHandler amqpSend;
     @Mocked
@@ -53,4 +66,318 @@ public class MessagingClientTest
         // Act
         MessagingClient messagingClient = Deencapsulation.newInstance(MessagingClient.class, iotHubConnectionString, iotHubServiceClientProtocol);
     }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNonPositiveConnectionCount()
+    {
+        // Arrange
+        MessagingClientOptions options = MessagingClientOptions.builder().connectionCount(0).build();
+
+        // Act
+        new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, options);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNegativeLinger()
+    {
+        // Arrange
+        MessagingClientOptions options = MessagingClientOptions.builder().lingerMilliseconds(-1).build();
+
+        // Act
+        new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, options);
+    }
+
+    @Test
+    public void constructorCreatesConfiguredNumberOfConnections()
+    {
+        // Arrange
+        MessagingClientOptions options = MessagingClientOptions.builder().connectionCount(4).build();
+
+        // Act
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, options);
+
+        // Assert
+        List<MessagingClientConnectionStatus> statuses = messagingClient.getConnectionStatuses();
+        assertEquals(4, statuses.size());
+        for (int i = 0; i < statuses.size(); i++)
+        {
+            assertEquals(i, statuses.get(i).getIndex());
+            assertFalse(statuses.get(i).isOpen());
+            assertEquals(0, statuses.get(i).getQueuedMessageCount());
+        }
+
+        assertFalse(messagingClient.isOpen());
+    }
+
+    @Test
+    public void sendBatchOfNoMessagesCompletesRightAway()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        CompletableFuture<List<SendResult>> future = messagingClient.sendBatch(Collections.emptyList());
+
+        // Assert
+        assertTrue(future.isDone());
+        assertTrue(future.join().isEmpty());
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void sendBatchThrowsIfClientIsNotOpen()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        DeviceMessage message = new DeviceMessage("some-device", new Message("some payload"));
+
+        // Act
+        messagingClient.sendBatch(Collections.singletonList(message));
+    }
+
+    @Test
+    public void sendBroadcastToNoDevicesCompletesRightAway()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        CompletableFuture<List<SendResult>> future = messagingClient.sendBroadcast(new Message("some payload"), Collections.emptyList());
+
+        // Assert
+        assertTrue(future.isDone());
+        assertTrue(future.join().isEmpty());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendBroadcastThrowsIfMessageIdsDoNotMatchDeviceIds()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        messagingClient.sendBroadcast(new Message("some payload"), Arrays.asList("some-device", "other-device"), Collections.singletonList("some-message-id"));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void sendBroadcastThrowsIfClientIsNotOpen()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        messagingClient.sendBroadcast(new Message("some payload"), Collections.singletonList("some-device"));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void sendFireAndForgetThrowsIfNotEnabled()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        messagingClient.sendFireAndForget("some-device", new Message("some payload"));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void sendFireAndForgetThrowsIfClientIsNotOpen()
+    {
+        // Arrange
+        MessagingClientOptions options = MessagingClientOptions.builder().fireAndForgetSendsEnabled(true).build();
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, options);
+
+        // Act
+        messagingClient.sendFireAndForget("some-device", new Message("some payload"));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void processorClientSharingConnectionThrowsOnStartIfMessagingClientIsNotOpen() throws Exception
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        MessageFeedbackProcessorClient feedbackProcessorClient =
+            new MessageFeedbackProcessorClient(messagingClient, feedbackBatch -> AcknowledgementType.COMPLETE);
+
+        // Act
+        feedbackProcessorClient.start();
+    }
+
+    @Test
+    public void processorClientSharingConnectionIsNotRunningUntilStarted() throws Exception
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        FileUploadNotificationProcessorClient fileUploadNotificationProcessorClient =
+            new FileUploadNotificationProcessorClient(messagingClient, notification -> AcknowledgementType.COMPLETE);
+
+        // Act
+        fileUploadNotificationProcessorClient.stop();
+
+        // Assert
+        assertFalse(fileUploadNotificationProcessorClient.isRunning());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void processorClientThrowsForPrefetchCountBelowOne()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        MessageFeedbackProcessorClientOptions options = MessageFeedbackProcessorClientOptions.builder().prefetchCount(0).build();
+
+        // Act
+        new MessageFeedbackProcessorClient(messagingClient, feedbackBatch -> AcknowledgementType.COMPLETE, options);
+    }
+
+    @Test (expected = NullPointerException.class)
+    public void asyncProcessorClientThrowsForNullProcessor()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        Function<FileUploadNotification, CompletableFuture<AcknowledgementType>> processor = null;
+
+        // Act
+        new FileUploadNotificationProcessorClient(messagingClient, processor, Runnable::run, FileUploadNotificationProcessorClientOptions.builder().build());
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void sendAndAwaitFeedbackThrowsIfNotEnabled()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        messagingClient.sendAndAwaitFeedback("someDevice", new Message("payload"));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendAndAwaitFeedbackThrowsForNonUuidMessageId()
+    {
+        // Arrange
+        MessagingClientOptions options = MessagingClientOptions.builder().maxAwaitedFeedbackMessages(10).build();
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, options);
+        Message message = new Message("payload");
+        message.setMessageId("not-a-uuid");
+
+        // Act
+        messagingClient.sendAndAwaitFeedback("someDevice", message);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void sendAndAwaitFeedbackThrowsForMessageWithoutFullDeliveryAcknowledgement()
+    {
+        // Arrange
+        MessagingClientOptions options = MessagingClientOptions.builder().maxAwaitedFeedbackMessages(10).build();
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, options);
+        Message message = new Message("payload");
+        message.setDeliveryAcknowledgement(DeliveryAcknowledgement.NegativeOnly);
+
+        // Act
+        messagingClient.sendAndAwaitFeedback("someDevice", message);
+    }
+
+    @Test
+    public void awaitedFeedbackIsOnlyReceivedByClientIfEnabled(@Mocked final MessagingClientConnection mockConnection)
+    {
+        // Act
+        new MessagingClient(
+            CONNECTION_STRING,
+            IotHubServiceClientProtocol.AMQPS,
+            MessagingClientOptions.builder().maxAwaitedFeedbackMessages(10).build());
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockConnection.addMessageFeedbackReceiver(any, (Function<FeedbackBatch, CompletableFuture<AcknowledgementType>>) any, null, anyInt, null, null);
+                times = 0;
+            }
+        };
+
+        // Act
+        new MessagingClient(
+            CONNECTION_STRING,
+            IotHubServiceClientProtocol.AMQPS,
+            MessagingClientOptions.builder().maxAwaitedFeedbackMessages(10).awaitedFeedbackReceiverEnabled(true).build());
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockConnection.addMessageFeedbackReceiver(any, (Function<FeedbackBatch, CompletableFuture<AcknowledgementType>>) any, null, anyInt, null, null);
+                times = 1;
+            }
+        };
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void completeAwaitedFeedbackThrowsIfNotEnabled()
+    {
+        // Arrange
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+
+        // Act
+        messagingClient.completeAwaitedFeedback(new FeedbackBatch());
+    }
+
+    @Test
+    public void completeAwaitedFeedbackCompletesOnlyAwaitedMessages(@Mocked final MessagingClientConnection mockConnection) throws Exception
+    {
+        // Arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.isOpen();
+                result = true;
+            }
+        };
+
+        MessagingClientOptions options = MessagingClientOptions.builder()
+            .maxAwaitedFeedbackMessages(10)
+            .build();
+        MessagingClient messagingClient = new MessagingClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, options);
+        Message message = new Message("payload");
+        CompletableFuture<FeedbackRecord> feedbackFuture = messagingClient.sendAndAwaitFeedback("someDevice", message);
+
+        FeedbackRecord awaitedRecord = new FeedbackRecord();
+        awaitedRecord.setOriginalMessageId(message.getMessageId());
+        FeedbackRecord otherRecord = new FeedbackRecord();
+        otherRecord.setOriginalMessageId(UUID.randomUUID().toString());
+        FeedbackBatch feedbackBatch = new FeedbackBatch();
+        feedbackBatch.setRecords(Arrays.asList(otherRecord, awaitedRecord));
+
+        // Act
+        int completedCount = messagingClient.completeAwaitedFeedback(feedbackBatch);
+
+        // Assert
+        assertEquals(1, completedCount);
+        assertTrue(feedbackFuture.isDone());
+        assertEquals(awaitedRecord, feedbackFuture.get());
+        assertEquals(0, messagingClient.getAwaitedFeedbackMessageCount());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void processorClientThrowsForReceiverLinkCountBelowOne()
+    {
+        // Arrange
+        FileUploadNotificationProcessorClientOptions options = FileUploadNotificationProcessorClientOptions.builder().receiverLinkCount(0).build();
+
+        // Act
+        new FileUploadNotificationProcessorClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, notification -> AcknowledgementType.COMPLETE, options);
+    }
+
+    @Test
+    public void processorClientHasNoOpenReceiverLinksOrMessagesUntilStarted()
+    {
+        // Arrange
+        MessageFeedbackProcessorClientOptions options = MessageFeedbackProcessorClientOptions.builder().receiverLinkCount(4).build();
+
+        // Act
+        MessageFeedbackProcessorClient processorClient =
+            new MessageFeedbackProcessorClient(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS, feedbackBatch -> AcknowledgementType.COMPLETE, options);
+
+        // Assert
+        assertEquals(0, processorClient.getOpenReceiverLinkCount());
+        assertEquals(0, processorClient.getReceivedMessageCount());
+        assertEquals(0, processorClient.getCompletedMessageCount());
+        assertEquals(0, processorClient.getAbandonedMessageCount());
+    }
 }
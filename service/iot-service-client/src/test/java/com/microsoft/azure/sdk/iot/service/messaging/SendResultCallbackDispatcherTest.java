@@ -0,0 +1,172 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.messaging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for SendResultCallbackDispatcher. */
+public class SendResultCallbackDispatcherTest
+{
+    @Test
+    public void callbacksExecuteOnCurrentThreadWithoutExecutor()
+    {
+        // Arrange
+        SendResultCallbackDispatcher dispatcher = new SendResultCallbackDispatcher(null, SendResultCallbackOrdering.NONE, 0);
+        List<Thread> callbackThreads = new ArrayList<>();
+
+        // Act
+        dispatcher.dispatch(sendResult -> callbackThreads.add(Thread.currentThread()), createSendResult("1"), "some-device");
+
+        // Assert
+        assertEquals(1, callbackThreads.size());
+        assertSame(Thread.currentThread(), callbackThreads.get(0));
+    }
+
+    @Test
+    public void callbacksForSameDeviceExecuteInOrder() throws Exception
+    {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        SendResultCallbackDispatcher dispatcher = new SendResultCallbackDispatcher(executor, SendResultCallbackOrdering.PER_DEVICE, 0);
+        int callbackCount = 10000;
+        List<String> correlationIds = new ArrayList<>();
+        CountDownLatch callbacksExecuted = new CountDownLatch(callbackCount);
+
+        // Act
+        for (int i = 0; i < callbackCount; i++)
+        {
+            dispatcher.dispatch(
+                sendResult ->
+                {
+                    // not synchronized, so that callbacks overlapping each other would be likely to corrupt the list
+                    correlationIds.add(sendResult.getCorrelationId());
+                    callbacksExecuted.countDown();
+                },
+                createSendResult(String.valueOf(i)),
+                "some-device");
+        }
+
+        // Assert
+        assertTrue(callbacksExecuted.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(callbackCount, correlationIds.size());
+        for (int i = 0; i < callbackCount; i++)
+        {
+            assertEquals(String.valueOf(i), correlationIds.get(i));
+        }
+    }
+
+    @Test
+    public void slowCallbacksAreCounted()
+    {
+        // Arrange
+        SendResultCallbackDispatcher dispatcher = new SendResultCallbackDispatcher(null, SendResultCallbackOrdering.NONE, 10);
+
+        // Act
+        dispatcher.dispatch(sendResult -> sleep(50), createSendResult("1"), "some-device");
+        dispatcher.dispatch(sendResult -> {}, createSendResult("2"), "some-device");
+
+        // Assert
+        assertEquals(1, dispatcher.getSlowCallbackCount());
+        assertTrue(dispatcher.getMaxCallbackDurationMilliseconds() >= 50);
+    }
+
+    @Test
+    public void hungCallbacksAreCountedWhileStillExecuting() throws Exception
+    {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        SendResultCallbackDispatcher dispatcher = new SendResultCallbackDispatcher(executor, SendResultCallbackOrdering.NONE, 10);
+        CountDownLatch callbackStarted = new CountDownLatch(1);
+        CountDownLatch releaseCallback = new CountDownLatch(1);
+        CountDownLatch callbackReturned = new CountDownLatch(1);
+        dispatcher.dispatch(
+            sendResult ->
+            {
+                callbackStarted.countDown();
+                await(releaseCallback);
+                callbackReturned.countDown();
+            },
+            createSendResult("1"),
+            "some-device");
+        assertTrue(callbackStarted.await(10, TimeUnit.SECONDS));
+        sleep(50);
+
+        // Act
+        long slowCallbackCountWhileExecuting = dispatcher.getSlowCallbackCount();
+        dispatcher.dispatch(sendResult -> {}, createSendResult("2"), "some-device");
+        long slowCallbackCountAfterNextDispatch = dispatcher.getSlowCallbackCount();
+        releaseCallback.countDown();
+        assertTrue(callbackReturned.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals(1, slowCallbackCountWhileExecuting);
+        assertEquals(1, slowCallbackCountAfterNextDispatch);
+        assertEquals(1, dispatcher.getSlowCallbackCount());
+        assertTrue(dispatcher.getMaxCallbackDurationMilliseconds() >= 50);
+    }
+
+    @Test
+    public void callbackExecutesOnCurrentThreadWhenExecutorRejectsIt()
+    {
+        // Arrange
+        SendResultCallbackDispatcher dispatcher = new SendResultCallbackDispatcher(
+            task ->
+            {
+                throw new RejectedExecutionException();
+            },
+            SendResultCallbackOrdering.PER_CORRELATION_ID,
+            0);
+        List<SendResult> sendResults = new ArrayList<>();
+
+        // Act
+        dispatcher.dispatch(sendResults::add, createSendResult("1"), "some-device");
+
+        // Assert
+        assertEquals(1, sendResults.size());
+    }
+
+    private static SendResult createSendResult(String correlationId)
+    {
+        return new SendResult(true, correlationId, null, null);
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long milliseconds)
+    {
+        try
+        {
+            Thread.sleep(milliseconds);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
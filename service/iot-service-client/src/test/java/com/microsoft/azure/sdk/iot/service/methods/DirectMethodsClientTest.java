@@ -6,6 +6,7 @@ package com.microsoft.azure.sdk.iot.service.methods;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.methods.serializers.MethodParser;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import mockit.Deencapsulation;
@@ -39,6 +40,9 @@ public class DirectMethodsClientTest
     @Mocked
     IotHubServiceSasToken mockedIotHubServiceSasToken;
 
+    @Mocked
+    IotHubServiceSasTokenCache mockedSasTokenCache;
+
     @Mocked
     HttpRequest mockHttpRequest;
 
@@ -9,9 +9,11 @@ import com.microsoft.azure.sdk.iot.service.ProxyOptions;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.registry.serializers.RegistryIdentityParser;
+import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnectionFactory;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -20,7 +22,9 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.Proxy;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -46,6 +50,9 @@ public class RegistryClientTest
     HttpResponse mockHttpResponse;
     @Mocked
     IotHubServiceSasToken iotHubServiceSasToken;
+
+    @Mocked
+    IotHubServiceSasTokenCache mockedSasTokenCache;
     @Mocked
     IotHubExceptionManager mockIotHubExceptionManager;
     @Mocked
@@ -376,7 +383,7 @@ public class RegistryClientTest
             {
                 IotHubConnectionString.getUrlDevice(anyString, deviceId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setHeaderField("If-Match", etag);
@@ -431,7 +438,7 @@ public class RegistryClientTest
             {
                 IotHubConnectionString.getUrlDevice(anyString, deviceId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setHeaderField("If-Match", "*");
@@ -463,7 +470,7 @@ public class RegistryClientTest
                 result = mockProxyOptions;
                 mockProxyOptions.getProxy();
                 result = mockProxy;
-                new HttpRequest(mockUrl, HttpMethod.GET, new byte[0], anyString, mockProxy);
+                new HttpRequest(mockUrl, HttpMethod.GET, new byte[0], anyString, mockProxy, (HttpConnectionFactory) any);
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.send();
                 IotHubExceptionManager.httpResponseVerification((HttpResponse) any);
@@ -749,7 +756,7 @@ public class RegistryClientTest
             {
                 IotHubConnectionString.getUrlModule(anyString, deviceId, moduleId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setHeaderField("If-Match", etag);
@@ -876,7 +883,7 @@ public class RegistryClientTest
             {
                 IotHubConnectionString.getUrlModule(anyString, deviceId, moduleId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.DELETE, new byte[0], anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setHeaderField("If-Match", "*");
@@ -907,9 +914,9 @@ public class RegistryClientTest
                 result = mockUrl;
                 mockIotHubConnectionString.getHostName();
                 result = "someHostname";
-                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 result = mockHttpRequest;
-                new RegistryIdentityParser(anyString);
+                RegistryIdentityParser.fromJson((Reader) any);
                 result = mockRegistryIdentityParser;
                 Deencapsulation.newInstance(Device.class, mockRegistryIdentityParser);
                 result = mockDevice;
@@ -949,8 +956,8 @@ public class RegistryClientTest
                 mockHttpRequest.send();
                 result = mockHttpResponse;
                 IotHubExceptionManager.httpResponseVerification((HttpResponse) any);
-                mockHttpResponse.getBody();
-                result = deviceJson.getBytes(StandardCharsets.UTF_8);
+                mockHttpResponse.getBodyAsInputStream();
+                result = new ByteArrayInputStream(deviceJson.getBytes(StandardCharsets.UTF_8));
                 Deencapsulation.invoke(device, "toRegistryIdentityParser");
                 result = new RegistryIdentityParser();
             }
@@ -963,7 +970,7 @@ public class RegistryClientTest
         {
             {
                 IotHubConnectionString.getUrlDevice(anyString, requestDeviceId);
-                new HttpRequest(mockUrl, httpMethod, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockUrl, httpMethod, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.send();
             }
@@ -985,8 +992,8 @@ public class RegistryClientTest
                 mockHttpRequest.send();
                 result = mockHttpResponse;
                 IotHubExceptionManager.httpResponseVerification((HttpResponse) any);
-                mockHttpResponse.getBody();
-                result = devicesJson.getBytes(StandardCharsets.UTF_8);
+                mockHttpResponse.getBodyAsInputStream();
+                result = new ByteArrayInputStream(devicesJson.getBytes(StandardCharsets.UTF_8));
             }
         };
     }
@@ -998,7 +1005,7 @@ public class RegistryClientTest
             {
                 IotHubConnectionString.getUrlDeviceList(anyString, numberOfDevices);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.send();
@@ -1021,8 +1028,8 @@ public class RegistryClientTest
                 mockHttpRequest.send();
                 result = mockHttpResponse;
                 IotHubExceptionManager.httpResponseVerification((HttpResponse) any);
-                mockHttpResponse.getBody();
-                result = moduleJson.getBytes(StandardCharsets.UTF_8);
+                mockHttpResponse.getBodyAsInputStream();
+                result = new ByteArrayInputStream(moduleJson.getBytes(StandardCharsets.UTF_8));
                 Deencapsulation.invoke(module, "toRegistryIdentityParser");
                 result = new RegistryIdentityParser();
             }
@@ -1035,7 +1042,7 @@ public class RegistryClientTest
         {
             {
                 IotHubConnectionString.getUrlModule(anyString, requestDeviceId, requestModuleId);
-                new HttpRequest(mockUrl, httpMethod, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockUrl, httpMethod, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.setConnectTimeoutSeconds(anyInt);
                 mockHttpRequest.send();
@@ -1058,8 +1065,8 @@ public class RegistryClientTest
                 mockHttpRequest.send();
                 result = mockHttpResponse;
                 IotHubExceptionManager.httpResponseVerification((HttpResponse) any);
-                mockHttpResponse.getBody();
-                result = modulesJson.getBytes(StandardCharsets.UTF_8);
+                mockHttpResponse.getBodyAsInputStream();
+                result = new ByteArrayInputStream(modulesJson.getBytes(StandardCharsets.UTF_8));
             }
         };
     }
@@ -1071,7 +1078,7 @@ public class RegistryClientTest
             {
                 IotHubConnectionString.getUrlModulesOnDevice(anyString, deviceId);
                 times = 1;
-                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any);
+                new HttpRequest(mockUrl, HttpMethod.GET, (byte[]) any, anyString, (Proxy) any, (HttpConnectionFactory) any);
                 times = 1;
                 mockHttpRequest.setReadTimeoutSeconds(anyInt);
                 mockHttpRequest.send();
@@ -6,6 +6,8 @@ package com.microsoft.azure.sdk.iot.service.registry.serializers;
 import mockit.Deencapsulation;
 import org.junit.Test;
 
+import java.io.StringReader;
+
 import static junit.framework.TestCase.assertEquals;
 
 /**
@@ -59,6 +61,31 @@ public class RegistryStatisticsParserTest
         new RegistryStatisticsParser("}");
     }
 
+    @Test
+    public void fromJsonReaderParses()
+    {
+        //arrange
+        RegistryStatisticsParser parser = Deencapsulation.newInstance(RegistryStatisticsParser.class);
+        parser.setTotalDeviceCount(2);
+        parser.setEnabledDeviceCount(1);
+        parser.setDisabledDeviceCount(1);
+
+        //act
+        RegistryStatisticsParser processedParser = RegistryStatisticsParser.fromJson(new StringReader(parser.toJson()));
+
+        //assert
+        assertEquals(parser.getTotalDeviceCount(), processedParser.getTotalDeviceCount());
+        assertEquals(parser.getEnabledDeviceCount(), processedParser.getEnabledDeviceCount());
+        assertEquals(parser.getDisabledDeviceCount(), processedParser.getDisabledDeviceCount());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void fromJsonEmptyReaderThrows()
+    {
+        //act
+        RegistryStatisticsParser.fromJson(new StringReader(""));
+    }
+
     //Tests_SRS_JOB_PROPERTIES_PARSER_34_004: [This method shall set the value of this object's totalDeviceCount equal to the provided value.]
     //Tests_SRS_JOB_PROPERTIES_PARSER_34_005: [This method shall return the value of this object's totalDeviceCount.]
     //Tests_SRS_JOB_PROPERTIES_PARSER_34_006: [This method shall set the value of this object's enabledDeviceCount equal to the provided value.]
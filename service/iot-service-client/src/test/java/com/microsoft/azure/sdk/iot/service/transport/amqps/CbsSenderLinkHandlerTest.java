@@ -0,0 +1,84 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.AzureSasCredential;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.integration.junit4.JMockit;
+import org.apache.qpid.proton.engine.Sender;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for CbsSenderLinkHandler. */
+@RunWith(JMockit.class)
+public class CbsSenderLinkHandlerTest
+{
+    @Mocked Sender mockSender;
+    @Mocked LinkStateCallback mockLinkStateCallback;
+    @Mocked TokenCredential mockCredential;
+
+    @Test
+    public void fetchAccessTokenRequestsTokenOnSharedTokenFetchThread() throws Exception
+    {
+        // Arrange
+        final AccessToken accessToken = new AccessToken("some-token", OffsetDateTime.now().plusHours(1));
+        final AtomicReference<Thread> requestThread = new AtomicReference<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockCredential.getToken((TokenRequestContext) any);
+                result = new Delegate<Mono<AccessToken>>()
+                {
+                    @SuppressWarnings("unused")
+                    Mono<AccessToken> getToken(TokenRequestContext context)
+                    {
+                        requestThread.set(Thread.currentThread());
+                        return Mono.just(accessToken);
+                    }
+                };
+            }
+        };
+        CbsSenderLinkHandler handler = new CbsSenderLinkHandler(mockSender, mockLinkStateCallback, mockCredential);
+
+        // Act
+        CompletableFuture<AccessToken> accessTokenFuture = handler.fetchAccessToken();
+
+        // Assert
+        assertSame(accessToken, accessTokenFuture.get(10, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), requestThread.get());
+        assertTrue(requestThread.get().getName().startsWith("azure-iot-sdk-TokenCredentialFetch"));
+    }
+
+    @Test
+    public void fetchAccessTokenReadsExpiryOfSharedAccessSignature()
+    {
+        // Arrange
+        String sasToken = "SharedAccessSignature sr=some-hub.azure-devices.net&sig=some-signature&se=2000000000&skn=iothubowner";
+        CbsSenderLinkHandler handler = new CbsSenderLinkHandler(mockSender, mockLinkStateCallback, new AzureSasCredential(sasToken));
+
+        // Act
+        CompletableFuture<AccessToken> accessTokenFuture = handler.fetchAccessToken();
+
+        // Assert
+        assertTrue(accessTokenFuture.isDone());
+        assertEquals(sasToken, accessTokenFuture.join().getToken());
+        assertEquals(2000000000, accessTokenFuture.join().getExpiresAt().toEpochSecond());
+    }
+}
@@ -0,0 +1,323 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import mockit.Delegate;
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.Task;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for CbsSessionHandler. */
+@RunWith(JMockit.class)
+public class CbsSessionHandlerTest
+{
+    private static final long TOKEN_LIFETIME_MILLISECONDS = 1000 * 1000;
+
+    @Mocked TokenCredential mockCredential;
+    @Mocked Session mockSession;
+    @Mocked Connection mockConnection;
+    @Mocked Reactor mockReactor;
+    @Mocked Event mockEvent;
+    @Mocked CbsSenderLinkHandler mockCbsSenderLinkHandler;
+    @Mocked CbsReceiverLinkHandler mockCbsReceiverLinkHandler;
+    @Mocked CbsSessionStateCallback mockCbsSessionStateCallback;
+
+    // The futures that the sender link hands out for token requests, in order
+    private final Queue<CompletableFuture<AccessToken>> accessTokenFutures = new LinkedList<>();
+
+    private final List<AccessToken> sentAccessTokens = new ArrayList<>();
+    private final List<Integer> timerDelays = new ArrayList<>();
+    private final List<BaseHandler> timerHandlers = new ArrayList<>();
+
+    // Stands in for the reactor thread picking up a wakeup
+    private Runnable wakeupCallback;
+    private int pendingWakeupCount;
+
+    @Before
+    public void setUp()
+    {
+        new MockUp<ReactorWakeup>()
+        {
+            @Mock
+            void $init(Reactor reactor, Runnable onWakeup)
+            {
+                wakeupCallback = onWakeup;
+            }
+
+            @Mock
+            void wakeup()
+            {
+                pendingWakeupCount++;
+            }
+
+            @Mock
+            void close()
+            {
+            }
+        };
+
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getSession();
+                result = mockSession;
+                mockEvent.getReactor();
+                result = mockReactor;
+                mockSession.getLocalState();
+                result = EndpointState.ACTIVE;
+                mockSession.getConnection();
+                result = mockConnection;
+                mockConnection.getReactor();
+                result = mockReactor;
+                mockReactor.schedule(anyInt, (Handler) any);
+                result = new Delegate<Task>()
+                {
+                    @SuppressWarnings("unused")
+                    Task schedule(int delay, Handler handler)
+                    {
+                        timerDelays.add(delay);
+                        timerHandlers.add((BaseHandler) handler);
+                        return null;
+                    }
+                };
+                mockCbsSenderLinkHandler.fetchAccessToken();
+                result = new Delegate<CompletableFuture<AccessToken>>()
+                {
+                    @SuppressWarnings("unused")
+                    CompletableFuture<AccessToken> fetchAccessToken()
+                    {
+                        return accessTokenFutures.remove();
+                    }
+                };
+                mockCbsSenderLinkHandler.sendAuthenticationMessage((UUID) any, (AccessToken) any);
+                result = new Delegate<Integer>()
+                {
+                    @SuppressWarnings("unused")
+                    int sendAuthenticationMessage(UUID correlationId, AccessToken accessToken)
+                    {
+                        sentAccessTokens.add(accessToken);
+                        return 0;
+                    }
+                };
+            }
+        };
+    }
+
+    @Test
+    public void tokenIsPrefetchedAt75PercentAndSentAt85PercentOfItsLifetime()
+    {
+        // Act
+        CbsSessionHandler handler = openAndAuthenticate();
+
+        // Assert
+        assertEquals(1, sentAccessTokens.size());
+        assertEquals(2, timerDelays.size());
+
+        int renewalIndex = timerHandlers.indexOf(handler);
+        int prefetchIndex = 1 - renewalIndex;
+        assertAtPercentOfTokenLifetime(85, timerDelays.get(renewalIndex));
+        assertAtPercentOfTokenLifetime(75, timerDelays.get(prefetchIndex));
+    }
+
+    @Test
+    public void prefetchedTokenIsSentOnceRenewalIsDue()
+    {
+        // Arrange
+        CbsSessionHandler handler = openAndAuthenticate();
+        AccessToken nextAccessToken = createAccessToken();
+        accessTokenFutures.add(CompletableFuture.completedFuture(nextAccessToken));
+
+        // Act
+        firePrefetchTimer(handler);
+
+        // Assert
+        assertTrue(accessTokenFutures.isEmpty());
+        assertEquals(1, sentAccessTokens.size());
+
+        // Act
+        handler.onTimerTask(mockEvent);
+
+        // Assert
+        assertEquals(2, sentAccessTokens.size());
+        assertSame(nextAccessToken, sentAccessTokens.get(1));
+    }
+
+    @Test
+    public void tokenThatArrivesAfterRenewalIsDueIsSentOnArrival()
+    {
+        // Arrange
+        CbsSessionHandler handler = openAndAuthenticate();
+        CompletableFuture<AccessToken> nextAccessTokenFuture = new CompletableFuture<>();
+        accessTokenFutures.add(nextAccessTokenFuture);
+        firePrefetchTimer(handler);
+        handler.onTimerTask(mockEvent);
+        assertEquals(1, sentAccessTokens.size());
+
+        // Act
+        AccessToken nextAccessToken = createAccessToken();
+        nextAccessTokenFuture.complete(nextAccessToken);
+        runPendingWakeup();
+
+        // Assert
+        assertEquals(2, sentAccessTokens.size());
+        assertSame(nextAccessToken, sentAccessTokens.get(1));
+    }
+
+    @Test
+    public void failedPrefetchIsRetriedWhenRenewalIsDue()
+    {
+        // Arrange
+        CbsSessionHandler handler = openAndAuthenticate();
+        CompletableFuture<AccessToken> failedAccessTokenFuture = new CompletableFuture<>();
+        accessTokenFutures.add(failedAccessTokenFuture);
+        firePrefetchTimer(handler);
+        failedAccessTokenFuture.completeExceptionally(new RuntimeException("some token request failure"));
+        runPendingWakeup();
+        AccessToken nextAccessToken = createAccessToken();
+        accessTokenFutures.add(CompletableFuture.completedFuture(nextAccessToken));
+
+        // Act
+        handler.onTimerTask(mockEvent);
+
+        // Assert
+        assertEquals(2, sentAccessTokens.size());
+        assertSame(nextAccessToken, sentAccessTokens.get(1));
+        new Verifications()
+        {
+            {
+                mockCbsSessionStateCallback.onAuthenticationFailed((IotHubException) any);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void prefetchThatFailedBeforeWakeupIsRetriedWhenRenewalIsDue()
+    {
+        // Arrange
+        CbsSessionHandler handler = openAndAuthenticate();
+        CompletableFuture<AccessToken> failedAccessTokenFuture = new CompletableFuture<>();
+        failedAccessTokenFuture.completeExceptionally(new RuntimeException("some token request failure"));
+        accessTokenFutures.add(failedAccessTokenFuture);
+        firePrefetchTimer(handler);
+        AccessToken nextAccessToken = createAccessToken();
+        accessTokenFutures.add(CompletableFuture.completedFuture(nextAccessToken));
+
+        // Act
+        handler.onTimerTask(mockEvent);
+
+        // Assert
+        assertEquals(2, sentAccessTokens.size());
+        assertSame(nextAccessToken, sentAccessTokens.get(1));
+    }
+
+    @Test
+    public void failedTokenRequestThatIsDueIsReportedThroughOnAuthenticationFailed()
+    {
+        // Arrange
+        CompletableFuture<AccessToken> accessTokenFuture = new CompletableFuture<>();
+        accessTokenFutures.add(accessTokenFuture);
+        CbsSessionHandler handler = new CbsSessionHandler(mockSession, mockCbsSessionStateCallback, mockCredential);
+        handler.onSessionLocalOpen(mockEvent);
+        handler.onSenderLinkRemoteOpen();
+        handler.onReceiverLinkRemoteOpen();
+        RuntimeException tokenRequestFailure = new RuntimeException("some token request failure");
+
+        // Act
+        accessTokenFuture.completeExceptionally(tokenRequestFailure);
+        runPendingWakeup();
+
+        // Assert
+        assertEquals(0, sentAccessTokens.size());
+        final List<IotHubException> failures = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockCbsSessionStateCallback.onAuthenticationFailed(withCapture(failures));
+                times = 1;
+                mockSession.close();
+            }
+        };
+        assertNotNull(failures.get(0));
+        assertSame(tokenRequestFailure, failures.get(0).getCause());
+    }
+
+    private CbsSessionHandler openAndAuthenticate()
+    {
+        accessTokenFutures.add(CompletableFuture.completedFuture(createAccessToken()));
+        CbsSessionHandler handler = new CbsSessionHandler(mockSession, mockCbsSessionStateCallback, mockCredential);
+        handler.onSessionLocalOpen(mockEvent);
+        handler.onSenderLinkRemoteOpen();
+        handler.onReceiverLinkRemoteOpen();
+        return handler;
+    }
+
+    // Fires the most recently scheduled timer that isn't the proactive renewal itself
+    private void firePrefetchTimer(CbsSessionHandler handler)
+    {
+        for (int i = timerHandlers.size() - 1; i >= 0; i--)
+        {
+            if (timerHandlers.get(i) != handler)
+            {
+                timerHandlers.get(i).onTimerTask(mockEvent);
+                return;
+            }
+        }
+
+        throw new AssertionError("No token prefetch was scheduled");
+    }
+
+    private void runPendingWakeup()
+    {
+        assertTrue(pendingWakeupCount > 0);
+        assertNotNull(wakeupCallback);
+        pendingWakeupCount = 0;
+        wakeupCallback.run();
+    }
+
+    private static void assertAtPercentOfTokenLifetime(int percent, int delayMilliseconds)
+    {
+        long expectedDelayMilliseconds = TOKEN_LIFETIME_MILLISECONDS * percent / 100;
+
+        // The lifetime is measured from when the token was sent, a little after it was created
+        assertTrue(delayMilliseconds <= expectedDelayMilliseconds);
+        assertTrue(delayMilliseconds > expectedDelayMilliseconds - 5000);
+    }
+
+    private static AccessToken createAccessToken()
+    {
+        return new AccessToken(UUID.randomUUID().toString(), OffsetDateTime.now().plus(TOKEN_LIFETIME_MILLISECONDS, ChronoUnit.MILLIS));
+    }
+}
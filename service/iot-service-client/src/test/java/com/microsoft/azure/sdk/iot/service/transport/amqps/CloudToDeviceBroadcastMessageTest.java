@@ -0,0 +1,59 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.messaging.Message;
+import org.apache.qpid.proton.Proton;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/** Unit tests for CloudToDeviceBroadcastMessage. */
+public class CloudToDeviceBroadcastMessageTest
+{
+    @Test
+    public void encodeMatchesEncodingTheWholeMessageForTheDevice()
+    {
+        // Arrange
+        Message message = new Message("some payload");
+        message.setMessageId("some-message-id");
+        message.setExpiryTimeUtc(new Date(System.currentTimeMillis() + 60 * 1000));
+        message.getProperties().put("some-key", "some-value");
+        message.getProperties().put("other-key", "other-value");
+        CloudToDeviceBroadcastMessage broadcastMessage = new CloudToDeviceBroadcastMessage(message);
+
+        for (String deviceId : new String[] { "first-device", "second-device" })
+        {
+            // Act
+            byte[] encodedMessage = broadcastMessage.encode(deviceId, message.getMessageId());
+
+            // Assert
+            CloudToDeviceMessage expectedMessage = new CloudToDeviceMessage(deviceId, null, message, null, null);
+            assertArrayEquals(ProtonMessageEncoder.encodeToArray(expectedMessage.getProtonMessage()), encodedMessage);
+        }
+    }
+
+    @Test
+    public void encodeSplicesInTheDeviceAddressAndMessageId()
+    {
+        // Arrange
+        Message message = new Message("some payload");
+        message.getProperties().put("some-key", "some-value");
+        CloudToDeviceBroadcastMessage broadcastMessage = new CloudToDeviceBroadcastMessage(message);
+
+        // Act
+        byte[] encodedMessage = broadcastMessage.encode("some-device", "some-message-id");
+
+        // Assert
+        org.apache.qpid.proton.message.Message decodedMessage = Proton.message();
+        decodedMessage.decode(encodedMessage, 0, encodedMessage.length);
+        assertEquals("/devices/some-device/messages/devicebound", decodedMessage.getAddress());
+        assertEquals("some-message-id", decodedMessage.getMessageId());
+        assertEquals(message.getCorrelationId(), decodedMessage.getCorrelationId());
+        assertEquals("some-value", decodedMessage.getApplicationProperties().getValue().get("some-key"));
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.messaging.Message;
+import com.microsoft.azure.sdk.iot.service.messaging.SendResult;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for CloudToDeviceMessageBatch. */
+public class CloudToDeviceMessageBatchTest
+{
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsEmptyBatch()
+    {
+        new CloudToDeviceMessageBatch(0);
+    }
+
+    @Test
+    public void futureCompletesOnlyWhenEveryMessageCompletes()
+    {
+        // Arrange
+        CloudToDeviceMessageBatch batch = new CloudToDeviceMessageBatch(2);
+        CloudToDeviceMessage first = createMessage(batch, 0, "first");
+        CloudToDeviceMessage second = createMessage(batch, 1, "second");
+
+        // Act
+        second.complete(null);
+
+        // Assert
+        assertFalse(batch.getFuture().isDone());
+        first.complete(new IotHubException("some failure"));
+        assertTrue(batch.getFuture().isDone());
+    }
+
+    @Test
+    public void resultsAreInBatchOrder()
+    {
+        // Arrange
+        CloudToDeviceMessageBatch batch = new CloudToDeviceMessageBatch(2);
+        CloudToDeviceMessage first = createMessage(batch, 0, "first");
+        CloudToDeviceMessage second = createMessage(batch, 1, "second");
+        IotHubException failure = new IotHubException("some failure");
+
+        // Act
+        second.complete(null);
+        first.complete(failure);
+
+        // Assert
+        List<SendResult> results = batch.getFuture().join();
+        assertEquals(2, results.size());
+        assertFalse(results.get(0).wasSentSuccessfully());
+        assertSame(failure, results.get(0).getException());
+        assertEquals("first", results.get(0).getContext());
+        assertTrue(results.get(1).wasSentSuccessfully());
+        assertEquals("second", results.get(1).getContext());
+    }
+
+    private static CloudToDeviceMessage createMessage(CloudToDeviceMessageBatch batch, int batchIndex, Object context)
+    {
+        return new CloudToDeviceMessage("some-device", null, new Message(new byte[10]), context, batch, batchIndex);
+    }
+}
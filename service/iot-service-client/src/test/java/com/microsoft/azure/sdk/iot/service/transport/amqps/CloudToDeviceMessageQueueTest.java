@@ -0,0 +1,358 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubMessageQueueFullException;
+import com.microsoft.azure.sdk.iot.service.messaging.Message;
+import com.microsoft.azure.sdk.iot.service.messaging.QueueOverflowPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for CloudToDeviceMessageQueue. */
+public class CloudToDeviceMessageQueueTest
+{
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsNegativeLimits()
+    {
+        new CloudToDeviceMessageQueue(-1, 0, QueueOverflowPolicy.FAIL_FAST, 0);
+    }
+
+    @Test
+    public void unboundedQueueAcceptsAllMessages() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue();
+
+        // Act
+        for (int i = 0; i < 100; i++)
+        {
+            queue.add(createMessage(10), true, dropped -> {});
+        }
+
+        // Assert
+        assertEquals(100, queue.size());
+        assertEquals(1000, queue.sizeInBytes());
+    }
+
+    @Test
+    public void pollReturnsMessagesInOrder() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue();
+        CloudToDeviceMessage first = createMessage(10);
+        CloudToDeviceMessage second = createMessage(20);
+        queue.add(first, true, dropped -> {});
+        queue.add(second, true, dropped -> {});
+
+        // Act
+        CloudToDeviceMessage firstPolled = queue.poll();
+        CloudToDeviceMessage secondPolled = queue.poll();
+
+        // Assert
+        assertSame(first, firstPolled);
+        assertSame(second, secondPolled);
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.sizeInBytes());
+    }
+
+    @Test(expected = IotHubMessageQueueFullException.class)
+    public void failFastRejectsMessageWhenCountLimitReached() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(2, 0, QueueOverflowPolicy.FAIL_FAST, 0);
+        queue.add(createMessage(10), true, dropped -> {});
+        queue.add(createMessage(10), true, dropped -> {});
+
+        // Act
+        queue.add(createMessage(10), true, dropped -> {});
+    }
+
+    @Test(expected = IotHubMessageQueueFullException.class)
+    public void failFastRejectsMessageWhenByteLimitReached() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(0, 100, QueueOverflowPolicy.FAIL_FAST, 0);
+        queue.add(createMessage(60), true, dropped -> {});
+
+        // Act
+        queue.add(createMessage(60), true, dropped -> {});
+    }
+
+    @Test(expected = IotHubMessageQueueFullException.class)
+    public void messageLargerThanByteLimitIsAlwaysRejected() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(0, 100, QueueOverflowPolicy.DROP_OLDEST, 0);
+
+        // Act
+        queue.add(createMessage(101), true, dropped -> {});
+    }
+
+    @Test
+    public void dropOldestRemovesOldestMessagesToMakeSpace() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(2, 0, QueueOverflowPolicy.DROP_OLDEST, 0);
+        CloudToDeviceMessage first = createMessage(10);
+        CloudToDeviceMessage second = createMessage(10);
+        CloudToDeviceMessage third = createMessage(10);
+        List<CloudToDeviceMessage> droppedMessages = new ArrayList<>();
+        queue.add(first, true, droppedMessages::add);
+        queue.add(second, true, droppedMessages::add);
+
+        // Act
+        queue.add(third, true, droppedMessages::add);
+
+        // Assert
+        assertEquals(1, droppedMessages.size());
+        assertSame(first, droppedMessages.get(0));
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+    }
+
+    @Test
+    public void blockTimesOutWhenNoSpaceIsMade() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(1, 0, QueueOverflowPolicy.BLOCK, 50);
+        queue.add(createMessage(10), true, dropped -> {});
+        long startTime = System.currentTimeMillis();
+
+        // Act
+        try
+        {
+            queue.add(createMessage(10), true, dropped -> {});
+        }
+        catch (IotHubMessageQueueFullException e)
+        {
+            // Assert
+            assertTrue(System.currentTimeMillis() - startTime >= 50);
+            assertEquals(1, queue.size());
+            return;
+        }
+
+        throw new AssertionError("Expected the queue to time out waiting for space");
+    }
+
+    @Test(expected = IotHubMessageQueueFullException.class)
+    public void blockFailsRightAwayWhenCallerMayNotBlock() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(1, 0, QueueOverflowPolicy.BLOCK, 0);
+        queue.add(createMessage(10), true, dropped -> {});
+
+        // Act
+        queue.add(createMessage(10), false, dropped -> {});
+    }
+
+    @Test
+    public void blockedAddCompletesWhenMessageIsPolled() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(1, 0, QueueOverflowPolicy.BLOCK, 10 * 1000);
+        queue.add(createMessage(10), true, dropped -> {});
+        CloudToDeviceMessage blockedMessage = createMessage(10);
+        CountDownLatch added = new CountDownLatch(1);
+
+        Thread producer = new Thread(() ->
+        {
+            try
+            {
+                queue.add(blockedMessage, true, dropped -> {});
+                added.countDown();
+            }
+            catch (Exception e)
+            {
+                // leaves the latch at 1 so that the assertion below fails
+            }
+        });
+        producer.start();
+
+        // Act
+        queue.poll();
+
+        // Assert
+        assertTrue(added.await(10, TimeUnit.SECONDS));
+        assertSame(blockedMessage, queue.poll());
+    }
+
+    @Test
+    public void clearRemovesAllMessages() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue();
+        queue.add(createMessage(10), true, dropped -> {});
+        queue.add(createMessage(10), true, dropped -> {});
+
+        // Act
+        List<CloudToDeviceMessage> removedMessages = queue.clear();
+
+        // Assert
+        assertEquals(2, removedMessages.size());
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.sizeInBytes());
+    }
+
+    @Test
+    public void addAllAddsMessagesInOrder() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(3, 0, QueueOverflowPolicy.FAIL_FAST, 0);
+        CloudToDeviceMessage first = createMessage(10);
+        CloudToDeviceMessage second = createMessage(20);
+
+        // Act
+        queue.addAll(Arrays.asList(first, second), true, dropped -> {});
+
+        // Assert
+        assertEquals(2, queue.size());
+        assertEquals(30, queue.sizeInBytes());
+        assertSame(first, queue.poll());
+        assertSame(second, queue.poll());
+    }
+
+    @Test
+    public void failFastRejectsWholeBatchWhenNotAllMessagesFit() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(3, 0, QueueOverflowPolicy.FAIL_FAST, 0);
+        queue.add(createMessage(10), true, dropped -> {});
+        queue.add(createMessage(10), true, dropped -> {});
+
+        // Act
+        try
+        {
+            queue.addAll(Arrays.asList(createMessage(10), createMessage(10)), true, dropped -> {});
+        }
+        catch (IotHubMessageQueueFullException e)
+        {
+            // Assert
+            assertEquals(2, queue.size());
+            return;
+        }
+
+        throw new AssertionError("Expected the queue to reject the batch");
+    }
+
+    @Test(expected = IotHubMessageQueueFullException.class)
+    public void batchLargerThanCountLimitIsAlwaysRejected() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(1, 0, QueueOverflowPolicy.DROP_OLDEST, 0);
+
+        // Act
+        queue.addAll(Arrays.asList(createMessage(10), createMessage(10)), true, dropped -> {});
+    }
+
+    @Test
+    public void dropOldestRemovesEnoughMessagesForWholeBatch() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(3, 0, QueueOverflowPolicy.DROP_OLDEST, 0);
+        CloudToDeviceMessage first = createMessage(10);
+        CloudToDeviceMessage second = createMessage(10);
+        CloudToDeviceMessage third = createMessage(10);
+        List<CloudToDeviceMessage> droppedMessages = new ArrayList<>();
+        queue.add(first, true, droppedMessages::add);
+        queue.add(second, true, droppedMessages::add);
+        queue.add(third, true, droppedMessages::add);
+
+        // Act
+        queue.addAll(Arrays.asList(createMessage(10), createMessage(10)), true, droppedMessages::add);
+
+        // Assert
+        assertEquals(2, droppedMessages.size());
+        assertSame(first, droppedMessages.get(0));
+        assertSame(second, droppedMessages.get(1));
+        assertSame(third, queue.poll());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void pollReadyToSendWaitsForMessageAtFrontToBeEncoded() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue();
+        CloudToDeviceMessage first = createMessage(10);
+        CloudToDeviceMessage second = createMessage(10);
+        first.setEncodingPending();
+        queue.add(first, true, dropped -> {});
+        queue.add(second, true, dropped -> {});
+
+        // Act
+        CloudToDeviceMessage polledBeforeEncoding = queue.pollReadyToSend();
+        first.encode();
+        CloudToDeviceMessage polledAfterEncoding = queue.pollReadyToSend();
+
+        // Assert
+        assertNull(polledBeforeEncoding);
+        assertSame(first, polledAfterEncoding);
+        assertNotNull(first.getEncodedMessage());
+        assertSame(second, queue.pollReadyToSend());
+    }
+
+    @Test
+    public void addFirstPutsMessagesAheadOfQueuedMessagesWithoutApplyingLimits() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue(1, 0, QueueOverflowPolicy.FAIL_FAST, 0);
+        CloudToDeviceMessage queued = createMessage(10);
+        CloudToDeviceMessage firstReplayed = createMessage(20);
+        CloudToDeviceMessage secondReplayed = createMessage(30);
+        queue.add(queued, true, dropped -> {});
+
+        // Act
+        queue.addFirst(Arrays.asList(firstReplayed, secondReplayed));
+
+        // Assert
+        assertEquals(3, queue.size());
+        assertEquals(60, queue.sizeInBytes());
+        assertSame(firstReplayed, queue.poll());
+        assertSame(secondReplayed, queue.poll());
+        assertSame(queued, queue.poll());
+    }
+
+    @Test
+    public void removeTimedOutRemovesOnlyMessagesPastTheirSendDeadline() throws Exception
+    {
+        // Arrange
+        CloudToDeviceMessageQueue queue = new CloudToDeviceMessageQueue();
+        CloudToDeviceMessage timedOut = createMessage(10);
+        CloudToDeviceMessage withoutDeadline = createMessage(20);
+        CloudToDeviceMessage withLaterDeadline = createMessage(30);
+        timedOut.setSendTimeout(1);
+        withLaterDeadline.setSendTimeout(TimeUnit.HOURS.toMillis(1));
+        queue.add(timedOut, true, dropped -> {});
+        queue.add(withoutDeadline, true, dropped -> {});
+        queue.add(withLaterDeadline, true, dropped -> {});
+
+        // Act
+        List<CloudToDeviceMessage> removed = queue.removeTimedOut(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+
+        // Assert
+        assertEquals(1, removed.size());
+        assertSame(timedOut, removed.get(0));
+        assertEquals(2, queue.size());
+        assertEquals(50, queue.sizeInBytes());
+        assertSame(withoutDeadline, queue.poll());
+        assertSame(withLaterDeadline, queue.poll());
+    }
+
+    private static CloudToDeviceMessage createMessage(int payloadSize)
+    {
+        return new CloudToDeviceMessage("some-device", null, new Message(new byte[payloadSize]), null, null);
+    }
+}
@@ -0,0 +1,426 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.messaging.Message;
+import com.microsoft.azure.sdk.iot.service.messaging.SendResult;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.codec.ReadableBuffer;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.Record;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.impl.RecordImpl;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.Task;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for CloudToDeviceMessageSenderLinkHandler. */
+@RunWith(JMockit.class)
+public class CloudToDeviceMessageSenderLinkHandlerTest
+{
+    private static final long SEND_TIMEOUT_MILLISECONDS = 60 * 1000;
+    private static final int LINGER_MILLISECONDS = 50;
+    private static final String PAYLOAD = "some payload";
+
+    @Mocked Event mockEvent;
+    @Mocked Reactor mockReactor;
+    @Mocked LinkStateCallback mockLinkStateCallback;
+
+    // Tracks the sender link the way the service sees it
+    private int credit;
+    private int sentMessageCount;
+    private int settledDeliveryCount;
+
+    private final CloudToDeviceMessageQueue outgoingMessageQueue = new CloudToDeviceMessageQueue();
+    private final List<SendResult> sendResults = new ArrayList<>();
+    private final List<BaseHandler> timerHandlers = new ArrayList<>();
+
+    // Stands in for the reactor thread picking up a wakeup
+    private Runnable wakeupCallback;
+    private int pendingWakeupCount;
+
+    @Before
+    public void setUp()
+    {
+        new MockUp<ReactorWakeup>()
+        {
+            @Mock
+            void $init(Reactor reactor, Runnable onWakeup)
+            {
+                wakeupCallback = onWakeup;
+            }
+
+            @Mock
+            void wakeup()
+            {
+                pendingWakeupCount++;
+            }
+
+            @Mock
+            void close()
+            {
+            }
+        };
+
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getReactor();
+                result = mockReactor;
+                mockReactor.schedule(anyInt, (Handler) any);
+                result = new Delegate<Task>()
+                {
+                    @SuppressWarnings("unused")
+                    Task schedule(int delay, Handler handler)
+                    {
+                        timerHandlers.add((BaseHandler) handler);
+                        return null;
+                    }
+                };
+            }
+        };
+    }
+
+    private Sender createSender(SenderSettleMode settleMode)
+    {
+        Record attachments = new RecordImpl();
+        Delivery delivery = new MockUp<Delivery>()
+        {
+            @Mock
+            void settle()
+            {
+                settledDeliveryCount++;
+            }
+        }.getMockInstance();
+
+        return new MockUp<Sender>()
+        {
+            @Mock
+            Record attachments()
+            {
+                return attachments;
+            }
+
+            @Mock
+            int getCredit()
+            {
+                return credit;
+            }
+
+            @Mock
+            Delivery delivery(byte[] tag)
+            {
+                return delivery;
+            }
+
+            @Mock
+            int send(byte[] bytes, int offset, int length)
+            {
+                return length;
+            }
+
+            @Mock
+            int sendNoCopy(ReadableBuffer buffer)
+            {
+                return buffer.remaining();
+            }
+
+            @Mock
+            boolean advance()
+            {
+                credit--;
+                sentMessageCount++;
+                return true;
+            }
+
+            @Mock
+            SenderSettleMode getSenderSettleMode()
+            {
+                return settleMode;
+            }
+
+            @Mock
+            EndpointState getLocalState()
+            {
+                return EndpointState.ACTIVE;
+            }
+        }.getMockInstance();
+    }
+
+    private CloudToDeviceMessageSenderLinkHandler openHandler(boolean presettled)
+    {
+        return openHandler(presettled, 0, 0);
+    }
+
+    private CloudToDeviceMessageSenderLinkHandler openHandler(boolean presettled, int lingerMilliseconds, long lingerMaxBatchBytes)
+    {
+        Sender sender = createSender(presettled ? SenderSettleMode.SETTLED : SenderSettleMode.UNSETTLED);
+        CloudToDeviceMessageSenderLinkHandler handler =
+            new CloudToDeviceMessageSenderLinkHandler(sender, "some-link-correlation-id", mockLinkStateCallback, outgoingMessageQueue, null, presettled);
+        handler.setLinger(lingerMilliseconds, lingerMaxBatchBytes);
+        handler.onLinkRemoteOpen(mockEvent);
+        return handler;
+    }
+
+    private static long getMessageSizeInBytes()
+    {
+        return new CloudToDeviceMessage("some-device", null, new Message(PAYLOAD), null, null).getSizeInBytes();
+    }
+
+    private void send(CloudToDeviceMessageSenderLinkHandler handler, int messageCount)
+    {
+        for (int i = 0; i < messageCount; i++)
+        {
+            handler.sendAsync("some-device", null, new Message(PAYLOAD), SEND_TIMEOUT_MILLISECONDS, sendResults::add, null);
+        }
+    }
+
+    private void runWakeup()
+    {
+        assertNotNull(wakeupCallback);
+        pendingWakeupCount = 0;
+        wakeupCallback.run();
+    }
+
+    private static int getSendDeadlineCount(CloudToDeviceMessageSenderLinkHandler handler)
+    {
+        HashedTimingWheel<?> sendDeadlines = Deencapsulation.getField(handler, "sendDeadlines");
+        return sendDeadlines.size();
+    }
+
+    @Test
+    public void presettledMessagesAreSettledAndCompletedWhenWritten()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true);
+
+        // Act
+        send(handler, 3);
+        runWakeup();
+
+        // Assert
+        assertEquals(3, sentMessageCount);
+        assertEquals(3, settledDeliveryCount);
+        assertEquals(3, sendResults.size());
+        for (SendResult sendResult : sendResults)
+        {
+            assertTrue(sendResult.wasSentSuccessfully());
+        }
+    }
+
+    @Test
+    public void presettledMessagesAreNeitherTrackedNorGivenSendDeadlines()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true);
+
+        // Act
+        send(handler, 3);
+        runWakeup();
+
+        // Assert
+        assertEquals(0, handler.getInFlightMessageCount());
+        assertEquals(0, getSendDeadlineCount(handler));
+        new Verifications()
+        {
+            {
+                // the send deadline timer is only scheduled while there are deadlines to enforce
+                mockReactor.schedule(anyInt, (Handler) any);
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void presettledMessagesAreNotReplayedOnReconnect()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true);
+        send(handler, 3);
+        runWakeup();
+
+        // Act
+        handler.onConnectionLost(true);
+
+        // Assert
+        assertEquals(0, outgoingMessageQueue.size());
+        assertEquals(3, sendResults.size());
+    }
+
+    @Test
+    public void presettledMessagesRespectLinkCredit()
+    {
+        // Arrange
+        credit = 1;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true);
+
+        // Act
+        send(handler, 3);
+        runWakeup();
+
+        // Assert
+        assertEquals(1, sentMessageCount);
+        assertEquals(1, sendResults.size());
+        assertEquals(2, outgoingMessageQueue.size());
+
+        // Act
+        credit += 2;
+        handler.onLinkFlow(mockEvent);
+
+        // Assert
+        assertEquals(3, sentMessageCount);
+        assertEquals(3, sendResults.size());
+        assertEquals(0, outgoingMessageQueue.size());
+    }
+
+    @Test
+    public void lingeringMessagesAreSentWhenLingerTimerFires()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true, LINGER_MILLISECONDS, 100 * getMessageSizeInBytes());
+        send(handler, 3);
+        runWakeup();
+        assertEquals(0, sentMessageCount);
+        assertEquals(1, timerHandlers.size());
+
+        // Act
+        timerHandlers.get(0).onTimerTask(mockEvent);
+
+        // Assert
+        assertEquals(3, sentMessageCount);
+        assertEquals(0, outgoingMessageQueue.size());
+    }
+
+    @Test
+    public void lingeringMessagesAreSentWhenMaxBatchBytesIsReached()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true, LINGER_MILLISECONDS, 3 * getMessageSizeInBytes());
+        send(handler, 1);
+        runWakeup();
+        send(handler, 1);
+
+        // Assert
+        // the reactor is lingering, and the batch isn't full, so the message waits for the linger timer
+        assertEquals(0, pendingWakeupCount);
+
+        // Act
+        send(handler, 1);
+
+        // Assert
+        assertEquals(1, pendingWakeupCount);
+
+        // Act
+        runWakeup();
+
+        // Assert
+        assertEquals(3, sentMessageCount);
+        assertEquals(0, outgoingMessageQueue.size());
+    }
+
+    @Test
+    public void messageQueuedAfterFlushWakesReactor()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true, LINGER_MILLISECONDS, 100 * getMessageSizeInBytes());
+        send(handler, 1);
+        runWakeup();
+        timerHandlers.get(0).onTimerTask(mockEvent);
+        assertEquals(1, sentMessageCount);
+
+        // Act
+        send(handler, 1);
+
+        // Assert
+        assertEquals(1, pendingWakeupCount);
+
+        // Act
+        runWakeup();
+
+        // Assert
+        // the message starts a linger period of its own
+        assertEquals(1, sentMessageCount);
+        assertEquals(2, timerHandlers.size());
+    }
+
+    @Test
+    public void timerOfEndedLingerPeriodDoesNotEndNextLingerPeriod()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(true, LINGER_MILLISECONDS, 2 * getMessageSizeInBytes());
+
+        // the first linger period ends early because its batch fills up
+        send(handler, 1);
+        runWakeup();
+        send(handler, 1);
+        runWakeup();
+        assertEquals(2, sentMessageCount);
+
+        // the next linger period starts before the first period's timer fires
+        send(handler, 1);
+        runWakeup();
+        assertEquals(2, timerHandlers.size());
+
+        // Act
+        timerHandlers.get(0).onTimerTask(mockEvent);
+
+        // Assert
+        assertEquals(2, sentMessageCount);
+        assertEquals(1, outgoingMessageQueue.size());
+
+        // Act
+        timerHandlers.get(1).onTimerTask(mockEvent);
+
+        // Assert
+        assertEquals(3, sentMessageCount);
+        assertEquals(0, outgoingMessageQueue.size());
+    }
+
+    @Test
+    public void unsettledMessagesAreTrackedUntilAcknowledged()
+    {
+        // Arrange
+        credit = 10;
+        CloudToDeviceMessageSenderLinkHandler handler = openHandler(false);
+
+        // Act
+        send(handler, 3);
+        runWakeup();
+
+        // Assert
+        assertEquals(3, sentMessageCount);
+        assertEquals(0, settledDeliveryCount);
+        assertEquals(0, sendResults.size());
+        assertEquals(3, handler.getInFlightMessageCount());
+        assertEquals(3, getSendDeadlineCount(handler));
+    }
+}
@@ -0,0 +1,85 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for ConnectionOpenTimer. */
+public class ConnectionOpenTimerTest
+{
+    @Test
+    public void timingsCoverEachPhase()
+    {
+        // Arrange
+        ConnectionOpenTimer timer = new ConnectionOpenTimer();
+        timer.onConnectStarted(millis(1000));
+        timer.onTlsHandshakeCompleted(millis(1030));
+        timer.onSaslHandshakeCompleted(millis(1060));
+        timer.onLinkAttachStarted(millis(1100), true);
+        timer.onAuthenticated(millis(1150));
+
+        // Act
+        ConnectionOpenTimings timings = timer.onOpened(millis(1180));
+
+        // Assert
+        assertEquals(30, timings.getConnectAndTlsHandshakeMilliseconds());
+        assertEquals(30, timings.getSaslHandshakeMilliseconds());
+        assertEquals(90, timings.getCbsAuthenticationMilliseconds());
+        assertEquals(80, timings.getLinkAttachMilliseconds());
+        assertEquals(180, timings.getTotalMilliseconds());
+        assertTrue(timings.isLinkAttachPipelined());
+    }
+
+    @Test
+    public void endingAPhaseEndsTheEarlierPhasesThatWereNotObserved()
+    {
+        // Arrange
+        ConnectionOpenTimer timer = new ConnectionOpenTimer();
+        timer.onConnectStarted(millis(0));
+        timer.onSaslHandshakeCompleted(millis(50));
+        timer.onAuthenticated(millis(70));
+        timer.onLinkAttachStarted(millis(70), false);
+
+        // Act
+        ConnectionOpenTimings timings = timer.onOpened(millis(100));
+
+        // Assert
+        assertTrue(timer.isTlsHandshakeCompleted());
+        assertEquals(50, timings.getConnectAndTlsHandshakeMilliseconds());
+        assertEquals(0, timings.getSaslHandshakeMilliseconds());
+        assertEquals(20, timings.getCbsAuthenticationMilliseconds());
+        assertEquals(30, timings.getLinkAttachMilliseconds());
+        assertFalse(timings.isLinkAttachPipelined());
+    }
+
+    @Test
+    public void connectStartedResetsEveryPhase()
+    {
+        // Arrange
+        ConnectionOpenTimer timer = new ConnectionOpenTimer();
+        timer.onConnectStarted(millis(0));
+        timer.onAuthenticated(millis(100));
+        timer.onOpened(millis(200));
+
+        // Act
+        timer.onConnectStarted(millis(1000));
+        timer.onTlsHandshakeCompleted(millis(1005));
+
+        // Assert
+        assertTrue(timer.isTlsHandshakeCompleted());
+        assertFalse(timer.isSaslHandshakeCompleted());
+        assertEquals(5, timer.onOpened(millis(1020)).getConnectAndTlsHandshakeMilliseconds());
+    }
+
+    private static long millis(long milliseconds)
+    {
+        return TimeUnit.MILLISECONDS.toNanos(milliseconds);
+    }
+}
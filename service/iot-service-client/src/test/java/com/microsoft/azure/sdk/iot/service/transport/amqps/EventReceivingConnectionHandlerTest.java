@@ -44,6 +44,8 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.function.Function;
 
+import static org.junit.Assert.assertNull;
+
 /** Unit tests for EventReceivingConnectionHandler */
 @RunWith(JMockit.class)
 public class EventReceivingConnectionHandlerTest
@@ -156,4 +158,19 @@ public class EventReceivingConnectionHandlerTest
         // Act
         Deencapsulation.invoke(amqpReceiveHandler, "verifyConnectionWasOpened");
     }
+
+    @Test
+    public void connectionHasNoOpenTimingsUntilOpened()
+    {
+        // Arrange
+        String connectionString = "aaa";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+
+        // Act
+        EventReceivingConnectionHandler amqpReceiveHandler = new EventReceivingConnectionHandler(connectionString, iotHubServiceClientProtocol, fileUploadNotificationReceivedCallback, null, null, mockedProxyOptions, mockedSslContext, 230);
+        amqpReceiveHandler.setPipelinedLinkAttachEnabled(true);
+
+        // Assert
+        assertNull(amqpReceiveHandler.getOpenTimings());
+    }
 }
\ No newline at end of file
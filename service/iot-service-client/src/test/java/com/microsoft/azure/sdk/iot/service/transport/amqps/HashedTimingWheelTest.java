@@ -0,0 +1,154 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for HashedTimingWheel. */
+public class HashedTimingWheelTest
+{
+    private static final long START_TIME = 1000;
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final class TestEntry extends HashedTimingWheel.Entry
+    {
+    }
+
+    @Test
+    public void entryExpiresOnceItsDeadlinePasses()
+    {
+        // Arrange
+        HashedTimingWheel<TestEntry> wheel = new HashedTimingWheel<>(100, 8, START_TIME);
+        TestEntry entry = new TestEntry();
+        List<TestEntry> expiredEntries = new ArrayList<>();
+        wheel.add(entry, START_TIME + 3 * TICK);
+
+        // Act
+        wheel.advance(START_TIME + 2 * TICK, expiredEntries::add);
+        int expiredBeforeDeadline = expiredEntries.size();
+        wheel.advance(START_TIME + 3 * TICK, expiredEntries::add);
+
+        // Assert
+        assertEquals(0, expiredBeforeDeadline);
+        assertEquals(1, expiredEntries.size());
+        assertSame(entry, expiredEntries.get(0));
+        assertEquals(0, wheel.size());
+        assertFalse(entry.isInTimingWheel());
+    }
+
+    @Test
+    public void removedEntryNeverExpires()
+    {
+        // Arrange
+        HashedTimingWheel<TestEntry> wheel = new HashedTimingWheel<>(100, 8, START_TIME);
+        TestEntry entry = new TestEntry();
+        TestEntry otherEntry = new TestEntry();
+        List<TestEntry> expiredEntries = new ArrayList<>();
+        wheel.add(entry, START_TIME + TICK);
+        wheel.add(otherEntry, START_TIME + TICK);
+
+        // Act
+        wheel.remove(entry);
+        wheel.advance(START_TIME + 10 * TICK, expiredEntries::add);
+
+        // Assert
+        assertEquals(1, expiredEntries.size());
+        assertSame(otherEntry, expiredEntries.get(0));
+    }
+
+    @Test
+    public void deadlineBeyondOneRevolutionExpiresOnTime()
+    {
+        // Arrange
+        HashedTimingWheel<TestEntry> wheel = new HashedTimingWheel<>(100, 8, START_TIME);
+        TestEntry entry = new TestEntry();
+        List<TestEntry> expiredEntries = new ArrayList<>();
+        wheel.add(entry, START_TIME + 20 * TICK);
+
+        // Act
+        for (int tick = 1; tick < 20; tick++)
+        {
+            wheel.advance(START_TIME + tick * TICK, expiredEntries::add);
+        }
+
+        int expiredBeforeDeadline = expiredEntries.size();
+        wheel.advance(START_TIME + 20 * TICK, expiredEntries::add);
+
+        // Assert
+        assertEquals(0, expiredBeforeDeadline);
+        assertEquals(1, expiredEntries.size());
+    }
+
+    @Test
+    public void advanceAfterLongPauseExpiresEverything()
+    {
+        // Arrange
+        HashedTimingWheel<TestEntry> wheel = new HashedTimingWheel<>(100, 8, START_TIME);
+        List<TestEntry> expiredEntries = new ArrayList<>();
+        for (int i = 1; i <= 100; i++)
+        {
+            wheel.add(new TestEntry(), START_TIME + i * TICK);
+        }
+
+        // Act
+        wheel.advance(START_TIME + 1000 * TICK, expiredEntries::add);
+
+        // Assert
+        assertEquals(100, expiredEntries.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void deadlineInThePastExpiresOnNextAdvance()
+    {
+        // Arrange
+        HashedTimingWheel<TestEntry> wheel = new HashedTimingWheel<>(100, 8, START_TIME);
+        wheel.advance(START_TIME + 5 * TICK, entry -> {});
+        List<TestEntry> expiredEntries = new ArrayList<>();
+        wheel.add(new TestEntry(), START_TIME);
+
+        // Act
+        wheel.advance(START_TIME + 6 * TICK, expiredEntries::add);
+
+        // Assert
+        assertEquals(1, expiredEntries.size());
+    }
+
+    @Test
+    public void handlesManyOutstandingEntries()
+    {
+        // Arrange
+        HashedTimingWheel<TestEntry> wheel = new HashedTimingWheel<>(100, 512, START_TIME);
+        int entryCount = 1000000;
+        TestEntry[] entries = new TestEntry[entryCount];
+        for (int i = 0; i < entryCount; i++)
+        {
+            entries[i] = new TestEntry();
+            wheel.add(entries[i], START_TIME + (i % 600) * TICK);
+        }
+
+        // Act
+        for (int i = 0; i < entryCount; i += 2)
+        {
+            wheel.remove(entries[i]);
+        }
+
+        long[] expiredCount = new long[1];
+        wheel.advance(START_TIME + 600 * TICK, entry -> expiredCount[0]++);
+
+        // Assert
+        assertEquals(entryCount / 2, expiredCount[0]);
+        assertEquals(0, wheel.size());
+        assertFalse(entries[1].isInTimingWheel());
+    }
+}
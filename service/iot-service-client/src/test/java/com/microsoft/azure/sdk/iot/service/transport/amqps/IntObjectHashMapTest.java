@@ -0,0 +1,112 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for IntObjectHashMap. */
+public class IntObjectHashMapTest
+{
+    @Test
+    public void putThenRemoveReturnsValue()
+    {
+        // Arrange
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        map.put(7, "seven");
+
+        // Act
+        String removedValue = map.remove(7);
+
+        // Assert
+        assertEquals("seven", removedValue);
+        assertNull(map.remove(7));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void putReplacesExistingValue()
+    {
+        // Arrange
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        map.put(1, "first");
+
+        // Act
+        String previousValue = map.put(1, "second");
+
+        // Assert
+        assertEquals("first", previousValue);
+        assertEquals("second", map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putRejectsNegativeKeys()
+    {
+        new IntObjectHashMap<String>().put(-1, "negative");
+    }
+
+    @Test
+    public void removeAllReturnsEveryValueAndEmptiesMap()
+    {
+        // Arrange
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>(2);
+        for (int i = 0; i < 100; i++)
+        {
+            map.put(i, i);
+        }
+
+        // Act
+        List<Integer> removedValues = map.removeAll();
+
+        // Assert
+        assertEquals(100, removedValues.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(removedValues.contains(i));
+        }
+
+        assertEquals(0, map.size());
+        assertNull(map.get(50));
+    }
+
+    @Test
+    public void behavesLikeHashMapUnderRandomOperations()
+    {
+        // Arrange
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1234);
+
+        // Act
+        for (int i = 0; i < 100000; i++)
+        {
+            // A small key range so that keys collide and removals have to shift entries back
+            int key = random.nextInt(512);
+            if (random.nextBoolean())
+            {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            else
+            {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        // Assert
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 512; key++)
+        {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
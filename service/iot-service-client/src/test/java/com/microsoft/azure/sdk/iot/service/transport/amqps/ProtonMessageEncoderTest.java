@@ -0,0 +1,78 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.messaging.Message;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for ProtonMessageEncoder. */
+public class ProtonMessageEncoderTest
+{
+    @Test
+    public void encodeToArrayReturnsExactlyTheEncodedMessage()
+    {
+        // Arrange
+        Message message = new Message(new byte[] { 1, 2, 3 });
+        message.setCorrelationId("some-correlation-id");
+        org.apache.qpid.proton.message.Message protonMessage = createProtonMessage(message);
+
+        // Act
+        byte[] encodedMessage = ProtonMessageEncoder.encodeToArray(protonMessage);
+
+        // Assert
+        org.apache.qpid.proton.message.Message decodedMessage = Proton.message();
+        assertEquals(encodedMessage.length, decodedMessage.decode(encodedMessage, 0, encodedMessage.length));
+        assertEquals("some-correlation-id", decodedMessage.getCorrelationId());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, ((Data) decodedMessage.getBody()).getValue().getArray());
+    }
+
+    @Test
+    public void encodeSizesBufferForLargeMessages()
+    {
+        // Arrange
+        ProtonMessageEncoder encoder = new ProtonMessageEncoder();
+        org.apache.qpid.proton.message.Message protonMessage = createProtonMessage(new Message(new byte[10 * 1024]));
+
+        // Act
+        int length = encoder.encode(protonMessage);
+
+        // Assert
+        assertTrue(length > 10 * 1024);
+        assertTrue(encoder.getEncodedBytes().length >= ProtonMessageEncoder.estimateEncodedSize(protonMessage));
+    }
+
+    @Test
+    public void encodeReusesBuffer()
+    {
+        // Arrange
+        ProtonMessageEncoder encoder = new ProtonMessageEncoder();
+        Map<String, String> properties = new HashMap<>();
+        properties.put("some-key", "some-value");
+        Message message = new Message(new byte[100]);
+        message.setProperties(properties);
+        encoder.encode(createProtonMessage(message));
+        byte[] firstBuffer = encoder.getEncodedBytes();
+
+        // Act
+        encoder.encode(createProtonMessage(new Message(new byte[200])));
+
+        // Assert
+        assertSame(firstBuffer, encoder.getEncodedBytes());
+    }
+
+    private static org.apache.qpid.proton.message.Message createProtonMessage(Message message)
+    {
+        return new CloudToDeviceMessage("some-device", null, message, null, null).getProtonMessage();
+    }
+}
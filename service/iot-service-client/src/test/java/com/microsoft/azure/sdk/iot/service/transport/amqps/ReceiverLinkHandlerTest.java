@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.service.messaging.AcknowledgementType;
+import mockit.Deencapsulation;
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.Mocked;
+import mockit.integration.junit4.JMockit;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Record;
+import org.apache.qpid.proton.engine.impl.RecordImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/** Unit tests for ReceiverLinkHandler */
+@RunWith(JMockit.class)
+public class ReceiverLinkHandlerTest
+{
+    @Mocked Event mockEvent;
+    @Mocked Delivery mockDelivery;
+    @Mocked ReactorWakeup mockReactorWakeup;
+    @Mocked LinkStateCallback mockLinkStateCallback;
+
+    // Tracks the credit of a receiver link the way the service sees it
+    private int credit;
+
+    private Receiver createReceiver()
+    {
+        Record attachments = new RecordImpl();
+        return new MockUp<Receiver>()
+        {
+            @Mock
+            Record attachments()
+            {
+                return attachments;
+            }
+
+            @Mock
+            int getCredit()
+            {
+                return credit;
+            }
+
+            @Mock
+            void flow(int delta)
+            {
+                credit += delta;
+            }
+
+            @Mock
+            EndpointState getLocalState()
+            {
+                return EndpointState.ACTIVE;
+            }
+        }.getMockInstance();
+    }
+
+    private static class TestReceiverLinkHandler extends ReceiverLinkHandler
+    {
+        TestReceiverLinkHandler(Receiver receiver, LinkStateCallback linkStateCallback, int prefetchCount)
+        {
+            super(receiver, "some-link-correlation-id", linkStateCallback, prefetchCount);
+        }
+
+        @Override
+        String getLinkInstanceType()
+        {
+            return "test";
+        }
+    }
+
+    @Test
+    public void prefetchCountReplacesFlowController()
+    {
+        // Arrange
+        Receiver receiver = createReceiver();
+
+        // Act
+        TestReceiverLinkHandler handler = new TestReceiverLinkHandler(receiver, mockLinkStateCallback, 2);
+        handler.onLinkRemoteOpen(mockEvent);
+
+        // Assert
+        Iterator<Handler> children = handler.children();
+        while (children.hasNext())
+        {
+            assertFalse(children.next() instanceof LoggingFlowController);
+        }
+    }
+
+    @Test
+    public void creditStopsAtPrefetchCountWhileDeliveriesAreBeingProcessed()
+    {
+        // Arrange
+        final int prefetchCount = 3;
+        Receiver receiver = createReceiver();
+        TestReceiverLinkHandler handler = new TestReceiverLinkHandler(receiver, mockLinkStateCallback, prefetchCount);
+        handler.onLinkRemoteOpen(mockEvent);
+        receiver.flow(prefetchCount);
+        List<CompletableFuture<AcknowledgementType>> heldFutures = new ArrayList<>();
+
+        // Act
+        // the service sends a message for as long as it has credit, and none of the messages finish processing
+        for (int i = 0; i < prefetchCount * 10 && credit > 0; i++)
+        {
+            credit--;
+            handler.processDelivery(mockEvent, mockDelivery, Runnable::run, () ->
+            {
+                CompletableFuture<AcknowledgementType> future = new CompletableFuture<>();
+                heldFutures.add(future);
+                return future;
+            });
+            handler.replenishCredit(receiver);
+        }
+
+        // Assert
+        assertEquals(prefetchCount, heldFutures.size());
+        assertEquals(0, credit);
+
+        // Act
+        heldFutures.get(0).complete(AcknowledgementType.COMPLETE);
+        Deencapsulation.invoke(handler, "settleProcessedDeliveries");
+
+        // Assert
+        assertEquals(1, credit);
+    }
+}
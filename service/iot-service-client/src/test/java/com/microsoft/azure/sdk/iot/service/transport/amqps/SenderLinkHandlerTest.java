@@ -0,0 +1,134 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.azure.sdk.iot.service.transport.amqps;
+
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.codec.ReadableBuffer;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Sender;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/** Unit tests for SenderLinkHandler. */
+@RunWith(JMockit.class)
+public class SenderLinkHandlerTest
+{
+    private static final byte[] ENCODED_MESSAGE = new byte[] { 1, 2, 3, 4 };
+
+    @Mocked Sender mockSender;
+    @Mocked Delivery mockDelivery;
+    @Mocked Event mockEvent;
+    @Mocked LinkStateCallback mockLinkStateCallback;
+
+    private static class TestSenderLinkHandler extends SenderLinkHandler
+    {
+        private final SenderSettleMode settleMode;
+
+        TestSenderLinkHandler(Sender sender, LinkStateCallback linkStateCallback, SenderSettleMode settleMode)
+        {
+            super(sender, "some-link-correlation-id", linkStateCallback);
+            this.settleMode = settleMode;
+        }
+
+        @Override
+        SenderSettleMode getSenderSettleMode()
+        {
+            return this.settleMode;
+        }
+
+        @Override
+        protected String getLinkInstanceType()
+        {
+            return "test";
+        }
+    }
+
+    private void expectSend(final SenderSettleMode linkSettleMode)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockSender.delivery((byte[]) any);
+                result = mockDelivery;
+                mockSender.sendNoCopy((ReadableBuffer) any);
+                result = ENCODED_MESSAGE.length;
+                mockSender.advance();
+                result = true;
+                mockSender.getSenderSettleMode();
+                result = linkSettleMode;
+                mockEvent.getLink();
+                result = mockSender;
+            }
+        };
+    }
+
+    @Test
+    public void presettledLinkIsOpenedWithSettledMode()
+    {
+        // Arrange
+        expectSend(SenderSettleMode.SETTLED);
+        TestSenderLinkHandler handler = new TestSenderLinkHandler(mockSender, mockLinkStateCallback, SenderSettleMode.SETTLED);
+
+        // Act
+        handler.onLinkInit(mockEvent);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockSender.setSenderSettleMode(SenderSettleMode.SETTLED);
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void deliveryOfPresettledLinkIsSettledOnWrite()
+    {
+        // Arrange
+        expectSend(SenderSettleMode.SETTLED);
+        TestSenderLinkHandler handler = new TestSenderLinkHandler(mockSender, mockLinkStateCallback, SenderSettleMode.SETTLED);
+
+        // Act
+        int deliveryTag = handler.sendEncodedMessageAndGetDeliveryTag(ENCODED_MESSAGE);
+
+        // Assert
+        assertEquals(1, deliveryTag);
+        new Verifications()
+        {
+            {
+                mockDelivery.settle();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void deliveryOfUnsettledLinkIsLeftForTheServiceToAcknowledge()
+    {
+        // Arrange
+        expectSend(SenderSettleMode.UNSETTLED);
+        TestSenderLinkHandler handler = new TestSenderLinkHandler(mockSender, mockLinkStateCallback, SenderSettleMode.UNSETTLED);
+
+        // Act
+        int deliveryTag = handler.sendEncodedMessageAndGetDeliveryTag(ENCODED_MESSAGE);
+
+        // Assert
+        assertEquals(1, deliveryTag);
+        new Verifications()
+        {
+            {
+                mockDelivery.settle();
+                times = 0;
+            }
+        };
+    }
+}
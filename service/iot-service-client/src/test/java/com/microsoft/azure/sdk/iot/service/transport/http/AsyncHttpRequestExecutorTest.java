@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Unit tests for AsyncHttpRequestExecutor. */
+@RunWith(JMockit.class)
+public class AsyncHttpRequestExecutorTest
+{
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorRejectsNegativeConcurrency()
+    {
+        new AsyncHttpRequestExecutor(null, -1);
+    }
+
+    @Test
+    public void submitCompletesWithOperationResult() throws Exception
+    {
+        // Arrange
+        AsyncHttpRequestExecutor executor = new AsyncHttpRequestExecutor(null, 0);
+
+        // Act
+        CompletableFuture<String> future = executor.submit(() -> "some result");
+
+        // Assert
+        assertEquals("some result", future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void submitCompletesExceptionallyWithOperationException() throws Exception
+    {
+        // Arrange
+        AsyncHttpRequestExecutor executor = new AsyncHttpRequestExecutor(null, 0);
+
+        // Act
+        CompletableFuture<String> future = executor.submit(() ->
+        {
+            throw new IotHubNotFoundException();
+        });
+
+        // Assert
+        try
+        {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the future to complete exceptionally");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IotHubNotFoundException);
+        }
+    }
+
+    @Test
+    public void submitRunsAtMostMaxConcurrentOperations() throws Exception
+    {
+        // Arrange
+        final int maxConcurrentRequests = 2;
+        AsyncHttpRequestExecutor executor = new AsyncHttpRequestExecutor(null, maxConcurrentRequests);
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxObserved = new AtomicInteger(0);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 20; i++)
+        {
+            futures.add(executor.submit(() ->
+            {
+                int current = running.incrementAndGet();
+                maxObserved.accumulateAndGet(current, Math::max);
+                sleepUninterruptibly(5);
+                running.decrementAndGet();
+                return current;
+            }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(maxObserved.get() <= maxConcurrentRequests);
+        assertEquals(0, executor.getActiveRequestCount());
+        assertEquals(0, executor.getQueuedRequestCount());
+    }
+
+    @Test
+    public void cancelledQueuedOperationIsNotRun() throws Exception
+    {
+        // Arrange
+        AsyncHttpRequestExecutor executor = new AsyncHttpRequestExecutor(null, 1);
+        CountDownLatch blockFirstOperation = new CountDownLatch(1);
+        AtomicInteger secondOperationRuns = new AtomicInteger(0);
+        CompletableFuture<Integer> first = executor.submit(() ->
+        {
+            awaitUninterruptibly(blockFirstOperation);
+            return 1;
+        });
+        CompletableFuture<Integer> second = executor.submit(secondOperationRuns::incrementAndGet);
+
+        // Act
+        assertTrue(second.cancel(true));
+        blockFirstOperation.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(second.isCancelled());
+        assertEquals(0, secondOperationRuns.get());
+        assertFalse(first.isCompletedExceptionally());
+    }
+
+    @Test
+    public void cancelAbortsRegisteredRequest(@Mocked final HttpRequest mockRequest) throws Exception
+    {
+        // Arrange
+        AsyncHttpRequestExecutor executor = new AsyncHttpRequestExecutor(null, 0);
+        CountDownLatch requestRegistered = new CountDownLatch(1);
+        CountDownLatch blockOperation = new CountDownLatch(1);
+        CompletableFuture<Integer> future = executor.submit(() ->
+        {
+            executor.registerRequest(mockRequest);
+            requestRegistered.countDown();
+            awaitUninterruptibly(blockOperation);
+            return 1;
+        });
+        assertTrue(requestRegistered.await(10, TimeUnit.SECONDS));
+
+        // Act
+        assertTrue(future.cancel(true));
+        blockOperation.countDown();
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockRequest.abort();
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void registerRequestFailsForCancelledOperation(@Mocked final HttpRequest mockRequest) throws Exception
+    {
+        // Arrange
+        AsyncHttpRequestExecutor executor = new AsyncHttpRequestExecutor(null, 0);
+        CountDownLatch operationStarted = new CountDownLatch(1);
+        CountDownLatch blockOperation = new CountDownLatch(1);
+        CountDownLatch operationFinished = new CountDownLatch(1);
+        AtomicReference<Throwable> registerFailure = new AtomicReference<>();
+        CompletableFuture<Integer> future = executor.submit(() ->
+        {
+            operationStarted.countDown();
+            awaitUninterruptibly(blockOperation);
+            try
+            {
+                executor.registerRequest(mockRequest);
+            }
+            catch (IOException e)
+            {
+                registerFailure.set(e);
+            }
+
+            operationFinished.countDown();
+            return 1;
+        });
+        assertTrue(operationStarted.await(10, TimeUnit.SECONDS));
+
+        // Act
+        assertTrue(future.cancel(true));
+        blockOperation.countDown();
+
+        // Assert
+        assertTrue(operationFinished.await(10, TimeUnit.SECONDS));
+        assertTrue(registerFailure.get() instanceof IOException);
+        new Verifications()
+        {
+            {
+                mockRequest.abort();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void registerRequestOutsideOfOperationDoesNothing(@Mocked final HttpRequest mockRequest) throws Exception
+    {
+        // Arrange
+        AsyncHttpRequestExecutor executor = new AsyncHttpRequestExecutor(null, 0);
+
+        // Act
+        executor.registerRequest(mockRequest);
+
+        // Assert
+        assertEquals(0, executor.getActiveRequestCount());
+        new Verifications()
+        {
+            {
+                mockRequest.abort();
+                times = 0;
+            }
+        };
+    }
+
+    private static void sleepUninterruptibly(long milliseconds)
+    {
+        try
+        {
+            Thread.sleep(milliseconds);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -12,8 +12,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.fail;
 
 /** Unit tests for HttpRequest. */
 @SuppressWarnings("EmptyMethod")
@@ -104,6 +109,116 @@ public class HttpsRequestTest
         request.send();
     }
 
+    @Test
+    public void sendDoesNotReadResponseOfAbortedRequest(@Mocked final HttpsURLConnection mockConn, final @Mocked URL mockUrl) throws IOException, IotHubException
+    {
+        // Arrange
+        final HttpRequest[] request = new HttpRequest[1];
+        new NonStrictExpectations()
+        {
+            {
+                mockConn.connect();
+                result = new Delegate()
+                {
+                    @SuppressWarnings("unused")
+                    void connect() throws IOException
+                    {
+                        request[0].abort();
+                        throw new IOException();
+                    }
+                };
+                mockConn.getErrorStream();
+                result = null;
+            }
+        };
+        request[0] = new HttpRequest(mockUrl, HttpMethod.POST, new byte[0], "");
+
+        // Act
+        try
+        {
+            request[0].send();
+            fail("Expected an IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockConn.disconnect();
+                times = 1;
+                mockConn.getResponseCode();
+                times = 0;
+                mockConn.getErrorStream();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void sendDoesNotSendRequestAbortedWhileConnecting(@Mocked final HttpsURLConnection mockConn, final @Mocked URL mockUrl) throws IOException, IotHubException
+    {
+        // Arrange
+        final HttpRequest[] request = new HttpRequest[1];
+        new NonStrictExpectations()
+        {
+            {
+                mockConn.connect();
+                result = new Delegate()
+                {
+                    @SuppressWarnings("unused")
+                    void connect()
+                    {
+                        // Aborted before the connection is established, so there is nothing for abort() to close yet
+                        request[0].abort();
+                    }
+                };
+            }
+        };
+        request[0] = new HttpRequest(mockUrl, HttpMethod.GET, new byte[0], "");
+
+        // Act
+        try
+        {
+            request[0].send();
+            fail("Expected an IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+
+        // Assert
+        final List<SSLSocketFactory> socketFactories = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockConn.setSSLSocketFactory(withCapture(socketFactories));
+                mockConn.disconnect();
+                times = 2;
+                mockConn.getResponseCode();
+                times = 0;
+                mockConn.getInputStream();
+                times = 0;
+            }
+        };
+
+        // A reconnect would have to go through a socket factory that fails instead of sending the request again
+        SSLSocketFactory lastSocketFactory = socketFactories.get(socketFactories.size() - 1);
+        try
+        {
+            lastSocketFactory.createSocket("localhost", 443);
+            fail("Expected an IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSREQUEST_12_009: [The function shall set the header field with the given name to the given value.]
     @Test
     public void setHeaderFieldSetsHeaderField(@Mocked final HttpsURLConnection mockConn, final @Mocked URL mockUrl) throws IOException
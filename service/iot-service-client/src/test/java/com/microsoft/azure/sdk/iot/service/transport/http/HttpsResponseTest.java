@@ -9,6 +9,9 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -140,4 +143,41 @@ public class HttpsResponseTest
         // Assert
         assertThat(testErrorReason, is(errorReason));
     }
+
+    @Test
+    public void getBodyAsByteBufferReturnsReadOnlyViewOfBody()
+    {
+        // Arrange
+        final int status = 200;
+        final byte[] body = { 1, 2, 3, 4 };
+        final Map<String, List<String>> headerFields = new HashMap<>();
+        final byte[] errorReason = {};
+        // Act
+        HttpResponse response = new HttpResponse(status, body, headerFields, errorReason);
+        ByteBuffer testBody = response.getBodyAsByteBuffer();
+        // Assert
+        assertThat(testBody.isReadOnly(), is(true));
+        assertThat(testBody.remaining(), is(body.length));
+        byte[] readBody = new byte[testBody.remaining()];
+        testBody.get(readBody);
+        assertThat(readBody, is(body));
+    }
+
+    @Test
+    public void getBodyAsInputStreamReturnsBody() throws IOException
+    {
+        // Arrange
+        final int status = 200;
+        final byte[] body = { 1, 2, 3, 4 };
+        final Map<String, List<String>> headerFields = new HashMap<>();
+        final byte[] errorReason = {};
+        // Act
+        HttpResponse response = new HttpResponse(status, body, headerFields, errorReason);
+        InputStream testBody = response.getBodyAsInputStream();
+        // Assert
+        byte[] readBody = new byte[body.length];
+        assertThat(testBody.read(readBody), is(body.length));
+        assertThat(readBody, is(body));
+        assertThat(testBody.read(), is(-1));
+    }
 }
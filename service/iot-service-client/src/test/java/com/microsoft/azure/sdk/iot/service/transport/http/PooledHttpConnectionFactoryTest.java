@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.transport.http;
+
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Unit tests for PooledHttpConnectionFactory. */
+public class PooledHttpConnectionFactoryTest
+{
+    @Test
+    public void builderAppliesDefaults()
+    {
+        // Act
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().build();
+
+        // Assert
+        assertEquals(0, factory.getMaxConnectionsPerHost());
+        assertEquals(60 * 1000, factory.getConnectionAcquireTimeoutMilliseconds());
+        assertEquals(60, factory.getIdleConnectionTimeoutSeconds());
+        assertEquals(1000, factory.getTlsSessionCacheSize());
+        assertEquals(60 * 60, factory.getTlsSessionTimeoutSeconds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderRejectsNegativeMaxConnectionsPerHost()
+    {
+        // Act
+        PooledHttpConnectionFactory.builder().maxConnectionsPerHost(-1).build();
+    }
+
+    @Test
+    public void getDefaultReturnsSharedInstance()
+    {
+        // Act
+        PooledHttpConnectionFactory first = PooledHttpConnectionFactory.getDefault();
+        PooledHttpConnectionFactory second = PooledHttpConnectionFactory.getDefault();
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    public void acquireDoesNotLimitConnectionsByDefault() throws IOException
+    {
+        // Arrange
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().build();
+        URL url = new URL("https://some-hub.azure-devices.net/twins/device1");
+
+        // Act
+        for (int i = 0; i < 100; i++)
+        {
+            factory.acquire(url);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void acquireTimesOutWhenHostHasNoFreeConnections() throws IOException
+    {
+        // Arrange
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().maxConnectionsPerHost(1).connectionAcquireTimeoutMilliseconds(10).build();
+        URL url = new URL("https://some-hub.azure-devices.net/twins/device1");
+        factory.acquire(url);
+
+        // Act
+        factory.acquire(url);
+    }
+
+    @Test
+    public void releaseFreesConnectionForNextRequest() throws IOException
+    {
+        // Arrange
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().maxConnectionsPerHost(1).connectionAcquireTimeoutMilliseconds(10).build();
+        URL url = new URL("https://some-hub.azure-devices.net/twins/device1");
+        factory.acquire(url);
+
+        // Act
+        factory.release(url);
+
+        // Assert
+        factory.acquire(url);
+    }
+
+    @Test
+    public void connectionLimitIsPerHost() throws IOException
+    {
+        // Arrange
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().maxConnectionsPerHost(1).connectionAcquireTimeoutMilliseconds(10).build();
+        factory.acquire(new URL("https://some-hub.azure-devices.net/twins/device1"));
+
+        // Act
+        factory.acquire(new URL("https://some-other-hub.azure-devices.net/twins/device1"));
+    }
+
+    @Test
+    public void acquireClosesSocketsAfterIdleTimeout() throws IOException
+    {
+        // Arrange
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().build();
+        URL url = new URL("https://some-hub.azure-devices.net/twins/device1");
+        Socket socket = createSocket(factory);
+        Deencapsulation.setField(factory, "lastRequestCompletedNanos", System.nanoTime() - TimeUnit.MINUTES.toNanos(2));
+
+        // Act
+        factory.acquire(url);
+
+        // Assert
+        assertTrue(socket.isClosed());
+    }
+
+    @Test
+    public void acquireKeepsSocketsOpenBeforeIdleTimeout() throws IOException
+    {
+        // Arrange
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().build();
+        URL url = new URL("https://some-hub.azure-devices.net/twins/device1");
+        Socket socket = createSocket(factory);
+
+        // Act
+        factory.acquire(url);
+
+        // Assert
+        assertFalse(socket.isClosed());
+        socket.close();
+    }
+
+    @Test
+    public void acquireKeepsSocketsOpenWhileRequestsAreInFlight() throws IOException
+    {
+        // Arrange
+        PooledHttpConnectionFactory factory = PooledHttpConnectionFactory.builder().build();
+        URL url = new URL("https://some-hub.azure-devices.net/twins/device1");
+        factory.acquire(url);
+        Socket socket = createSocket(factory);
+        Deencapsulation.setField(factory, "lastRequestCompletedNanos", System.nanoTime() - TimeUnit.MINUTES.toNanos(2));
+
+        // Act
+        factory.acquire(url);
+
+        // Assert
+        assertFalse(socket.isClosed());
+        socket.close();
+    }
+
+    private static Socket createSocket(PooledHttpConnectionFactory factory) throws IOException
+    {
+        SSLSocketFactory sslSocketFactory = Deencapsulation.getField(factory, "sslSocketFactory");
+        return sslSocketFactory.createSocket();
+    }
+}
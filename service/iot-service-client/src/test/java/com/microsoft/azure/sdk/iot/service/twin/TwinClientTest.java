@@ -8,6 +8,7 @@ package com.microsoft.azure.sdk.iot.service.twin;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.query.SqlQueryBuilder;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
@@ -21,6 +22,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.net.URL;
 import java.util.Collection;
 import java.util.HashMap;
@@ -43,6 +45,9 @@ public class TwinClientTest
     @Mocked
     IotHubServiceSasToken mockedSasToken;
 
+    @Mocked
+    IotHubServiceSasTokenCache mockedSasTokenCache;
+
     @Mocked
     HttpRequest mockedHttpRequest;
 
@@ -172,7 +177,7 @@ public class TwinClientTest
                 times = 1;
                 mockedHttpRequest.send();
                 times = 1;
-                Twin.fromJson(anyString);
+                Twin.fromJson((Reader) any);
                 times = 1;
             }
         };
@@ -199,7 +204,7 @@ public class TwinClientTest
                 times = 1;
                 mockedHttpRequest.send();
                 times = 1;
-                Twin.fromJson(anyString);
+                Twin.fromJson((Reader) any);
                 times = 1;
             }
         };